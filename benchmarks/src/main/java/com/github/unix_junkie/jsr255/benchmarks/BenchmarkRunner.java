@@ -0,0 +1,44 @@
+/*-
+ * $Id$
+ */
+package com.github.unix_junkie.jsr255.benchmarks;
+
+import java.util.Arrays;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Runs the benchmarks (or those selected by the usual JMH command line
+ * options) with 1 thread, with half as many threads as there are
+ * processors, and with as many threads as there are processors, with the
+ * GC profiler, which reports the allocation rate.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class BenchmarkRunner {
+	private BenchmarkRunner() {
+		assert false;
+	}
+
+	public static void main(final String args[]) throws CommandLineOptionException, RunnerException {
+		final CommandLineOptions commandLine = new CommandLineOptions(args);
+		final int processors = Runtime.getRuntime().availableProcessors();
+		final SortedSet<Integer> threadCounts = new TreeSet<Integer>(Arrays.asList(Integer.valueOf(1),
+				Integer.valueOf(Math.max(1, processors / 2)),
+				Integer.valueOf(processors)));
+		for (final Integer threads : threadCounts) {
+			new Runner(new OptionsBuilder()
+					.parent(commandLine)
+					.threads(threads.intValue())
+					.addProfiler(GCProfiler.class)
+					.build()).run();
+		}
+	}
+}
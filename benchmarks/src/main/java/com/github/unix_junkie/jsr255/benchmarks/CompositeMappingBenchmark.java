@@ -0,0 +1,46 @@
+/*-
+ * $Id$
+ */
+package com.github.unix_junkie.jsr255.benchmarks;
+
+import java.io.InvalidObjectException;
+
+import javax.management.openmbean.MXBeanMapping;
+import javax.management.openmbean.OpenDataException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * <p>Converting a Java bean to a <code>CompositeData</code> and
+ * back.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+@State(Scope.Benchmark)
+public class CompositeMappingBenchmark {
+	private MXBeanMapping mapping;
+
+	private Point javaValue;
+
+	private Object openValue;
+
+	@Setup
+	public void setUp() throws OpenDataException {
+		this.mapping = Fixtures.mapping("composite");
+		this.javaValue = new Point(1, 2L, "point");
+		this.openValue = this.mapping.toOpenValue(this.javaValue);
+	}
+
+	@Benchmark
+	public Object toOpenValue() throws OpenDataException {
+		return this.mapping.toOpenValue(this.javaValue);
+	}
+
+	@Benchmark
+	public Object fromOpenValue() throws InvalidObjectException {
+		return this.mapping.fromOpenValue(this.openValue);
+	}
+}
@@ -0,0 +1,81 @@
+/*-
+ * $Id$
+ */
+package com.github.unix_junkie.jsr255.benchmarks;
+
+import java.io.InvalidObjectException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.openmbean.MXBeanMapping;
+import javax.management.openmbean.OpenDataException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * <p>Converting maps (to <code>TabularData</code>), arrays and lists
+ * (to arrays of <code>CompositeData</code>) and arrays of primitive
+ * types to open values and back.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+@State(Scope.Benchmark)
+public class ContainerMappingBenchmark {
+	/**
+	 * The name of a {@link MappedTypes} property.
+	 */
+	@Param({"tabular", "array", "list", "primitiveArray"})
+	public String kind;
+
+	/**
+	 * The number of entries or elements.
+	 */
+	@Param({"16", "1024"})
+	public int size;
+
+	private MXBeanMapping mapping;
+
+	private Object javaValue;
+
+	private Object openValue;
+
+	@Setup
+	public void setUp() throws OpenDataException {
+		this.mapping = Fixtures.mapping(this.kind);
+		final List<Point> points = new ArrayList<Point>(this.size);
+		final Map<String, Point> table = new LinkedHashMap<String, Point>();
+		final int ints[] = new int[this.size];
+		for (int i = 0; i < this.size; i++) {
+			final Point point = new Point(i, -i, "point" + i);
+			points.add(point);
+			table.put(point.getLabel(), point);
+			ints[i] = i;
+		}
+		if (this.kind.equals("tabular")) {
+			this.javaValue = table;
+		} else if (this.kind.equals("array")) {
+			this.javaValue = points.toArray(new Point[this.size]);
+		} else if (this.kind.equals("list")) {
+			this.javaValue = points;
+		} else {
+			this.javaValue = ints;
+		}
+		this.openValue = this.mapping.toOpenValue(this.javaValue);
+	}
+
+	@Benchmark
+	public Object toOpenValue() throws OpenDataException {
+		return this.mapping.toOpenValue(this.javaValue);
+	}
+
+	@Benchmark
+	public Object fromOpenValue() throws InvalidObjectException {
+		return this.mapping.fromOpenValue(this.openValue);
+	}
+}
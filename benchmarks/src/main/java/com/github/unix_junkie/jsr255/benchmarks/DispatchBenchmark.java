@@ -0,0 +1,58 @@
+/*-
+ * $Id$
+ */
+package com.github.unix_junkie.jsr255.benchmarks;
+
+import javax.management.AnnotatedStandardMBean;
+import javax.management.Attribute;
+import javax.management.JMException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * <p>The <code>getAttribute</code>, <code>setAttribute</code> and
+ * <code>invoke</code> throughput of an MBean shared by all the
+ * threads.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+	private static final String ADD_SIGNATURE[] = {Long.TYPE.getName(), Integer.TYPE.getName()};
+
+	private static final Object ADD_PARAMS[] = {Long.valueOf(3L), Integer.valueOf(2)};
+
+	private static final Attribute SIZE = new Attribute("Size", Integer.valueOf(32));
+
+	@Param({"false", "true"})
+	public boolean optimized;
+
+	@Param({"false", "true"})
+	public boolean isMXBean;
+
+	private AnnotatedStandardMBean mbean;
+
+	@Setup
+	public void setUp() {
+		this.mbean = Fixtures.newMBean(this.isMXBean, Fixtures.options(this.optimized));
+	}
+
+	@Benchmark
+	public Object getAttribute() throws JMException {
+		return this.mbean.getAttribute("Size");
+	}
+
+	@Benchmark
+	public void setAttribute() throws JMException {
+		this.mbean.setAttribute(SIZE);
+	}
+
+	@Benchmark
+	public Object invoke() throws JMException {
+		return this.mbean.invoke("add", ADD_PARAMS, ADD_SIGNATURE);
+	}
+}
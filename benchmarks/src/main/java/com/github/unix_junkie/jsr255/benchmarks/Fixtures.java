@@ -0,0 +1,54 @@
+/*-
+ * $Id$
+ */
+package com.github.unix_junkie.jsr255.benchmarks;
+
+import java.lang.reflect.Type;
+
+import javax.management.AnnotatedStandardMBean;
+import javax.management.openmbean.MXBeanMapping;
+import javax.management.openmbean.MXBeanMappingFactory;
+import javax.management.openmbean.OpenDataException;
+
+/**
+ * <p>The objects shared by the benchmarks.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+final class Fixtures {
+	private Fixtures() {
+		assert false;
+	}
+
+	/**
+	 * @param optimized whether to enable direct dispatch and lazy,
+	 *        shared <code>MBeanInfo</code>.
+	 * @return the options of the benchmarked MBeans.
+	 */
+	static AnnotatedStandardMBean.Options options(final boolean optimized) {
+		final AnnotatedStandardMBean.Options options = new AnnotatedStandardMBean.Options();
+		options.setDirectDispatch(optimized);
+		options.setLazyMBeanInfo(optimized);
+		options.setSharedMBeanInfo(optimized);
+		return options;
+	}
+
+	static AnnotatedStandardMBean newMBean(final boolean isMXBean, final AnnotatedStandardMBean.Options options) {
+		return new AnnotatedStandardMBean(new Sample(), SampleMBean.class, isMXBean, options);
+	}
+
+	/**
+	 * @param kind the name of a {@link MappedTypes} property, e.g.
+	 *        <code>tabular</code>.
+	 * @return the default mapping of the type of <code>kind</code>.
+	 */
+	static MXBeanMapping mapping(final String kind) throws OpenDataException {
+		final Type type;
+		try {
+			type = MappedTypes.class.getMethod("get" + Character.toUpperCase(kind.charAt(0)) + kind.substring(1)).getGenericReturnType();
+		} catch (final NoSuchMethodException nsme) {
+			throw new IllegalArgumentException(kind, nsme);
+		}
+		return MXBeanMappingFactory.DEFAULT.mappingForType(type, MXBeanMappingFactory.DEFAULT);
+	}
+}
@@ -0,0 +1,50 @@
+/*-
+ * $Id$
+ */
+package com.github.unix_junkie.jsr255.benchmarks;
+
+import javax.management.AnnotatedStandardMBean;
+import javax.management.MBeanInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * <p>The first <code>getMBeanInfo()</code> call on a new MBean (which
+ * includes constructing the MBean), and the repeated calls on an MBean
+ * shared by all the threads.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+@State(Scope.Benchmark)
+public class MBeanInfoBenchmark {
+	@Param({"false", "true"})
+	public boolean optimized;
+
+	@Param({"false", "true"})
+	public boolean isMXBean;
+
+	private AnnotatedStandardMBean.Options options;
+
+	private AnnotatedStandardMBean mbean;
+
+	@Setup
+	public void setUp() {
+		this.options = Fixtures.options(this.optimized);
+		this.mbean = Fixtures.newMBean(this.isMXBean, this.options);
+		this.mbean.getMBeanInfo();
+	}
+
+	@Benchmark
+	public MBeanInfo first() {
+		return Fixtures.newMBean(this.isMXBean, this.options).getMBeanInfo();
+	}
+
+	@Benchmark
+	public MBeanInfo repeated() {
+		return this.mbean.getMBeanInfo();
+	}
+}
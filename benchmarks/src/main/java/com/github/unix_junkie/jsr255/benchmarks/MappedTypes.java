@@ -0,0 +1,25 @@
+/*-
+ * $Id$
+ */
+package com.github.unix_junkie.jsr255.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Declares the (generic) types whose mappings are benchmarked, as
+ * the return types of its methods.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public interface MappedTypes {
+	Point getComposite();
+
+	Map<String, Point> getTabular();
+
+	Point[] getArray();
+
+	List<Point> getList();
+
+	int[] getPrimitiveArray();
+}
@@ -0,0 +1,69 @@
+/*-
+ * $Id$
+ */
+package com.github.unix_junkie.jsr255.benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import javax.management.MemberInvoker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * <p>Calling the getters of a Java bean, as the composite mappings do,
+ * through a generated {@link MemberInvoker}, compared with reflection
+ * and with direct calls.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+@State(Scope.Benchmark)
+public class MemberInvokerBenchmark {
+	private static final Object NO_ARGS[] = {};
+
+	private Point point;
+
+	private Method getters[];
+
+	private MemberInvoker invoker;
+
+	@Setup
+	public void setUp() throws NoSuchMethodException {
+		this.point = new Point(1, 2L, "point");
+		this.getters = new Method[] {
+			Point.class.getMethod("getLabel"),
+			Point.class.getMethod("getX"),
+			Point.class.getMethod("getY"),
+		};
+		this.invoker = MemberInvoker.forMembers(this.getters);
+		if (!this.invoker.isGenerated()) {
+			throw new IllegalStateException("The invoker has not been generated");
+		}
+	}
+
+	@Benchmark
+	public Object[] generated() throws Exception {
+		final Object values[] = new Object[this.getters.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = this.invoker.invoke(i, this.point, NO_ARGS);
+		}
+		return values;
+	}
+
+	@Benchmark
+	public Object[] reflective() throws IllegalAccessException, InvocationTargetException {
+		final Object values[] = new Object[this.getters.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = this.getters[i].invoke(this.point, NO_ARGS);
+		}
+		return values;
+	}
+
+	@Benchmark
+	public Object[] direct() {
+		return new Object[] {this.point.getLabel(), Integer.valueOf(this.point.getX()), Long.valueOf(this.point.getY())};
+	}
+}
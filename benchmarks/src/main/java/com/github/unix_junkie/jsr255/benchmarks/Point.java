@@ -0,0 +1,52 @@
+/*-
+ * $Id$
+ */
+package com.github.unix_junkie.jsr255.benchmarks;
+
+/**
+ * <p>A Java bean, mapped to a <code>CompositeData</code> and
+ * reconstructed through its setters.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class Point {
+	private int x;
+
+	private long y;
+
+	private String label;
+
+	public Point() {
+		// empty
+	}
+
+	public Point(final int x, final long y, final String label) {
+		this.x = x;
+		this.y = y;
+		this.label = label;
+	}
+
+	public int getX() {
+		return this.x;
+	}
+
+	public void setX(final int x) {
+		this.x = x;
+	}
+
+	public long getY() {
+		return this.y;
+	}
+
+	public void setY(final long y) {
+		this.y = y;
+	}
+
+	public String getLabel() {
+		return this.label;
+	}
+
+	public void setLabel(final String label) {
+		this.label = label;
+	}
+}
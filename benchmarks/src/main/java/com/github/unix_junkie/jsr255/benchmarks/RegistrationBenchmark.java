@@ -0,0 +1,58 @@
+/*-
+ * $Id$
+ */
+package com.github.unix_junkie.jsr255.benchmarks;
+
+import javax.management.AnnotatedStandardMBean;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * <p>Constructing an {@link AnnotatedStandardMBean}, and registering it
+ * with (then unregistering it from) an MBean Server.  Each thread uses
+ * its own MBean Server.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+@State(Scope.Thread)
+public class RegistrationBenchmark {
+	@Param({"false", "true"})
+	public boolean optimized;
+
+	@Param({"false", "true"})
+	public boolean isMXBean;
+
+	private AnnotatedStandardMBean.Options options;
+
+	private MBeanServer server;
+
+	private ObjectName name;
+
+	@Setup
+	public void setUp() throws JMException {
+		this.options = Fixtures.options(this.optimized);
+		this.server = MBeanServerFactory.newMBeanServer();
+		this.name = new ObjectName("benchmark:type=Sample");
+	}
+
+	@Benchmark
+	public AnnotatedStandardMBean construct() {
+		return Fixtures.newMBean(this.isMXBean, this.options);
+	}
+
+	@Benchmark
+	public ObjectInstance register() throws JMException {
+		final ObjectInstance instance = this.server.registerMBean(Fixtures.newMBean(this.isMXBean, this.options), this.name);
+		this.server.unregisterMBean(this.name);
+		return instance;
+	}
+}
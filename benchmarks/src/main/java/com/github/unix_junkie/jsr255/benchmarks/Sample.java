@@ -0,0 +1,75 @@
+/*-
+ * $Id$
+ */
+package com.github.unix_junkie.jsr255.benchmarks;
+
+import javax.management.Description;
+import javax.management.Impact;
+import javax.management.ManagedOperation;
+import javax.management.ManagedOperationParameter;
+
+/**
+ * <p>The implementation of the benchmarked MBeans, annotated so that
+ * building the <code>MBeanInfo</code> looks the annotations up.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+@Description("Benchmarked MBean")
+public final class Sample implements SampleMBean {
+	private volatile int size = 16;
+
+	private volatile long total;
+
+	@Description("Creates an MBean of the default size")
+	public Sample() {
+		// empty
+	}
+
+	/**
+	 * @see SampleMBean#getSize()
+	 */
+	@Description("The size")
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @see SampleMBean#setSize(int)
+	 */
+	public void setSize(final int size) {
+		this.size = size;
+	}
+
+	/**
+	 * @see SampleMBean#getName()
+	 */
+	@Description("The name")
+	public String getName() {
+		return "sample";
+	}
+
+	/**
+	 * @see SampleMBean#isEnabled()
+	 */
+	public boolean isEnabled() {
+		return true;
+	}
+
+	/**
+	 * @see SampleMBean#add(long, int)
+	 */
+	@ManagedOperation(impact = Impact.ACTION)
+	@Description("Adds to the total")
+	public long add(@ManagedOperationParameter("delta") @Description("The value to add") final long delta,
+			@ManagedOperationParameter("times") @Description("How many times") final int times) {
+		return this.total += delta * times;
+	}
+
+	/**
+	 * @see SampleMBean#reset()
+	 */
+	@ManagedOperation(impact = Impact.ACTION)
+	public void reset() {
+		this.total = 0;
+	}
+}
@@ -0,0 +1,24 @@
+/*-
+ * $Id$
+ */
+package com.github.unix_junkie.jsr255.benchmarks;
+
+/**
+ * <p>The management interface of the benchmarked MBeans, also used as
+ * an MXBean interface.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public interface SampleMBean {
+	int getSize();
+
+	void setSize(final int size);
+
+	String getName();
+
+	boolean isEnabled();
+
+	long add(final long delta, final int times);
+
+	void reset();
+}
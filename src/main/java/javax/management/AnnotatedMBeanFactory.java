@@ -0,0 +1,573 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static java.lang.reflect.Modifier.isAbstract;
+import static java.lang.reflect.Modifier.isPublic;
+import static java.lang.reflect.Modifier.isStatic;
+
+import java.beans.ConstructorProperties;
+import java.lang.annotation.Annotation;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.management.processing.MBeanAnnotationProcessor;
+
+/**
+ * <p>Makes {@link DynamicMBean}s out of instances of
+ * {@link MBean &#64;MBean} classes without reflective dispatch.</p>
+ *
+ * <p>If the class of the implementation has been compiled with the
+ * {@link MBeanAnnotationProcessor} on the
+ * class path, the <code>DynamicMBean</code> it has generated is used.
+ * Otherwise, the management interface is derived from the annotations at
+ * runtime, following the same rules as the annotation processor does,
+ * and a class which calls every getter, setter and operation directly
+ * is generated at runtime (see {@link MemberInvoker}).  If such a class
+ * cannot be generated, the methods are invoked via reflection.</p>
+ *
+ * <p>The work is done at most once per implementation class; the result
+ * is cached for as long as at least one MBean of that class is
+ * reachable, and never prevents a class loader from being
+ * garbage-collected.</p>
+ *
+ * <p>This class is not present in the original <a href =
+ * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+ * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+ * </p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see AnnotatedStandardMBean
+ * @see IndexedDynamicMBean
+ * @see MemberInvoker
+ */
+public final class AnnotatedMBeanFactory {
+	/**
+	 * Implementation class -&gt; adapter.
+	 */
+	private static final Map<Class<?>, Reference<Adapter>> CACHE = new WeakHashMap<Class<?>, Reference<Adapter>>();
+
+	private AnnotatedMBeanFactory() {
+		assert false;
+	}
+
+	/**
+	 * <p>Make a <code>DynamicMBean</code> out of an instance of an
+	 * {@link MBean &#64;MBean} class.</p>
+	 *
+	 * @param implementation the implementation of the MBean.
+	 * @return the MBean.
+	 * @throws IllegalArgumentException if <code>implementation</code> is
+	 *         <code>null</code>.
+	 * @throws NotCompliantMBeanException if the class of
+	 *         <code>implementation</code> is not annotated with
+	 *         {@link MBean &#64;MBean}, or is not a compliant MBean.
+	 */
+	public static DynamicMBean newMBean(final Object implementation)
+	throws NotCompliantMBeanException {
+		if (implementation == null) {
+			throw new IllegalArgumentException("implementation is null");
+		}
+		return adapterFor(implementation.getClass()).newMBean(implementation);
+	}
+
+	private static Adapter adapterFor(final Class<?> implementationClass)
+	throws NotCompliantMBeanException {
+		synchronized (CACHE) {
+			final Reference<Adapter> reference = CACHE.get(implementationClass);
+			final Adapter adapter = reference == null ? null : reference.get();
+			if (adapter != null) {
+				return adapter;
+			}
+		}
+
+		/*
+		 * Introspect outside of the lock: at worst, two threads do the
+		 * same work and one of the results is discarded.
+		 */
+		if (!implementationClass.isAnnotationPresent(MBean.class)) {
+			throw new NotCompliantMBeanException("Class " + implementationClass.getName() + " is not annotated with @MBean");
+		}
+		Adapter adapter = GeneratedAdapter.forClass(implementationClass);
+		if (adapter == null) {
+			adapter = InvokerAdapter.forClass(implementationClass);
+		}
+
+		synchronized (CACHE) {
+			final Reference<Adapter> reference = CACHE.get(implementationClass);
+			final Adapter existing = reference == null ? null : reference.get();
+			if (existing != null) {
+				return existing;
+			}
+			CACHE.put(implementationClass, adapter.isReferencedByMBeans()
+					? new WeakReference<Adapter>(adapter)
+					: new SoftReference<Adapter>(adapter));
+			return adapter;
+		}
+	}
+
+	/**
+	 * @param implementationClass the class of an MBean.
+	 * @return the notification infos declared by the
+	 *         {@link NotificationInfo &#64;NotificationInfo} and
+	 *         {@link NotificationInfos &#64;NotificationInfos}
+	 *         annotations of <code>implementationClass</code>.
+	 */
+	static MBeanNotificationInfo[] newNotificationInfos(final Class<?> implementationClass) {
+		final List<MBeanNotificationInfo> notifications = new ArrayList<MBeanNotificationInfo>();
+		final NotificationInfos notificationInfos = implementationClass.getAnnotation(NotificationInfos.class);
+		if (notificationInfos != null) {
+			for (final NotificationInfo notificationInfo : notificationInfos.value()) {
+				notifications.add(newNotificationInfo(notificationInfo));
+			}
+		}
+		final NotificationInfo notificationInfo = implementationClass.getAnnotation(NotificationInfo.class);
+		if (notificationInfo != null) {
+			notifications.add(newNotificationInfo(notificationInfo));
+		}
+		return notifications.toArray(new MBeanNotificationInfo[notifications.size()]);
+	}
+
+	private static MBeanNotificationInfo newNotificationInfo(final NotificationInfo notificationInfo) {
+		return new MBeanNotificationInfo(notificationInfo.types(),
+				notificationInfo.notificationClass().getName(),
+				notificationInfo.description().value());
+	}
+
+	/**
+	 * <p>Makes MBeans for a single implementation class.</p>
+	 */
+	private abstract static class Adapter {
+		Adapter() {
+			// empty
+		}
+
+		abstract DynamicMBean newMBean(final Object implementation);
+
+		/**
+		 * @return whether the MBeans made by this adapter keep it
+		 *         reachable, so that the cache can reference it weakly.
+		 */
+		abstract boolean isReferencedByMBeans();
+	}
+
+	/**
+	 * <p>Instantiates the class generated by the annotation processor.
+	 * The MBeans do not reference the adapter, so it is only softly
+	 * cached.</p>
+	 */
+	private static final class GeneratedAdapter extends Adapter {
+		private final MemberInvoker constructor;
+
+		private GeneratedAdapter(final MemberInvoker constructor) {
+			this.constructor = constructor;
+		}
+
+		/**
+		 * @return the adapter, or <code>null</code> if no class has been
+		 *         generated for <code>implementationClass</code>.
+		 */
+		static GeneratedAdapter forClass(final Class<?> implementationClass) {
+			final StringBuilder simpleName = new StringBuilder();
+			for (Class<?> c = implementationClass; c != null; c = c.getDeclaringClass()) {
+				final String name = c.getName();
+				simpleName.insert(0, simpleName.length() == 0 ? "" : "_").insert(0, name.substring(name.lastIndexOf(c.getDeclaringClass() == null ? '.' : '$') + 1));
+			}
+			final Package pkg = implementationClass.getPackage();
+			final String packageName = pkg == null ? "" : pkg.getName();
+			final String name = (packageName.length() == 0 ? "" : packageName + '.') + simpleName + MBeanAnnotationProcessor.SUFFIX;
+			try {
+				final Class<?> generatedClass = Class.forName(name, false, implementationClass.getClassLoader());
+				if (!IndexedDynamicMBean.class.isAssignableFrom(generatedClass)) {
+					return null;
+				}
+				return new GeneratedAdapter(MemberInvoker.forMembers(generatedClass.getConstructor(implementationClass)));
+			} catch (final ClassNotFoundException cnfe) {
+				return null;
+			} catch (final NoSuchMethodException nsme) {
+				return null;
+			} catch (final LinkageError le) {
+				return null;
+			}
+		}
+
+		/**
+		 * @see AnnotatedMBeanFactory.Adapter#newMBean(Object)
+		 */
+		@Override
+		DynamicMBean newMBean(final Object implementation) {
+			try {
+				return (DynamicMBean) this.constructor.invoke(0, null, implementation);
+			} catch (final RuntimeException re) {
+				throw re;
+			} catch (final Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * @see AnnotatedMBeanFactory.Adapter#isReferencedByMBeans()
+		 */
+		@Override
+		boolean isReferencedByMBeans() {
+			return false;
+		}
+	}
+
+	/**
+	 * <p>Derives the management interface from the annotations, and
+	 * dispatches via a {@link MemberInvoker}.</p>
+	 */
+	private static final class InvokerAdapter extends Adapter {
+		final MBeanInfo info;
+
+		final MemberInvoker invoker;
+
+		/**
+		 * Attribute index -&gt; member index, or <code>-1</code>.
+		 */
+		final int getters[];
+
+		/**
+		 * Attribute index -&gt; member index, or <code>-1</code>.
+		 */
+		final int setters[];
+
+		/**
+		 * Attribute index -&gt; setter parameter type, or <code>null</code>.
+		 */
+		final Class<?> setterTypes[];
+
+		/**
+		 * Operation index -&gt; member index.
+		 */
+		final int operations[];
+
+		/**
+		 * Operation index -&gt; parameter types.
+		 */
+		final Class<?> operationTypes[][];
+
+		private InvokerAdapter(final MBeanInfo info,
+				final MemberInvoker invoker,
+				final int getters[],
+				final int setters[],
+				final Class<?> setterTypes[],
+				final int operations[],
+				final Class<?> operationTypes[][]) {
+			this.info = info;
+			this.invoker = invoker;
+			this.getters = getters;
+			this.setters = setters;
+			this.setterTypes = setterTypes;
+			this.operations = operations;
+			this.operationTypes = operationTypes;
+		}
+
+		static InvokerAdapter forClass(final Class<?> implementationClass)
+		throws NotCompliantMBeanException {
+			if (!isPublic(implementationClass.getModifiers())) {
+				throw new NotCompliantMBeanException("An @MBean class must be public: " + implementationClass.getName());
+			}
+
+			final List<MBeanConstructorInfo> constructors = new ArrayList<MBeanConstructorInfo>();
+			if (!isAbstract(implementationClass.getModifiers())) {
+				for (final Constructor<?> constructor : implementationClass.getConstructors()) {
+					constructors.add(newConstructorInfo(constructor));
+				}
+			}
+
+			for (Class<?> c = implementationClass; c != null; c = c.getSuperclass()) {
+				for (final Method method : c.getDeclaredMethods()) {
+					if (isManaged(method) && (!isPublic(method.getModifiers()) || isStatic(method.getModifiers()))) {
+						throw new NotCompliantMBeanException("A managed method must be public and non-static: " + method);
+					}
+				}
+			}
+
+			final List<Member> members = new ArrayList<Member>();
+			final Map<String, AttributeBuilder> attributes = new LinkedHashMap<String, AttributeBuilder>();
+			final List<MBeanOperationInfo> operationInfos = new ArrayList<MBeanOperationInfo>();
+			final List<Integer> operations = new ArrayList<Integer>();
+			final List<Class<?>[]> operationTypes = new ArrayList<Class<?>[]>();
+			for (final Method method : implementationClass.getMethods()) {
+				if (method.isBridge() || !isManaged(method)) {
+					continue;
+				}
+				if (method.isAnnotationPresent(ManagedAttribute.class)) {
+					addAttribute(attributes, method, members.size());
+				}
+				if (method.isAnnotationPresent(ManagedOperation.class)) {
+					operationInfos.add(newOperationInfo(method));
+					operations.add(Integer.valueOf(members.size()));
+					operationTypes.add(method.getParameterTypes());
+				}
+				members.add(method);
+			}
+
+			final MBeanAttributeInfo attributeInfos[] = new MBeanAttributeInfo[attributes.size()];
+			final int getters[] = new int[attributeInfos.length];
+			final int setters[] = new int[attributeInfos.length];
+			final Class<?> setterTypes[] = new Class<?>[attributeInfos.length];
+			int i = 0;
+			for (final AttributeBuilder attribute : attributes.values()) {
+				attributeInfos[i] = attribute.toAttributeInfo();
+				getters[i] = attribute.getter == null ? -1 : attribute.getterIndex;
+				setters[i] = attribute.setter == null ? -1 : attribute.setterIndex;
+				setterTypes[i] = attribute.setter == null ? null : attribute.type;
+				i++;
+			}
+			final int operationIndices[] = new int[operations.size()];
+			for (int j = 0; j < operationIndices.length; j++) {
+				operationIndices[j] = operations.get(j).intValue();
+			}
+
+			final MBeanInfo info = new MBeanInfo(implementationClass.getName(),
+					descriptionOf(implementationClass, MBeanAnnotationProcessor.DEFAULT_MBEAN_DESCRIPTION),
+					attributeInfos,
+					constructors.toArray(new MBeanConstructorInfo[constructors.size()]),
+					operationInfos.toArray(new MBeanOperationInfo[operationInfos.size()]),
+					newNotificationInfos(implementationClass));
+			return new InvokerAdapter(info,
+					MemberInvoker.forMembers(members.toArray(new Member[members.size()])),
+					getters,
+					setters,
+					setterTypes,
+					operationIndices,
+					operationTypes.toArray(new Class<?>[operationTypes.size()][]));
+		}
+
+		/**
+		 * @see AnnotatedMBeanFactory.Adapter#newMBean(Object)
+		 */
+		@Override
+		DynamicMBean newMBean(final Object implementation) {
+			return new InvokerMBean(implementation, this);
+		}
+
+		/**
+		 * @see AnnotatedMBeanFactory.Adapter#isReferencedByMBeans()
+		 */
+		@Override
+		boolean isReferencedByMBeans() {
+			return true;
+		}
+
+		private static boolean isManaged(final Method method) {
+			return method.isAnnotationPresent(ManagedAttribute.class)
+					|| method.isAnnotationPresent(ManagedOperation.class);
+		}
+
+		private static MBeanConstructorInfo newConstructorInfo(final Constructor<?> constructor) {
+			final ConstructorProperties constructorProperties = constructor.getAnnotation(ConstructorProperties.class);
+			final String names[] = constructorProperties == null ? new String[0] : constructorProperties.value();
+			final Class<?> parameterTypes[] = constructor.getParameterTypes();
+			final Annotation parameterAnnotations[][] = constructor.getParameterAnnotations();
+			final MBeanParameterInfo parameters[] = new MBeanParameterInfo[parameterTypes.length];
+			for (int i = 0; i < parameters.length; i++) {
+				parameters[i] = new MBeanParameterInfo(i < names.length ? names[i] : "p" + (i + 1),
+						parameterTypes[i].getName(),
+						descriptionOf(parameterAnnotations[i]));
+			}
+			return new MBeanConstructorInfo(constructor.getDeclaringClass().getName(),
+					descriptionOf(constructor, MBeanAnnotationProcessor.DEFAULT_CONSTRUCTOR_DESCRIPTION),
+					parameters);
+		}
+
+		private static void addAttribute(final Map<String, AttributeBuilder> attributes,
+				final Method method,
+				final int memberIndex)
+		throws NotCompliantMBeanException {
+			final String methodName = method.getName();
+			final Class<?> parameterTypes[] = method.getParameterTypes();
+			final Class<?> returnType = method.getReturnType();
+			final boolean isVoid = returnType == Void.TYPE;
+
+			final String name;
+			final Class<?> type;
+			final boolean getter;
+			final boolean is;
+			if (methodName.startsWith("get") && methodName.length() > 3 && parameterTypes.length == 0 && !isVoid) {
+				name = methodName.substring(3);
+				type = returnType;
+				getter = true;
+				is = false;
+			} else if (methodName.startsWith("is") && methodName.length() > 2 && parameterTypes.length == 0 && returnType == Boolean.TYPE) {
+				name = methodName.substring(2);
+				type = returnType;
+				getter = true;
+				is = true;
+			} else if (methodName.startsWith("set") && methodName.length() > 3 && parameterTypes.length == 1 && isVoid) {
+				name = methodName.substring(3);
+				type = parameterTypes[0];
+				getter = false;
+				is = false;
+			} else {
+				throw new NotCompliantMBeanException("@ManagedAttribute must be applied to a getter or a setter: " + method);
+			}
+
+			AttributeBuilder attribute = attributes.get(name);
+			if (attribute == null) {
+				attribute = new AttributeBuilder(name, type);
+				attributes.put(name, attribute);
+			} else if (attribute.type != type) {
+				throw new NotCompliantMBeanException("Getter and setter of attribute " + name + " have different types");
+			}
+			if (getter) {
+				if (attribute.getter != null) {
+					throw new NotCompliantMBeanException("Attribute " + name + " has more than one getter");
+				}
+				attribute.getter = method;
+				attribute.getterIndex = memberIndex;
+				attribute.is = is;
+			} else {
+				if (attribute.setter != null) {
+					throw new NotCompliantMBeanException("Attribute " + name + " has more than one setter");
+				}
+				attribute.setter = method;
+				attribute.setterIndex = memberIndex;
+			}
+			final Description description = method.getAnnotation(Description.class);
+			if (description != null && attribute.description == null) {
+				attribute.description = description.value();
+			}
+		}
+
+		private static MBeanOperationInfo newOperationInfo(final Method method) {
+			final Class<?> parameterTypes[] = method.getParameterTypes();
+			final Annotation parameterAnnotations[][] = method.getParameterAnnotations();
+			final MBeanParameterInfo parameters[] = new MBeanParameterInfo[parameterTypes.length];
+			for (int i = 0; i < parameters.length; i++) {
+				String name = "p" + (i + 1);
+				for (final Annotation annotation : parameterAnnotations[i]) {
+					if (annotation instanceof ManagedOperationParameter) {
+						name = ((ManagedOperationParameter) annotation).value();
+					}
+				}
+				parameters[i] = new MBeanParameterInfo(name,
+						parameterTypes[i].getName(),
+						descriptionOf(parameterAnnotations[i]));
+			}
+			return new MBeanOperationInfo(method.getName(),
+					descriptionOf(method, MBeanAnnotationProcessor.DEFAULT_OPERATION_DESCRIPTION),
+					parameters,
+					method.getReturnType().getName(),
+					method.getAnnotation(ManagedOperation.class).impact().getCode());
+		}
+
+		private static String descriptionOf(final Class<?> clazz, final String defaultDescription) {
+			final Description description = clazz.getAnnotation(Description.class);
+			return description == null ? defaultDescription : description.value();
+		}
+
+		private static String descriptionOf(final Constructor<?> constructor, final String defaultDescription) {
+			final Description description = constructor.getAnnotation(Description.class);
+			return description == null ? defaultDescription : description.value();
+		}
+
+		private static String descriptionOf(final Method method, final String defaultDescription) {
+			final Description description = method.getAnnotation(Description.class);
+			return description == null ? defaultDescription : description.value();
+		}
+
+		private static String descriptionOf(final Annotation parameterAnnotations[]) {
+			for (final Annotation annotation : parameterAnnotations) {
+				if (annotation instanceof Description) {
+					return ((Description) annotation).value();
+				}
+			}
+			return "";
+		}
+	}
+
+	/**
+	 * <p>An attribute being collected from its getter and setter.</p>
+	 */
+	private static final class AttributeBuilder {
+		final String name;
+
+		final Class<?> type;
+
+		Method getter;
+
+		int getterIndex;
+
+		Method setter;
+
+		int setterIndex;
+
+		boolean is;
+
+		String description;
+
+		AttributeBuilder(final String name, final Class<?> type) {
+			this.name = name;
+			this.type = type;
+		}
+
+		MBeanAttributeInfo toAttributeInfo() {
+			return new MBeanAttributeInfo(this.name,
+					this.type.getName(),
+					this.description == null ? MBeanAnnotationProcessor.DEFAULT_ATTRIBUTE_DESCRIPTION : this.description,
+					this.getter != null,
+					this.setter != null,
+					this.is);
+		}
+	}
+
+	/**
+	 * <p>The MBean made by an {@link InvokerAdapter}.  It references the
+	 * adapter, which keeps the cache entry alive.</p>
+	 */
+	private static final class InvokerMBean extends IndexedDynamicMBean {
+		private final InvokerAdapter adapter;
+
+		InvokerMBean(final Object implementation, final InvokerAdapter adapter) {
+			super(implementation, adapter.info);
+			this.adapter = adapter;
+		}
+
+		/**
+		 * @see IndexedDynamicMBean#getAttribute(int)
+		 */
+		@Override
+		protected Object getAttribute(final int index) throws Exception {
+			return this.adapter.invoker.invoke(this.adapter.getters[index], this.getImplementation());
+		}
+
+		/**
+		 * @see IndexedDynamicMBean#setAttribute(int, Object)
+		 */
+		@Override
+		protected void setAttribute(final int index, final Object value) throws Exception {
+			if (!MBeanDispatcher.isAssignable(this.adapter.setterTypes[index], value)) {
+				throw this.invalidAttributeValue(index, value);
+			}
+			this.adapter.invoker.invoke(this.adapter.setters[index], this.getImplementation(), value);
+		}
+
+		/**
+		 * @see IndexedDynamicMBean#invoke(int, Object[])
+		 */
+		@Override
+		protected Object invoke(final int index, final Object params[]) throws Exception {
+			final Class<?> types[] = this.adapter.operationTypes[index];
+			for (int i = 0; i < types.length; i++) {
+				if (!MBeanDispatcher.isAssignable(types[i], params[i])) {
+					throw this.invalidParameter(index, i, params[i]);
+				}
+			}
+			return this.adapter.invoker.invoke(this.adapter.operations[index], this.getImplementation(), params);
+		}
+	}
+}
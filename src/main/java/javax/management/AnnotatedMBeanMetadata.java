@@ -0,0 +1,475 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static java.util.Collections.unmodifiableMap;
+
+import java.beans.ConstructorProperties;
+import java.lang.annotation.Annotation;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Annotation-derived metadata of an {@link AnnotatedStandardMBean},
+ * shared by all the instances which have the same implementation class
+ * and management interface.</p>
+ *
+ * <p>Each constructor, attribute and operation is looked up via
+ * reflection at most once per implementation class; every later
+ * lookup (from any instance) is served from the cache.</p>
+ *
+ * <p>The global cache only holds weak references to both the classes
+ * and the metadata, so it never prevents a class loader from being
+ * garbage-collected. An entry lives for as long as at least one MBean
+ * instance which uses it is reachable.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see AnnotatedStandardMBean
+ */
+final class AnnotatedMBeanMetadata {
+	private static final Map<String, Class<?>> BUILT_IN_MAP;
+
+	static {
+		final Map<String, Class<?>> builtInMap = new LinkedHashMap<String, Class<?>>();
+		for (final Class<?> clazz : new Class<?>[] {Boolean.TYPE,
+				Byte.TYPE,
+				Character.TYPE,
+				Double.TYPE,
+				Float.TYPE,
+				Integer.TYPE,
+				Long.TYPE,
+				Short.TYPE,
+				Void.TYPE}) {
+			builtInMap.put(clazz.getName(), clazz);
+		}
+		BUILT_IN_MAP = unmodifiableMap(builtInMap);
+	}
+
+	/**
+	 * Implementation class -&gt; management interface -&gt; metadata.
+	 */
+	private static final Map<Class<?>, Map<Class<?>, Reference<AnnotatedMBeanMetadata>>> CACHE = new WeakHashMap<Class<?>, Map<Class<?>, Reference<AnnotatedMBeanMetadata>>>();
+
+	private final Class<?> implementationClass;
+
+	private final Class<?> mbeanInterface;
+
+	private final String description;
+
+	private final ConcurrentMap<String, MemberMetadata> constructors = new ConcurrentHashMap<String, MemberMetadata>();
+
+	private final ConcurrentMap<String, MemberMetadata> attributes = new ConcurrentHashMap<String, MemberMetadata>();
+
+	private final ConcurrentMap<String, MemberMetadata> operations = new ConcurrentHashMap<String, MemberMetadata>();
+
+	/**
+	 * MBean class -&gt; shared <code>MBeanInfo</code>s, for Standard
+	 * MBeans (<code>[0]</code>) and MXBeans (<code>[1]</code>) without
+	 * page operations, and with them (<code>[2]</code> and
+	 * <code>[3]</code>).
+	 */
+	private final Map<Class<?>, MBeanInfo[]> sharedMBeanInfos = new WeakHashMap<Class<?>, MBeanInfo[]>();
+
+	private volatile MBeanDispatcher dispatcher;
+
+	private volatile boolean dispatcherResolved;
+
+	/**
+	 * The page operations, for Standard MBeans (<code>[0]</code>) and
+	 * MXBeans (<code>[1]</code>).
+	 */
+	private final AttributePager pagers[] = new AttributePager[2];
+
+	/**
+	 * The attributes whose setter is annotated, or <code>null</code> if
+	 * they have not been looked up yet.
+	 */
+	private volatile Set<String> changeNotifiedAttributes;
+
+	private AnnotatedMBeanMetadata(final Class<?> implementationClass,
+			final Class<?> mbeanInterface) {
+		this.implementationClass = implementationClass;
+		this.mbeanInterface = mbeanInterface;
+		final Description description = implementationClass.getAnnotation(Description.class);
+		this.description = description == null ? null : description.value();
+	}
+
+	/**
+	 * @param implementationClass the implementation class of the MBean.
+	 * @param mbeanInterface the management interface of the MBean.
+	 * @return the metadata shared by all the MBeans with the given
+	 * implementation class and management interface.
+	 */
+	static AnnotatedMBeanMetadata forClasses(final Class<?> implementationClass,
+			final Class<?> mbeanInterface) {
+		synchronized (CACHE) {
+			Map<Class<?>, Reference<AnnotatedMBeanMetadata>> byInterface = CACHE.get(implementationClass);
+			if (byInterface == null) {
+				byInterface = new WeakHashMap<Class<?>, Reference<AnnotatedMBeanMetadata>>();
+				CACHE.put(implementationClass, byInterface);
+			}
+			final Reference<AnnotatedMBeanMetadata> reference = byInterface.get(mbeanInterface);
+			AnnotatedMBeanMetadata metadata = reference == null ? null : reference.get();
+			if (metadata == null) {
+				metadata = new AnnotatedMBeanMetadata(implementationClass, mbeanInterface);
+				byInterface.put(mbeanInterface, new WeakReference<AnnotatedMBeanMetadata>(metadata));
+			}
+			return metadata;
+		}
+	}
+
+	Class<?> getImplementationClass() {
+		return this.implementationClass;
+	}
+
+	Class<?> getMBeanInterface() {
+		return this.mbeanInterface;
+	}
+
+	/**
+	 * @return the dispatch table of the management interface, or
+	 * <code>null</code> if one cannot be built.
+	 */
+	MBeanDispatcher getDispatcher() {
+		if (!this.dispatcherResolved) {
+			this.dispatcher = MBeanDispatcher.forInterface(this.mbeanInterface);
+			this.dispatcherResolved = true;
+		}
+		return this.dispatcher;
+	}
+
+	/**
+	 * @param isMXBean whether the MBean is an MXBean.
+	 * @return the page operations of the management interface, or
+	 * <code>null</code> if they cannot be built.
+	 */
+	AttributePager getAttributePager(final boolean isMXBean) {
+		final int index = isMXBean ? 1 : 0;
+		synchronized (this.pagers) {
+			AttributePager pager = this.pagers[index];
+			if (pager == null) {
+				pager = AttributePager.forInterface(this.mbeanInterface, isMXBean);
+				this.pagers[index] = pager;
+			}
+			return pager;
+		}
+	}
+
+	/**
+	 * @return the names of the attributes whose setter in the
+	 * implementation class is annotated with
+	 * {@link ManagedAttribute &#64;ManagedAttribute}.
+	 */
+	Set<String> getChangeNotifiedAttributes() {
+		Set<String> attributes = this.changeNotifiedAttributes;
+		if (attributes == null) {
+			attributes = new HashSet<String>();
+			for (final Method method : this.implementationClass.getMethods()) {
+				final String name = method.getName();
+				if (name.startsWith("set") && name.length() > 3
+						&& method.getParameterTypes().length == 1
+						&& method.getReturnType() == Void.TYPE
+						&& method.isAnnotationPresent(ManagedAttribute.class)) {
+					attributes.add(name.substring(3));
+				}
+			}
+			attributes = Collections.unmodifiableSet(attributes);
+			this.changeNotifiedAttributes = attributes;
+		}
+		return attributes;
+	}
+
+	/**
+	 * @param mbeanClass the class of the MBean.
+	 * @param isMXBean whether the MBean is an MXBean.
+	 * @param paged whether the MBean has page operations.
+	 * @return the <code>MBeanInfo</code> shared by all the MBeans of
+	 * class <code>mbeanClass</code> with the given implementation class
+	 * and management interface, of the same kind, or <code>null</code>
+	 * if it hasn't been built yet.
+	 */
+	MBeanInfo getSharedMBeanInfo(final Class<?> mbeanClass, final boolean isMXBean, final boolean paged) {
+		synchronized (this.sharedMBeanInfos) {
+			final MBeanInfo shared[] = this.sharedMBeanInfos.get(mbeanClass);
+			return shared == null ? null : shared[sharedIndex(isMXBean, paged)];
+		}
+	}
+
+	/**
+	 * @param mbeanClass the class of the MBean.
+	 * @param isMXBean whether the MBean is an MXBean.
+	 * @param paged whether the MBean has page operations.
+	 * @param info the <code>MBeanInfo</code> just built by an MBean of
+	 * class <code>mbeanClass</code>.
+	 * @return the shared <code>MBeanInfo</code>: either the one shared
+	 * previously, or the canonical form of <code>info</code>.
+	 */
+	MBeanInfo shareMBeanInfo(final Class<?> mbeanClass,
+			final boolean isMXBean,
+			final boolean paged,
+			final MBeanInfo info) {
+		final int index = sharedIndex(isMXBean, paged);
+		synchronized (this.sharedMBeanInfos) {
+			MBeanInfo shared[] = this.sharedMBeanInfos.get(mbeanClass);
+			if (shared == null) {
+				shared = new MBeanInfo[4];
+				this.sharedMBeanInfos.put(mbeanClass, shared);
+			}
+			if (shared[index] == null) {
+				shared[index] = MBeanInfoInterner.intern(info);
+			}
+			return shared[index];
+		}
+	}
+
+	private static int sharedIndex(final boolean isMXBean, final boolean paged) {
+		return (isMXBean ? 1 : 0) | (paged ? 2 : 0);
+	}
+
+	/**
+	 * @return the value of the {@link Description &#64;Description}
+	 * annotation of the implementation class, or <code>null</code>.
+	 */
+	String getDescription() {
+		return this.description;
+	}
+
+	/**
+	 * @param info the constructor as seen by the MBean introspector.
+	 * @return the metadata of the implementation class constructor,
+	 * never <code>null</code>.
+	 */
+	MemberMetadata getConstructor(final MBeanConstructorInfo info) {
+		final MBeanParameterInfo signature[] = info.getSignature();
+		final String key = appendSignature(new StringBuilder(), signature).toString();
+		MemberMetadata metadata = this.constructors.get(key);
+		if (metadata == null) {
+			metadata = this.resolveConstructor(signature);
+			final MemberMetadata previous = this.constructors.putIfAbsent(key, metadata);
+			if (previous != null) {
+				metadata = previous;
+			}
+		}
+		return metadata;
+	}
+
+	/**
+	 * @param info the attribute as seen by the MBean introspector.
+	 * @return the metadata of the attribute getter or setter, never
+	 * <code>null</code>.
+	 */
+	MemberMetadata getAttribute(final MBeanAttributeInfo info) {
+		final StringBuilder builder = new StringBuilder();
+		builder.append(info.isReadable() ? info.isIs() ? 'i' : 'r' : '-');
+		builder.append(info.isWritable() ? 'w' : '-');
+		builder.append(info.getName()).append(':').append(info.getType());
+		final String key = builder.toString();
+		MemberMetadata metadata = this.attributes.get(key);
+		if (metadata == null) {
+			metadata = this.resolveAttribute(info);
+			final MemberMetadata previous = this.attributes.putIfAbsent(key, metadata);
+			if (previous != null) {
+				metadata = previous;
+			}
+		}
+		return metadata;
+	}
+
+	/**
+	 * @param info the operation as seen by the MBean introspector.
+	 * @return the metadata of the operation method, never <code>null</code>.
+	 */
+	MemberMetadata getOperation(final MBeanOperationInfo info) {
+		final MBeanParameterInfo signature[] = info.getSignature();
+		final StringBuilder builder = new StringBuilder(info.getName()).append('(');
+		final String key = appendSignature(builder, signature).append(')').toString();
+		MemberMetadata metadata = this.operations.get(key);
+		if (metadata == null) {
+			metadata = this.resolveOperation(info.getName(), signature);
+			final MemberMetadata previous = this.operations.putIfAbsent(key, metadata);
+			if (previous != null) {
+				metadata = previous;
+			}
+		}
+		return metadata;
+	}
+
+	private MemberMetadata resolveConstructor(final MBeanParameterInfo signature[]) {
+		try {
+			final Constructor<?> constructor = this.implementationClass.getConstructor(this.getParameterTypes(signature));
+			final ConstructorProperties constructorProperties = constructor.getAnnotation(ConstructorProperties.class);
+			return new MemberMetadata(getDescription(constructor.getAnnotation(Description.class)),
+					null,
+					constructorProperties == null ? null : constructorProperties.value(),
+					getParameterDescriptions(constructor.getParameterAnnotations()));
+		} catch (final ClassNotFoundException ignored) {
+			// Ignore.
+		} catch (final NoSuchMethodException ignored) {
+			// Ignore.
+		}
+		return MemberMetadata.EMPTY;
+	}
+
+	private MemberMetadata resolveAttribute(final MBeanAttributeInfo info) {
+		try {
+			if (info.isWritable()) {
+				final Method method = this.implementationClass.getMethod("set" + info.getName(), this.forType(info.getType()));
+				final Description description = method.getAnnotation(Description.class);
+				if (description != null) {
+					return new MemberMetadata(description.value(), null, null, null);
+				}
+			}
+			if (info.isReadable()) {
+				final Method method = this.implementationClass.getMethod((info.isIs() ? "is" : "get") + info.getName());
+				final Description description = method.getAnnotation(Description.class);
+				if (description != null) {
+					return new MemberMetadata(description.value(), null, null, null);
+				}
+			}
+		} catch (final ClassNotFoundException ignored) {
+			// Ignore.
+		} catch (final NoSuchMethodException ignored) {
+			// Ignore.
+		}
+		return MemberMetadata.EMPTY;
+	}
+
+	private MemberMetadata resolveOperation(final String name, final MBeanParameterInfo signature[]) {
+		try {
+			final Method method = this.implementationClass.getMethod(name, this.getParameterTypes(signature));
+			final ManagedOperation operation = method.getAnnotation(ManagedOperation.class);
+			final Annotation parameterAnnotations[][] = method.getParameterAnnotations();
+			final String parameterNames[] = new String[parameterAnnotations.length];
+			for (int i = 0; i < parameterAnnotations.length; i++) {
+				for (final Annotation annotation : parameterAnnotations[i]) {
+					if (annotation instanceof ManagedOperationParameter) {
+						parameterNames[i] = ((ManagedOperationParameter) annotation).value();
+						break;
+					}
+				}
+			}
+			return new MemberMetadata(getDescription(method.getAnnotation(Description.class)),
+					operation == null ? null : operation.impact(),
+					parameterNames,
+					getParameterDescriptions(parameterAnnotations));
+		} catch (final ClassNotFoundException ignored) {
+			// Ignore.
+		} catch (final NoSuchMethodException ignored) {
+			// Ignore.
+		}
+		return MemberMetadata.EMPTY;
+	}
+
+	private static String getDescription(final Description description) {
+		return description == null ? null : description.value();
+	}
+
+	private static String[] getParameterDescriptions(final Annotation parameterAnnotations[][]) {
+		final String descriptions[] = new String[parameterAnnotations.length];
+		for (int i = 0; i < parameterAnnotations.length; i++) {
+			for (final Annotation annotation : parameterAnnotations[i]) {
+				if (annotation instanceof Description) {
+					descriptions[i] = ((Description) annotation).value();
+					break;
+				}
+			}
+		}
+		return descriptions;
+	}
+
+	private static StringBuilder appendSignature(final StringBuilder builder,
+			final MBeanParameterInfo signature[]) {
+		for (int i = 0; i < signature.length; i++) {
+			if (i != 0) {
+				builder.append(',');
+			}
+			builder.append(signature[i].getType());
+		}
+		return builder;
+	}
+
+	private Class<?>[] getParameterTypes(final MBeanParameterInfo signature[])
+	throws ClassNotFoundException {
+		final Class<?> parameterTypes[] = new Class<?>[signature.length];
+		int i = 0;
+		for (final MBeanParameterInfo p : signature) {
+			parameterTypes[i++] = this.forType(p.getType());
+		}
+		return parameterTypes;
+	}
+
+	/**
+	 * <p>Each type is only resolved once per member, the result being
+	 * cached along with the rest of its metadata.</p>
+	 *
+	 * @param type the type name, either a primitive type, or in the
+	 *        form returned by {@link Class#getName()}.
+	 * @return the class, as seen by the implementation class.
+	 * @throws ClassNotFoundException if the type cannot be resolved.
+	 */
+	private Class<?> forType(final String type) throws ClassNotFoundException {
+		final Class<?> primitiveClass = BUILT_IN_MAP.get(type);
+		return primitiveClass == null
+				? Class.forName(type, false, this.implementationClass.getClassLoader())
+				: primitiveClass;
+	}
+
+	/**
+	 * <p>Annotation-derived metadata of a single constructor, attribute
+	 * or operation.  Any of the values may be <code>null</code>, meaning
+	 * that the corresponding annotation is absent (or the member could
+	 * not be resolved), and the default value should be used.</p>
+	 */
+	static final class MemberMetadata {
+		static final MemberMetadata EMPTY = new MemberMetadata(null, null, null, null);
+
+		private final String description;
+
+		private final Impact impact;
+
+		private final String parameterNames[];
+
+		private final String parameterDescriptions[];
+
+		MemberMetadata(final String description,
+				final Impact impact,
+				final String parameterNames[],
+				final String parameterDescriptions[]) {
+			this.description = description;
+			this.impact = impact;
+			this.parameterNames = parameterNames;
+			this.parameterDescriptions = parameterDescriptions;
+		}
+
+		String getDescription() {
+			return this.description;
+		}
+
+		Impact getImpact() {
+			return this.impact;
+		}
+
+		String getParameterName(final int sequence) {
+			return this.parameterNames != null && sequence >= 0 && sequence < this.parameterNames.length
+					? this.parameterNames[sequence]
+					: null;
+		}
+
+		String getParameterDescription(final int sequence) {
+			return this.parameterDescriptions != null && sequence >= 0 && sequence < this.parameterDescriptions.length
+					? this.parameterDescriptions[sequence]
+					: null;
+		}
+	}
+}
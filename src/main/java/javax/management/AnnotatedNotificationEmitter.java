@@ -0,0 +1,974 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.management.NotificationDispatchIndex.Registration;
+
+/**
+ * <p>A {@link NotificationEmitter} for MBeans whose notifications are
+ * declared with {@link NotificationInfo &#64;NotificationInfo} or
+ * {@link NotificationInfos &#64;NotificationInfos}, designed for MBeans
+ * which send many notifications.</p>
+ *
+ * <p>Unlike {@link NotificationBroadcasterSupport}, sending a
+ * notification never blocks, neither on a lock nor on a listener:
+ * {@link #sendNotification(Notification)} publishes it into a lock-free
+ * ring buffer shared by all the senders, and a single delivery thread
+ * drains the buffer in batches and hands each notification to the
+ * listeners enabled for it.
+ * Notifications are thus delivered asynchronously, in the order in
+ * which they have been published.  If the listeners cannot keep up and
+ * the buffer is full, further notifications are dropped, and
+ * {@linkplain #getDroppedCounts() counted}, until there is room again.
+ * When no listener is enabled for a notification, it is discarded at
+ * once.</p>
+ *
+ * <p>Listeners are indexed by the notification types the annotations
+ * declare: for a listener without a filter, or whose filter is a
+ * {@link NotificationFilterSupport}, whether it is enabled for each
+ * declared type is computed when it is added, so that its filter is not
+ * called for each notification.  The enabled types of such a filter may
+ * still be changed afterwards: the delivery thread compares them with
+ * its index once per batch of notifications, and rebuilds the index if
+ * they have changed, so a change applies from the next batch on.
+ * Senders only compare them when the index enables no listener for a
+ * notification, before discarding it.  Other filters are called for
+ * each notification, and notifications of undeclared types are matched
+ * against every listener.</p>
+ *
+ * <p>By default, the delivery thread calls the listeners itself, so a
+ * slow listener delays the others.  With a
+ * {@linkplain Options#setListenerQueueCapacity(int) listener queue
+ * capacity}, each listener gets its own bounded queue instead, drained
+ * on an executor, and an {@link OverflowPolicy} decides what happens
+ * when it is full.  The memory used by a listener which falls behind is
+ * then bounded, and so is the time the delivery thread spends on it.
+ * The notifications dropped or coalesced are counted per type.</p>
+ *
+ * <p>With a {@linkplain Options#setJournal(NotificationJournal)
+ * journal}, every notification is also appended to it by the delivery
+ * thread, and a listener can be added
+ * {@linkplain #addNotificationListenerFromSequence(NotificationListener, NotificationFilter, Object, long) from a journal sequence number}
+ * or {@linkplain #addNotificationListenerFromTime(NotificationListener, NotificationFilter, Object, long) from a time stamp}:
+ * it first receives the journaled notifications, on a thread of its
+ * own, then the live ones, without gaps or duplicates.  The classes of
+ * the serialized values replayed are resolved with the class loader of
+ * the MBean class, or with the context class loader of the thread which
+ * creates the emitter if the MBean class is a bootstrap one.  The
+ * replayed notifications have the {@linkplain #setObjectName(ObjectName)
+ * object name} of the MBean as their source, which the emitter of an
+ * {@link AnnotatedStandardEmitterMBean} is given when the MBean is
+ * registered.</p>
+ *
+ * <p>The delivery thread is created when the first listener is added,
+ * or the first notification is sent if there is a journal, and stops
+ * when the emitter is {@linkplain #close() closed}.  Listener
+ * and filter exceptions are ignored, so that they cannot stop the
+ * delivery to other listeners.  The emitter is not closed when its
+ * MBean is unregistered, unless it is the emitter of an
+ * {@link AnnotatedStandardEmitterMBean}: otherwise, the MBean must
+ * close it, e.g. in {@link MBeanRegistration#postDeregister()}, or the
+ * delivery thread keeps running.</p>
+ *
+ * <p>An MBean class can either delegate its
+ * <code>NotificationEmitter</code> methods to an instance of this class,
+ * or extend it.</p>
+ *
+ * <p>This class is not present in the original <a href =
+ * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+ * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+ * </p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see Options
+ */
+public class AnnotatedNotificationEmitter implements NotificationEmitter {
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+	/**
+	 * How long the idle delivery thread parks before checking the
+	 * buffer again, in case a wake-up has been missed.
+	 */
+	private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private final MBeanNotificationInfo notificationInfo[];
+
+	private final Set<String> declaredTypes;
+
+	private final NotificationRingBuffer buffer;
+
+	private final int batchSize;
+
+	private final ThreadFactory threadFactory;
+
+	private final int listenerQueueCapacity;
+
+	private final OverflowPolicy overflowPolicy;
+
+	private final long blockTimeoutNanos;
+
+	private final NotificationJournal journal;
+
+	/**
+	 * Resolves the classes of the values replayed from the journal.
+	 */
+	private final ClassLoader classLoader;
+
+	/**
+	 * The object name journaled as the source of the notifications, or
+	 * <code>null</code> if it is unknown.
+	 */
+	private volatile ObjectName objectName;
+
+	/**
+	 * The executor which drains the listener queues, or
+	 * <code>null</code> if it has not been created yet.
+	 */
+	private Executor listenerExecutor;
+
+	/**
+	 * Whether {@link #listenerExecutor} has been created by this
+	 * emitter, and should thus be shut down when it is closed.
+	 */
+	private boolean ownListenerExecutor;
+
+	/**
+	 * Rebuilt, under the lock of this object, whenever a listener is
+	 * added or removed, or the enabled types of a filter have changed.
+	 */
+	private volatile NotificationDispatchIndex index = NotificationDispatchIndex.EMPTY;
+
+	private final NotificationCounters counters = new NotificationCounters();
+
+	/**
+	 * The delivery thread, or <code>null</code> if it has not been
+	 * started yet.
+	 */
+	private volatile Thread deliveryThread;
+
+	/**
+	 * Whether the delivery thread is about to park, or parked.
+	 */
+	private volatile boolean idle;
+
+	private volatile boolean closed;
+
+	/**
+	 * <p>Construct an emitter for the notifications declared by the
+	 * annotations of <code>mbeanClass</code>, with the default
+	 * options.</p>
+	 *
+	 * @param mbeanClass the class of the MBean, or any class or interface
+	 *        annotated with {@link NotificationInfo &#64;NotificationInfo}
+	 *        or {@link NotificationInfos &#64;NotificationInfos}.
+	 */
+	public AnnotatedNotificationEmitter(final Class<?> mbeanClass) {
+		this(mbeanClass, null);
+	}
+
+	/**
+	 * <p>Construct an emitter for the notifications declared by the
+	 * annotations of <code>mbeanClass</code>, with the given
+	 * options.</p>
+	 *
+	 * @param mbeanClass the class of the MBean, or any class or interface
+	 *        annotated with {@link NotificationInfo &#64;NotificationInfo}
+	 *        or {@link NotificationInfos &#64;NotificationInfos}.
+	 * @param options the options, or <code>null</code> for the default
+	 *        ones.
+	 */
+	public AnnotatedNotificationEmitter(final Class<?> mbeanClass, final Options options) {
+		if (mbeanClass == null) {
+			throw new IllegalArgumentException("mbeanClass is null");
+		}
+		final Options effectiveOptions = options == null ? new Options() : options;
+		this.notificationInfo = AnnotatedMBeanFactory.newNotificationInfos(mbeanClass);
+		this.declaredTypes = new LinkedHashSet<String>();
+		for (final MBeanNotificationInfo info : this.notificationInfo) {
+			for (final String type : info.getNotifTypes()) {
+				this.declaredTypes.add(type);
+			}
+		}
+		this.buffer = new NotificationRingBuffer(NotificationRingBuffer.powerOfTwo(effectiveOptions.getCapacity()));
+		this.batchSize = effectiveOptions.getBatchSize();
+		this.threadFactory = effectiveOptions.getThreadFactory();
+		this.listenerQueueCapacity = effectiveOptions.getListenerQueueCapacity();
+		this.overflowPolicy = effectiveOptions.getOverflowPolicy();
+		this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(effectiveOptions.getBlockTimeoutMillis());
+		this.listenerExecutor = effectiveOptions.getListenerExecutor();
+		this.journal = effectiveOptions.getJournal();
+		final ClassLoader classLoader = mbeanClass.getClassLoader();
+		this.classLoader = classLoader == null ? Thread.currentThread().getContextClassLoader() : classLoader;
+	}
+
+	/**
+	 * <p>Send a notification to the listeners, asynchronously.  Never
+	 * blocks.</p>
+	 *
+	 * @param notification the notification.
+	 * @return <code>false</code> if the notification has been dropped
+	 *         because the buffer is full or the emitter is closed (or
+	 *         may have been, if it is closed concurrently),
+	 *         <code>true</code> otherwise, including when no listener is
+	 *         enabled for it.
+	 */
+	public boolean sendNotification(final Notification notification) {
+		if (notification == null) {
+			throw new IllegalArgumentException("notification is null");
+		}
+		if (this.closed) {
+			this.counters.dropped(notification);
+			return false;
+		}
+		if (this.journal == null) {
+			if (!this.isRouted(notification.getType())) {
+				return true;
+			}
+		} else if (this.deliveryThread == null) {
+			/*
+			 * Every notification is journaled, even without listeners:
+			 * only the first ones may wait here.
+			 */
+			synchronized (this) {
+				if (this.deliveryThread == null && !this.closed) {
+					this.startDelivery();
+				}
+			}
+		}
+		if (!this.buffer.offer(notification)) {
+			this.counters.dropped(notification);
+			return false;
+		}
+		if (this.closed) {
+			/*
+			 * Closed concurrently: the delivery thread may have stopped
+			 * before this notification was published.
+			 */
+			this.counters.dropped(notification);
+			return false;
+		}
+		if (this.idle) {
+			final Thread thread = this.deliveryThread;
+			if (thread != null) {
+				LockSupport.unpark(thread);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of notifications dropped so far, because the
+	 *         buffer or a listener queue was full, or because the
+	 *         emitter was closed.
+	 */
+	public long getDroppedCount() {
+		return this.counters.getDroppedCount();
+	}
+
+	/**
+	 * @return notification type -&gt; the number of notifications of
+	 *         that type dropped so far, sorted by type.
+	 * @see #getDroppedCount()
+	 */
+	public Map<String, Long> getDroppedCounts() {
+		return this.counters.getDroppedCounts();
+	}
+
+	/**
+	 * @return the number of notifications replaced in a listener queue
+	 *         by a later one, with the {@link OverflowPolicy#COALESCE}
+	 *         policy.
+	 */
+	public long getCoalescedCount() {
+		return this.counters.getCoalescedCount();
+	}
+
+	/**
+	 * @return notification type -&gt; the number of notifications of
+	 *         that type coalesced so far, sorted by type.
+	 * @see #getCoalescedCount()
+	 */
+	public Map<String, Long> getCoalescedCounts() {
+		return this.counters.getCoalescedCounts();
+	}
+
+	/**
+	 * @return the journal, or <code>null</code> if there is none.
+	 * @see Options#getJournal()
+	 */
+	public NotificationJournal getJournal() {
+		return this.journal;
+	}
+
+	/**
+	 * @return the object name of the MBean, or <code>null</code> if it
+	 *         is unknown.
+	 * @see #setObjectName(ObjectName)
+	 */
+	public ObjectName getObjectName() {
+		return this.objectName;
+	}
+
+	/**
+	 * <p>Set the object name of the MBean, which is journaled as the
+	 * source of the notifications sent from then on, rather than their
+	 * source itself: a notification replayed from the journal has that
+	 * name as its source, or the source of the original notification if
+	 * it was an <code>ObjectName</code>, or
+	 * {@link NotificationJournal#UNNAMED_SOURCE}.  An MBean which
+	 * delegates to, or extends, this class typically calls this method
+	 * in {@link MBeanRegistration#preRegister(MBeanServer, ObjectName)}.
+	 * </p>
+	 *
+	 * @param objectName the object name of the MBean, or
+	 *        <code>null</code> if it is unknown.
+	 */
+	public void setObjectName(final ObjectName objectName) {
+		this.objectName = objectName;
+	}
+
+	/**
+	 * @return the number of notifications published but not delivered
+	 *         yet (an estimate).
+	 */
+	public int getPendingCount() {
+		return this.buffer.size();
+	}
+
+	/**
+	 * <p>Stop accepting notifications.  The notifications already
+	 * published are still delivered, then the delivery thread stops.
+	 * Closing an emitter which is already closed has no effect.</p>
+	 */
+	public void close() {
+		this.closed = true;
+		final Thread thread = this.deliveryThread;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	/**
+	 * @see NotificationBroadcaster#addNotificationListener(NotificationListener, NotificationFilter, Object)
+	 */
+	public void addNotificationListener(final NotificationListener listener,
+			final NotificationFilter filter,
+			final Object handback) {
+		this.addNotificationListener(listener, filter, handback, null);
+	}
+
+	/**
+	 * <p>Add a listener which first receives the journaled
+	 * notifications, from journal sequence number
+	 * <code>sequence</code>, then the live ones.  The notifications
+	 * which are no longer in the journal are skipped.</p>
+	 *
+	 * @param listener the listener.
+	 * @param filter the filter, or <code>null</code>.
+	 * @param handback the handback, or <code>null</code>.
+	 * @param sequence the journal sequence number of the first
+	 *        notification to receive.
+	 * @throws IllegalStateException if there is no journal.
+	 * @see NotificationJournal#getFirstSequence()
+	 * @see NotificationJournal#getNextSequence()
+	 */
+	public void addNotificationListenerFromSequence(final NotificationListener listener,
+			final NotificationFilter filter,
+			final Object handback,
+			final long sequence) {
+		if (this.journal == null) {
+			throw new IllegalStateException("No journal");
+		}
+		this.addNotificationListener(listener, filter, handback, this.journal.fromSequence(sequence, this.classLoader));
+	}
+
+	/**
+	 * <p>Add a listener which first receives the journaled
+	 * notifications whose time stamp is <code>timeStamp</code> or
+	 * later, then the live ones.</p>
+	 *
+	 * @param listener the listener.
+	 * @param filter the filter, or <code>null</code>.
+	 * @param handback the handback, or <code>null</code>.
+	 * @param timeStamp the time stamp, in milliseconds since the epoch.
+	 * @throws IllegalStateException if there is no journal.
+	 * @see Notification#getTimeStamp()
+	 */
+	public void addNotificationListenerFromTime(final NotificationListener listener,
+			final NotificationFilter filter,
+			final Object handback,
+			final long timeStamp) {
+		if (this.journal == null) {
+			throw new IllegalStateException("No journal");
+		}
+		this.addNotificationListener(listener, filter, handback, this.journal.fromTime(timeStamp, this.classLoader));
+	}
+
+	private void addNotificationListener(final NotificationListener listener,
+			final NotificationFilter filter,
+			final Object handback,
+			final NotificationJournal.Cursor cursor) {
+		if (listener == null) {
+			throw new IllegalArgumentException("listener is null");
+		}
+		final JournalReplay replay = cursor == null
+				? null
+				: new JournalReplay(this.journal, cursor, listener, filter, handback);
+		synchronized (this) {
+			final Registration registrations[] = this.index.getRegistrations();
+			final Registration newRegistrations[] = new Registration[registrations.length + 1];
+			System.arraycopy(registrations, 0, newRegistrations, 0, registrations.length);
+			newRegistrations[registrations.length] = new Registration(listener, filter, handback, this.newListenerQueue(listener, handback), replay);
+			this.index = new NotificationDispatchIndex(this.declaredTypes, newRegistrations);
+			if (this.deliveryThread == null && !this.closed) {
+				this.startDelivery();
+			}
+		}
+		if (replay != null) {
+			this.newThread(replay).start();
+		}
+	}
+
+	/**
+	 * @return a queue for a new listener, or <code>null</code> if
+	 *         listeners are called directly.
+	 */
+	private ListenerQueue newListenerQueue(final NotificationListener listener, final Object handback) {
+		assert Thread.holdsLock(this);
+		if (this.listenerQueueCapacity == 0) {
+			return null;
+		}
+		if (this.listenerExecutor == null) {
+			this.listenerExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+				/**
+				 * @see ThreadFactory#newThread(Runnable)
+				 */
+				public Thread newThread(final Runnable r) {
+					return AnnotatedNotificationEmitter.this.newThread(r);
+				}
+			});
+			this.ownListenerExecutor = true;
+		}
+		return new ListenerQueue(listener,
+				handback,
+				this.listenerQueueCapacity,
+				this.overflowPolicy,
+				this.blockTimeoutNanos,
+				this.listenerExecutor,
+				this.counters);
+	}
+
+	private void startDelivery() {
+		final Runnable delivery = new Runnable() {
+			/**
+			 * @see Runnable#run()
+			 */
+			public void run() {
+				AnnotatedNotificationEmitter.this.deliver();
+			}
+		};
+		final Thread thread = this.newThread(delivery);
+		this.deliveryThread = thread;
+		thread.start();
+	}
+
+	/**
+	 * @return a new thread, created by the thread factory if any, or a
+	 *         new daemon thread.
+	 */
+	private Thread newThread(final Runnable r) {
+		if (this.threadFactory == null) {
+			final Thread thread = new Thread(r, "AnnotatedNotificationEmitter-" + THREAD_COUNTER.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+		return this.threadFactory.newThread(r);
+	}
+
+	/**
+	 * @see NotificationBroadcaster#removeNotificationListener(NotificationListener)
+	 */
+	public void removeNotificationListener(final NotificationListener listener)
+	throws ListenerNotFoundException {
+		synchronized (this) {
+			final List<Registration> newRegistrations = new ArrayList<Registration>();
+			for (final Registration registration : this.index.getRegistrations()) {
+				if (registration.listener != listener) {
+					newRegistrations.add(registration);
+				}
+			}
+			this.removeListeners(newRegistrations, listener);
+		}
+	}
+
+	/**
+	 * @see NotificationEmitter#removeNotificationListener(NotificationListener, NotificationFilter, Object)
+	 */
+	public void removeNotificationListener(final NotificationListener listener,
+			final NotificationFilter filter,
+			final Object handback)
+	throws ListenerNotFoundException {
+		synchronized (this) {
+			final List<Registration> newRegistrations = new ArrayList<Registration>();
+			boolean removed = false;
+			for (final Registration registration : this.index.getRegistrations()) {
+				if (!removed && registration.listener == listener && registration.filter == filter && registration.handback == handback) {
+					removed = true;
+				} else {
+					newRegistrations.add(registration);
+				}
+			}
+			this.removeListeners(newRegistrations, listener);
+		}
+	}
+
+	private void removeListeners(final List<Registration> newRegistrations, final NotificationListener listener)
+	throws ListenerNotFoundException {
+		assert Thread.holdsLock(this);
+		final Registration registrations[] = this.index.getRegistrations();
+		if (newRegistrations.size() == registrations.length) {
+			throw new ListenerNotFoundException("Listener not registered: " + listener);
+		}
+		for (final Registration registration : registrations) {
+			if (newRegistrations.contains(registration)) {
+				continue;
+			}
+			if (registration.queue != null) {
+				registration.queue.close();
+			}
+			if (registration.replay != null) {
+				registration.replay.cancel();
+			}
+		}
+		this.index = new NotificationDispatchIndex(this.declaredTypes,
+				newRegistrations.toArray(new Registration[newRegistrations.size()]));
+	}
+
+	/**
+	 * @see NotificationBroadcaster#getNotificationInfo()
+	 */
+	public MBeanNotificationInfo[] getNotificationInfo() {
+		return this.notificationInfo.clone();
+	}
+
+	/**
+	 * <p>Whether a notification of type <code>type</code> may be
+	 * delivered to any listener.  The filters are only compared with the
+	 * index if it has no route for the type, in case one of them has
+	 * been enabled for it since: routed notifications are sent without
+	 * taking any lock, and the delivery thread brings the index up to
+	 * date before each batch.</p>
+	 */
+	private boolean isRouted(final String type) {
+		return this.index.isRouted(type) || this.getIndex().isRouted(type);
+	}
+
+	/**
+	 * @return the dispatch index, rebuilt first if the enabled types of
+	 *         a <code>NotificationFilterSupport</code> have changed.
+	 */
+	private NotificationDispatchIndex getIndex() {
+		final NotificationDispatchIndex index = this.index;
+		return index.isCurrent() ? index : this.refreshIndex();
+	}
+
+	private synchronized NotificationDispatchIndex refreshIndex() {
+		NotificationDispatchIndex index = this.index;
+		if (!index.isCurrent()) {
+			index = index.refresh(this.declaredTypes);
+			this.index = index;
+		}
+		return index;
+	}
+
+	/**
+	 * <p>The body of the delivery thread.</p>
+	 */
+	private void deliver() {
+		final Notification batch[] = new Notification[this.batchSize];
+		for (;;) {
+			final int count = this.buffer.drainTo(batch);
+			if (count != 0) {
+				this.deliver(this.getIndex(), batch, count);
+				for (int i = 0; i < count; i++) {
+					batch[i] = null;
+				}
+				continue;
+			}
+			if (this.closed) {
+				this.shutdownListenerExecutor();
+				return;
+			}
+			this.idle = true;
+			if (this.buffer.isEmpty() && !this.closed) {
+				LockSupport.parkNanos(this, PARK_NANOS);
+			}
+			this.idle = false;
+		}
+	}
+
+	/**
+	 * <p>Let the listener queues drain, then release the threads of the
+	 * executor, if it has been created by this emitter.</p>
+	 */
+	private synchronized void shutdownListenerExecutor() {
+		if (this.ownListenerExecutor) {
+			((ExecutorService) this.listenerExecutor).shutdown();
+		}
+	}
+
+	/**
+	 * <p>Hand a batch of notifications to the listeners enabled for
+	 * them, in order, after appending each of them to the journal, if
+	 * any.</p>
+	 */
+	private void deliver(final NotificationDispatchIndex index, final Notification batch[], final int count) {
+		for (int i = 0; i < count; i++) {
+			try {
+				if (this.journal == null) {
+					index.dispatch(batch[i], -1);
+				} else {
+					final long sequence = this.append(batch[i]);
+					/*
+					 * Read again once appended: a listener whose replay
+					 * has gone live since the batch was drained, and
+					 * which expects this notification live, is only in
+					 * a more recent index.
+					 */
+					this.index.dispatch(batch[i], sequence);
+				}
+			} catch (final Throwable ignored) {
+				/*
+				 * Nothing may end the delivery thread, or no notification
+				 * would be delivered any more: only this one is lost.
+				 */
+			}
+		}
+	}
+
+	/**
+	 * @return the journal sequence number of the notification.
+	 */
+	private long append(final Notification notification) {
+		try {
+			return this.journal.append(notification, this.objectName);
+		} catch (final IOException ignored) {
+			/*
+			 * The journal is closed or full: the notification is only
+			 * delivered live.
+			 */
+			return this.journal.getNextSequence();
+		} catch (final RuntimeException ignored) {
+			/*
+			 * Same as above: a value of the notification cannot be
+			 * encoded.
+			 */
+			return this.journal.getNextSequence();
+		}
+	}
+
+	/**
+	 * <p>What a listener queue does with a notification when it is
+	 * full.</p>
+	 *
+	 * <p>This enum is not present in the original <a href =
+	 * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+	 * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+	 * </p>
+	 *
+	 * @see Options#setOverflowPolicy(OverflowPolicy)
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * <p>Drop the oldest notification in the queue, so the listener
+		 * always gets the most recent ones.</p>
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * <p>Drop the new notification, so the listener gets the
+		 * notifications up to the moment it fell behind.</p>
+		 */
+		DROP_NEWEST,
+
+		/**
+		 * <p>Keep only the latest notification of each type and source:
+		 * a notification replaces the queued one with the same type and
+		 * source, if any, in its place.  Otherwise, when the queue is
+		 * full, the oldest notification is dropped.</p>
+		 */
+		COALESCE,
+
+		/**
+		 * <p>Make the delivery thread wait for room in the queue, for at
+		 * most the {@linkplain Options#getBlockTimeoutMillis() block
+		 * timeout}, then drop the new notification.  The threads which
+		 * send notifications never wait, but the other listeners may be
+		 * delayed.</p>
+		 */
+		BLOCK
+	}
+
+	/**
+	 * <p>Options that control the behaviour of an
+	 * {@link AnnotatedNotificationEmitter}.</p>
+	 *
+	 * <p>This class is not present in the original <a href =
+	 * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+	 * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+	 * </p>
+	 */
+	public static class Options implements Cloneable {
+		/**
+		 * <p>The default {@linkplain #getCapacity() capacity}.</p>
+		 */
+		public static final int DEFAULT_CAPACITY = 8192;
+
+		/**
+		 * <p>The default {@linkplain #getBatchSize() batch size}.</p>
+		 */
+		public static final int DEFAULT_BATCH_SIZE = 256;
+
+		/**
+		 * <p>The default {@linkplain #getBlockTimeoutMillis() block
+		 * timeout}.</p>
+		 */
+		public static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 100;
+
+		private int capacity = DEFAULT_CAPACITY;
+
+		private int batchSize = DEFAULT_BATCH_SIZE;
+
+		private ThreadFactory threadFactory;
+
+		private int listenerQueueCapacity;
+
+		private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+		private long blockTimeoutMillis = DEFAULT_BLOCK_TIMEOUT_MILLIS;
+
+		private Executor listenerExecutor;
+
+		private NotificationJournal journal;
+
+		/**
+		 * <p>Construct an <code>Options</code> object where all options
+		 * have their default values.</p>
+		 */
+		public Options() {
+			// empty
+		}
+
+		/**
+		 * <p>The number of notifications which can be published but not
+		 * delivered yet, rounded up to a power of two.  The default is
+		 * {@value #DEFAULT_CAPACITY}.</p>
+		 *
+		 * @return the capacity.
+		 */
+		public int getCapacity() {
+			return this.capacity;
+		}
+
+		/**
+		 * @param capacity the capacity.
+		 * @throws IllegalArgumentException if <code>capacity</code> is
+		 *         not positive, or greater than <code>2<sup>30</sup></code>.
+		 * @see #getCapacity()
+		 */
+		public void setCapacity(final int capacity) {
+			if (capacity <= 0 || capacity > 1 << 30) {
+				throw new IllegalArgumentException("Invalid capacity: " + capacity);
+			}
+			this.capacity = capacity;
+		}
+
+		/**
+		 * <p>The maximum number of notifications the delivery thread
+		 * removes from the buffer at once, before delivering them.  The
+		 * default is {@value #DEFAULT_BATCH_SIZE}.</p>
+		 *
+		 * @return the batch size.
+		 */
+		public int getBatchSize() {
+			return this.batchSize;
+		}
+
+		/**
+		 * @param batchSize the batch size.
+		 * @throws IllegalArgumentException if <code>batchSize</code> is
+		 *         not positive.
+		 * @see #getBatchSize()
+		 */
+		public void setBatchSize(final int batchSize) {
+			if (batchSize <= 0) {
+				throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+			}
+			this.batchSize = batchSize;
+		}
+
+		/**
+		 * <p>The factory of the delivery thread, of the threads which
+		 * replay the journal, and of the threads which drain the
+		 * listener queues unless there is a
+		 * {@linkplain #getListenerExecutor() listener executor}, or
+		 * <code>null</code> for daemon threads.  The default is
+		 * <code>null</code>.</p>
+		 *
+		 * @return the thread factory, or <code>null</code>.
+		 */
+		public ThreadFactory getThreadFactory() {
+			return this.threadFactory;
+		}
+
+		/**
+		 * @param threadFactory the thread factory, or <code>null</code>.
+		 * @see #getThreadFactory()
+		 */
+		public void setThreadFactory(final ThreadFactory threadFactory) {
+			this.threadFactory = threadFactory;
+		}
+
+		/**
+		 * <p>The maximum number of notifications queued for each
+		 * listener, or <code>0</code> if the delivery thread calls the
+		 * listeners directly.  The default is <code>0</code>.</p>
+		 *
+		 * @return the listener queue capacity.
+		 */
+		public int getListenerQueueCapacity() {
+			return this.listenerQueueCapacity;
+		}
+
+		/**
+		 * @param listenerQueueCapacity the listener queue capacity.
+		 * @throws IllegalArgumentException if
+		 *         <code>listenerQueueCapacity</code> is negative.
+		 * @see #getListenerQueueCapacity()
+		 */
+		public void setListenerQueueCapacity(final int listenerQueueCapacity) {
+			if (listenerQueueCapacity < 0) {
+				throw new IllegalArgumentException("Invalid listener queue capacity: " + listenerQueueCapacity);
+			}
+			this.listenerQueueCapacity = listenerQueueCapacity;
+		}
+
+		/**
+		 * <p>What a listener queue does with a notification when it is
+		 * full.  The default is {@link OverflowPolicy#DROP_OLDEST}.</p>
+		 *
+		 * @return the overflow policy.
+		 * @see #getListenerQueueCapacity()
+		 */
+		public OverflowPolicy getOverflowPolicy() {
+			return this.overflowPolicy;
+		}
+
+		/**
+		 * @param overflowPolicy the overflow policy.
+		 * @throws IllegalArgumentException if
+		 *         <code>overflowPolicy</code> is <code>null</code>.
+		 * @see #getOverflowPolicy()
+		 */
+		public void setOverflowPolicy(final OverflowPolicy overflowPolicy) {
+			if (overflowPolicy == null) {
+				throw new IllegalArgumentException("Null overflow policy");
+			}
+			this.overflowPolicy = overflowPolicy;
+		}
+
+		/**
+		 * <p>The maximum time, in milliseconds, the delivery thread
+		 * waits for room in a full listener queue, with the
+		 * {@link OverflowPolicy#BLOCK} policy.  The default is
+		 * {@value #DEFAULT_BLOCK_TIMEOUT_MILLIS}.</p>
+		 *
+		 * @return the block timeout.
+		 */
+		public long getBlockTimeoutMillis() {
+			return this.blockTimeoutMillis;
+		}
+
+		/**
+		 * @param blockTimeoutMillis the block timeout.
+		 * @throws IllegalArgumentException if
+		 *         <code>blockTimeoutMillis</code> is negative.
+		 * @see #getBlockTimeoutMillis()
+		 */
+		public void setBlockTimeoutMillis(final long blockTimeoutMillis) {
+			if (blockTimeoutMillis < 0) {
+				throw new IllegalArgumentException("Invalid block timeout: " + blockTimeoutMillis);
+			}
+			this.blockTimeoutMillis = blockTimeoutMillis;
+		}
+
+		/**
+		 * <p>The executor which drains the listener queues, or
+		 * <code>null</code> for a cached thread pool created, and shut
+		 * down when the emitter is closed, by the emitter.  The default
+		 * is <code>null</code>.</p>
+		 *
+		 * @return the listener executor, or <code>null</code>.
+		 * @see #getListenerQueueCapacity()
+		 */
+		public Executor getListenerExecutor() {
+			return this.listenerExecutor;
+		}
+
+		/**
+		 * @param listenerExecutor the listener executor, or
+		 *        <code>null</code>.
+		 * @see #getListenerExecutor()
+		 */
+		public void setListenerExecutor(final Executor listenerExecutor) {
+			this.listenerExecutor = listenerExecutor;
+		}
+
+		/**
+		 * <p>The journal the notifications are appended to, or
+		 * <code>null</code> if they are not journaled.  The journal
+		 * is not closed with the emitter.  The default is
+		 * <code>null</code>.</p>
+		 *
+		 * @return the journal, or <code>null</code>.
+		 */
+		public NotificationJournal getJournal() {
+			return this.journal;
+		}
+
+		/**
+		 * @param journal the journal, or <code>null</code>.
+		 * @see #getJournal()
+		 */
+		public void setJournal(final NotificationJournal journal) {
+			this.journal = journal;
+		}
+
+		/**
+		 * @see Object#clone()
+		 */
+		@Override
+		public Options clone() {
+			try {
+				return (Options) super.clone();
+			} catch (final CloneNotSupportedException cnse) {
+				throw new AssertionError(cnse);
+			}
+		}
+	}
+}
@@ -0,0 +1,400 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.openmbean.MXBeanMappingFactory;
+import javax.management.openmbean.OpenDataException;
+
+/**
+ * <p>An {@link AnnotatedStandardMBean} which is also a
+ * {@link NotificationEmitter}, in the same way as
+ * {@link StandardEmitterMBean} is a <code>StandardMBean</code>: the
+ * listeners are handled by the emitter given when the MBean is
+ * constructed, and the notifications it declares are part of the
+ * <code>MBeanInfo</code>.</p>
+ *
+ * <p>With the {@linkplain Options#isAttributeChangeNotifications()
+ * attribute change notifications} option, setting an attribute whose
+ * setter is annotated with {@link ManagedAttribute &#64;ManagedAttribute}
+ * through the MBean also sends an {@link AttributeChangeNotification},
+ * without any code in the setter, and the <code>MBeanInfo</code>
+ * declares it.  The old and new values are read with the getter, if
+ * the attribute is readable; otherwise, only the new value is known.
+ * Changes of the same attribute within the
+ * {@linkplain Options#getAttributeChangeWindowMillis() coalescing window}
+ * are coalesced into a single notification, so that a bulk
+ * reconfiguration does not cause a storm of them.</p>
+ *
+ * <p>If the emitter is an {@link AnnotatedNotificationEmitter}, it is
+ * given the {@linkplain AnnotatedNotificationEmitter#setObjectName(ObjectName)
+ * object name} of the MBean when it is registered, and
+ * {@linkplain AnnotatedNotificationEmitter#close() closed} when the
+ * MBean is unregistered, so that its delivery thread stops.</p>
+ *
+ * <p>This class is not present in the original <a href =
+ * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+ * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+ * </p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see StandardEmitterMBean
+ * @see Options#setAttributeChangeNotifications(boolean)
+ */
+public class AnnotatedStandardEmitterMBean extends AnnotatedStandardMBean implements NotificationEmitter {
+	private static final MBeanNotificationInfo ATTRIBUTE_CHANGE_INFO = new MBeanNotificationInfo(new String[] {AttributeChangeNotification.ATTRIBUTE_CHANGE},
+			AttributeChangeNotification.class.getName(),
+			"An attribute of the MBean has changed");
+
+	private final NotificationEmitter emitter;
+
+	/**
+	 * The attribute change notifier, or <code>null</code> if attribute
+	 * changes are not notified.
+	 */
+	private final AttributeChangeNotifier notifier;
+
+	/**
+	 * The notified attributes, or <code>null</code> if they have not
+	 * been looked up yet.
+	 */
+	private volatile Map<String, MBeanAttributeInfo> notifiedAttributes;
+
+	/**
+	 * <p>Make an MBean whose management interface is specified by
+	 * <code>mbeanInterface</code>, with the given implementation,
+	 * options and emitter.</p>
+	 *
+	 * @param implementation the implementation of this MBean.
+	 * @param mbeanInterface the management interface exported by this
+	 *        MBean's implementation.
+	 * @param isMXBean if <code>true</code>, the <code>mbeanInterface</code>
+	 *        parameter names an MXBean interface and the resultant MBean
+	 *        is an MXBean.
+	 * @param options the options of this MBean, or <code>null</code>
+	 *        for the default ones.
+	 * @param emitter the object which handles the listeners, or
+	 *        <code>null</code> for a new
+	 *        {@link NotificationBroadcasterSupport}.
+	 * @throws IllegalArgumentException if the given implementation does
+	 *         not implement the specified interface, or if the interface
+	 *         is not a valid MBean interface.
+	 */
+	public <T> AnnotatedStandardEmitterMBean(final T implementation,
+			final Class<T> mbeanInterface,
+			final boolean isMXBean,
+			final Options options,
+			final NotificationEmitter emitter) {
+		super(implementation, mbeanInterface, isMXBean, options);
+		this.emitter = emitter == null ? new NotificationBroadcasterSupport() : emitter;
+		this.notifier = newNotifier(this, options);
+	}
+
+	/**
+	 * <p>Make an MBean whose management interface is specified by
+	 * <code>mbeanInterface</code>, and where the implementation is
+	 * <code>this</code>, with the given options and emitter.</p>
+	 *
+	 * @param mbeanInterface the management interface exported by this
+	 *        MBean.
+	 * @param isMXBean if <code>true</code>, the <code>mbeanInterface</code>
+	 *        parameter names an MXBean interface and the resultant MBean
+	 *        is an MXBean.
+	 * @param options the options of this MBean, or <code>null</code>
+	 *        for the default ones.
+	 * @param emitter the object which handles the listeners, or
+	 *        <code>null</code> for a new
+	 *        {@link NotificationBroadcasterSupport}.
+	 * @throws IllegalArgumentException if <code>this</code> does not
+	 *         implement the specified interface, or if the interface is
+	 *         not a valid MBean interface.
+	 */
+	protected AnnotatedStandardEmitterMBean(final Class<?> mbeanInterface,
+			final boolean isMXBean,
+			final Options options,
+			final NotificationEmitter emitter) {
+		super(mbeanInterface, isMXBean, options);
+		this.emitter = emitter == null ? new NotificationBroadcasterSupport() : emitter;
+		this.notifier = newNotifier(this, options);
+	}
+
+	private static AttributeChangeNotifier newNotifier(final AnnotatedStandardEmitterMBean mbean, final Options options) {
+		return options != null && options.isAttributeChangeNotifications()
+				? new AttributeChangeNotifier(mbean, options.getAttributeChangeWindowMillis())
+				: null;
+	}
+
+	/**
+	 * <p>Send a notification through the emitter.</p>
+	 *
+	 * @param notification the notification.
+	 * @throws ClassCastException if the emitter is neither a
+	 *         {@link NotificationBroadcasterSupport} nor an
+	 *         {@link AnnotatedNotificationEmitter}.
+	 * @see StandardEmitterMBean#sendNotification(Notification)
+	 */
+	public void sendNotification(final Notification notification) {
+		if (this.emitter instanceof AnnotatedNotificationEmitter) {
+			((AnnotatedNotificationEmitter) this.emitter).sendNotification(notification);
+		} else if (this.emitter instanceof NotificationBroadcasterSupport) {
+			((NotificationBroadcasterSupport) this.emitter).sendNotification(notification);
+		} else {
+			throw new ClassCastException("Cannot send notifications through " + this.emitter.getClass().getName());
+		}
+	}
+
+	/**
+	 * @see NotificationBroadcaster#addNotificationListener(NotificationListener, NotificationFilter, Object)
+	 */
+	public void addNotificationListener(final NotificationListener listener,
+			final NotificationFilter filter,
+			final Object handback) {
+		this.emitter.addNotificationListener(listener, filter, handback);
+	}
+
+	/**
+	 * @see NotificationBroadcaster#removeNotificationListener(NotificationListener)
+	 */
+	public void removeNotificationListener(final NotificationListener listener)
+	throws ListenerNotFoundException {
+		this.emitter.removeNotificationListener(listener);
+	}
+
+	/**
+	 * @see NotificationEmitter#removeNotificationListener(NotificationListener, NotificationFilter, Object)
+	 */
+	public void removeNotificationListener(final NotificationListener listener,
+			final NotificationFilter filter,
+			final Object handback)
+	throws ListenerNotFoundException {
+		this.emitter.removeNotificationListener(listener, filter, handback);
+	}
+
+	/**
+	 * <p>The notifications of the emitter, and the attribute change
+	 * notification if attribute changes are notified and the emitter
+	 * does not declare it already.</p>
+	 *
+	 * @see NotificationBroadcaster#getNotificationInfo()
+	 */
+	public MBeanNotificationInfo[] getNotificationInfo() {
+		final MBeanNotificationInfo notificationInfo[] = this.emitter.getNotificationInfo();
+		final MBeanNotificationInfo infos[] = notificationInfo == null ? new MBeanNotificationInfo[0] : notificationInfo;
+		if (this.notifier == null) {
+			return infos;
+		}
+		for (final MBeanNotificationInfo info : infos) {
+			if (Arrays.asList(info.getNotifTypes()).contains(AttributeChangeNotification.ATTRIBUTE_CHANGE)) {
+				return infos;
+			}
+		}
+		final MBeanNotificationInfo allInfos[] = new MBeanNotificationInfo[infos.length + 1];
+		System.arraycopy(infos, 0, allInfos, 0, infos.length);
+		allInfos[infos.length] = ATTRIBUTE_CHANGE_INFO;
+		return allInfos;
+	}
+
+	/**
+	 * <p>Cache the <code>MBeanInfo</code> with the
+	 * {@linkplain #getNotificationInfo() notifications} of this MBean,
+	 * which {@link StandardMBean} only adds for a
+	 * {@link StandardEmitterMBean}.</p>
+	 *
+	 * @see AnnotatedStandardMBean#cacheMBeanInfo(MBeanInfo)
+	 */
+	@Override
+	protected void cacheMBeanInfo(final MBeanInfo info) {
+		super.cacheMBeanInfo(info == null ? null : this.addNotifications(info));
+	}
+
+	/**
+	 * @return <code>info</code> with the notifications of this MBean,
+	 *         or <code>info</code> itself if it has them already.
+	 */
+	private MBeanInfo addNotifications(final MBeanInfo info) {
+		final MBeanNotificationInfo notifications[] = this.getNotificationInfo();
+		if (Arrays.equals(notifications, info.getNotifications())) {
+			return info;
+		}
+		return new MBeanInfo(info.getClassName(),
+				info.getDescription(),
+				info.getAttributes(),
+				info.getConstructors(),
+				info.getOperations(),
+				notifications,
+				info.getDescriptor());
+	}
+
+	/**
+	 * <p>Give the object name of this MBean to the emitter, if it is an
+	 * {@link AnnotatedNotificationEmitter}.</p>
+	 *
+	 * @see StandardMBean#preRegister(MBeanServer, ObjectName)
+	 */
+	@Override
+	public ObjectName preRegister(final MBeanServer server, final ObjectName name) throws Exception {
+		final ObjectName registeredName = super.preRegister(server, name);
+		if (this.emitter instanceof AnnotatedNotificationEmitter) {
+			((AnnotatedNotificationEmitter) this.emitter).setObjectName(registeredName);
+		}
+		return registeredName;
+	}
+
+	/**
+	 * <p>Forget the object name given to the emitter, if the
+	 * registration has failed.</p>
+	 *
+	 * @see StandardMBean#postRegister(Boolean)
+	 */
+	@Override
+	public void postRegister(final Boolean registrationDone) {
+		super.postRegister(registrationDone);
+		if (!registrationDone.booleanValue() && this.emitter instanceof AnnotatedNotificationEmitter) {
+			((AnnotatedNotificationEmitter) this.emitter).setObjectName(null);
+		}
+	}
+
+	/**
+	 * <p>Close the emitter, if it is an
+	 * {@link AnnotatedNotificationEmitter}.</p>
+	 *
+	 * @see StandardMBean#postDeregister()
+	 */
+	@Override
+	public void postDeregister() {
+		super.postDeregister();
+		if (this.emitter instanceof AnnotatedNotificationEmitter) {
+			((AnnotatedNotificationEmitter) this.emitter).close();
+		}
+	}
+
+	/**
+	 * @see AnnotatedStandardMBean#setAttribute(Attribute)
+	 */
+	@Override
+	public void setAttribute(final Attribute attribute)
+	throws AttributeNotFoundException, InvalidAttributeValueException, MBeanException, ReflectionException {
+		final AttributeChangeNotifier notifier = this.notifier;
+		final MBeanAttributeInfo info = notifier == null || attribute == null
+				? null
+				: this.getNotifiedAttributes().get(attribute.getName());
+		if (info == null) {
+			super.setAttribute(attribute);
+			return;
+		}
+		final Object oldValue = info.isReadable() ? this.getAttributeOrNull(info.getName()) : null;
+		super.setAttribute(attribute);
+		final Object newValue = info.isReadable() ? this.getAttributeOrNull(info.getName()) : attribute.getValue();
+		notifier.attributeChanged(info.getName(), info.getType(), oldValue, newValue);
+	}
+
+	/**
+	 * @see AnnotatedStandardMBean#setAttributes(AttributeList)
+	 */
+	@Override
+	public AttributeList setAttributes(final AttributeList attributes) {
+		if (this.notifier == null) {
+			return super.setAttributes(attributes);
+		}
+		/*
+		 * Each attribute goes through setAttribute(Attribute), so that
+		 * its change is notified.
+		 */
+		final AttributeList result = new AttributeList(attributes.size());
+		for (final Object object : attributes) {
+			final Attribute attribute = (Attribute) object;
+			try {
+				this.setAttribute(attribute);
+				result.add(attribute);
+			} catch (final Exception ignored) {
+				// Ignore: the attribute is omitted from the result.
+			}
+		}
+		return result;
+	}
+
+	private Object getAttributeOrNull(final String name) {
+		try {
+			return this.getAttribute(name);
+		} catch (final Exception ignored) {
+			return null;
+		}
+	}
+
+	/**
+	 * <p>The attributes are looked up in the management interface rather
+	 * than in the <code>MBeanInfo</code>, so that a
+	 * {@linkplain Options#isLazyMBeanInfo() lazy <code>MBeanInfo</code>}
+	 * is not built by the first change.  The type of an MXBean attribute
+	 * is the class of its Open Type, as mapped by the
+	 * {@linkplain MXBeanMappingFactory#forInterface(Class) mapping
+	 * factory of the interface}.</p>
+	 *
+	 * @return attribute name -&gt; info, for the writable attributes
+	 *         whose setter is annotated.
+	 */
+	private Map<String, MBeanAttributeInfo> getNotifiedAttributes() {
+		Map<String, MBeanAttributeInfo> notifiedAttributes = this.notifiedAttributes;
+		if (notifiedAttributes == null) {
+			notifiedAttributes = new HashMap<String, MBeanAttributeInfo>();
+			final Class<?> mbeanInterface = this.getMBeanInterface();
+			for (final String name : this.getMetadata().getChangeNotifiedAttributes()) {
+				final Method setter = findSetter(mbeanInterface, name);
+				if (setter == null) {
+					continue;
+				}
+				final Class<?> type = setter.getParameterTypes()[0];
+				final boolean isIs = type == Boolean.TYPE
+						&& findGetter(mbeanInterface, "is" + name, type) != null;
+				final boolean isReadable = isIs || findGetter(mbeanInterface, "get" + name, type) != null;
+				final String typeName;
+				try {
+					typeName = this.getTypeName(mbeanInterface, setter.getGenericParameterTypes()[0], type);
+				} catch (final OpenDataException ignored) {
+					/*
+					 * Not a valid MXBean attribute.
+					 */
+					continue;
+				}
+				notifiedAttributes.put(name, new MBeanAttributeInfo(name, typeName, null, isReadable, true, isIs));
+			}
+			this.notifiedAttributes = notifiedAttributes;
+		}
+		return notifiedAttributes;
+	}
+
+	private String getTypeName(final Class<?> mbeanInterface, final Type genericType, final Class<?> type)
+	throws OpenDataException {
+		if (!this.isMXBeanMode()) {
+			return type.getName();
+		}
+		final MXBeanMappingFactory f = MXBeanMappingFactory.forInterface(mbeanInterface);
+		return f.mappingForType(genericType, f).getOpenType().getClassName();
+	}
+
+	private static Method findSetter(final Class<?> mbeanInterface, final String name) {
+		for (final Method method : mbeanInterface.getMethods()) {
+			if (method.getName().equals("set" + name)
+					&& method.getParameterTypes().length == 1
+					&& method.getReturnType() == Void.TYPE) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+	private static Method findGetter(final Class<?> mbeanInterface, final String name, final Class<?> type) {
+		try {
+			final Method method = mbeanInterface.getMethod(name);
+			return method.getReturnType() == type ? method : null;
+		} catch (final NoSuchMethodException nsme) {
+			return null;
+		}
+	}
+}
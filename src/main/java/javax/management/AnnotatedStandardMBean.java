@@ -3,18 +3,9 @@
  */
 package javax.management;
 
-import static java.util.Arrays.asList;
-import static java.util.Collections.unmodifiableMap;
 import static javax.management.MBeanOperationInfo.UNKNOWN;
 
 import java.beans.ConstructorProperties;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
 
 /**
  * <p>An MBean whose management interface is determined by reflection
@@ -26,54 +17,262 @@ import java.util.Map;
  * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
  * </p>
  *
+ * <p>The annotations are looked up at most once per implementation
+ * class: all the instances which share the same implementation class
+ * and management interface also share the annotation-derived metadata.
+ * </p>
+ *
+ * <p>Additional behaviour can be requested through {@link Options}.</p>
+ *
  * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
  * @see Description
  * @see ConstructorProperties
  * @see ManagedAttribute
  * @see ManagedOperation
  * @see ManagedOperationParameter
+ * @see AnnotatedStandardEmitterMBean
  * @see MBean
+ * @see Options
  */
 public class AnnotatedStandardMBean extends StandardMBean {
-	private static final Map<String, Class<?>> BUILT_IN_MAP;
-
-	static {
-		final Map<String, Class<?>> builtInMap = new LinkedHashMap<String, Class<?>>();
-		for (final Class<?> clazz : asList(Boolean.TYPE,
-				Byte.TYPE,
-				Character.TYPE,
-				Double.TYPE,
-				Float.TYPE,
-				Integer.TYPE,
-				Long.TYPE,
-				Short.TYPE,
-				Void.TYPE)) {
-			builtInMap.put(clazz.getName(), clazz);
-		}
-		BUILT_IN_MAP = unmodifiableMap(builtInMap);
-	}
+	private volatile AnnotatedMBeanMetadata metadata;
+
+	/**
+	 * The dispatch table, or <code>null</code> if
+	 * {@linkplain Options#isDirectDispatch() direct dispatch} is off.
+	 */
+	private final MBeanDispatcher dispatcher;
+
+	/**
+	 * Whether the full <code>MBeanInfo</code> is only built when first
+	 * requested.
+	 */
+	private final boolean lazyMBeanInfo;
+
+	/**
+	 * Whether the <code>MBeanInfo</code> is shared with the other MBeans
+	 * of the same class, implementation class and management interface.
+	 */
+	private final boolean sharedMBeanInfo;
+
+	/**
+	 * Whether this MBean is an MXBean, which matters if the
+	 * <code>MBeanInfo</code> is shared, and for the types of the
+	 * attribute change notifications.
+	 */
+	private final boolean mxbean;
 
+	/**
+	 * The page operations, or <code>null</code> if
+	 * {@linkplain Options#isPagedAttributes() paged attributes} are off.
+	 */
+	private final AttributePager pager;
 
 	public <T> AnnotatedStandardMBean(final T implementation,
 			final Class<T> mbeanInterface)
 	throws NotCompliantMBeanException {
 		super(implementation, mbeanInterface);
+		this.dispatcher = null;
+		this.lazyMBeanInfo = false;
+		this.sharedMBeanInfo = false;
+		this.mxbean = false;
+		this.pager = null;
 	}
 
 	protected AnnotatedStandardMBean(final Class<?> mbeanInterface)
 	throws NotCompliantMBeanException {
 		super(mbeanInterface);
+		this.dispatcher = null;
+		this.lazyMBeanInfo = false;
+		this.sharedMBeanInfo = false;
+		this.mxbean = false;
+		this.pager = null;
 	}
 
 	public <T> AnnotatedStandardMBean(final T implementation,
 			final Class<T> mbeanInterface,
 			final boolean isMXBean) {
 		super(implementation, mbeanInterface, isMXBean);
+		this.dispatcher = null;
+		this.lazyMBeanInfo = false;
+		this.sharedMBeanInfo = false;
+		this.mxbean = false;
+		this.pager = null;
 	}
 
 	protected AnnotatedStandardMBean(final Class<?> mbeanInterface,
 			final boolean isMXBean) {
 		super(mbeanInterface, isMXBean);
+		this.dispatcher = null;
+		this.lazyMBeanInfo = false;
+		this.sharedMBeanInfo = false;
+		this.mxbean = false;
+		this.pager = null;
+	}
+
+	/**
+	 * <p>Make an MBean whose management interface is specified by
+	 * <code>mbeanInterface</code>, with the given implementation and
+	 * options.</p>
+	 *
+	 * @param implementation the implementation of this MBean.
+	 * @param mbeanInterface the management interface exported by this
+	 *        MBean's implementation.
+	 * @param isMXBean if <code>true</code>, the <code>mbeanInterface</code>
+	 *        parameter names an MXBean interface and the resultant MBean
+	 *        is an MXBean.
+	 * @param options the options of this MBean, or <code>null</code>
+	 *        for the default ones.
+	 * @throws IllegalArgumentException if the given implementation does
+	 *         not implement the specified interface, or if the interface
+	 *         is not a valid MBean interface.
+	 */
+	public <T> AnnotatedStandardMBean(final T implementation,
+			final Class<T> mbeanInterface,
+			final boolean isMXBean,
+			final Options options) {
+		super(implementation, mbeanInterface, isMXBean);
+		this.dispatcher = this.newDispatcher(isMXBean, options);
+		this.lazyMBeanInfo = options != null && options.isLazyMBeanInfo();
+		this.sharedMBeanInfo = options != null && options.isSharedMBeanInfo();
+		this.mxbean = isMXBean;
+		this.pager = options != null && options.isPagedAttributes()
+				? this.getMetadata().getAttributePager(isMXBean)
+				: null;
+	}
+
+	/**
+	 * <p>Make an MBean whose management interface is specified by
+	 * <code>mbeanInterface</code>, and where the implementation is
+	 * <code>this</code>, with the given options.</p>
+	 *
+	 * @param mbeanInterface the management interface exported by this
+	 *        MBean.
+	 * @param isMXBean if <code>true</code>, the <code>mbeanInterface</code>
+	 *        parameter names an MXBean interface and the resultant MBean
+	 *        is an MXBean.
+	 * @param options the options of this MBean, or <code>null</code>
+	 *        for the default ones.
+	 * @throws IllegalArgumentException if <code>this</code> does not
+	 *         implement the specified interface, or if the interface is
+	 *         not a valid MBean interface.
+	 */
+	protected AnnotatedStandardMBean(final Class<?> mbeanInterface,
+			final boolean isMXBean,
+			final Options options) {
+		super(mbeanInterface, isMXBean);
+		this.dispatcher = this.newDispatcher(isMXBean, options);
+		this.lazyMBeanInfo = options != null && options.isLazyMBeanInfo();
+		this.sharedMBeanInfo = options != null && options.isSharedMBeanInfo();
+		this.mxbean = isMXBean;
+		this.pager = options != null && options.isPagedAttributes()
+				? this.getMetadata().getAttributePager(isMXBean)
+				: null;
+	}
+
+	private MBeanDispatcher newDispatcher(final boolean isMXBean, final Options options) {
+		/*
+		 * MXBeans need the open type conversion, which only the
+		 * StandardMBean code path performs.
+		 */
+		return options != null && options.isDirectDispatch() && !isMXBean
+				? this.getMetadata().getDispatcher()
+				: null;
+	}
+
+	/**
+	 * @return the metadata shared by all the MBeans with the current
+	 * implementation class and management interface.
+	 */
+	AnnotatedMBeanMetadata getMetadata() {
+		final Class<?> implementationClass = this.getImplementationClass();
+		AnnotatedMBeanMetadata metadata = this.metadata;
+		if (metadata == null || metadata.getImplementationClass() != implementationClass) {
+			metadata = AnnotatedMBeanMetadata.forClasses(implementationClass, this.getMBeanInterface());
+			this.metadata = metadata;
+		}
+		return metadata;
+	}
+
+	/**
+	 * <p>If {@linkplain Options#isLazyMBeanInfo() lazy
+	 * <code>MBeanInfo</code>} is enabled and the full
+	 * <code>MBeanInfo</code> has not been built yet, returns a view which
+	 * only builds it when an accessor other than
+	 * {@link MBeanInfo#getClassName()} is called.</p>
+	 *
+	 * @see StandardMBean#getMBeanInfo()
+	 */
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		if (this.lazyMBeanInfo && this.getCachedMBeanInfo() == null) {
+			return new LazyMBeanInfo(this.getImplementationClass().getName(), this);
+		}
+		return this.getFullMBeanInfo();
+	}
+
+	/**
+	 * @return the full <code>MBeanInfo</code>, built and cached on the
+	 * first call.
+	 */
+	MBeanInfo getFullMBeanInfo() {
+		final MBeanInfo info = super.getMBeanInfo();
+		/*
+		 * Return the canonical MBeanInfo, or the one to which
+		 * cacheMBeanInfo(MBeanInfo) has added features, rather than
+		 * the one just built.
+		 */
+		final MBeanInfo cached = this.getCachedMBeanInfo();
+		return cached == null ? info : cached;
+	}
+
+	/**
+	 * @return whether this MBean is an MXBean.
+	 */
+	boolean isMXBeanMode() {
+		return this.mxbean;
+	}
+
+	/**
+	 * <p>The constructors are only part of the <code>MBeanInfo</code> if
+	 * this MBean is its own implementation, so the <code>MBeanInfo</code>
+	 * is not shared if this MBean is an implementation of its own class
+	 * other than itself.  Neither is it if this MBean or its
+	 * implementation is a notification broadcaster, since the
+	 * notifications are those of each broadcaster.</p>
+	 */
+	private boolean isSharingMBeanInfo() {
+		if (!this.sharedMBeanInfo || this instanceof NotificationBroadcaster) {
+			return false;
+		}
+		final Object implementation = this.getImplementation();
+		return !(implementation instanceof NotificationBroadcaster)
+				&& (implementation == this || implementation.getClass() != this.getClass());
+	}
+
+	/**
+	 * @see StandardMBean#getCachedMBeanInfo()
+	 */
+	@Override
+	protected MBeanInfo getCachedMBeanInfo() {
+		return this.isSharingMBeanInfo()
+				? this.getMetadata().getSharedMBeanInfo(this.getClass(), this.mxbean, this.pager != null)
+				: super.getCachedMBeanInfo();
+	}
+
+	/**
+	 * @see StandardMBean#cacheMBeanInfo(MBeanInfo)
+	 */
+	@Override
+	protected void cacheMBeanInfo(final MBeanInfo info) {
+		final MBeanInfo fullInfo = info == null || this.pager == null
+				? info
+				: this.pager.addOperations(info);
+		if (!this.isSharingMBeanInfo()) {
+			super.cacheMBeanInfo(fullInfo);
+		} else if (fullInfo != null) {
+			this.getMetadata().shareMBeanInfo(this.getClass(), this.mxbean, this.pager != null, fullInfo);
+		}
 	}
 
 	/*
@@ -85,8 +284,8 @@ public class AnnotatedStandardMBean extends StandardMBean {
 	 */
 	@Override
 	protected final String getDescription(final MBeanInfo info) {
-		final Description description = this.getImplementationClass().getAnnotation(Description.class);
-		return description != null ? description.value() : super.getDescription(info);
+		final String description = this.getMetadata().getDescription();
+		return description != null ? description : super.getDescription(info);
 	}
 
 	/*
@@ -98,25 +297,11 @@ public class AnnotatedStandardMBean extends StandardMBean {
 	 */
 	@Override
 	protected final String getDescription(final MBeanConstructorInfo info) {
-		try {
-			if (info == null) {
-				return null;
-			}
-			final MBeanParameterInfo signature[] = info.getSignature();
-			final Class<?> parameterTypes[] = getParameterTypes(signature);
-			final Constructor<?> ctor = this.getImplementationClass().getConstructor(parameterTypes);
-			if (ctor != null) {
-				final Description description = ctor.getAnnotation(Description.class);
-				if (description != null) {
-					return description.value();
-				}
-			}
-		} catch (final ClassNotFoundException ignored) {
-			// Ignore.
-		} catch (final NoSuchMethodException ignored) {
-			// Ignore.
+		if (info == null) {
+			return null;
 		}
-		return super.getDescription(info);
+		final String description = this.getMetadata().getConstructor(info).getDescription();
+		return description != null ? description : super.getDescription(info);
 	}
 
 	/*
@@ -130,23 +315,8 @@ public class AnnotatedStandardMBean extends StandardMBean {
 	protected final String getDescription(final MBeanConstructorInfo ctor,
 			final MBeanParameterInfo param,
 			final int sequence) {
-		try {
-			final MBeanParameterInfo signature[] = ctor.getSignature();
-			final Constructor<?> constructor = this.getImplementationClass().getConstructor(getParameterTypes(signature));
-			if (constructor != null) {
-				final Annotation annotations[] = constructor.getParameterAnnotations()[sequence];
-				for (final Annotation annotation : annotations) {
-					if (annotation instanceof Description) {
-						return ((Description) annotation).value();
-					}
-				}
-			}
-		} catch (final ClassNotFoundException ignored) {
-			// Ignore.
-		} catch (final NoSuchMethodException ignored) {
-			// Ignore.
-		}
-		return super.getDescription(ctor, param, sequence);
+		final String description = this.getMetadata().getConstructor(ctor).getParameterDescription(sequence);
+		return description != null ? description : super.getDescription(ctor, param, sequence);
 	}
 
 	/**
@@ -156,24 +326,8 @@ public class AnnotatedStandardMBean extends StandardMBean {
 	protected final String getParameterName(final MBeanConstructorInfo ctor,
 			final MBeanParameterInfo param,
 			final int sequence) {
-		try {
-			final MBeanParameterInfo signature[] = ctor.getSignature();
-			final Constructor<?> constructor = this.getImplementationClass().getConstructor(getParameterTypes(signature));
-			if (constructor != null) {
-				final ConstructorProperties constructorProperties = constructor.getAnnotation(ConstructorProperties.class);
-				if (constructorProperties != null) {
-					final String parameterNames[] = constructorProperties.value();
-					if (sequence < parameterNames.length) {
-						return parameterNames[sequence];
-					}
-				}
-			}
-		} catch (final ClassNotFoundException ignored) {
-			// Ignore.
-		} catch (final NoSuchMethodException ignored) {
-			// Ignore.
-		}
-		return super.getParameterName(ctor, param, sequence);
+		final String parameterName = this.getMetadata().getConstructor(ctor).getParameterName(sequence);
+		return parameterName != null ? parameterName : super.getParameterName(ctor, param, sequence);
 	}
 
 	/*
@@ -185,38 +339,11 @@ public class AnnotatedStandardMBean extends StandardMBean {
 	 */
 	@Override
 	protected final String getDescription(final MBeanAttributeInfo info) {
-		try {
-			if (info == null) {
-				return null;
-			}
-			final List<String> descriptions = new ArrayList<String>();
-			if (info.isWritable()) {
-				final Method method = this.getImplementationClass().getMethod("set" + info.getName(), forType(info.getType()));
-				if (method != null) {
-					final Description description = method.getAnnotation(Description.class);
-					if (description != null) {
-						descriptions.add(description.value());
-					}
-				}
-			}
-			if (info.isReadable()) {
-				final Method method = this.getImplementationClass().getMethod((info.isIs() ? "is" : "get") + info.getName());
-				if (method != null) {
-					final Description description = method.getAnnotation(Description.class);
-					if (description != null) {
-						descriptions.add(description.value());
-					}
-				}
-			}
-			if (!descriptions.isEmpty()) {
-				return descriptions.iterator().next();
-			}
-		} catch (final ClassNotFoundException ignored) {
-			// Ignore.
-		} catch (final NoSuchMethodException ignored) {
-			// Ignore.
+		if (info == null) {
+			return null;
 		}
-		return super.getDescription(info);
+		final String description = this.getMetadata().getAttribute(info).getDescription();
+		return description != null ? description : super.getDescription(info);
 	}
 
 	/*
@@ -228,25 +355,11 @@ public class AnnotatedStandardMBean extends StandardMBean {
 	 */
 	@Override
 	protected final int getImpact(final MBeanOperationInfo info) {
-		try {
-			if (info == null) {
-				return UNKNOWN;
-			}
-			final MBeanParameterInfo signature[] = info.getSignature();
-			final Class<?> parameterTypes[] = getParameterTypes(signature);
-			final Method method = this.getImplementationClass().getMethod(info.getName(), parameterTypes);
-			if (method != null) {
-				final ManagedOperation operation = method.getAnnotation(ManagedOperation.class);
-				if (operation != null) {
-					return operation.impact().getCode();
-				}
-			}
-		} catch (final ClassNotFoundException ignored) {
-			// Ignore.
-		} catch (final NoSuchMethodException ignored) {
-			// Ignore.
+		if (info == null) {
+			return UNKNOWN;
 		}
-		return super.getImpact(info);
+		final Impact impact = this.getMetadata().getOperation(info).getImpact();
+		return impact != null ? impact.getCode() : super.getImpact(info);
 	}
 
 	/**
@@ -254,25 +367,11 @@ public class AnnotatedStandardMBean extends StandardMBean {
 	 */
 	@Override
 	protected final String getDescription(final MBeanOperationInfo info) {
-		try {
-			if (info == null) {
-				return null;
-			}
-			final MBeanParameterInfo signature[] = info.getSignature();
-			final Class<?> parameterTypes[] = getParameterTypes(signature);
-			final Method method = this.getImplementationClass().getMethod(info.getName(), parameterTypes);
-			if (method != null) {
-				final Description description = method.getAnnotation(Description.class);
-				if (description != null) {
-					return description.value();
-				}
-			}
-		} catch (final ClassNotFoundException ignored) {
-			// Ignore.
-		} catch (final NoSuchMethodException ignored) {
-			// Ignore.
+		if (info == null) {
+			return null;
 		}
-		return super.getDescription(info);
+		final String description = this.getMetadata().getOperation(info).getDescription();
+		return description != null ? description : super.getDescription(info);
 	}
 
 	/*
@@ -286,24 +385,8 @@ public class AnnotatedStandardMBean extends StandardMBean {
 	protected final String getParameterName(final MBeanOperationInfo op,
 			final MBeanParameterInfo param,
 			final int sequence) {
-		try {
-			final MBeanParameterInfo[] signature = op.getSignature();
-			final Class<?> parameterTypes[] = getParameterTypes(signature);
-			final Method method = this.getImplementationClass().getMethod(op.getName(), parameterTypes);
-			if (method != null) {
-				final Annotation annotations[] = method.getParameterAnnotations()[sequence];
-				for (final Annotation annotation : annotations) {
-					if (annotation instanceof ManagedOperationParameter) {
-						return ((ManagedOperationParameter) annotation).value();
-					}
-				}
-			}
-		} catch (final ClassNotFoundException ignored) {
-			// Ignore.
-		} catch (final NoSuchMethodException ignored) {
-			// Ignore.
-		}
-		return super.getParameterName(op, param, sequence);
+		final String parameterName = this.getMetadata().getOperation(op).getParameterName(sequence);
+		return parameterName != null ? parameterName : super.getParameterName(op, param, sequence);
 	}
 
 	/**
@@ -313,38 +396,305 @@ public class AnnotatedStandardMBean extends StandardMBean {
 	protected final String getDescription(final MBeanOperationInfo op,
 			final MBeanParameterInfo param,
 			final int sequence) {
-		try {
-			final MBeanParameterInfo[] signature = op.getSignature();
-			final Class<?> parameterTypes[] = getParameterTypes(signature);
-			final Method method = this.getImplementationClass().getMethod(op.getName(), parameterTypes);
-			if (method != null) {
-				final Annotation annotations[] = method.getParameterAnnotations()[sequence];
-				for (final Annotation annotation : annotations) {
-					if (annotation instanceof Description) {
-						return ((Description) annotation).value();
-					}
-				}
+		final String description = this.getMetadata().getOperation(op).getParameterDescription(sequence);
+		return description != null ? description : super.getDescription(op, param, sequence);
+	}
+
+	/*
+	 * Attribute access and operation invocation.
+	 */
+
+	/**
+	 * @see StandardMBean#getAttribute(String)
+	 */
+	@Override
+	public Object getAttribute(final String attribute)
+	throws AttributeNotFoundException, MBeanException, ReflectionException {
+		final MBeanDispatcher dispatcher = this.dispatcher;
+		return dispatcher == null
+				? super.getAttribute(attribute)
+				: dispatcher.getAttribute(this.getImplementation(), attribute);
+	}
+
+	/**
+	 * @see StandardMBean#setAttribute(Attribute)
+	 */
+	@Override
+	public void setAttribute(final Attribute attribute)
+	throws AttributeNotFoundException, InvalidAttributeValueException, MBeanException, ReflectionException {
+		final MBeanDispatcher dispatcher = this.dispatcher;
+		if (dispatcher == null) {
+			super.setAttribute(attribute);
+		} else {
+			dispatcher.setAttribute(this.getImplementation(), attribute);
+		}
+	}
+
+	/**
+	 * @see StandardMBean#getAttributes(String[])
+	 */
+	@Override
+	public AttributeList getAttributes(final String attributes[]) {
+		if (this.dispatcher == null) {
+			return super.getAttributes(attributes);
+		}
+		final AttributeList result = new AttributeList(attributes.length);
+		for (final String attribute : attributes) {
+			try {
+				result.add(new Attribute(attribute, this.getAttribute(attribute)));
+			} catch (final Exception ignored) {
+				// Ignore: the attribute is omitted from the result.
 			}
-		} catch (final ClassNotFoundException ignored) {
-			// Ignore.
-		} catch (final NoSuchMethodException ignored) {
-			// Ignore.
 		}
-		return super.getDescription(op, param, sequence);
+		return result;
 	}
 
-	private static Class<?>[] getParameterTypes(final MBeanParameterInfo signature[])
-	throws ClassNotFoundException {
-		final Class<?> parameterTypes[] = new Class<?>[signature.length];
-		int i = 0;
-		for (final MBeanParameterInfo p : signature) {
-			parameterTypes[i++] = forType(p.getType());
+	/**
+	 * @see StandardMBean#setAttributes(AttributeList)
+	 */
+	@Override
+	public AttributeList setAttributes(final AttributeList attributes) {
+		if (this.dispatcher == null) {
+			return super.setAttributes(attributes);
+		}
+		final AttributeList result = new AttributeList(attributes.size());
+		for (final Object object : attributes) {
+			final Attribute attribute = (Attribute) object;
+			try {
+				this.setAttribute(attribute);
+				result.add(attribute);
+			} catch (final Exception ignored) {
+				// Ignore: the attribute is omitted from the result.
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @see StandardMBean#invoke(String, Object[], String[])
+	 */
+	@Override
+	public Object invoke(final String actionName,
+			final Object params[],
+			final String signature[])
+	throws MBeanException, ReflectionException {
+		final AttributePager pager = this.pager;
+		if (pager != null && pager.isPageOperation(actionName, signature)) {
+			return pager.invoke(this.getImplementation(), actionName, params);
 		}
-		return parameterTypes;
+		final MBeanDispatcher dispatcher = this.dispatcher;
+		return dispatcher == null
+				? super.invoke(actionName, params, signature)
+				: dispatcher.invoke(this.getImplementation(), actionName, params, signature);
 	}
 
-	private static Class<?> forType(final String type) throws ClassNotFoundException {
-		final Class<?> primitiveClass = BUILT_IN_MAP.get(type);
-		return primitiveClass == null ? Class.forName(type) : primitiveClass;
+	/**
+	 * <p>Options that control the behaviour of an
+	 * {@link AnnotatedStandardMBean}.</p>
+	 *
+	 * <p>This class is not present in the original <a href =
+	 * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+	 * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+	 * </p>
+	 */
+	public static class Options implements Cloneable {
+		private boolean directDispatch;
+
+		private boolean lazyMBeanInfo;
+
+		private boolean sharedMBeanInfo;
+
+		private boolean pagedAttributes;
+
+		private boolean attributeChangeNotifications;
+
+		private long attributeChangeWindowMillis;
+
+		/**
+		 * <p>Construct an <code>Options</code> object where all options
+		 * have their default values.</p>
+		 */
+		public Options() {
+			// empty
+		}
+
+		/**
+		 * <p>Whether attributes and operations are dispatched through a
+		 * table of getters, setters and operations, precomputed once
+		 * per management interface.  The table is looked up by
+		 * attribute name, or by operation name and signature, bypassing
+		 * the introspection of {@link StandardMBean} on each call.  This
+		 * option has no effect on MXBeans.  The default is
+		 * <code>false</code>.</p>
+		 *
+		 * @return <code>true</code> if direct dispatch is enabled.
+		 */
+		public boolean isDirectDispatch() {
+			return this.directDispatch;
+		}
+
+		/**
+		 * @param directDispatch whether direct dispatch is enabled.
+		 * @see #isDirectDispatch()
+		 */
+		public void setDirectDispatch(final boolean directDispatch) {
+			this.directDispatch = directDispatch;
+		}
+
+		/**
+		 * <p>Whether the full <code>MBeanInfo</code>, with all the
+		 * descriptions and parameter names, is only built when it is
+		 * first requested, rather than when the MBean is registered.
+		 * Until then, {@link AnnotatedStandardMBean#getMBeanInfo()}
+		 * returns an <code>MBeanInfo</code> which only knows the class
+		 * name, and builds the full one as soon as anything else is
+		 * asked of it.  Attribute access and operation invocation never
+		 * need the full <code>MBeanInfo</code>.  The default is
+		 * <code>false</code>.</p>
+		 *
+		 * @return <code>true</code> if the <code>MBeanInfo</code> is
+		 *         built lazily.
+		 */
+		public boolean isLazyMBeanInfo() {
+			return this.lazyMBeanInfo;
+		}
+
+		/**
+		 * @param lazyMBeanInfo whether the <code>MBeanInfo</code> is
+		 *        built lazily.
+		 * @see #isLazyMBeanInfo()
+		 */
+		public void setLazyMBeanInfo(final boolean lazyMBeanInfo) {
+			this.lazyMBeanInfo = lazyMBeanInfo;
+		}
+
+		/**
+		 * <p>Whether a single <code>MBeanInfo</code> is shared by all the
+		 * MBeans of the same class with the same implementation class
+		 * and management interface, instead of each MBean building and
+		 * retaining its own copy.  The shared <code>MBeanInfo</code> is
+		 * built by the first MBean which needs it, and canonicalized:
+		 * equal feature infos, descriptors and strings are also shared
+		 * across different MBean classes.  Standard MBeans and MXBeans,
+		 * with or without {@linkplain #isPagedAttributes() paged
+		 * attributes}, do not share the same <code>MBeanInfo</code>.
+		 * An MBean which is, or whose implementation is, a
+		 * <code>NotificationBroadcaster</code> never shares its
+		 * <code>MBeanInfo</code>, since it declares the notifications of
+		 * its own broadcaster.  The default is <code>false</code>.</p>
+		 *
+		 * @return <code>true</code> if the <code>MBeanInfo</code> is
+		 *         shared.
+		 */
+		public boolean isSharedMBeanInfo() {
+			return this.sharedMBeanInfo;
+		}
+
+		/**
+		 * @param sharedMBeanInfo whether the <code>MBeanInfo</code> is
+		 *        shared.
+		 * @see #isSharedMBeanInfo()
+		 */
+		public void setSharedMBeanInfo(final boolean sharedMBeanInfo) {
+			this.sharedMBeanInfo = sharedMBeanInfo;
+		}
+
+		/**
+		 * <p>Whether every attribute whose type is an array, a
+		 * <code>Collection</code>, <code>List</code>, <code>Set</code>,
+		 * <code>SortedSet</code>, <code>Map</code> or
+		 * <code>SortedMap</code> also has a page operation, named after
+		 * its getter, e.g. <code>getItems(int offset, int limit)</code>.
+		 * The operation returns at most <code>limit</code> elements (or
+		 * entries) of the attribute, starting from <code>offset</code>,
+		 * with the same type as the attribute; for MXBeans, only the
+		 * elements of the page are converted to open values.  Very
+		 * large attributes can thus be read incrementally.  An explicit
+		 * operation of the same name and signature takes precedence.
+		 * The default is <code>false</code>.</p>
+		 *
+		 * @return <code>true</code> if page operations are added.
+		 */
+		public boolean isPagedAttributes() {
+			return this.pagedAttributes;
+		}
+
+		/**
+		 * @param pagedAttributes whether page operations are added.
+		 * @see #isPagedAttributes()
+		 */
+		public void setPagedAttributes(final boolean pagedAttributes) {
+			this.pagedAttributes = pagedAttributes;
+		}
+
+		/**
+		 * <p>Whether setting an attribute whose setter in the
+		 * implementation class is annotated with
+		 * {@link ManagedAttribute &#64;ManagedAttribute} sends an
+		 * {@link AttributeChangeNotification}, with the values of the
+		 * attribute before and after it has been set, and whether the
+		 * <code>MBeanInfo</code> declares this notification.  Only the
+		 * changes made through the MBean, rather than by calling the
+		 * implementation directly, are notified.  This option only has
+		 * an effect on an {@link AnnotatedStandardEmitterMBean}.  The
+		 * default is <code>false</code>.</p>
+		 *
+		 * @return <code>true</code> if attribute changes are notified.
+		 * @see #getAttributeChangeWindowMillis()
+		 */
+		public boolean isAttributeChangeNotifications() {
+			return this.attributeChangeNotifications;
+		}
+
+		/**
+		 * @param attributeChangeNotifications whether attribute changes
+		 *        are notified.
+		 * @see #isAttributeChangeNotifications()
+		 */
+		public void setAttributeChangeNotifications(final boolean attributeChangeNotifications) {
+			this.attributeChangeNotifications = attributeChangeNotifications;
+		}
+
+		/**
+		 * <p>The time, in milliseconds, during which further changes of
+		 * an attribute are coalesced with the first one: a single
+		 * notification is sent at the end of the window, with the value
+		 * before the first change and the value after the last one, and
+		 * none if they are equal.  If <code>0</code>, each change is
+		 * notified at once, by the thread which sets the attribute, and
+		 * none if the value is unchanged.  The default is
+		 * <code>0</code>.</p>
+		 *
+		 * @return the coalescing window.
+		 * @see #isAttributeChangeNotifications()
+		 */
+		public long getAttributeChangeWindowMillis() {
+			return this.attributeChangeWindowMillis;
+		}
+
+		/**
+		 * @param attributeChangeWindowMillis the coalescing window.
+		 * @throws IllegalArgumentException if
+		 *         <code>attributeChangeWindowMillis</code> is negative.
+		 * @see #getAttributeChangeWindowMillis()
+		 */
+		public void setAttributeChangeWindowMillis(final long attributeChangeWindowMillis) {
+			if (attributeChangeWindowMillis < 0) {
+				throw new IllegalArgumentException("Invalid attribute change window: " + attributeChangeWindowMillis);
+			}
+			this.attributeChangeWindowMillis = attributeChangeWindowMillis;
+		}
+
+		/**
+		 * @see Object#clone()
+		 */
+		@Override
+		public Options clone() {
+			try {
+				return (Options) super.clone();
+			} catch (final CloneNotSupportedException cnse) {
+				throw new AssertionError(cnse);
+			}
+		}
 	}
 }
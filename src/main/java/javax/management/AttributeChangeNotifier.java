@@ -0,0 +1,220 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Sends the {@link AttributeChangeNotification}s of an
+ * {@link AnnotatedStandardEmitterMBean}, coalescing the changes of the
+ * same attribute which happen within a window.</p>
+ *
+ * <p>The first change of an attribute opens its window and records the
+ * old value; the later changes within the window only replace the new
+ * value.  When the window closes, a single notification is sent, unless
+ * the attribute has been set back to its old value.  Without a window,
+ * each change is sent at once, by the thread which sets the attribute,
+ * unless the value is unchanged.</p>
+ *
+ * <p>The windows of all the MBeans are closed by the thread of a shared
+ * scheduler, which never sends a notification itself: the closed
+ * windows of each MBean are queued, and sent in order by one task at a
+ * time, run by a shared pool.  A slow listener thus only delays the
+ * notifications of its own MBean.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see AnnotatedStandardMBean.Options#setAttributeChangeWindowMillis(long)
+ */
+final class AttributeChangeNotifier {
+	private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+		/**
+		 * @see ThreadFactory#newThread(Runnable)
+		 */
+		public Thread newThread(final Runnable r) {
+			final Thread thread = new Thread(r, "AttributeChangeNotifier");
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	/**
+	 * Closes the windows.
+	 */
+	private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(THREAD_FACTORY);
+
+	/**
+	 * Sends the notifications of the closed windows.
+	 */
+	private static final ExecutorService SENDERS = Executors.newCachedThreadPool(THREAD_FACTORY);
+
+	private final AnnotatedStandardEmitterMBean mbean;
+
+	private final long windowMillis;
+
+	private final AtomicLong sequenceNumber = new AtomicLong();
+
+	/**
+	 * Attribute name -&gt; the change within the open window.  Guarded by
+	 * the lock of this object.
+	 */
+	private final Map<String, Change> pending = new HashMap<String, Change>();
+
+	/**
+	 * The changes whose window has closed, in order, which have not been
+	 * sent yet.  Guarded by the lock of this object.
+	 */
+	private final Queue<Change> closed = new ArrayDeque<Change>();
+
+	/**
+	 * Whether a task which sends the {@link #closed} changes is
+	 * submitted or running.  Guarded by the lock of this object.
+	 */
+	private boolean sending;
+
+	/**
+	 * @param mbean the MBean, which is the source of the notifications
+	 *        and sends them.
+	 * @param windowMillis the coalescing window, or <code>0</code>.
+	 */
+	AttributeChangeNotifier(final AnnotatedStandardEmitterMBean mbean, final long windowMillis) {
+		this.mbean = mbean;
+		this.windowMillis = windowMillis;
+	}
+
+	/**
+	 * @param name the name of the attribute.
+	 * @param type the type of the attribute.
+	 * @param oldValue the value before the change.
+	 * @param newValue the value after the change.
+	 */
+	void attributeChanged(final String name,
+			final String type,
+			final Object oldValue,
+			final Object newValue) {
+		if (this.windowMillis == 0) {
+			final Change change = new Change(name, type, oldValue, newValue);
+			if (change.isChanged()) {
+				this.send(change);
+			}
+			return;
+		}
+		synchronized (this) {
+			final Change change = this.pending.get(name);
+			if (change != null) {
+				change.newValue = newValue;
+				return;
+			}
+			this.pending.put(name, new Change(name, type, oldValue, newValue));
+		}
+		SCHEDULER.schedule(new Runnable() {
+			/**
+			 * @see Runnable#run()
+			 */
+			public void run() {
+				AttributeChangeNotifier.this.windowClosed(name);
+			}
+		}, this.windowMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void windowClosed(final String name) {
+		synchronized (this) {
+			final Change change = this.pending.remove(name);
+			if (change == null || !change.isChanged()) {
+				return;
+			}
+			this.closed.add(change);
+			if (this.sending) {
+				return;
+			}
+			this.sending = true;
+		}
+		final Runnable sender = new Runnable() {
+			/**
+			 * @see Runnable#run()
+			 */
+			public void run() {
+				AttributeChangeNotifier.this.sendClosed();
+			}
+		};
+		try {
+			SENDERS.execute(sender);
+		} catch (final RejectedExecutionException ree) {
+			sender.run();
+		}
+	}
+
+	/**
+	 * <p>Send the changes whose window has closed, until there are no
+	 * more.</p>
+	 */
+	private void sendClosed() {
+		for (;;) {
+			final Change change;
+			synchronized (this) {
+				change = this.closed.poll();
+				if (change == null) {
+					this.sending = false;
+					return;
+				}
+			}
+			this.send(change);
+		}
+	}
+
+	private void send(final Change change) {
+		try {
+			this.mbean.sendNotification(new AttributeChangeNotification(this.mbean,
+					this.sequenceNumber.incrementAndGet(),
+					System.currentTimeMillis(),
+					change.name + " changed",
+					change.name,
+					change.type,
+					change.oldValue,
+					change.newValue));
+		} catch (final RuntimeException ignored) {
+			// Ignore.
+		}
+	}
+
+	/**
+	 * <p>The change of an attribute within a window.</p>
+	 */
+	private static final class Change {
+		final String name;
+
+		final String type;
+
+		final Object oldValue;
+
+		Object newValue;
+
+		Change(final String name,
+				final String type,
+				final Object oldValue,
+				final Object newValue) {
+			this.name = name;
+			this.type = type;
+			this.oldValue = oldValue;
+			this.newValue = newValue;
+		}
+
+		/**
+		 * @return whether the new value differs from the old one.
+		 */
+		boolean isChanged() {
+			return !Arrays.deepEquals(new Object[] {this.oldValue}, new Object[] {this.newValue});
+		}
+	}
+}
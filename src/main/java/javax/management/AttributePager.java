@@ -0,0 +1,320 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static java.lang.reflect.Modifier.isPublic;
+import static java.util.Arrays.asList;
+import static java.util.Collections.newSetFromMap;
+import static java.util.Collections.unmodifiableMap;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.openmbean.MXBeanMapping;
+import javax.management.openmbean.MXBeanMappingFactory;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+
+/**
+ * <p>The page operations of a management interface: for every attribute
+ * whose type is an array, a collection or a map, an operation named after
+ * its getter, with an <code>int offset</code> and an <code>int
+ * limit</code> parameters, which returns at most <code>limit</code>
+ * elements (or entries) of the attribute value, starting from
+ * <code>offset</code>.</p>
+ *
+ * <p>A page has the same type as the attribute, so for MXBeans it is
+ * converted to the same open type, but only the elements of the page are
+ * converted.  A client can thus read a very large attribute
+ * incrementally, with memory bounded by the page size on both sides.
+ * The open type of an MXBean attribute is the one in its
+ * <code>Descriptor</code>, which {@link StandardMBean} derives with the
+ * default mapping rules only, ignoring
+ * {@link javax.management.openmbean.MXBeanMappingFactoryClass
+ * &#64;MXBeanMappingFactoryClass} and
+ * {@link javax.management.openmbean.MXBeanMappingClass
+ * &#64;MXBeanMappingClass}.  Pages are therefore converted with
+ * {@link MXBeanMappingFactory#DEFAULT}, and an attribute whose open
+ * type this factory maps differently, because of such an annotation,
+ * has no page operation.</p>
+ *
+ * <p>An operation which the interface declares itself, with two
+ * <code>int</code> parameters and the name of a getter, takes precedence
+ * over the page operation of that getter, which is then not added.  A
+ * method with two <code>int</code> parameters and any other name has no
+ * effect on the page operations.</p>
+ *
+ * <p>The getter is still called for every page, so the pages are only
+ * cheap if the attribute value is one which the implementation holds,
+ * rather than builds on each call.  Arrays and random access lists are
+ * paged by index.  Any other collection or map is paged by skipping
+ * <code>offset</code> elements with an iterator, so reading the whole of
+ * it page by page takes a time quadratic in its size.</p>
+ *
+ * <p>An instance only depends on the management interface, so it is
+ * safe to share it between any number of MBeans.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see AnnotatedStandardMBean.Options#setPagedAttributes(boolean)
+ */
+final class AttributePager {
+	private static final String PAGE_SIGNATURE[] = {Integer.TYPE.getName(), Integer.TYPE.getName()};
+
+	private static final Set<Class<?>> PAGEABLE_TYPES = new HashSet<Class<?>>();
+
+	static {
+		PAGEABLE_TYPES.add(Collection.class);
+		PAGEABLE_TYPES.add(List.class);
+		PAGEABLE_TYPES.add(Set.class);
+		PAGEABLE_TYPES.add(SortedSet.class);
+		PAGEABLE_TYPES.add(Map.class);
+		PAGEABLE_TYPES.add(SortedMap.class);
+	}
+
+	/**
+	 * Operation name -&gt; attribute getter.
+	 */
+	private final Map<String, Method> getters;
+
+	/**
+	 * Operation name -&gt; mapping of the attribute type, or
+	 * <code>null</code> for a Standard MBean.
+	 */
+	private final Map<String, MXBeanMapping> mappings;
+
+	/**
+	 * The names of the MXBean page operations whose open type differs
+	 * from the one of their attribute, as found by
+	 * {@link #addOperations(MBeanInfo)}.
+	 */
+	private final Set<String> mismatched = newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private AttributePager(final Map<String, Method> getters, final Map<String, MXBeanMapping> mappings) {
+		this.getters = unmodifiableMap(getters);
+		this.mappings = mappings == null ? null : unmodifiableMap(mappings);
+	}
+
+	/**
+	 * @param mbeanInterface the Standard MBean or MXBean interface.
+	 * @param isMXBean whether pages are converted to open types.
+	 * @return the page operations of <code>mbeanInterface</code>, or
+	 * <code>null</code> if its methods cannot be made accessible.
+	 */
+	static AttributePager forInterface(final Class<?> mbeanInterface, final boolean isMXBean) {
+		final Map<String, Method> getters = new HashMap<String, Method>();
+		final boolean accessible = isPublic(mbeanInterface.getModifiers());
+		for (final Method method : mbeanInterface.getMethods()) {
+			final String name = method.getName();
+			final Class<?> returnType = method.getReturnType();
+			if (!name.startsWith("get") || name.length() <= 3 || method.getParameterTypes().length != 0
+					|| !returnType.isArray() && !PAGEABLE_TYPES.contains(returnType)) {
+				continue;
+			}
+			if (!accessible) {
+				try {
+					method.setAccessible(true);
+				} catch (final SecurityException se) {
+					return null;
+				}
+			}
+			getters.put(name, method);
+		}
+		for (final Method method : mbeanInterface.getMethods()) {
+			/*
+			 * Explicit operations take precedence over the page operation
+			 * of the same name.
+			 */
+			if (Arrays.equals(method.getParameterTypes(), new Class<?>[] {Integer.TYPE, Integer.TYPE})) {
+				getters.remove(method.getName());
+			}
+		}
+		if (!isMXBean) {
+			return new AttributePager(getters, null);
+		}
+
+		final Map<String, MXBeanMapping> mappings = new HashMap<String, MXBeanMapping>();
+		final MXBeanMappingFactory f = MXBeanMappingFactory.DEFAULT;
+		for (final Iterator<Map.Entry<String, Method>> entries = getters.entrySet().iterator(); entries.hasNext();) {
+			final Map.Entry<String, Method> entry = entries.next();
+			try {
+				mappings.put(entry.getKey(), f.mappingForType(entry.getValue().getGenericReturnType(), f));
+			} catch (final OpenDataException ode) {
+				entries.remove();
+			}
+		}
+		return new AttributePager(getters, mappings);
+	}
+
+	/**
+	 * @param info the <code>MBeanInfo</code> built by
+	 *        {@link StandardMBean}.
+	 * @return <code>info</code> with the page operations added, or
+	 *         <code>info</code> itself if there are none.
+	 */
+	MBeanInfo addOperations(final MBeanInfo info) {
+		final List<MBeanOperationInfo> operations = new ArrayList<MBeanOperationInfo>(asList(info.getOperations()));
+		for (final MBeanAttributeInfo attribute : info.getAttributes()) {
+			final String operationName = "get" + attribute.getName();
+			if (this.getters.containsKey(operationName) && this.matches(operationName, attribute)) {
+				operations.add(new MBeanOperationInfo(operationName,
+						"Page of " + attribute.getName(),
+						new MBeanParameterInfo[] {
+							new MBeanParameterInfo("offset", PAGE_SIGNATURE[0], "Index of the first element"),
+							new MBeanParameterInfo("limit", PAGE_SIGNATURE[1], "Maximum number of elements"),
+						},
+						attribute.getType(),
+						MBeanOperationInfo.INFO,
+						attribute.getDescriptor()));
+			}
+		}
+		if (operations.size() == info.getOperations().length) {
+			return info;
+		}
+		return new MBeanInfo(info.getClassName(),
+				info.getDescription(),
+				info.getAttributes(),
+				info.getConstructors(),
+				operations.toArray(new MBeanOperationInfo[operations.size()]),
+				info.getNotifications(),
+				info.getDescriptor());
+	}
+
+	/**
+	 * @return whether the pages of <code>attribute</code> have its type:
+	 *         for an MXBean, whether the mapping of the page operation
+	 *         has the open type in the descriptor of
+	 *         <code>attribute</code>.  If not, the operation is also no
+	 *         longer {@linkplain #isPageOperation(String, String[])
+	 *         handled}.
+	 */
+	private boolean matches(final String operationName, final MBeanAttributeInfo attribute) {
+		if (this.mappings == null) {
+			return true;
+		}
+		final OpenType<?> openType = this.mappings.get(operationName).getOpenType();
+		if (openType.equals(attribute.getDescriptor().getFieldValue("openType"))) {
+			return true;
+		}
+		this.mismatched.add(operationName);
+		return false;
+	}
+
+	/**
+	 * @return whether <code>actionName</code> and <code>signature</code>
+	 *         denote a page operation.
+	 */
+	boolean isPageOperation(final String actionName, final String signature[]) {
+		return this.getters.containsKey(actionName)
+				&& Arrays.equals(signature, PAGE_SIGNATURE)
+				&& !this.mismatched.contains(actionName);
+	}
+
+	/**
+	 * @see DynamicMBean#invoke(String, Object[], String[])
+	 */
+	Object invoke(final Object implementation,
+			final String actionName,
+			final Object params[])
+	throws MBeanException, ReflectionException {
+		final Method getter = this.getters.get(actionName);
+		if (params == null || params.length != 2
+				|| !(params[0] instanceof Integer) || !(params[1] instanceof Integer)
+				|| (Integer) params[0] < 0 || (Integer) params[1] < 0) {
+			throw new RuntimeOperationsException(new IllegalArgumentException("Invalid page parameters for " + actionName + ": " + Arrays.toString(params)));
+		}
+
+		final Object value;
+		try {
+			value = getter.invoke(implementation);
+		} catch (final IllegalAccessException iae) {
+			throw new ReflectionException(iae, iae.toString());
+		} catch (final InvocationTargetException ite) {
+			throw MBeanDispatcher.unwrap(ite);
+		}
+
+		final Object page = page(value, (Integer) params[0], (Integer) params[1]);
+		if (this.mappings == null) {
+			return page;
+		}
+		try {
+			return this.mappings.get(actionName).toOpenValue(page);
+		} catch (final OpenDataException ode) {
+			throw new MBeanException(ode, ode.toString());
+		}
+	}
+
+	/**
+	 * @param value an array, a collection or a map.
+	 * @return at most <code>limit</code> elements of <code>value</code>,
+	 *         starting from <code>offset</code>, in a new object of the
+	 *         same kind.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static Object page(final Object value, final int offset, final int limit) {
+		if (value == null) {
+			return null;
+		} else if (value.getClass().isArray()) {
+			final int length = Array.getLength(value);
+			final int from = Math.min(offset, length);
+			final int to = limit > length - from ? length : from + limit;
+			final Object page = Array.newInstance(value.getClass().getComponentType(), to - from);
+			System.arraycopy(value, from, page, 0, to - from);
+			return page;
+		} else if (value instanceof Map<?, ?>) {
+			final Map page = value instanceof SortedMap<?, ?>
+					? new TreeMap(((SortedMap) value).comparator())
+					: new LinkedHashMap();
+			final Iterator<Map.Entry> entries = ((Map) value).entrySet().iterator();
+			skip(entries, offset);
+			for (int i = 0; i < limit && entries.hasNext(); i++) {
+				final Map.Entry entry = entries.next();
+				page.put(entry.getKey(), entry.getValue());
+			}
+			return page;
+		} else if (value instanceof List<?> && value instanceof RandomAccess) {
+			final List<?> list = (List<?>) value;
+			final int size = list.size();
+			final int from = Math.min(offset, size);
+			final int to = limit > size - from ? size : from + limit;
+			final List<Object> page = new ArrayList<Object>(to - from);
+			for (int i = from; i < to; i++) {
+				page.add(list.get(i));
+			}
+			return page;
+		}
+		final Collection page = value instanceof SortedSet<?>
+				? new TreeSet(((SortedSet) value).comparator())
+				: value instanceof Set<?> ? new LinkedHashSet() : new ArrayList();
+		final Iterator<?> elements = ((Collection<?>) value).iterator();
+		skip(elements, offset);
+		for (int i = 0; i < limit && elements.hasNext(); i++) {
+			page.add(elements.next());
+		}
+		return page;
+	}
+
+	private static void skip(final Iterator<?> iterator, final int count) {
+		for (int i = 0; i < count && iterator.hasNext(); i++) {
+			iterator.next();
+		}
+	}
+}
@@ -0,0 +1,351 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <p>A {@link DynamicMBean} with a fixed {@link MBeanInfo}, which
+ * dispatches attributes and operations by their position in that
+ * <code>MBeanInfo</code>.  Subclasses only have to implement
+ * {@link #getAttribute(int)}, {@link #setAttribute(int, Object)} and
+ * {@link #invoke(int, Object[])}, typically as a <code>switch</code>
+ * statement which calls the corresponding methods of the
+ * implementation directly.</p>
+ *
+ * <p>Attribute names, and operation names with their signatures, are
+ * mapped to indices once per <code>MBeanInfo</code>, and the mapping is
+ * shared by all the MBeans with an equal <code>MBeanInfo</code>.</p>
+ *
+ * <p>Exceptions are reported in the same way {@link StandardMBean}
+ * reports them: runtime exceptions and errors thrown by the
+ * implementation are propagated as is, checked exceptions are wrapped
+ * into an {@link MBeanException}, and a parameter which is not of the
+ * type declared by the signature is reported as a
+ * {@link RuntimeOperationsException} wrapping an
+ * <code>IllegalArgumentException</code>.</p>
+ *
+ * <p>This class is not present in the original <a href =
+ * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+ * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+ * </p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see javax.management.processing.MBeanAnnotationProcessor
+ */
+public abstract class IndexedDynamicMBean implements DynamicMBean {
+	private static final Object EMPTY_PARAMS[] = {};
+
+	private static final Map<MBeanInfo, Index> INDICES = new WeakHashMap<MBeanInfo, Index>();
+
+	private final Object implementation;
+
+	private final MBeanInfo info;
+
+	private final Index index;
+
+	/**
+	 * @param implementation the implementation of this MBean.
+	 * @param info the management interface of this MBean.
+	 * @throws IllegalArgumentException if either argument is
+	 *         <code>null</code>.
+	 */
+	protected IndexedDynamicMBean(final Object implementation, final MBeanInfo info) {
+		if (implementation == null) {
+			throw new IllegalArgumentException("implementation is null");
+		}
+		if (info == null) {
+			throw new IllegalArgumentException("info is null");
+		}
+		this.implementation = implementation;
+		this.info = info;
+		this.index = indexOf(info);
+	}
+
+	private static Index indexOf(final MBeanInfo info) {
+		synchronized (INDICES) {
+			Index index = INDICES.get(info);
+			if (index == null) {
+				index = new Index(info);
+				INDICES.put(info, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * @return the implementation of this MBean.
+	 */
+	public Object getImplementation() {
+		return this.implementation;
+	}
+
+	/**
+	 * @see DynamicMBean#getMBeanInfo()
+	 */
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		return this.info;
+	}
+
+	/**
+	 * @see DynamicMBean#getAttribute(String)
+	 */
+	@Override
+	public final Object getAttribute(final String attribute)
+	throws AttributeNotFoundException, MBeanException, ReflectionException {
+		final int i = this.index.getAttribute(attribute, true);
+		if (i < 0) {
+			throw new AttributeNotFoundException("No such attribute: " + attribute);
+		}
+		try {
+			return this.getAttribute(i);
+		} catch (final RuntimeException re) {
+			throw re;
+		} catch (final Exception e) {
+			throw new MBeanException(e, e.toString());
+		}
+	}
+
+	/**
+	 * @see DynamicMBean#setAttribute(Attribute)
+	 */
+	@Override
+	public final void setAttribute(final Attribute attribute)
+	throws AttributeNotFoundException, InvalidAttributeValueException, MBeanException, ReflectionException {
+		final String name = attribute.getName();
+		final int i = this.index.getAttribute(name, false);
+		if (i < 0) {
+			throw new AttributeNotFoundException("No such attribute: " + name);
+		}
+		try {
+			this.setAttribute(i, attribute.getValue());
+		} catch (final InvalidAttributeValueException iave) {
+			throw iave;
+		} catch (final RuntimeException re) {
+			throw re;
+		} catch (final Exception e) {
+			throw new MBeanException(e, e.toString());
+		}
+	}
+
+	/**
+	 * @see DynamicMBean#getAttributes(String[])
+	 */
+	@Override
+	public final AttributeList getAttributes(final String attributes[]) {
+		final AttributeList result = new AttributeList(attributes.length);
+		for (final String attribute : attributes) {
+			try {
+				result.add(new Attribute(attribute, this.getAttribute(attribute)));
+			} catch (final Exception ignored) {
+				// Ignore: the attribute is omitted from the result.
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @see DynamicMBean#setAttributes(AttributeList)
+	 */
+	@Override
+	public final AttributeList setAttributes(final AttributeList attributes) {
+		final AttributeList result = new AttributeList(attributes.size());
+		for (final Object object : attributes) {
+			final Attribute attribute = (Attribute) object;
+			try {
+				this.setAttribute(attribute);
+				result.add(attribute);
+			} catch (final Exception ignored) {
+				// Ignore: the attribute is omitted from the result.
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @see DynamicMBean#invoke(String, Object[], String[])
+	 */
+	@Override
+	public final Object invoke(final String actionName,
+			final Object params[],
+			final String signature[])
+	throws MBeanException, ReflectionException {
+		final String key = Index.operationKey(actionName, signature);
+		final int i = this.index.getOperation(key);
+		final Object actualParams[] = params == null ? EMPTY_PARAMS : params;
+		if (i < 0 || actualParams.length != this.index.getArity(i)) {
+			final String message = "No such operation: " + key;
+			throw new ReflectionException(new NoSuchMethodException(message), message);
+		}
+		try {
+			return this.invoke(i, actualParams);
+		} catch (final RuntimeException re) {
+			throw re;
+		} catch (final Exception e) {
+			throw new MBeanException(e, e.toString());
+		}
+	}
+
+	/**
+	 * <p>Read the attribute at the given position in the
+	 * {@linkplain MBeanInfo#getAttributes() attributes} of the
+	 * <code>MBeanInfo</code>.  The attribute is known to be readable.</p>
+	 *
+	 * @param index the index of the attribute.
+	 * @return the value of the attribute.
+	 * @throws Exception if the getter throws one.
+	 */
+	protected abstract Object getAttribute(final int index) throws Exception;
+
+	/**
+	 * <p>Write the attribute at the given position in the
+	 * {@linkplain MBeanInfo#getAttributes() attributes} of the
+	 * <code>MBeanInfo</code>.  The attribute is known to be writable.</p>
+	 *
+	 * @param index the index of the attribute.
+	 * @param value the new value of the attribute.
+	 * @throws InvalidAttributeValueException if <code>value</code> is
+	 *         not of the attribute type.
+	 * @throws Exception if the setter throws one.
+	 * @see #invalidAttributeValue(int, Object)
+	 */
+	protected abstract void setAttribute(final int index, final Object value) throws Exception;
+
+	/**
+	 * <p>Invoke the operation at the given position in the
+	 * {@linkplain MBeanInfo#getOperations() operations} of the
+	 * <code>MBeanInfo</code>.  The number of parameters is known to
+	 * match the signature of the operation.</p>
+	 *
+	 * @param index the index of the operation.
+	 * @param params the parameters of the operation.
+	 * @return the value returned by the operation, or <code>null</code>
+	 *         for a <code>void</code> one.
+	 * @throws RuntimeOperationsException if a parameter is not of the
+	 *         type declared by the signature.
+	 * @throws Exception if the operation throws one.
+	 * @see #invalidParameter(int, int, Object)
+	 */
+	protected abstract Object invoke(final int index, final Object params[]) throws Exception;
+
+	/**
+	 * @param index the index of the attribute.
+	 * @param value the rejected value.
+	 * @return the exception to throw from {@link #setAttribute(int, Object)}
+	 *         when <code>value</code> is not of the attribute type.
+	 */
+	protected final InvalidAttributeValueException invalidAttributeValue(final int index, final Object value) {
+		return new InvalidAttributeValueException("Invalid value for attribute "
+				+ this.index.getAttributeName(index) + ": " + value);
+	}
+
+	/**
+	 * @param index the index of the operation.
+	 * @param param the index of the parameter.
+	 * @param value the rejected value.
+	 * @return the exception to throw from {@link #invoke(int, Object[])}
+	 *         when <code>value</code> is not of the parameter type, as
+	 *         {@link StandardMBean} does.
+	 */
+	protected final RuntimeOperationsException invalidParameter(final int index, final int param, final Object value) {
+		return new RuntimeOperationsException(new IllegalArgumentException("Invalid value for parameter "
+				+ (param + 1) + " of operation " + this.index.getOperationName(index) + ": " + value));
+	}
+
+	/**
+	 * <p>Attribute and operation indices of an <code>MBeanInfo</code>.
+	 * Only holds strings and numbers, so that it never references the
+	 * (weak) key of the cache.</p>
+	 */
+	private static final class Index {
+		private final Map<String, Integer> attributes = new HashMap<String, Integer>();
+
+		private final String attributeNames[];
+
+		private final boolean readable[];
+
+		private final boolean writable[];
+
+		private final Map<String, Integer> operations = new HashMap<String, Integer>();
+
+		private final String operationNames[];
+
+		private final int arities[];
+
+		Index(final MBeanInfo info) {
+			final MBeanAttributeInfo attributeInfos[] = info.getAttributes();
+			this.attributeNames = new String[attributeInfos.length];
+			this.readable = new boolean[attributeInfos.length];
+			this.writable = new boolean[attributeInfos.length];
+			for (int i = 0; i < attributeInfos.length; i++) {
+				final MBeanAttributeInfo attributeInfo = attributeInfos[i];
+				this.attributes.put(attributeInfo.getName(), Integer.valueOf(i));
+				this.attributeNames[i] = attributeInfo.getName();
+				this.readable[i] = attributeInfo.isReadable();
+				this.writable[i] = attributeInfo.isWritable();
+			}
+
+			final MBeanOperationInfo operationInfos[] = info.getOperations();
+			this.operationNames = new String[operationInfos.length];
+			this.arities = new int[operationInfos.length];
+			for (int i = 0; i < operationInfos.length; i++) {
+				final MBeanParameterInfo parameterInfos[] = operationInfos[i].getSignature();
+				final String signature[] = new String[parameterInfos.length];
+				for (int j = 0; j < parameterInfos.length; j++) {
+					signature[j] = parameterInfos[j].getType();
+				}
+				this.operations.put(operationKey(operationInfos[i].getName(), signature), Integer.valueOf(i));
+				this.operationNames[i] = operationInfos[i].getName();
+				this.arities[i] = signature.length;
+			}
+		}
+
+		static String operationKey(final String name, final String signature[]) {
+			final StringBuilder key = new StringBuilder(String.valueOf(name)).append('(');
+			if (signature != null) {
+				for (int i = 0; i < signature.length; i++) {
+					if (i != 0) {
+						key.append(',');
+					}
+					key.append(signature[i]);
+				}
+			}
+			return key.append(')').toString();
+		}
+
+		/**
+		 * @return the index of the attribute, or <code>-1</code> if
+		 *         there is no such attribute, or it is not readable
+		 *         (writable).
+		 */
+		int getAttribute(final String name, final boolean read) {
+			final Integer i = name == null ? null : this.attributes.get(name);
+			return i == null || !(read ? this.readable : this.writable)[i.intValue()] ? -1 : i.intValue();
+		}
+
+		String getAttributeName(final int i) {
+			return this.attributeNames[i];
+		}
+
+		/**
+		 * @return the index of the operation, or <code>-1</code> if
+		 *         there is no such operation.
+		 */
+		int getOperation(final String key) {
+			final Integer i = this.operations.get(key);
+			return i == null ? -1 : i.intValue();
+		}
+
+		String getOperationName(final int i) {
+			return this.operationNames[i];
+		}
+
+		int getArity(final int i) {
+			return this.arities[i];
+		}
+	}
+}
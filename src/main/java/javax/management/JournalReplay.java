@@ -0,0 +1,109 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import java.io.IOException;
+
+/**
+ * <p>Replays the journal of an {@link AnnotatedNotificationEmitter} to a
+ * listener added late, then hands it over to the live delivery.</p>
+ *
+ * <p>The listener is registered with the emitter before the replay
+ * starts, but the delivery thread skips it for the notifications whose
+ * journal sequence number is before {@linkplain #isLive(long) the live
+ * one}.  Once the replay has read every record appended, it sets the
+ * live sequence number to the next one, under the lock of the journal,
+ * which is also held while appending: each notification is thus
+ * delivered once, either by the replay or by the delivery thread, and
+ * in order.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+final class JournalReplay implements Runnable {
+	private final NotificationJournal journal;
+
+	private final NotificationJournal.Cursor cursor;
+
+	private final NotificationListener listener;
+
+	private final NotificationFilter filter;
+
+	private final Object handback;
+
+	/**
+	 * The sequence number of the first notification delivered live.
+	 */
+	private volatile long liveSequence = Long.MAX_VALUE;
+
+	private volatile boolean cancelled;
+
+	JournalReplay(final NotificationJournal journal,
+			final NotificationJournal.Cursor cursor,
+			final NotificationListener listener,
+			final NotificationFilter filter,
+			final Object handback) {
+		this.journal = journal;
+		this.cursor = cursor;
+		this.listener = listener;
+		this.filter = filter;
+		this.handback = handback;
+	}
+
+	/**
+	 * @param sequence the journal sequence number of a notification.
+	 * @return whether the notification is delivered live, rather than
+	 *         replayed.
+	 */
+	boolean isLive(final long sequence) {
+		return sequence >= this.liveSequence;
+	}
+
+	/**
+	 * <p>Stop the replay, when the listener is removed.</p>
+	 */
+	void cancel() {
+		this.cancelled = true;
+	}
+
+	/**
+	 * @see Runnable#run()
+	 */
+	public void run() {
+		try {
+			for (;;) {
+				Notification notification;
+				while (!this.cancelled && (notification = this.cursor.next()) != null) {
+					this.deliver(notification);
+				}
+				if (this.cancelled) {
+					return;
+				}
+				synchronized (this.journal) {
+					if (this.cursor.getSequence() >= this.journal.getNextSequence()) {
+						this.liveSequence = Math.max(this.cursor.getFromSequence(), this.journal.getNextSequence());
+						return;
+					}
+				}
+			}
+		} catch (final IOException ignored) {
+			/*
+			 * The rest of the journal cannot be read: deliver the next
+			 * notifications live.
+			 */
+			synchronized (this.journal) {
+				this.liveSequence = this.journal.getNextSequence();
+			}
+		}
+	}
+
+	private void deliver(final Notification notification) {
+		try {
+			if (this.filter == null || this.filter.isNotificationEnabled(notification)) {
+				this.listener.handleNotification(notification, this.handback);
+			}
+		} catch (final RuntimeException ignored) {
+			// Ignore.
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+/**
+ * <p>The <code>MBeanInfo</code> of an {@link AnnotatedStandardMBean}
+ * with {@linkplain AnnotatedStandardMBean.Options#isLazyMBeanInfo() lazy
+ * <code>MBeanInfo</code>} enabled, before the full <code>MBeanInfo</code>
+ * has been built.</p>
+ *
+ * <p>Only the class name is known upfront, which is all the MBean server
+ * needs to register the MBean.  Any other accessor builds the full
+ * <code>MBeanInfo</code> (once per MBean) and delegates to it.  When
+ * serialized, the full <code>MBeanInfo</code> is written instead.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see AnnotatedStandardMBean
+ */
+final class LazyMBeanInfo extends MBeanInfo {
+	private static final long serialVersionUID = -6451266807389315035L;
+
+	private final transient AnnotatedStandardMBean mbean;
+
+	/**
+	 * @param className the name of the implementation class.
+	 * @param mbean the MBean which builds the full <code>MBeanInfo</code>.
+	 */
+	LazyMBeanInfo(final String className, final AnnotatedStandardMBean mbean) {
+		super(className, null, null, null, null, null);
+		this.mbean = mbean;
+	}
+
+	private MBeanInfo getFullMBeanInfo() {
+		return this.mbean.getFullMBeanInfo();
+	}
+
+	/**
+	 * @see MBeanInfo#getDescription()
+	 */
+	@Override
+	public String getDescription() {
+		return this.getFullMBeanInfo().getDescription();
+	}
+
+	/**
+	 * @see MBeanInfo#getAttributes()
+	 */
+	@Override
+	public MBeanAttributeInfo[] getAttributes() {
+		return this.getFullMBeanInfo().getAttributes();
+	}
+
+	/**
+	 * @see MBeanInfo#getOperations()
+	 */
+	@Override
+	public MBeanOperationInfo[] getOperations() {
+		return this.getFullMBeanInfo().getOperations();
+	}
+
+	/**
+	 * @see MBeanInfo#getConstructors()
+	 */
+	@Override
+	public MBeanConstructorInfo[] getConstructors() {
+		return this.getFullMBeanInfo().getConstructors();
+	}
+
+	/**
+	 * @see MBeanInfo#getNotifications()
+	 */
+	@Override
+	public MBeanNotificationInfo[] getNotifications() {
+		return this.getFullMBeanInfo().getNotifications();
+	}
+
+	/**
+	 * @see MBeanInfo#getDescriptor()
+	 */
+	@Override
+	public Descriptor getDescriptor() {
+		return this.getFullMBeanInfo().getDescriptor();
+	}
+
+	/**
+	 * @see MBeanInfo#clone()
+	 */
+	@Override
+	public Object clone() {
+		return this.getFullMBeanInfo().clone();
+	}
+
+	/**
+	 * <p>Serialize the full <code>MBeanInfo</code> instead of this
+	 * object.</p>
+	 *
+	 * @return the full <code>MBeanInfo</code>.
+	 */
+	private Object writeReplace() {
+		return this.getFullMBeanInfo();
+	}
+}
@@ -0,0 +1,266 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.management.AnnotatedNotificationEmitter.OverflowPolicy;
+
+/**
+ * <p>The bounded queue of notifications of a single listener of an
+ * {@link AnnotatedNotificationEmitter}, which applies an
+ * {@link OverflowPolicy} when it is full.</p>
+ *
+ * <p>The queue is drained by tasks submitted to an executor, one at a
+ * time, so that the listener is never called concurrently and receives
+ * the notifications in order.  A task only runs while there are
+ * notifications to deliver.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+final class ListenerQueue implements Runnable {
+	/**
+	 * The maximum number of notifications delivered by a task before it
+	 * lets other listeners use the executor.
+	 */
+	private static final int MAX_DRAIN = 1024;
+
+	private final NotificationListener listener;
+
+	private final Object handback;
+
+	private final int capacity;
+
+	private final OverflowPolicy policy;
+
+	private final long blockTimeoutNanos;
+
+	private final Executor executor;
+
+	private final NotificationCounters counters;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition notFull = this.lock.newCondition();
+
+	/**
+	 * The notifications, unless the policy is
+	 * {@link OverflowPolicy#COALESCE}.
+	 */
+	private final ArrayDeque<Notification> queue;
+
+	/**
+	 * (Type, source) -&gt; the latest notification, if the policy is
+	 * {@link OverflowPolicy#COALESCE}.
+	 */
+	private final LinkedHashMap<List<Object>, Notification> latest;
+
+	/**
+	 * Whether a task is submitted or running.
+	 */
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	private boolean closed;
+
+	ListenerQueue(final NotificationListener listener,
+			final Object handback,
+			final int capacity,
+			final OverflowPolicy policy,
+			final long blockTimeoutNanos,
+			final Executor executor,
+			final NotificationCounters counters) {
+		this.listener = listener;
+		this.handback = handback;
+		this.capacity = capacity;
+		this.policy = policy;
+		this.blockTimeoutNanos = blockTimeoutNanos;
+		this.executor = executor;
+		this.counters = counters;
+		if (policy == OverflowPolicy.COALESCE) {
+			this.queue = null;
+			this.latest = new LinkedHashMap<List<Object>, Notification>();
+		} else {
+			this.queue = new ArrayDeque<Notification>(Math.min(capacity, 1024));
+			this.latest = null;
+		}
+	}
+
+	/**
+	 * <p>Queue a notification, applying the overflow policy if the queue
+	 * is full.  Only blocks, for a bounded time, if the policy is
+	 * {@link OverflowPolicy#BLOCK}.</p>
+	 */
+	void offer(final Notification notification) {
+		this.lock.lock();
+		try {
+			if (this.closed || !this.enqueue(notification)) {
+				return;
+			}
+		} finally {
+			this.lock.unlock();
+		}
+		this.schedule();
+	}
+
+	/**
+	 * @return whether a notification has been queued.
+	 */
+	private boolean enqueue(final Notification notification) {
+		assert this.lock.isHeldByCurrentThread();
+		switch (this.policy) {
+		case COALESCE:
+			final List<Object> key = new ArrayList<Object>(2);
+			key.add(notification.getType());
+			key.add(notification.getSource());
+			if (this.latest.containsKey(key)) {
+				/*
+				 * The replaced notification keeps its place.
+				 */
+				this.counters.coalesced(this.latest.put(key, notification));
+				return true;
+			}
+			if (this.latest.size() >= this.capacity) {
+				final Iterator<Notification> oldest = this.latest.values().iterator();
+				this.counters.dropped(oldest.next());
+				oldest.remove();
+			}
+			this.latest.put(key, notification);
+			return true;
+		case DROP_NEWEST:
+			if (this.queue.size() >= this.capacity) {
+				this.counters.dropped(notification);
+				return false;
+			}
+			break;
+		case BLOCK:
+			long nanos = this.blockTimeoutNanos;
+			try {
+				while (this.queue.size() >= this.capacity && !this.closed) {
+					if (nanos <= 0) {
+						this.counters.dropped(notification);
+						return false;
+					}
+					nanos = this.notFull.awaitNanos(nanos);
+				}
+			} catch (final InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				this.counters.dropped(notification);
+				return false;
+			}
+			if (this.closed) {
+				return false;
+			}
+			break;
+		case DROP_OLDEST:
+		default:
+			if (this.queue.size() >= this.capacity) {
+				this.counters.dropped(this.queue.poll());
+			}
+			break;
+		}
+		this.queue.add(notification);
+		return true;
+	}
+
+	private void schedule() {
+		if (this.scheduled.compareAndSet(false, true)) {
+			try {
+				this.executor.execute(this);
+			} catch (final RejectedExecutionException ree) {
+				/*
+				 * Deliver on this thread rather than lose the
+				 * notifications.
+				 */
+				this.run();
+			}
+		}
+	}
+
+	/**
+	 * <p>Deliver the queued notifications.</p>
+	 *
+	 * @see Runnable#run()
+	 */
+	public void run() {
+		try {
+			for (int delivered = 0; delivered < MAX_DRAIN; delivered++) {
+				final Notification notification = this.poll();
+				if (notification == null) {
+					break;
+				}
+				try {
+					this.listener.handleNotification(notification, this.handback);
+				} catch (final RuntimeException ignored) {
+					// Ignore.
+				}
+			}
+		} finally {
+			this.scheduled.set(false);
+		}
+		if (!this.isEmpty()) {
+			this.schedule();
+		}
+	}
+
+	private Notification poll() {
+		this.lock.lock();
+		try {
+			if (this.latest != null) {
+				final Iterator<Map.Entry<List<Object>, Notification>> entries = this.latest.entrySet().iterator();
+				if (!entries.hasNext()) {
+					return null;
+				}
+				final Notification notification = entries.next().getValue();
+				entries.remove();
+				return notification;
+			}
+			final Notification notification = this.queue.poll();
+			if (notification != null) {
+				this.notFull.signal();
+			}
+			return notification;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	private boolean isEmpty() {
+		this.lock.lock();
+		try {
+			return this.latest != null ? this.latest.isEmpty() : this.queue.isEmpty();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * <p>Discard the queued notifications, and accept no more: the
+	 * listener has been removed.</p>
+	 */
+	void close() {
+		this.lock.lock();
+		try {
+			this.closed = true;
+			if (this.latest != null) {
+				this.latest.clear();
+			} else {
+				this.queue.clear();
+			}
+			this.notFull.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+}
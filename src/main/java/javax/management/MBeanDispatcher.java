@@ -0,0 +1,197 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static java.lang.reflect.Modifier.isPublic;
+import static java.util.Collections.unmodifiableMap;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>A precomputed table of the getters, setters and operations of a
+ * Standard MBean interface, which allows attribute access and operation
+ * invocation without going through the name and signature resolution
+ * of {@link StandardMBean}.</p>
+ *
+ * <p>Attributes are looked up by name, and operations by their name
+ * and signature, both in a single hash lookup.  Exceptions are reported
+ * in the same way <code>StandardMBean</code> reports them.</p>
+ *
+ * <p>An instance only depends on the management interface, so it is
+ * safe to share it between any number of MBeans.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see AnnotatedStandardMBean.Options#setDirectDispatch(boolean)
+ */
+final class MBeanDispatcher {
+	private static final Object EMPTY_PARAMS[] = {};
+
+	private final Map<String, MethodCaller> getters;
+
+	private final Map<String, MethodCaller> setters;
+
+	private final Map<String, MethodCaller> operations;
+
+	private MBeanDispatcher(final Map<String, MethodCaller> getters,
+			final Map<String, MethodCaller> setters,
+			final Map<String, MethodCaller> operations) {
+		this.getters = unmodifiableMap(getters);
+		this.setters = unmodifiableMap(setters);
+		this.operations = unmodifiableMap(operations);
+	}
+
+	/**
+	 * @param mbeanInterface the Standard MBean interface.
+	 * @return the dispatch table for <code>mbeanInterface</code>, or
+	 * <code>null</code> if its methods cannot be made accessible.
+	 */
+	static MBeanDispatcher forInterface(final Class<?> mbeanInterface) {
+		final Map<String, MethodCaller> getters = new HashMap<String, MethodCaller>();
+		final Map<String, MethodCaller> setters = new HashMap<String, MethodCaller>();
+		final Map<String, MethodCaller> operations = new HashMap<String, MethodCaller>();
+		final boolean accessible = isPublic(mbeanInterface.getModifiers());
+		for (final Method method : mbeanInterface.getMethods()) {
+			if (!accessible) {
+				try {
+					method.setAccessible(true);
+				} catch (final SecurityException se) {
+					return null;
+				}
+			}
+
+			final MethodCaller caller = MethodCaller.forMethod(method);
+			final String name = method.getName();
+			final Class<?> returnType = method.getReturnType();
+			final Class<?> parameterTypes[] = method.getParameterTypes();
+			if (name.startsWith("get") && name.length() > 3 && parameterTypes.length == 0 && returnType != Void.TYPE) {
+				getters.put(name.substring(3), caller);
+			} else if (name.startsWith("is") && name.length() > 2 && parameterTypes.length == 0 && returnType == Boolean.TYPE) {
+				getters.put(name.substring(2), caller);
+			} else if (name.startsWith("set") && name.length() > 3 && parameterTypes.length == 1 && returnType == Void.TYPE) {
+				setters.put(name.substring(3), caller);
+			} else {
+				final StringBuilder key = new StringBuilder(name).append('(');
+				for (int i = 0; i < parameterTypes.length; i++) {
+					if (i != 0) {
+						key.append(',');
+					}
+					key.append(parameterTypes[i].getName());
+				}
+				operations.put(key.append(')').toString(), caller);
+			}
+		}
+		return new MBeanDispatcher(getters, setters, operations);
+	}
+
+	/**
+	 * @see DynamicMBean#getAttribute(String)
+	 */
+	Object getAttribute(final Object implementation, final String attribute)
+	throws AttributeNotFoundException, MBeanException, ReflectionException {
+		final MethodCaller getter = attribute == null ? null : this.getters.get(attribute);
+		if (getter == null) {
+			throw new AttributeNotFoundException("No such attribute: " + attribute);
+		}
+		try {
+			return getter.call(implementation, EMPTY_PARAMS);
+		} catch (final IllegalAccessException iae) {
+			throw new ReflectionException(iae, iae.toString());
+		} catch (final InvocationTargetException ite) {
+			throw unwrap(ite);
+		}
+	}
+
+	/**
+	 * @see DynamicMBean#setAttribute(Attribute)
+	 */
+	void setAttribute(final Object implementation, final Attribute attribute)
+	throws AttributeNotFoundException, InvalidAttributeValueException, MBeanException, ReflectionException {
+		final String name = attribute.getName();
+		final MethodCaller setter = name == null ? null : this.setters.get(name);
+		if (setter == null) {
+			throw new AttributeNotFoundException("No such attribute: " + name);
+		}
+		final Object value = attribute.getValue();
+		if (!isAssignable(setter.getMethod().getParameterTypes()[0], value)) {
+			throw new InvalidAttributeValueException("Invalid value for attribute " + name + ": " + value);
+		}
+		try {
+			setter.call(implementation, new Object[] {value});
+		} catch (final IllegalAccessException iae) {
+			throw new ReflectionException(iae, iae.toString());
+		} catch (final InvocationTargetException ite) {
+			throw unwrap(ite);
+		}
+	}
+
+	/**
+	 * @see DynamicMBean#invoke(String, Object[], String[])
+	 */
+	Object invoke(final Object implementation,
+			final String actionName,
+			final Object params[],
+			final String signature[])
+	throws MBeanException, ReflectionException {
+		if (actionName == null) {
+			final String message = "No such operation: null";
+			throw new ReflectionException(new NoSuchMethodException(message), message);
+		}
+		final StringBuilder key = new StringBuilder(actionName).append('(');
+		if (signature != null) {
+			for (int i = 0; i < signature.length; i++) {
+				if (i != 0) {
+					key.append(',');
+				}
+				key.append(signature[i]);
+			}
+		}
+		final MethodCaller operation = this.operations.get(key.append(')').toString());
+		if (operation == null) {
+			final String message = "No such operation: " + key;
+			throw new ReflectionException(new NoSuchMethodException(message), message);
+		}
+		try {
+			return operation.call(implementation, params == null ? EMPTY_PARAMS : params);
+		} catch (final IllegalAccessException iae) {
+			throw new ReflectionException(iae, iae.toString());
+		} catch (final InvocationTargetException ite) {
+			throw unwrap(ite);
+		}
+	}
+
+	/**
+	 * <p>Unchecked exceptions thrown by the MBean are propagated as is
+	 * (the MBean Server wraps them), checked ones are wrapped into an
+	 * {@link MBeanException}.</p>
+	 */
+	static MBeanException unwrap(final InvocationTargetException ite) {
+		final Throwable cause = ite.getCause();
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		} else if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new MBeanException((Exception) cause, cause.toString());
+	}
+
+	static boolean isAssignable(final Class<?> type, final Object value) {
+		if (value == null) {
+			return !type.isPrimitive();
+		}
+		if (type.isPrimitive()) {
+			return type == Boolean.TYPE && value instanceof Boolean
+					|| type == Byte.TYPE && value instanceof Byte
+					|| type == Character.TYPE && value instanceof Character
+					|| type == Double.TYPE && value instanceof Double
+					|| type == Float.TYPE && value instanceof Float
+					|| type == Integer.TYPE && value instanceof Integer
+					|| type == Long.TYPE && value instanceof Long
+					|| type == Short.TYPE && value instanceof Short;
+		}
+		return type.isInstance(value);
+	}
+}
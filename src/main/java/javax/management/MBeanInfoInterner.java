@@ -0,0 +1,157 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <p>Canonicalizes <code>MBeanInfo</code>s, together with the
+ * <code>MBeanFeatureInfo</code>s and <code>Descriptor</code>s they
+ * consist of, so that equal objects are only retained once, however many
+ * MBeans (or MBean classes) use them.</p>
+ *
+ * <p>Only instances of the base classes ({@link MBeanInfo},
+ * {@link MBeanAttributeInfo}, etc.) are rebuilt from their canonical
+ * parts; instances of subclasses (such as the Open MBean infos) are
+ * canonicalized as a whole, since they may carry state this class knows
+ * nothing about.</p>
+ *
+ * <p>The pool only holds weak references, so an object is dropped from it
+ * as soon as no <code>MBeanInfo</code> uses it any longer.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see AnnotatedStandardMBean.Options#isSharedMBeanInfo()
+ */
+final class MBeanInfoInterner {
+	private static final Map<Object, Reference<Object>> POOL = new WeakHashMap<Object, Reference<Object>>();
+
+	private MBeanInfoInterner() {
+		assert false;
+	}
+
+	/**
+	 * @param info the <code>MBeanInfo</code> to canonicalize.
+	 * @return an <code>MBeanInfo</code> equal to <code>info</code>, made of
+	 *         canonical parts, or <code>null</code> if <code>info</code> is
+	 *         <code>null</code>.
+	 */
+	static MBeanInfo intern(final MBeanInfo info) {
+		if (info == null || info.getClass() != MBeanInfo.class) {
+			return internObject(info);
+		}
+		return internObject(new MBeanInfo(internString(info.getClassName()),
+				internString(info.getDescription()),
+				intern(info.getAttributes()),
+				intern(info.getConstructors()),
+				intern(info.getOperations()),
+				intern(info.getNotifications()),
+				intern(info.getDescriptor())));
+	}
+
+	static Descriptor intern(final Descriptor descriptor) {
+		return internObject(descriptor);
+	}
+
+	private static MBeanAttributeInfo[] intern(final MBeanAttributeInfo attributes[]) {
+		for (int i = 0; i < attributes.length; i++) {
+			final MBeanAttributeInfo attribute = attributes[i];
+			attributes[i] = internObject(attribute.getClass() == MBeanAttributeInfo.class
+					? new MBeanAttributeInfo(internString(attribute.getName()),
+							internString(attribute.getType()),
+							internString(attribute.getDescription()),
+							attribute.isReadable(),
+							attribute.isWritable(),
+							attribute.isIs(),
+							intern(attribute.getDescriptor()))
+					: attribute);
+		}
+		return attributes;
+	}
+
+	private static MBeanConstructorInfo[] intern(final MBeanConstructorInfo constructors[]) {
+		for (int i = 0; i < constructors.length; i++) {
+			final MBeanConstructorInfo constructor = constructors[i];
+			constructors[i] = internObject(constructor.getClass() == MBeanConstructorInfo.class
+					? new MBeanConstructorInfo(internString(constructor.getName()),
+							internString(constructor.getDescription()),
+							intern(constructor.getSignature()),
+							intern(constructor.getDescriptor()))
+					: constructor);
+		}
+		return constructors;
+	}
+
+	private static MBeanOperationInfo[] intern(final MBeanOperationInfo operations[]) {
+		for (int i = 0; i < operations.length; i++) {
+			final MBeanOperationInfo operation = operations[i];
+			operations[i] = internObject(operation.getClass() == MBeanOperationInfo.class
+					? new MBeanOperationInfo(internString(operation.getName()),
+							internString(operation.getDescription()),
+							intern(operation.getSignature()),
+							internString(operation.getReturnType()),
+							operation.getImpact(),
+							intern(operation.getDescriptor()))
+					: operation);
+		}
+		return operations;
+	}
+
+	private static MBeanNotificationInfo[] intern(final MBeanNotificationInfo notifications[]) {
+		for (int i = 0; i < notifications.length; i++) {
+			final MBeanNotificationInfo notification = notifications[i];
+			if (notification.getClass() == MBeanNotificationInfo.class) {
+				final String types[] = notification.getNotifTypes();
+				for (int j = 0; j < types.length; j++) {
+					types[j] = internString(types[j]);
+				}
+				notifications[i] = internObject(new MBeanNotificationInfo(types,
+						internString(notification.getName()),
+						internString(notification.getDescription()),
+						intern(notification.getDescriptor())));
+			} else {
+				notifications[i] = internObject(notification);
+			}
+		}
+		return notifications;
+	}
+
+	private static MBeanParameterInfo[] intern(final MBeanParameterInfo parameters[]) {
+		for (int i = 0; i < parameters.length; i++) {
+			final MBeanParameterInfo parameter = parameters[i];
+			parameters[i] = internObject(parameter.getClass() == MBeanParameterInfo.class
+					? new MBeanParameterInfo(internString(parameter.getName()),
+							internString(parameter.getType()),
+							internString(parameter.getDescription()),
+							intern(parameter.getDescriptor()))
+					: parameter);
+		}
+		return parameters;
+	}
+
+	private static String internString(final String s) {
+		return s == null ? null : s.intern();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T internObject(final T object) {
+		if (object == null) {
+			return null;
+		}
+		synchronized (POOL) {
+			final Reference<Object> reference = POOL.get(object);
+			final Object canonical = reference == null ? null : reference.get();
+			if (canonical != null) {
+				/*
+				 * Feature infos of different classes may be equal.
+				 */
+				return canonical.getClass() == object.getClass() ? (T) canonical : object;
+			}
+			POOL.put(object, new WeakReference<Object>(object));
+			return object;
+		}
+	}
+}
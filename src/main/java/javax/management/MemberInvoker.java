@@ -0,0 +1,126 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+
+/**
+ * <p>Invokes a fixed list of methods and constructors by their position
+ * in that list.</p>
+ *
+ * <p>Instances returned by {@link #forMembers(Member[])} are, whenever
+ * possible, generated at runtime: each member is called by a dedicated
+ * <code>invokevirtual</code>, <code>invokeinterface</code>,
+ * <code>invokestatic</code> or <code>new</code> instruction, selected by a
+ * <code>tableswitch</code>, with no reflection involved.  If a class
+ * cannot be generated (for example, because a member is not public, or
+ * because the security manager does not permit creating a class loader),
+ * a reflective implementation with the same behaviour is returned
+ * instead.</p>
+ *
+ * <p>In either case, arguments are unboxed and return values are boxed as
+ * necessary, a <code>void</code> method returns <code>null</code>, and any
+ * exception thrown by the member itself is propagated unchanged.  The
+ * arguments are not checked against the parameter types of the member:
+ * callers which get them from a client, such as
+ * {@link AnnotatedMBeanFactory}, check them beforehand.</p>
+ *
+ * <p>This class is not present in the original <a href =
+ * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+ * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+ * </p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see AnnotatedMBeanFactory
+ */
+public abstract class MemberInvoker {
+	/**
+	 * <p>Construct an instance of this class.</p>
+	 */
+	protected MemberInvoker() {
+		// empty
+	}
+
+	/**
+	 * @param members the methods and constructors to invoke.
+	 * @return an invoker for the given members, generated if possible,
+	 *         reflective otherwise.
+	 * @throws IllegalArgumentException if a member is neither a method
+	 *         nor a constructor.
+	 */
+	public static MemberInvoker forMembers(final Member... members) {
+		for (final Member member : members) {
+			if (!(member instanceof Method) && !(member instanceof Constructor<?>)) {
+				throw new IllegalArgumentException("Neither a method nor a constructor: " + member);
+			}
+		}
+		final MemberInvoker generated = MemberInvokerGenerator.generate(members);
+		return generated == null ? new ReflectiveInvoker(members.clone()) : generated;
+	}
+
+	/**
+	 * <p>Invoke a member.</p>
+	 *
+	 * @param index the position of the member in the list supplied to
+	 *        {@link #forMembers(Member[])}.
+	 * @param target the object to invoke an instance method on; ignored
+	 *        for static methods and constructors.
+	 * @param args the arguments, boxed if primitive.
+	 * @return the (boxed) return value, the newly constructed object, or
+	 *         <code>null</code> for a <code>void</code> method.
+	 * @throws Exception if the member throws one.
+	 */
+	public abstract Object invoke(final int index, final Object target, final Object... args) throws Exception;
+
+	/**
+	 * <p>Whether this invoker has been generated, as opposed to using
+	 * reflection.</p>
+	 *
+	 * @return <code>true</code> if this invoker has been generated.
+	 */
+	public final boolean isGenerated() {
+		return MemberInvokerGenerator.isGenerated(this.getClass());
+	}
+
+	/**
+	 * <p>The fallback used when a class cannot be generated.</p>
+	 */
+	private static final class ReflectiveInvoker extends MemberInvoker {
+		private final Member members[];
+
+		ReflectiveInvoker(final Member members[]) {
+			this.members = members;
+			for (final Member member : members) {
+				try {
+					((AccessibleObject) member).setAccessible(true);
+				} catch (final SecurityException ignored) {
+					// Ignore: public members are accessible anyway.
+				}
+			}
+		}
+
+		/**
+		 * @see MemberInvoker#invoke(int, Object, Object[])
+		 */
+		@Override
+		public Object invoke(final int index, final Object target, final Object... args) throws Exception {
+			final Member member = this.members[index];
+			try {
+				return member instanceof Method
+						? ((Method) member).invoke(target, args)
+						: ((Constructor<?>) member).newInstance(args);
+			} catch (final InvocationTargetException ite) {
+				final Throwable cause = ite.getCause();
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw (Exception) cause;
+			}
+		}
+	}
+}
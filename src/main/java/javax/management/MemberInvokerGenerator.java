@@ -0,0 +1,586 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static java.lang.reflect.Modifier.isAbstract;
+import static java.lang.reflect.Modifier.isPublic;
+import static java.lang.reflect.Modifier.isStatic;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Generates the bytecode of {@link MemberInvoker} subclasses.</p>
+ *
+ * <p>Each generated class is defined by its own class loader, whose
+ * parent is the class loader of the first member, so that the generated
+ * class (and its loader) can be garbage-collected as soon as it is no
+ * longer used.  The class file version is 49 (Java 5), so no stack map
+ * frames are required.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+final class MemberInvokerGenerator {
+	private static final String SUPERCLASS = MemberInvoker.class.getName().replace('.', '/');
+
+	private static final String INVOKE_DESCRIPTOR = "(ILjava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;";
+
+	private static final int CLASS_FILE_VERSION = 49;
+
+	private static final int ACC_PUBLIC = 0x0001;
+
+	private static final int ACC_FINAL = 0x0010;
+
+	private static final int ACC_SUPER = 0x0020;
+
+	private static final int ACC_VARARGS = 0x0080;
+
+	private static final int ACC_SYNTHETIC = 0x1000;
+
+	private static final int ACONST_NULL = 0x01;
+
+	private static final int ICONST_0 = 0x03;
+
+	private static final int BIPUSH = 0x10;
+
+	private static final int SIPUSH = 0x11;
+
+	private static final int ILOAD_1 = 0x1b;
+
+	private static final int ALOAD_0 = 0x2a;
+
+	private static final int ALOAD_2 = 0x2c;
+
+	private static final int ALOAD_3 = 0x2d;
+
+	private static final int AALOAD = 0x32;
+
+	private static final int DUP = 0x59;
+
+	private static final int TABLESWITCH = 0xaa;
+
+	private static final int ARETURN = 0xb0;
+
+	private static final int RETURN = 0xb1;
+
+	private static final int INVOKEVIRTUAL = 0xb6;
+
+	private static final int INVOKESPECIAL = 0xb7;
+
+	private static final int INVOKESTATIC = 0xb8;
+
+	private static final int INVOKEINTERFACE = 0xb9;
+
+	private static final int NEW = 0xbb;
+
+	private static final int ATHROW = 0xbf;
+
+	private static final int CHECKCAST = 0xc0;
+
+	private static final Map<Class<?>, Class<?>> WRAPPERS = new HashMap<Class<?>, Class<?>>();
+
+	static {
+		WRAPPERS.put(Boolean.TYPE, Boolean.class);
+		WRAPPERS.put(Byte.TYPE, Byte.class);
+		WRAPPERS.put(Character.TYPE, Character.class);
+		WRAPPERS.put(Double.TYPE, Double.class);
+		WRAPPERS.put(Float.TYPE, Float.class);
+		WRAPPERS.put(Integer.TYPE, Integer.class);
+		WRAPPERS.put(Long.TYPE, Long.class);
+		WRAPPERS.put(Short.TYPE, Short.class);
+	}
+
+	private static final AtomicInteger COUNTER = new AtomicInteger();
+
+	private MemberInvokerGenerator() {
+		assert false;
+	}
+
+	static boolean isGenerated(final Class<?> clazz) {
+		return clazz.getClassLoader() instanceof GeneratorLoader;
+	}
+
+	/**
+	 * @param members the methods and constructors to invoke.
+	 * @return the generated invoker, or <code>null</code> if one cannot
+	 *         be generated.
+	 */
+	static MemberInvoker generate(final Member members[]) {
+		if (members.length == 0) {
+			return null;
+		}
+		final ClassLoader parent = members[0].getDeclaringClass().getClassLoader();
+		for (final Member member : members) {
+			if (!isLinkable(member, parent)) {
+				return null;
+			}
+		}
+
+		final String declaringClassName = members[0].getDeclaringClass().getName();
+		final String name = (declaringClassName.startsWith("java.") ? MemberInvoker.class.getName() : declaringClassName)
+				+ "$$Invoker" + COUNTER.incrementAndGet();
+		try {
+			final byte classFile[] = assemble(name.replace('.', '/'), members);
+			final Class<?> clazz = new GeneratorLoader(parent).define(name, classFile);
+			return (MemberInvoker) clazz.newInstance();
+		} catch (final SecurityException se) {
+			return null;
+		} catch (final LinkageError le) {
+			return null;
+		} catch (final InstantiationException ie) {
+			return null;
+		} catch (final IllegalAccessException iae) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return whether the generated code can call <code>member</code>
+	 *         directly, i.e. whether it is public, declared by a public
+	 *         class, and whether all the classes it refers to are the
+	 *         same when resolved through <code>loader</code>.
+	 */
+	private static boolean isLinkable(final Member member, final ClassLoader loader) {
+		final Class<?> declaringClass = member.getDeclaringClass();
+		if (!isPublic(member.getModifiers()) || !isPublic(declaringClass.getModifiers())) {
+			return false;
+		}
+		final Class<?> parameterTypes[];
+		if (member instanceof Method) {
+			final Method method = (Method) member;
+			if (isStatic(method.getModifiers()) && declaringClass.isInterface()) {
+				return false;
+			}
+			if (!isVisible(method.getReturnType(), loader)) {
+				return false;
+			}
+			parameterTypes = method.getParameterTypes();
+		} else {
+			if (isAbstract(declaringClass.getModifiers())) {
+				return false;
+			}
+			parameterTypes = ((Constructor<?>) member).getParameterTypes();
+		}
+		if (!isVisible(declaringClass, loader)) {
+			return false;
+		}
+		for (final Class<?> parameterType : parameterTypes) {
+			if (!isVisible(parameterType, loader)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isVisible(final Class<?> clazz, final ClassLoader loader) {
+		Class<?> type = clazz;
+		while (type.isArray()) {
+			type = type.getComponentType();
+		}
+		if (type.isPrimitive()) {
+			return true;
+		}
+		if (!isPublic(type.getModifiers())) {
+			return false;
+		}
+		try {
+			return Class.forName(type.getName(), false, loader) == type;
+		} catch (final ClassNotFoundException cnfe) {
+			return false;
+		}
+	}
+
+	private static byte[] assemble(final String name, final Member members[]) {
+		final ConstantPool pool = new ConstantPool();
+		final int thisClass = pool.classRef(name);
+		final int superClass = pool.classRef(SUPERCLASS);
+
+		/*
+		 * <init>()V: call the superclass constructor.
+		 */
+		final ByteVector init = new ByteVector();
+		init.u1(ALOAD_0);
+		init.u1(INVOKESPECIAL).u2(pool.methodRef(SUPERCLASS, "<init>", "()V", false));
+		init.u1(RETURN);
+
+		/*
+		 * invoke(ILjava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;
+		 */
+		final ByteVector invoke = new ByteVector();
+		invoke.u1(ILOAD_1);
+		final int switchPosition = invoke.size();
+		invoke.u1(TABLESWITCH);
+		while (invoke.size() % 4 != 0) {
+			invoke.u1(0);
+		}
+		final int defaultOffset = invoke.size();
+		invoke.u4(0);
+		invoke.u4(0);
+		invoke.u4(members.length - 1);
+		final int offsets = invoke.size();
+		for (int i = 0; i < members.length; i++) {
+			invoke.u4(0);
+		}
+
+		int maxStack = 2;
+		for (int i = 0; i < members.length; i++) {
+			invoke.patchU4(offsets + 4 * i, invoke.size() - switchPosition);
+			maxStack = Math.max(maxStack, assembleCase(invoke, pool, members[i]));
+		}
+
+		invoke.patchU4(defaultOffset, invoke.size() - switchPosition);
+		final String exception = IllegalArgumentException.class.getName().replace('.', '/');
+		invoke.u1(NEW).u2(pool.classRef(exception));
+		invoke.u1(DUP);
+		invoke.u1(INVOKESPECIAL).u2(pool.methodRef(exception, "<init>", "()V", false));
+		invoke.u1(ATHROW);
+
+		final int code = pool.utf8("Code");
+		final int initName = pool.utf8("<init>");
+		final int initDescriptor = pool.utf8("()V");
+		final int invokeName = pool.utf8("invoke");
+		final int invokeDescriptor = pool.utf8(INVOKE_DESCRIPTOR);
+
+		final ByteVector classFile = new ByteVector();
+		classFile.u4(0xcafebabe).u2(0).u2(CLASS_FILE_VERSION);
+		pool.writeTo(classFile);
+		classFile.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC);
+		classFile.u2(thisClass).u2(superClass);
+		classFile.u2(0); // interfaces
+		classFile.u2(0); // fields
+		classFile.u2(2); // methods
+		writeMethod(classFile, ACC_PUBLIC, initName, initDescriptor, code, 1, 1, init);
+		writeMethod(classFile, ACC_PUBLIC | ACC_VARARGS, invokeName, invokeDescriptor, code, maxStack, 4, invoke);
+		classFile.u2(0); // attributes
+		return classFile.toByteArray();
+	}
+
+	/**
+	 * @return the maximum operand stack depth of the case.
+	 */
+	private static int assembleCase(final ByteVector code, final ConstantPool pool, final Member member) {
+		final String owner = internalName(member.getDeclaringClass());
+		final Class<?> parameterTypes[];
+		int stack;
+		if (member instanceof Method) {
+			final Method method = (Method) member;
+			parameterTypes = method.getParameterTypes();
+			if (isStatic(method.getModifiers())) {
+				stack = 0;
+			} else {
+				code.u1(ALOAD_2);
+				code.u1(CHECKCAST).u2(pool.classRef(owner));
+				stack = 1;
+			}
+		} else {
+			parameterTypes = ((Constructor<?>) member).getParameterTypes();
+			code.u1(NEW).u2(pool.classRef(owner));
+			code.u1(DUP);
+			stack = 2;
+		}
+
+		int maxStack = stack;
+		for (int j = 0; j < parameterTypes.length; j++) {
+			code.u1(ALOAD_3);
+			push(code, j);
+			code.u1(AALOAD);
+			maxStack = Math.max(maxStack, stack + 2);
+			unbox(code, pool, parameterTypes[j]);
+			stack += size(parameterTypes[j]);
+			maxStack = Math.max(maxStack, stack);
+		}
+
+		final StringBuilder descriptor = new StringBuilder("(");
+		for (final Class<?> parameterType : parameterTypes) {
+			descriptor.append(descriptor(parameterType));
+		}
+		descriptor.append(')');
+
+		if (member instanceof Method) {
+			final Method method = (Method) member;
+			final Class<?> returnType = method.getReturnType();
+			descriptor.append(descriptor(returnType));
+			if (isStatic(method.getModifiers())) {
+				code.u1(INVOKESTATIC).u2(pool.methodRef(owner, method.getName(), descriptor.toString(), false));
+			} else if (method.getDeclaringClass().isInterface()) {
+				code.u1(INVOKEINTERFACE).u2(pool.methodRef(owner, method.getName(), descriptor.toString(), true));
+				code.u1(stack).u1(0);
+			} else {
+				code.u1(INVOKEVIRTUAL).u2(pool.methodRef(owner, method.getName(), descriptor.toString(), false));
+			}
+			maxStack = Math.max(maxStack, size(returnType));
+			box(code, pool, returnType);
+		} else {
+			descriptor.append('V');
+			code.u1(INVOKESPECIAL).u2(pool.methodRef(owner, "<init>", descriptor.toString(), false));
+		}
+		code.u1(ARETURN);
+		return Math.max(maxStack, 1);
+	}
+
+	private static void push(final ByteVector code, final int value) {
+		if (value <= 5) {
+			code.u1(ICONST_0 + value);
+		} else if (value <= Byte.MAX_VALUE) {
+			code.u1(BIPUSH).u1(value);
+		} else {
+			code.u1(SIPUSH).u2(value);
+		}
+	}
+
+	private static void unbox(final ByteVector code, final ConstantPool pool, final Class<?> type) {
+		if (type.isPrimitive()) {
+			final String wrapper = internalName(WRAPPERS.get(type));
+			code.u1(CHECKCAST).u2(pool.classRef(wrapper));
+			code.u1(INVOKEVIRTUAL).u2(pool.methodRef(wrapper, type.getName() + "Value", "()" + descriptor(type), false));
+		} else if (type != Object.class) {
+			code.u1(CHECKCAST).u2(pool.classRef(internalName(type)));
+		}
+	}
+
+	private static void box(final ByteVector code, final ConstantPool pool, final Class<?> type) {
+		if (type == Void.TYPE) {
+			code.u1(ACONST_NULL);
+		} else if (type.isPrimitive()) {
+			final Class<?> wrapper = WRAPPERS.get(type);
+			code.u1(INVOKESTATIC).u2(pool.methodRef(internalName(wrapper), "valueOf", '(' + descriptor(type) + ')' + descriptor(wrapper), false));
+		}
+	}
+
+	private static int size(final Class<?> type) {
+		return type == Void.TYPE ? 0 : type == Long.TYPE || type == Double.TYPE ? 2 : 1;
+	}
+
+	/**
+	 * @return the internal name of a class, or the descriptor of an
+	 *         array class, as used by <code>CONSTANT_Class</code>.
+	 */
+	private static String internalName(final Class<?> clazz) {
+		return clazz.isArray() ? descriptor(clazz) : clazz.getName().replace('.', '/');
+	}
+
+	private static String descriptor(final Class<?> clazz) {
+		if (clazz.isArray()) {
+			return clazz.getName().replace('.', '/');
+		} else if (clazz == Boolean.TYPE) {
+			return "Z";
+		} else if (clazz == Byte.TYPE) {
+			return "B";
+		} else if (clazz == Character.TYPE) {
+			return "C";
+		} else if (clazz == Double.TYPE) {
+			return "D";
+		} else if (clazz == Float.TYPE) {
+			return "F";
+		} else if (clazz == Integer.TYPE) {
+			return "I";
+		} else if (clazz == Long.TYPE) {
+			return "J";
+		} else if (clazz == Short.TYPE) {
+			return "S";
+		} else if (clazz == Void.TYPE) {
+			return "V";
+		}
+		return 'L' + internalName(clazz) + ';';
+	}
+
+	private static void writeMethod(final ByteVector classFile,
+			final int access,
+			final int name,
+			final int descriptor,
+			final int codeAttribute,
+			final int maxStack,
+			final int maxLocals,
+			final ByteVector code) {
+		classFile.u2(access).u2(name).u2(descriptor);
+		classFile.u2(1); // attributes
+		classFile.u2(codeAttribute).u4(12 + code.size());
+		classFile.u2(maxStack).u2(maxLocals);
+		classFile.u4(code.size()).bytes(code);
+		classFile.u2(0); // exception table
+		classFile.u2(0); // attributes
+	}
+
+	/**
+	 * <p>A growable array of big-endian bytes.</p>
+	 */
+	private static final class ByteVector {
+		private byte data[] = new byte[256];
+
+		private int length;
+
+		ByteVector() {
+			// empty
+		}
+
+		private void ensureCapacity(final int extra) {
+			if (this.length + extra > this.data.length) {
+				this.data = Arrays.copyOf(this.data, Math.max(2 * this.data.length, this.length + extra));
+			}
+		}
+
+		ByteVector u1(final int value) {
+			this.ensureCapacity(1);
+			this.data[this.length++] = (byte) value;
+			return this;
+		}
+
+		ByteVector u2(final int value) {
+			return this.u1(value >>> 8).u1(value);
+		}
+
+		ByteVector u4(final int value) {
+			return this.u2(value >>> 16).u2(value);
+		}
+
+		ByteVector bytes(final ByteVector other) {
+			this.ensureCapacity(other.length);
+			System.arraycopy(other.data, 0, this.data, this.length, other.length);
+			this.length += other.length;
+			return this;
+		}
+
+		void patchU4(final int position, final int value) {
+			this.data[position] = (byte) (value >>> 24);
+			this.data[position + 1] = (byte) (value >>> 16);
+			this.data[position + 2] = (byte) (value >>> 8);
+			this.data[position + 3] = (byte) value;
+		}
+
+		int size() {
+			return this.length;
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(this.data, this.length);
+		}
+	}
+
+	/**
+	 * <p>The constant pool of the generated class.  Equal entries are
+	 * only added once.</p>
+	 */
+	private static final class ConstantPool {
+		private static final int CONSTANT_UTF8 = 1;
+
+		private static final int CONSTANT_CLASS = 7;
+
+		private static final int CONSTANT_METHODREF = 10;
+
+		private static final int CONSTANT_INTERFACE_METHODREF = 11;
+
+		private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+		private final ByteVector entries = new ByteVector();
+
+		private final Map<String, Integer> indices = new HashMap<String, Integer>();
+
+		private int count = 1;
+
+		ConstantPool() {
+			// empty
+		}
+
+		int utf8(final String value) {
+			final String key = "U" + value;
+			final Integer index = this.indices.get(key);
+			if (index != null) {
+				return index.intValue();
+			}
+			this.entries.u1(CONSTANT_UTF8);
+			final int start = this.entries.size();
+			this.entries.u2(0);
+			for (int i = 0; i < value.length(); i++) {
+				final char c = value.charAt(i);
+				if (c >= 0x0001 && c <= 0x007f) {
+					this.entries.u1(c);
+				} else if (c <= 0x07ff) {
+					this.entries.u1(0xc0 | c >> 6 & 0x1f).u1(0x80 | c & 0x3f);
+				} else {
+					this.entries.u1(0xe0 | c >> 12 & 0x0f).u1(0x80 | c >> 6 & 0x3f).u1(0x80 | c & 0x3f);
+				}
+			}
+			final int length = this.entries.size() - start - 2;
+			this.entries.data[start] = (byte) (length >>> 8);
+			this.entries.data[start + 1] = (byte) length;
+			return this.add(key);
+		}
+
+		int classRef(final String internalName) {
+			final String key = "C" + internalName;
+			final Integer index = this.indices.get(key);
+			if (index != null) {
+				return index.intValue();
+			}
+			final int name = this.utf8(internalName);
+			this.entries.u1(CONSTANT_CLASS).u2(name);
+			return this.add(key);
+		}
+
+		int methodRef(final String owner, final String name, final String descriptor, final boolean isInterface) {
+			final String key = (isInterface ? "I" : "M") + owner + '.' + name + descriptor;
+			final Integer index = this.indices.get(key);
+			if (index != null) {
+				return index.intValue();
+			}
+			final int ownerIndex = this.classRef(owner);
+			final int nameAndType = this.nameAndType(name, descriptor);
+			this.entries.u1(isInterface ? CONSTANT_INTERFACE_METHODREF : CONSTANT_METHODREF).u2(ownerIndex).u2(nameAndType);
+			return this.add(key);
+		}
+
+		private int nameAndType(final String name, final String descriptor) {
+			final String key = "N" + name + ':' + descriptor;
+			final Integer index = this.indices.get(key);
+			if (index != null) {
+				return index.intValue();
+			}
+			final int nameIndex = this.utf8(name);
+			final int descriptorIndex = this.utf8(descriptor);
+			this.entries.u1(CONSTANT_NAME_AND_TYPE).u2(nameIndex).u2(descriptorIndex);
+			return this.add(key);
+		}
+
+		private int add(final String key) {
+			final int index = this.count++;
+			this.indices.put(key, Integer.valueOf(index));
+			return index;
+		}
+
+		void writeTo(final ByteVector classFile) {
+			classFile.u2(this.count).bytes(this.entries);
+		}
+	}
+
+	/**
+	 * <p>Defines a single generated class.  {@link MemberInvoker} is
+	 * always resolved to the class this library defines, even if the
+	 * parent class loader cannot see it.</p>
+	 */
+	private static final class GeneratorLoader extends ClassLoader {
+		GeneratorLoader(final ClassLoader parent) {
+			super(parent);
+		}
+
+		/**
+		 * @see ClassLoader#loadClass(String, boolean)
+		 */
+		@Override
+		protected Class<?> loadClass(final String name, final boolean resolve)
+		throws ClassNotFoundException {
+			return name.equals(MemberInvoker.class.getName())
+					? MemberInvoker.class
+					: super.loadClass(name, resolve);
+		}
+
+		Class<?> define(final String name, final byte classFile[]) {
+			return this.defineClass(name, classFile, 0, classFile.length);
+		}
+	}
+}
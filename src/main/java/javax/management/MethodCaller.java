@@ -0,0 +1,45 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * <p>Calls a method of a management interface on behalf of
+ * {@link MBeanDispatcher}.</p>
+ *
+ * <p>This implementation uses reflection.  On Java 17 and later, the
+ * multi-release JAR replaces it with one which calls the method through
+ * a <code>MethodHandle</code>, with the same behaviour.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+final class MethodCaller {
+	private final Method method;
+
+	private MethodCaller(final Method method) {
+		this.method = method;
+	}
+
+	/**
+	 * @param method the method, already made accessible if necessary.
+	 * @return a caller for <code>method</code>.
+	 */
+	static MethodCaller forMethod(final Method method) {
+		return new MethodCaller(method);
+	}
+
+	Method getMethod() {
+		return this.method;
+	}
+
+	/**
+	 * @see Method#invoke(Object, Object[])
+	 */
+	Object call(final Object target, final Object args[])
+	throws IllegalAccessException, InvocationTargetException {
+		return this.method.invoke(target, args);
+	}
+}
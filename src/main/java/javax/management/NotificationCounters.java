@@ -0,0 +1,75 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>The numbers of notifications dropped and coalesced by an
+ * {@link AnnotatedNotificationEmitter}, per notification type.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+final class NotificationCounters {
+	private final ConcurrentMap<String, AtomicLong> dropped = new ConcurrentHashMap<String, AtomicLong>();
+
+	private final ConcurrentMap<String, AtomicLong> coalesced = new ConcurrentHashMap<String, AtomicLong>();
+
+	void dropped(final Notification notification) {
+		increment(this.dropped, notification);
+	}
+
+	void coalesced(final Notification notification) {
+		increment(this.coalesced, notification);
+	}
+
+	long getDroppedCount() {
+		return total(this.dropped);
+	}
+
+	long getCoalescedCount() {
+		return total(this.coalesced);
+	}
+
+	Map<String, Long> getDroppedCounts() {
+		return snapshot(this.dropped);
+	}
+
+	Map<String, Long> getCoalescedCounts() {
+		return snapshot(this.coalesced);
+	}
+
+	private static void increment(final ConcurrentMap<String, AtomicLong> counters, final Notification notification) {
+		final String type = String.valueOf(notification.getType());
+		AtomicLong counter = counters.get(type);
+		if (counter == null) {
+			final AtomicLong newCounter = new AtomicLong();
+			counter = counters.putIfAbsent(type, newCounter);
+			if (counter == null) {
+				counter = newCounter;
+			}
+		}
+		counter.incrementAndGet();
+	}
+
+	private static long total(final ConcurrentMap<String, AtomicLong> counters) {
+		long total = 0;
+		for (final AtomicLong counter : counters.values()) {
+			total += counter.get();
+		}
+		return total;
+	}
+
+	private static Map<String, Long> snapshot(final ConcurrentMap<String, AtomicLong> counters) {
+		final Map<String, Long> snapshot = new TreeMap<String, Long>();
+		for (final Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+			snapshot.put(entry.getKey(), Long.valueOf(entry.getValue().get()));
+		}
+		return snapshot;
+	}
+}
@@ -0,0 +1,288 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>The listeners of an {@link AnnotatedNotificationEmitter}, indexed
+ * by the notification types it declares.</p>
+ *
+ * <p>A listener without a filter, or whose filter is a plain
+ * {@link NotificationFilterSupport}, only depends on the notification
+ * type, so whether it is enabled for each declared type is computed
+ * once, when the index is built: dispatching a notification of a
+ * declared type is then a hash lookup of the type, which yields the
+ * listeners to call, without calling any of these filters.  Other
+ * filters are still called for each notification.  Notifications of
+ * undeclared types are matched against every listener.</p>
+ *
+ * <p>The enabled types of a <code>NotificationFilterSupport</code> may
+ * still be changed after its listener has been added, so the index
+ * keeps a copy of them, which the emitter compares with the filter
+ * (see {@link #isCurrent()}) before it delivers each batch of
+ * notifications, and before it discards a notification which is not
+ * routed to any listener.</p>
+ *
+ * <p>An index is immutable: adding or removing a listener, or changing
+ * the enabled types of a filter, builds a new one.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+final class NotificationDispatchIndex {
+	private static final Registration NO_REGISTRATIONS[] = {};
+
+	static final NotificationDispatchIndex EMPTY = new NotificationDispatchIndex(new ArrayList<String>(), NO_REGISTRATIONS);
+
+	private final Registration registrations[];
+
+	/**
+	 * The registrations whose filter is a
+	 * <code>NotificationFilterSupport</code>.
+	 */
+	private final Registration filterSupportRegistrations[];
+
+	/**
+	 * Declared type -&gt; the registrations which may be enabled for it.
+	 */
+	private final Map<String, Registration[]> routes;
+
+	/**
+	 * @param declaredTypes the declared notification types.
+	 * @param registrations the registrations, in order.
+	 */
+	NotificationDispatchIndex(final Collection<String> declaredTypes, final Registration registrations[]) {
+		this.registrations = registrations;
+		final List<Registration> filterSupportRegistrations = new ArrayList<Registration>();
+		for (final Registration registration : registrations) {
+			if (registration.enabledTypes != null) {
+				filterSupportRegistrations.add(registration);
+			}
+		}
+		this.filterSupportRegistrations = filterSupportRegistrations.isEmpty()
+				? NO_REGISTRATIONS
+				: filterSupportRegistrations.toArray(new Registration[filterSupportRegistrations.size()]);
+		this.routes = new HashMap<String, Registration[]>();
+		final List<Registration> route = new ArrayList<Registration>();
+		for (final String type : declaredTypes) {
+			route.clear();
+			for (final Registration registration : registrations) {
+				if (!registration.isTypeFilter() || registration.isTypeEnabled(type)) {
+					route.add(registration);
+				}
+			}
+			this.routes.put(type, route.isEmpty() ? NO_REGISTRATIONS : route.toArray(new Registration[route.size()]));
+		}
+	}
+
+	Registration[] getRegistrations() {
+		return this.registrations;
+	}
+
+	/**
+	 * @return whether the enabled types of every
+	 *         <code>NotificationFilterSupport</code> are still those this
+	 *         index has been built with.
+	 */
+	boolean isCurrent() {
+		for (final Registration registration : this.filterSupportRegistrations) {
+			if (!registration.isCurrent()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param declaredTypes the declared notification types.
+	 * @return an index of the same listeners, with the current enabled
+	 *         types of their filters.
+	 */
+	NotificationDispatchIndex refresh(final Collection<String> declaredTypes) {
+		final Registration newRegistrations[] = this.registrations.clone();
+		for (int i = 0; i < newRegistrations.length; i++) {
+			final Registration registration = newRegistrations[i];
+			if (!registration.isCurrent()) {
+				newRegistrations[i] = new Registration(registration.listener,
+						registration.filter,
+						registration.handback,
+						registration.queue,
+						registration.replay);
+			}
+		}
+		return new NotificationDispatchIndex(declaredTypes, newRegistrations);
+	}
+
+	/**
+	 * @return whether a notification of type <code>type</code> may be
+	 *         delivered to any listener.
+	 */
+	boolean isRouted(final String type) {
+		final Registration route[] = type == null ? null : this.routes.get(type);
+		return route == null ? this.registrations.length != 0 : route.length != 0;
+	}
+
+	/**
+	 * <p>Deliver a notification to the listeners enabled for it.</p>
+	 *
+	 * @param sequence the journal sequence number of the notification,
+	 *        or <code>-1</code> if there is no journal.
+	 */
+	void dispatch(final Notification notification, final long sequence) {
+		final String type = notification.getType();
+		final Registration route[] = type == null ? null : this.routes.get(type);
+		if (route == null) {
+			for (final Registration registration : this.registrations) {
+				registration.deliver(notification, sequence);
+			}
+		} else {
+			for (final Registration registration : route) {
+				registration.deliverRouted(notification, sequence);
+			}
+		}
+	}
+
+	/**
+	 * <p>A listener, with its filter, its handback, and its queue and
+	 * its journal replay, if any.</p>
+	 */
+	static final class Registration {
+		final NotificationListener listener;
+
+		final NotificationFilter filter;
+
+		final Object handback;
+
+		/**
+		 * The queue the enabled notifications go through, or
+		 * <code>null</code> if the listener is called directly.
+		 */
+		final ListenerQueue queue;
+
+		/**
+		 * The replay of the journal to the listener, or
+		 * <code>null</code> if the listener only receives live
+		 * notifications.
+		 */
+		final JournalReplay replay;
+
+		/**
+		 * Whether {@link #filter} only depends on the notification
+		 * type.
+		 */
+		private final boolean typeFilter;
+
+		/**
+		 * A copy of the enabled type prefixes of a
+		 * <code>NotificationFilterSupport</code>, or <code>null</code>
+		 * if all types are enabled, or if the filter is of another
+		 * class.
+		 */
+		final List<String> enabledTypes;
+
+		/**
+		 * <p>The enabled types of a <code>NotificationFilterSupport</code>
+		 * are copied here: {@link #isCurrent()} tells whether they have
+		 * changed since.</p>
+		 */
+		Registration(final NotificationListener listener,
+				final NotificationFilter filter,
+				final Object handback,
+				final ListenerQueue queue,
+				final JournalReplay replay) {
+			this.listener = listener;
+			this.filter = filter;
+			this.handback = handback;
+			this.queue = queue;
+			this.replay = replay;
+			if (filter == null) {
+				this.typeFilter = true;
+				this.enabledTypes = null;
+			} else if (filter.getClass() == NotificationFilterSupport.class) {
+				this.typeFilter = true;
+				this.enabledTypes = new ArrayList<String>(((NotificationFilterSupport) filter).getEnabledTypes());
+			} else {
+				this.typeFilter = false;
+				this.enabledTypes = null;
+			}
+		}
+
+		boolean isTypeFilter() {
+			return this.typeFilter;
+		}
+
+		/**
+		 * @return whether the enabled types of the filter are still those
+		 *         copied when this registration has been built.
+		 */
+		boolean isCurrent() {
+			return this.enabledTypes == null
+					|| this.enabledTypes.equals(((NotificationFilterSupport) this.filter).getEnabledTypes());
+		}
+
+		/**
+		 * @see NotificationFilterSupport#isNotificationEnabled(Notification)
+		 */
+		boolean isTypeEnabled(final String type) {
+			if (this.enabledTypes == null) {
+				return true;
+			}
+			for (final String prefix : this.enabledTypes) {
+				if (type.startsWith(prefix)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * <p>Deliver a notification, if the filter enables it.</p>
+		 */
+		void deliver(final Notification notification, final long sequence) {
+			if (this.replay != null && !this.replay.isLive(sequence)) {
+				return;
+			}
+			try {
+				final boolean enabled = this.typeFilter
+						? this.enabledTypes == null || notification.getType() != null && this.isTypeEnabled(notification.getType())
+						: this.filter.isNotificationEnabled(notification);
+				if (enabled) {
+					this.handle(notification);
+				}
+			} catch (final RuntimeException ignored) {
+				// Ignore.
+			}
+		}
+
+		/**
+		 * <p>Deliver a notification of a type this registration has been
+		 * routed for: only filters which do not only depend on the type
+		 * are called.</p>
+		 */
+		void deliverRouted(final Notification notification, final long sequence) {
+			if (this.replay != null && !this.replay.isLive(sequence)) {
+				return;
+			}
+			try {
+				if (this.typeFilter || this.filter.isNotificationEnabled(notification)) {
+					this.handle(notification);
+				}
+			} catch (final RuntimeException ignored) {
+				// Ignore.
+			}
+		}
+
+		private void handle(final Notification notification) {
+			if (this.queue == null) {
+				this.listener.handleNotification(notification, this.handback);
+			} else {
+				this.queue.offer(notification);
+			}
+		}
+	}
+}
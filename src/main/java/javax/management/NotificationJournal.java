@@ -0,0 +1,1316 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.OpenValueDecoder;
+import javax.management.openmbean.OpenValueEncoder;
+import javax.management.openmbean.TabularData;
+
+/**
+ * <p>An append-only journal of the notifications sent through an
+ * {@link AnnotatedNotificationEmitter}, which lets listeners added
+ * later receive the notifications they have missed before the live
+ * ones.</p>
+ *
+ * <p>The journal is a directory of segment files, each mapped into
+ * memory, so the history is kept by the operating system rather than on
+ * the heap.  Each notification is appended as a compact binary record,
+ * and numbered with a journal sequence number, which starts from
+ * <code>0</code> and is independent of the notification's own sequence
+ * number.  When the current segment is full, a new one is started, and
+ * the oldest segments are deleted while the journal is larger than the
+ * {@linkplain Options#getMaxRetainedBytes() retained size}, or older
+ * than the {@linkplain Options#getMaxRetainedMillis() retained
+ * time}.</p>
+ *
+ * <p>A record holds the type, the message, the sequence number and the
+ * time stamp of the notification, its user data, and, for an
+ * {@link AttributeChangeNotification}, the attribute name and type and
+ * the old and new values.  Notifications of other subclasses are
+ * replayed as plain <code>Notification</code>s.  The source of a
+ * notification, typically the MBean itself, is never written: the
+ * record holds the object name of the emitting MBean instead, or the
+ * source if it is an <code>ObjectName</code>, and the notification is
+ * replayed with that name as its source, or with
+ * {@link #UNNAMED_SOURCE} if there is none.  Values of the
+ * simple open types are written as a one-byte tag followed by their
+ * content, composite and tabular data are written with an
+ * {@link OpenValueEncoder}, without any type information but the index
+ * of their Open Type in the type table of the segment, other
+ * serializable values are serialized, and the other values are replaced
+ * with their string form, or with <code>null</code> if none of these
+ * succeeds.  A value whose class cannot be loaded when
+ * it is replayed is replaced with <code>null</code>.</p>
+ *
+ * <p>The schema of each Open Type is written once per segment, before
+ * the first record which uses it, so that the records of a
+ * notification type whose user data or attribute values are composite
+ * or tabular do not repeat it.</p>
+ *
+ * <p>The records are written to the mapped segments, but the segments
+ * are only forced to the storage device when they are full or the
+ * journal is closed: the journal survives the crash of the JVM, not
+ * necessarily the one of the operating system.  A journal directory
+ * must not be used by more than one <code>NotificationJournal</code> at
+ * a time.  A journal can be opened again, and then continues with the
+ * next sequence number.</p>
+ *
+ * <p>This class is not present in the original <a href =
+ * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+ * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+ * </p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see AnnotatedNotificationEmitter.Options#setJournal(NotificationJournal)
+ * @see AnnotatedNotificationEmitter#addNotificationListenerFromSequence(NotificationListener, NotificationFilter, Object, long)
+ * @see AnnotatedNotificationEmitter#addNotificationListenerFromTime(NotificationListener, NotificationFilter, Object, long)
+ */
+public final class NotificationJournal {
+	/**
+	 * <p>The source of the notifications replayed without an object
+	 * name, because their emitter had none when they were
+	 * journaled.</p>
+	 *
+	 * @see AnnotatedNotificationEmitter#setObjectName(ObjectName)
+	 */
+	public static final String UNNAMED_SOURCE = "unnamed";
+
+	private static final int MAGIC = 0x4e4a4e33;
+
+	/**
+	 * The magic number and the sequence number of the first record.
+	 */
+	private static final int HEADER_SIZE = 12;
+
+	private static final String SUFFIX = ".journal";
+
+	private static final int PLAIN = 0;
+
+	private static final int ATTRIBUTE_CHANGE = 1;
+
+	private static final int NULL_VALUE = 0;
+
+	private static final int OPEN_VALUE = 1;
+
+	private static final int SERIALIZED_VALUE = 2;
+
+	private static final int STRING_VALUE = 3;
+
+	private static final int BOOLEAN_VALUE = 4;
+
+	private static final int CHARACTER_VALUE = 5;
+
+	private static final int BYTE_VALUE = 6;
+
+	private static final int SHORT_VALUE = 7;
+
+	private static final int INTEGER_VALUE = 8;
+
+	private static final int LONG_VALUE = 9;
+
+	private static final int FLOAT_VALUE = 10;
+
+	private static final int DOUBLE_VALUE = 11;
+
+	private static final int BIGDECIMAL_VALUE = 12;
+
+	private static final int BIGINTEGER_VALUE = 13;
+
+	private static final int DATE_VALUE = 14;
+
+	private static final int OBJECTNAME_VALUE = 15;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final File directory;
+
+	private final int segmentSize;
+
+	private final long maxRetainedBytes;
+
+	private final long maxRetainedMillis;
+
+	/**
+	 * The segments, oldest first; the last one is written to.  Guarded
+	 * by the lock of this object.
+	 */
+	private final List<Segment> segments = new ArrayList<Segment>();
+
+	private final RecordBuffer record = new RecordBuffer();
+
+	private final DataOutputStream recordOut = new DataOutputStream(this.record);
+
+	/**
+	 * The open value being encoded, aside from the record, so that a
+	 * failure cannot leave a partial value in the record.
+	 */
+	private final RecordBuffer openValue = new RecordBuffer();
+
+	private final DataOutputStream openValueOut = new DataOutputStream(this.openValue);
+
+	/**
+	 * The encoders of the Open Types of the current segment, which write
+	 * to {@link #openValueOut}.
+	 */
+	private final Map<OpenType<?>, OpenValueEncoder> encoders = new HashMap<OpenType<?>, OpenValueEncoder>();
+
+	/**
+	 * The Open Types used by the record being written which are not in
+	 * the type table of the segment yet, in the order of their indexes,
+	 * and their schemas.
+	 */
+	private final List<OpenType<?>> newTypes = new ArrayList<OpenType<?>>();
+
+	private final List<byte[]> newSchemas = new ArrayList<byte[]>();
+
+	/**
+	 * Only written under the lock of this object.
+	 */
+	private volatile long nextSequence;
+
+	private boolean closed;
+
+	/**
+	 * <p>Open the journal in <code>directory</code>, with the default
+	 * options, creating the directory if needed.</p>
+	 *
+	 * @param directory the directory of the segment files.
+	 * @throws IOException if the directory cannot be created, or a
+	 *         segment file cannot be read.
+	 */
+	public NotificationJournal(final File directory) throws IOException {
+		this(directory, null);
+	}
+
+	/**
+	 * <p>Open the journal in <code>directory</code>, with the given
+	 * options, creating the directory if needed.</p>
+	 *
+	 * @param directory the directory of the segment files.
+	 * @param options the options, or <code>null</code> for the default
+	 *        ones.
+	 * @throws IOException if the directory cannot be created, or a
+	 *         segment file cannot be read.
+	 */
+	public NotificationJournal(final File directory, final Options options) throws IOException {
+		if (directory == null) {
+			throw new IllegalArgumentException("directory is null");
+		}
+		final Options effectiveOptions = options == null ? new Options() : options;
+		this.directory = directory;
+		this.segmentSize = effectiveOptions.getSegmentSize();
+		this.maxRetainedBytes = effectiveOptions.getMaxRetainedBytes();
+		this.maxRetainedMillis = effectiveOptions.getMaxRetainedMillis();
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create directory: " + directory);
+		}
+		final File files[] = directory.listFiles(new FileFilter() {
+			/**
+			 * @see FileFilter#accept(File)
+			 */
+			public boolean accept(final File file) {
+				return file.isFile() && file.getName().endsWith(SUFFIX);
+			}
+		});
+		if (files == null) {
+			throw new IOException("Cannot list directory: " + directory);
+		}
+		for (final File file : files) {
+			this.segments.add(Segment.open(file));
+		}
+		Collections.sort(this.segments, new Comparator<Segment>() {
+			/**
+			 * @see Comparator#compare(Object, Object)
+			 */
+			public int compare(final Segment segment1, final Segment segment2) {
+				return segment1.firstSequence < segment2.firstSequence
+						? -1
+						: segment1.firstSequence == segment2.firstSequence ? 0 : 1;
+			}
+		});
+		if (this.segments.isEmpty()) {
+			this.segments.add(Segment.create(this.directory, 0, this.segmentSize));
+		}
+		this.nextSequence = this.activeSegment().nextSequence;
+		synchronized (this) {
+			this.retain();
+		}
+	}
+
+	/**
+	 * @return the directory of the segment files.
+	 */
+	public File getDirectory() {
+		return this.directory;
+	}
+
+	/**
+	 * @return the sequence number of the oldest record retained.
+	 */
+	public synchronized long getFirstSequence() {
+		return this.segments.get(0).firstSequence;
+	}
+
+	/**
+	 * @return the sequence number of the next record appended.
+	 */
+	public long getNextSequence() {
+		return this.nextSequence;
+	}
+
+	/**
+	 * <p>Force the current segment to the storage device and stop
+	 * accepting records.  The records already appended can still be
+	 * replayed.  Closing a journal which is already closed has no
+	 * effect.</p>
+	 */
+	public synchronized void close() {
+		if (!this.closed) {
+			this.closed = true;
+			this.activeSegment().buffer.force();
+		}
+	}
+
+	private Segment activeSegment() {
+		return this.segments.get(this.segments.size() - 1);
+	}
+
+	/**
+	 * <p>Append a notification, rolling to a new segment if the current
+	 * one is full, or growing the current one if it is still empty.</p>
+	 *
+	 * @param notification the notification.
+	 * @param objectName the object name of the emitting MBean, or
+	 *        <code>null</code> if it is unknown.
+	 * @return the sequence number of the record.
+	 * @throws IOException if the journal is closed, or a new segment
+	 *         cannot be created.
+	 */
+	synchronized long append(final Notification notification, final ObjectName objectName) throws IOException {
+		if (this.closed) {
+			throw new IOException("Journal closed: " + this.directory);
+		}
+		Segment segment = this.activeSegment();
+		int length = this.writeRecord(segment.typeIndexes, notification, objectName);
+		if (segment.nextSequence == segment.firstSequence && !segment.fits(this.entriesLength(length))) {
+			/*
+			 * An empty segment is grown in place rather than rolled: a
+			 * new segment would start at the same sequence number, and
+			 * so have the same file name.  Its type table is empty, so
+			 * the record needs not be written again.
+			 */
+			segment = Segment.create(this.directory, segment.firstSequence, HEADER_SIZE + this.entriesLength(length));
+			this.segments.set(this.segments.size() - 1, segment);
+		} else if (!segment.fits(this.entriesLength(length))) {
+			segment.buffer.force();
+			/*
+			 * Written again, with all its Open Types new to the new
+			 * segment.
+			 */
+			length = this.writeRecord(Collections.<OpenType<?>, Integer>emptyMap(), notification, objectName);
+			segment = Segment.create(this.directory, this.nextSequence, Math.max(this.segmentSize, HEADER_SIZE + this.entriesLength(length)));
+			this.segments.add(segment);
+			this.encoders.clear();
+			this.retain();
+		}
+		segment.append(this.newTypes, this.newSchemas, this.record.array(), length, notification.getTimeStamp());
+		return this.nextSequence++;
+	}
+
+	/**
+	 * @return the size of the entries of the record just written, and of
+	 *         its new Open Types.
+	 */
+	private int entriesLength(final int length) {
+		int entriesLength = 4 + length;
+		for (final byte schema[] : this.newSchemas) {
+			entriesLength += 4 + schema.length;
+		}
+		return entriesLength;
+	}
+
+	/**
+	 * <p>Delete the oldest segments, but the current one, while the
+	 * journal is too large or they are too old.</p>
+	 */
+	private void retain() {
+		assert Thread.holdsLock(this);
+		long size = 0;
+		for (final Segment segment : this.segments) {
+			size += segment.buffer.capacity();
+		}
+		final long oldestRetained = System.currentTimeMillis() - this.maxRetainedMillis;
+		while (this.segments.size() > 1) {
+			final Segment oldest = this.segments.get(0);
+			if (size <= this.maxRetainedBytes && oldest.maxTimeStamp >= oldestRetained) {
+				break;
+			}
+			this.segments.remove(0);
+			size -= oldest.buffer.capacity();
+			/*
+			 * Cursors may still be reading the segment: its mapping
+			 * stays valid until it is garbage collected.  On platforms
+			 * which do not delete mapped files, it is deleted when the
+			 * journal is opened again.
+			 */
+			if (!this.isInUse(oldest.file)) {
+				oldest.file.delete();
+			}
+		}
+	}
+
+	/**
+	 * @return whether <code>file</code> backs one of the segments
+	 *         retained.
+	 */
+	private boolean isInUse(final File file) {
+		assert Thread.holdsLock(this);
+		for (final Segment segment : this.segments) {
+			if (segment.file.equals(file)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param loader the class loader which resolves the classes of the
+	 *        serialized values, or <code>null</code> for the default one.
+	 * @return a cursor over the records from sequence number
+	 *         <code>sequence</code>, or from the oldest one retained if
+	 *         it has been deleted.
+	 */
+	synchronized Cursor fromSequence(final long sequence, final ClassLoader loader) {
+		Segment first = this.segments.get(0);
+		for (final Segment segment : this.segments) {
+			if (segment.firstSequence > sequence) {
+				break;
+			}
+			first = segment;
+		}
+		return new Cursor(this, first, sequence, Long.MIN_VALUE, loader);
+	}
+
+	/**
+	 * @param loader the class loader which resolves the classes of the
+	 *        serialized values, or <code>null</code> for the default one.
+	 * @return a cursor over the records of the notifications whose time
+	 *         stamp is <code>timeStamp</code> or later.
+	 */
+	synchronized Cursor fromTime(final long timeStamp, final ClassLoader loader) {
+		Segment first = this.activeSegment();
+		for (final Segment segment : this.segments) {
+			if (segment.maxTimeStamp >= timeStamp) {
+				first = segment;
+				break;
+			}
+		}
+		return new Cursor(this, first, Long.MIN_VALUE, timeStamp, loader);
+	}
+
+	/**
+	 * @return the oldest segment more recent than <code>segment</code>,
+	 *         or <code>null</code> if there is none.
+	 */
+	synchronized Segment nextSegment(final Segment segment) {
+		for (final Segment next : this.segments) {
+			/*
+			 * An empty segment which has been grown is replaced with
+			 * one which starts at the same sequence number.
+			 */
+			if (next.firstSequence > segment.firstSequence
+					|| next.firstSequence == segment.firstSequence && next != segment) {
+				return next;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * <p>Write a record to {@link #record}, and the Open Types it uses
+	 * which are not in <code>typeIndexes</code> to {@link #newTypes}.</p>
+	 *
+	 * @param typeIndexes the type table of the segment.
+	 * @return the length of the record.
+	 */
+	private int writeRecord(final Map<OpenType<?>, Integer> typeIndexes,
+			final Notification notification,
+			final ObjectName objectName)
+	throws IOException {
+		this.record.reset();
+		this.newTypes.clear();
+		this.newSchemas.clear();
+		final DataOutput out = this.recordOut;
+		out.writeLong(notification.getTimeStamp());
+		final boolean attributeChange = notification instanceof AttributeChangeNotification;
+		out.writeByte(attributeChange ? ATTRIBUTE_CHANGE : PLAIN);
+		out.writeLong(notification.getSequenceNumber());
+		writeString(out, notification.getType());
+		writeString(out, notification.getMessage());
+		final Object source = notification.getSource();
+		final ObjectName sourceName = objectName != null
+				? objectName
+				: source instanceof ObjectName ? (ObjectName) source : null;
+		writeString(out, sourceName == null ? null : sourceName.toString());
+		this.writeValue(out, typeIndexes, notification.getUserData());
+		if (attributeChange) {
+			final AttributeChangeNotification acn = (AttributeChangeNotification) notification;
+			writeString(out, acn.getAttributeName());
+			writeString(out, acn.getAttributeType());
+			this.writeValue(out, typeIndexes, acn.getOldValue());
+			this.writeValue(out, typeIndexes, acn.getNewValue());
+		}
+		return this.record.size();
+	}
+
+	/**
+	 * @param decoders the decoders of the type table of the segment,
+	 *        which read from <code>in</code>.
+	 */
+	private static Notification readRecord(final DataInput in, final ClassLoader loader, final List<OpenValueDecoder> decoders)
+	throws IOException {
+		final long timeStamp = in.readLong();
+		final int kind = in.readByte();
+		final long sequenceNumber = in.readLong();
+		final String type = readString(in);
+		final String message = readString(in);
+		final String sourceName = readString(in);
+		final Object source = sourceName == null ? UNNAMED_SOURCE : readObjectName(sourceName);
+		final Object userData = readValue(in, loader, decoders);
+		final Notification notification;
+		switch (kind) {
+		case PLAIN:
+			notification = new Notification(type, source, sequenceNumber, timeStamp, message);
+			break;
+		case ATTRIBUTE_CHANGE:
+			final String attributeName = readString(in);
+			final String attributeType = readString(in);
+			final Object oldValue = readValue(in, loader, decoders);
+			final Object newValue = readValue(in, loader, decoders);
+			notification = new AttributeChangeNotification(source,
+					sequenceNumber,
+					timeStamp,
+					message,
+					attributeName,
+					attributeType,
+					oldValue,
+					newValue);
+			break;
+		default:
+			throw new IOException("Unknown record kind: " + kind);
+		}
+		notification.setUserData(userData);
+		return notification;
+	}
+
+	private static void writeString(final DataOutput out, final String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+		} else {
+			final byte bytes[] = s.getBytes(UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(final DataInput in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		final byte bytes[] = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private void writeValue(final DataOutput out, final Map<OpenType<?>, Integer> typeIndexes, final Object value)
+	throws IOException {
+		if (value == null) {
+			out.writeByte(NULL_VALUE);
+			return;
+		}
+
+		if (writeSimpleValue(out, value) || this.writeOpenValue(out, typeIndexes, value)) {
+			return;
+		}
+
+		final byte serialized[] = value instanceof Serializable ? serialize(value) : null;
+		if (serialized != null) {
+			out.writeByte(SERIALIZED_VALUE);
+			writeBytes(out, serialized);
+			return;
+		}
+
+		final String string = stringOf(value);
+		if (string == null) {
+			out.writeByte(NULL_VALUE);
+		} else {
+			out.writeByte(STRING_VALUE);
+			writeString(out, string);
+		}
+	}
+
+	/**
+	 * <p>Write a value of a simple open type as its tag followed by its
+	 * content, without the header of an {@link OpenValueEncoder}.  Only
+	 * the exact classes of the simple types are written this way, so
+	 * that a subclass, such as <code>java.sql.Timestamp</code>, is
+	 * replayed as itself.</p>
+	 *
+	 * @return whether <code>value</code> has been written.
+	 */
+	private static boolean writeSimpleValue(final DataOutput out, final Object value) throws IOException {
+		final Class<?> clazz = value.getClass();
+		if (clazz == String.class) {
+			out.writeByte(STRING_VALUE);
+			writeString(out, (String) value);
+		} else if (clazz == Boolean.class) {
+			out.writeByte(BOOLEAN_VALUE);
+			out.writeBoolean(((Boolean) value).booleanValue());
+		} else if (clazz == Character.class) {
+			out.writeByte(CHARACTER_VALUE);
+			out.writeChar(((Character) value).charValue());
+		} else if (clazz == Byte.class) {
+			out.writeByte(BYTE_VALUE);
+			out.writeByte(((Byte) value).byteValue());
+		} else if (clazz == Short.class) {
+			out.writeByte(SHORT_VALUE);
+			out.writeShort(((Short) value).shortValue());
+		} else if (clazz == Integer.class) {
+			out.writeByte(INTEGER_VALUE);
+			out.writeInt(((Integer) value).intValue());
+		} else if (clazz == Long.class) {
+			out.writeByte(LONG_VALUE);
+			out.writeLong(((Long) value).longValue());
+		} else if (clazz == Float.class) {
+			out.writeByte(FLOAT_VALUE);
+			out.writeFloat(((Float) value).floatValue());
+		} else if (clazz == Double.class) {
+			out.writeByte(DOUBLE_VALUE);
+			out.writeDouble(((Double) value).doubleValue());
+		} else if (clazz == BigDecimal.class) {
+			final BigDecimal bigDecimal = (BigDecimal) value;
+			out.writeByte(BIGDECIMAL_VALUE);
+			out.writeInt(bigDecimal.scale());
+			writeBytes(out, bigDecimal.unscaledValue().toByteArray());
+		} else if (clazz == BigInteger.class) {
+			out.writeByte(BIGINTEGER_VALUE);
+			writeBytes(out, ((BigInteger) value).toByteArray());
+		} else if (clazz == Date.class) {
+			out.writeByte(DATE_VALUE);
+			out.writeLong(((Date) value).getTime());
+		} else if (clazz == ObjectName.class) {
+			out.writeByte(OBJECTNAME_VALUE);
+			writeString(out, value.toString());
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	private static void writeBytes(final DataOutput out, final byte bytes[]) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static byte[] readBytes(final DataInput in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0) {
+			throw new StreamCorruptedException("Negative length: " + length);
+		}
+		final byte bytes[] = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	/**
+	 * <p>Write a <code>CompositeData</code> or a <code>TabularData</code>
+	 * as its tag, the index of its Open Type in the type table of the
+	 * segment, and its content.  An Open Type which is not in the table
+	 * yet is added to {@link #newTypes}.</p>
+	 *
+	 * @return whether <code>value</code> has been written, i.e. whether
+	 *         it is a <code>CompositeData</code> or a
+	 *         <code>TabularData</code> which can be encoded.
+	 */
+	private boolean writeOpenValue(final DataOutput out, final Map<OpenType<?>, Integer> typeIndexes, final Object value)
+	throws IOException {
+		final OpenType<?> openType = value instanceof CompositeData
+				? ((CompositeData) value).getCompositeType()
+				: value instanceof TabularData
+						? ((TabularData) value).getTabularType()
+						: null;
+		if (openType == null) {
+			return false;
+		}
+
+		/*
+		 * The Open Types of the values of MXBeans are canonical, so the
+		 * maps mostly find them by reference.
+		 */
+		this.openValue.reset();
+		try {
+			OpenValueEncoder encoder = this.encoders.get(openType);
+			if (encoder == null) {
+				encoder = OpenValueEncoder.withoutHeader(openType, this.openValueOut);
+				this.encoders.put(openType, encoder);
+			}
+			encoder.encode(value);
+		} catch (final RuntimeException ignored) {
+			/*
+			 * A CompositeData or TabularData implementation which does
+			 * not match its own type.
+			 */
+			return false;
+		}
+
+		Integer index = typeIndexes.get(openType);
+		if (index == null) {
+			int newIndex = this.newTypes.indexOf(openType);
+			if (newIndex < 0) {
+				newIndex = this.newTypes.size();
+				final ByteArrayOutputStream schema = new ByteArrayOutputStream();
+				OpenValueEncoder.writeOpenType(openType, new DataOutputStream(schema));
+				this.newTypes.add(openType);
+				this.newSchemas.add(schema.toByteArray());
+			}
+			index = Integer.valueOf(typeIndexes.size() + newIndex);
+		}
+		out.writeByte(OPEN_VALUE);
+		out.writeInt(index.intValue());
+		out.write(this.openValue.array(), 0, this.openValue.size());
+		return true;
+	}
+
+	/**
+	 * @return the serialized form of <code>value</code>, or
+	 *         <code>null</code> if some of its fields are not
+	 *         serializable, or its serialization fails.
+	 */
+	private static byte[] serialize(final Object value) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			final ObjectOutputStream oos = new ObjectOutputStream(bytes);
+			oos.writeObject(value);
+			oos.close();
+			return bytes.toByteArray();
+		} catch (final IOException ignored) {
+			return null;
+		} catch (final RuntimeException ignored) {
+			/*
+			 * Thrown by a writeObject() method.
+			 */
+			return null;
+		}
+	}
+
+	/**
+	 * @return the string form of <code>value</code>, or
+	 *         <code>null</code> if its <code>toString()</code> method
+	 *         fails.
+	 */
+	private static String stringOf(final Object value) {
+		try {
+			return String.valueOf(value);
+		} catch (final RuntimeException ignored) {
+			return null;
+		}
+	}
+
+	private static Object readValue(final DataInput in, final ClassLoader loader, final List<OpenValueDecoder> decoders)
+	throws IOException {
+		final int tag = in.readByte();
+		switch (tag) {
+		case NULL_VALUE:
+			return null;
+		case OPEN_VALUE:
+			final int index = in.readInt();
+			if (index < 0 || index >= decoders.size()) {
+				throw new StreamCorruptedException("Unknown Open Type index: " + index);
+			}
+			return decoders.get(index).decode();
+		case SERIALIZED_VALUE:
+			final byte bytes[] = readBytes(in);
+			try {
+				final ObjectInputStream ois = new LoaderObjectInputStream(new ByteArrayInputStream(bytes), loader);
+				try {
+					return ois.readObject();
+				} finally {
+					ois.close();
+				}
+			} catch (final ClassNotFoundException ignored) {
+				return null;
+			}
+		case STRING_VALUE:
+			return readString(in);
+		case BOOLEAN_VALUE:
+			return Boolean.valueOf(in.readBoolean());
+		case CHARACTER_VALUE:
+			return Character.valueOf(in.readChar());
+		case BYTE_VALUE:
+			return Byte.valueOf(in.readByte());
+		case SHORT_VALUE:
+			return Short.valueOf(in.readShort());
+		case INTEGER_VALUE:
+			return Integer.valueOf(in.readInt());
+		case LONG_VALUE:
+			return Long.valueOf(in.readLong());
+		case FLOAT_VALUE:
+			return Float.valueOf(in.readFloat());
+		case DOUBLE_VALUE:
+			return Double.valueOf(in.readDouble());
+		case BIGDECIMAL_VALUE:
+			final int scale = in.readInt();
+			return new BigDecimal(new BigInteger(readBytes(in)), scale);
+		case BIGINTEGER_VALUE:
+			return new BigInteger(readBytes(in));
+		case DATE_VALUE:
+			return new Date(in.readLong());
+		case OBJECTNAME_VALUE:
+			return readObjectName(readString(in));
+		default:
+			throw new IOException("Unknown value tag: " + tag);
+		}
+	}
+
+	private static ObjectName readObjectName(final String name) throws IOException {
+		try {
+			return new ObjectName(name);
+		} catch (final MalformedObjectNameException mone) {
+			final StreamCorruptedException sce = new StreamCorruptedException("Malformed object name: " + name);
+			sce.initCause(mone);
+			throw sce;
+		} catch (final NullPointerException npe) {
+			throw new StreamCorruptedException("Missing object name");
+		}
+	}
+
+	/**
+	 * <p>A segment file, mapped into memory.  A segment is a header,
+	 * followed by entries, each of which is its length followed by its
+	 * content; the rest of the file is zero-filled.  An entry is either
+	 * a record, or, if its length is negative, the schema of the next
+	 * Open Type of the type table of the segment.  The length of an
+	 * entry is written after its content, so an entry is either
+	 * entirely written, or not at all.</p>
+	 */
+	static final class Segment {
+		final File file;
+
+		final long firstSequence;
+
+		/**
+		 * Never repositioned, so cursors can {@linkplain
+		 * ByteBuffer#duplicate() duplicate} it.
+		 */
+		final MappedByteBuffer buffer;
+
+		/**
+		 * The buffer written to, only used by the writer.
+		 */
+		private final ByteBuffer writer;
+
+		/**
+		 * The end of the last entry, only used by the writer.
+		 */
+		private int position;
+
+		/**
+		 * Open Type -&gt; its index in the type table of the segment,
+		 * only used by the writer.
+		 */
+		final Map<OpenType<?>, Integer> typeIndexes = new HashMap<OpenType<?>, Integer>();
+
+		/**
+		 * The sequence number after the last record, written after the
+		 * record itself, so that readers only read complete records.
+		 */
+		volatile long nextSequence;
+
+		/**
+		 * The latest time stamp of the records.
+		 */
+		volatile long maxTimeStamp = Long.MIN_VALUE;
+
+		private Segment(final File file, final long firstSequence, final MappedByteBuffer buffer) {
+			this.file = file;
+			this.firstSequence = firstSequence;
+			this.buffer = buffer;
+			this.writer = buffer.duplicate();
+			this.position = HEADER_SIZE;
+			this.nextSequence = firstSequence;
+		}
+
+		static Segment create(final File directory, final long firstSequence, final int size) throws IOException {
+			final File file = new File(directory, String.format("%020d%s", Long.valueOf(firstSequence), SUFFIX));
+			final MappedByteBuffer buffer = map(file, size);
+			buffer.putInt(0, MAGIC);
+			buffer.putLong(4, firstSequence);
+			return new Segment(file, firstSequence, buffer);
+		}
+
+		/**
+		 * <p>Map an existing segment file, and find the end of its
+		 * records.</p>
+		 */
+		static Segment open(final File file) throws IOException {
+			final long length = file.length();
+			if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+				throw new IOException("Not a journal segment: " + file);
+			}
+			final MappedByteBuffer buffer = map(file, (int) length);
+			if (buffer.getInt(0) != MAGIC) {
+				throw new IOException("Not a journal segment: " + file);
+			}
+			final Segment segment = new Segment(file, buffer.getLong(4), buffer);
+			final int capacity = buffer.capacity();
+			long sequence = segment.firstSequence;
+			long maxTimeStamp = Long.MIN_VALUE;
+			int position = HEADER_SIZE;
+			while (position <= capacity - 4) {
+				final int recordLength = buffer.getInt(position);
+				if (recordLength < 0 && recordLength >= -(capacity - position - 4)) {
+					final ByteBufferInputStream schema = new ByteBufferInputStream(buffer.duplicate());
+					schema.select(position + 4, -recordLength);
+					segment.typeIndexes.put(OpenValueDecoder.readOpenType(new DataInputStream(schema)),
+							Integer.valueOf(segment.typeIndexes.size()));
+					position += 4 - recordLength;
+					continue;
+				}
+				if (recordLength <= 0 || recordLength > capacity - position - 4) {
+					break;
+				}
+				maxTimeStamp = Math.max(maxTimeStamp, buffer.getLong(position + 4));
+				position += 4 + recordLength;
+				sequence++;
+			}
+			segment.position = position;
+			segment.nextSequence = sequence;
+			segment.maxTimeStamp = maxTimeStamp;
+			return segment;
+		}
+
+		private static MappedByteBuffer map(final File file, final int size) throws IOException {
+			final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				if (raf.length() < size) {
+					raf.setLength(size);
+				}
+				/*
+				 * The mapping stays valid after the file is closed.
+				 */
+				return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			} finally {
+				raf.close();
+			}
+		}
+
+		/**
+		 * @param entriesLength the size of the entries to append,
+		 *        including their lengths.
+		 */
+		boolean fits(final int entriesLength) {
+			return entriesLength <= this.buffer.capacity() - this.position;
+		}
+
+		/**
+		 * <p>Append the schemas of the Open Types new to this segment,
+		 * then a record which uses them.</p>
+		 */
+		void append(final List<OpenType<?>> newTypes,
+				final List<byte[]> newSchemas,
+				final byte record[],
+				final int length,
+				final long timeStamp) {
+			for (int i = 0; i < newSchemas.size(); i++) {
+				final byte schema[] = newSchemas.get(i);
+				this.writer.position(this.position + 4);
+				this.writer.put(schema);
+				this.writer.putInt(this.position, -schema.length);
+				this.position += 4 + schema.length;
+				this.typeIndexes.put(newTypes.get(i), Integer.valueOf(this.typeIndexes.size()));
+			}
+			this.writer.position(this.position + 4);
+			this.writer.put(record, 0, length);
+			this.writer.putInt(this.position, length);
+			this.position += 4 + length;
+			if (timeStamp > this.maxTimeStamp) {
+				this.maxTimeStamp = timeStamp;
+			}
+			this.nextSequence++;
+		}
+	}
+
+	/**
+	 * <p>Resolves the classes of the serialized values with a given
+	 * class loader first, rather than with the nearest user-defined one
+	 * on the stack, which is that of the JMX implementation.</p>
+	 */
+	private static final class LoaderObjectInputStream extends ObjectInputStream {
+		private final ClassLoader loader;
+
+		LoaderObjectInputStream(final InputStream in, final ClassLoader loader) throws IOException {
+			super(in);
+			this.loader = loader;
+		}
+
+		/**
+		 * @see ObjectInputStream#resolveClass(ObjectStreamClass)
+		 */
+		@Override
+		protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			if (this.loader != null) {
+				try {
+					return Class.forName(desc.getName(), false, this.loader);
+				} catch (final ClassNotFoundException ignored) {
+					// Ignore.
+				}
+			}
+			return super.resolveClass(desc);
+		}
+	}
+
+	/**
+	 * <p>Reads the records of a journal in order, skipping those before
+	 * a sequence number or a time stamp.  A cursor is not
+	 * thread-safe.</p>
+	 */
+	static final class Cursor {
+		private final NotificationJournal journal;
+
+		private final long fromSequence;
+
+		private final long fromTimeStamp;
+
+		private final ClassLoader loader;
+
+		private Segment segment;
+
+		private ByteBuffer buffer;
+
+		private int position;
+
+		/**
+		 * Reads the content of the current entry.
+		 */
+		private ByteBufferInputStream entry;
+
+		private DataInputStream in;
+
+		/**
+		 * The decoders of the type table of the segment, which read from
+		 * {@link #in}.
+		 */
+		private final List<OpenValueDecoder> decoders = new ArrayList<OpenValueDecoder>();
+
+		/**
+		 * The sequence number of the next record read.
+		 */
+		private long sequence;
+
+		Cursor(final NotificationJournal journal,
+				final Segment segment,
+				final long fromSequence,
+				final long fromTimeStamp,
+				final ClassLoader loader) {
+			this.journal = journal;
+			this.fromSequence = fromSequence;
+			this.fromTimeStamp = fromTimeStamp;
+			this.loader = loader;
+			this.setSegment(segment);
+		}
+
+		private void setSegment(final Segment segment) {
+			this.segment = segment;
+			this.buffer = segment.buffer.duplicate();
+			this.position = HEADER_SIZE;
+			this.sequence = segment.firstSequence;
+			this.entry = new ByteBufferInputStream(segment.buffer.duplicate());
+			this.in = new DataInputStream(this.entry);
+			this.decoders.clear();
+		}
+
+		/**
+		 * @return the sequence number of the next record, whether or
+		 *         not it has been appended yet.
+		 */
+		long getSequence() {
+			return this.sequence;
+		}
+
+		/**
+		 * @return the sequence number from which records are read.
+		 */
+		long getFromSequence() {
+			return this.fromSequence;
+		}
+
+		/**
+		 * @return the next notification, or <code>null</code> if all the
+		 *         records appended so far have been read.
+		 * @throws IOException if a record cannot be decoded.
+		 */
+		Notification next() throws IOException {
+			for (;;) {
+				if (this.sequence < this.segment.nextSequence) {
+					final int length = this.buffer.getInt(this.position);
+					final int start = this.position + 4;
+					if (length < 0) {
+						/*
+						 * The type table is read even from the records
+						 * skipped.
+						 */
+						this.position = start - length;
+						this.entry.select(start, -length);
+						this.decoders.add(OpenValueDecoder.withoutHeader(OpenValueDecoder.readOpenType(this.in), this.in));
+						continue;
+					}
+					final long timeStamp = this.buffer.getLong(start);
+					this.position = start + length;
+					if (this.sequence++ < this.fromSequence || timeStamp < this.fromTimeStamp) {
+						continue;
+					}
+					this.entry.select(start, length);
+					return readRecord(this.in, this.loader, this.decoders);
+				}
+				final Segment next = this.journal.nextSegment(this.segment);
+				if (next == null) {
+					return null;
+				}
+				if (this.sequence < this.segment.nextSequence) {
+					/*
+					 * The rest of this segment has been appended before
+					 * the roll to the next one.
+					 */
+					continue;
+				}
+				this.setSegment(next);
+			}
+		}
+	}
+
+	/**
+	 * <p>Reads an entry of a segment in place.</p>
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+		/**
+		 * A duplicate of the segment buffer, whose limit is the end of
+		 * the entry.
+		 */
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		void select(final int start, final int length) {
+			this.buffer.limit(this.buffer.capacity());
+			this.buffer.position(start);
+			this.buffer.limit(start + length);
+		}
+
+		/**
+		 * @see InputStream#read()
+		 */
+		@Override
+		public int read() {
+			return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+		}
+
+		/**
+		 * @see InputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(final byte b[], final int off, final int len) {
+			if (len == 0) {
+				return 0;
+			}
+			final int remaining = this.buffer.remaining();
+			if (remaining == 0) {
+				return -1;
+			}
+			final int count = Math.min(len, remaining);
+			this.buffer.get(b, off, count);
+			return count;
+		}
+
+		/**
+		 * @see InputStream#available()
+		 */
+		@Override
+		public int available() {
+			return this.buffer.remaining();
+		}
+	}
+
+	/**
+	 * <p>A <code>ByteArrayOutputStream</code> whose buffer can be read
+	 * without being copied.</p>
+	 */
+	private static final class RecordBuffer extends ByteArrayOutputStream {
+		RecordBuffer() {
+			super(256);
+		}
+
+		byte[] array() {
+			return this.buf;
+		}
+	}
+
+	/**
+	 * <p>Options that control the behaviour of a
+	 * {@link NotificationJournal}.</p>
+	 *
+	 * <p>This class is not present in the original <a href =
+	 * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+	 * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+	 * </p>
+	 */
+	public static class Options implements Cloneable {
+		/**
+		 * <p>The default {@linkplain #getSegmentSize() segment size}.</p>
+		 */
+		public static final int DEFAULT_SEGMENT_SIZE = 16 << 20;
+
+		/**
+		 * <p>The default {@linkplain #getMaxRetainedBytes() retained
+		 * size}.</p>
+		 */
+		public static final long DEFAULT_MAX_RETAINED_BYTES = 256L << 20;
+
+		private int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+		private long maxRetainedBytes = DEFAULT_MAX_RETAINED_BYTES;
+
+		private long maxRetainedMillis = Long.MAX_VALUE;
+
+		/**
+		 * <p>Construct an <code>Options</code> object where all options
+		 * have their default values.</p>
+		 */
+		public Options() {
+			// empty
+		}
+
+		/**
+		 * <p>The size of a segment file, in bytes.  A segment holding a
+		 * single record larger than that is as large as needed.  The
+		 * default is {@value #DEFAULT_SEGMENT_SIZE}.</p>
+		 *
+		 * @return the segment size.
+		 */
+		public int getSegmentSize() {
+			return this.segmentSize;
+		}
+
+		/**
+		 * @param segmentSize the segment size.
+		 * @throws IllegalArgumentException if <code>segmentSize</code>
+		 *         is not positive.
+		 * @see #getSegmentSize()
+		 */
+		public void setSegmentSize(final int segmentSize) {
+			if (segmentSize <= 0) {
+				throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+			}
+			this.segmentSize = segmentSize;
+		}
+
+		/**
+		 * <p>The size, in bytes, above which the oldest segments are
+		 * deleted when a new one is started.  The current segment is
+		 * never deleted.  The default is
+		 * {@value #DEFAULT_MAX_RETAINED_BYTES}.</p>
+		 *
+		 * @return the retained size.
+		 */
+		public long getMaxRetainedBytes() {
+			return this.maxRetainedBytes;
+		}
+
+		/**
+		 * @param maxRetainedBytes the retained size.
+		 * @throws IllegalArgumentException if
+		 *         <code>maxRetainedBytes</code> is not positive.
+		 * @see #getMaxRetainedBytes()
+		 */
+		public void setMaxRetainedBytes(final long maxRetainedBytes) {
+			if (maxRetainedBytes <= 0) {
+				throw new IllegalArgumentException("Invalid retained size: " + maxRetainedBytes);
+			}
+			this.maxRetainedBytes = maxRetainedBytes;
+		}
+
+		/**
+		 * <p>The time, in milliseconds, after which a segment whose
+		 * notifications are all older is deleted when a new one is
+		 * started.  The current segment is never deleted.  The default
+		 * is <code>Long.MAX_VALUE</code>, i.e. segments are only deleted
+		 * by size.</p>
+		 *
+		 * @return the retained time.
+		 */
+		public long getMaxRetainedMillis() {
+			return this.maxRetainedMillis;
+		}
+
+		/**
+		 * @param maxRetainedMillis the retained time.
+		 * @throws IllegalArgumentException if
+		 *         <code>maxRetainedMillis</code> is not positive.
+		 * @see #getMaxRetainedMillis()
+		 */
+		public void setMaxRetainedMillis(final long maxRetainedMillis) {
+			if (maxRetainedMillis <= 0) {
+				throw new IllegalArgumentException("Invalid retained time: " + maxRetainedMillis);
+			}
+			this.maxRetainedMillis = maxRetainedMillis;
+		}
+
+		/**
+		 * @see Object#clone()
+		 */
+		@Override
+		public Options clone() {
+			try {
+				return (Options) super.clone();
+			} catch (final CloneNotSupportedException cnse) {
+				throw new AssertionError(cnse);
+			}
+		}
+	}
+}
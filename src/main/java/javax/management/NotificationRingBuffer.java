@@ -0,0 +1,154 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>A bounded, lock-free, multi-producer single-consumer queue of
+ * notifications, backed by a ring buffer whose capacity is a power of
+ * two.</p>
+ *
+ * <p>Each slot has a sequence number, which tells producers whether the
+ * slot is free for a given position, and the consumer whether it has
+ * been published.  A producer claims a position with a single
+ * compare-and-set of the tail, and never waits: if the buffer is full,
+ * {@link #offer(Notification)} fails at once.  Only one thread may call
+ * {@link #drainTo(Notification[])} at a time.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+final class NotificationRingBuffer {
+	private final int mask;
+
+	private final AtomicReferenceArray<Notification> slots;
+
+	/**
+	 * For the slot of position <code>p</code>: <code>p</code> if it is
+	 * free, <code>p + 1</code> if it has been published.
+	 */
+	private final AtomicLongArray sequences;
+
+	/**
+	 * The next position to claim.
+	 */
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * The next position to consume; only written by the consumer.
+	 */
+	private volatile long head;
+
+	/**
+	 * @param capacity the capacity, a power of two.
+	 */
+	NotificationRingBuffer(final int capacity) {
+		if (capacity <= 0 || (capacity & capacity - 1) != 0) {
+			throw new IllegalArgumentException("Capacity is not a power of two: " + capacity);
+		}
+		this.mask = capacity - 1;
+		this.slots = new AtomicReferenceArray<Notification>(capacity);
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			this.sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * @return the smallest power of two which is at least
+	 *         <code>capacity</code>.
+	 */
+	static int powerOfTwo(final int capacity) {
+		if (capacity <= 0 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		return capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+	}
+
+	int capacity() {
+		return this.mask + 1;
+	}
+
+	/**
+	 * <p>Publish a notification, unless the buffer is full.  Safe for
+	 * any number of concurrent producers.</p>
+	 *
+	 * @param notification the notification.
+	 * @return <code>false</code> if the buffer is full.
+	 */
+	boolean offer(final Notification notification) {
+		long position;
+		int index;
+		for (;;) {
+			position = this.tail.get();
+			index = (int) position & this.mask;
+			final long difference = this.sequences.get(index) - position;
+			if (difference == 0) {
+				if (this.tail.compareAndSet(position, position + 1)) {
+					break;
+				}
+			} else if (difference < 0) {
+				/*
+				 * The slot still holds the notification published
+				 * one lap ago.
+				 */
+				return false;
+			}
+			/*
+			 * Another producer has claimed the position: retry with
+			 * the next one.
+			 */
+		}
+		this.slots.lazySet(index, notification);
+		/*
+		 * A volatile write, so that a consumer which has announced
+		 * it is about to park either sees the notification, or is
+		 * seen by the producer to be parking.
+		 */
+		this.sequences.set(index, position + 1);
+		return true;
+	}
+
+	/**
+	 * <p>Remove the published notifications, in order, up to the length
+	 * of <code>batch</code>.  Must only be called by the consumer.</p>
+	 *
+	 * @param batch the array which receives the notifications.
+	 * @return the number of notifications removed.
+	 */
+	int drainTo(final Notification batch[]) {
+		long position = this.head;
+		int count = 0;
+		while (count < batch.length) {
+			final int index = (int) position & this.mask;
+			if (this.sequences.get(index) != position + 1) {
+				break;
+			}
+			batch[count++] = this.slots.get(index);
+			this.slots.lazySet(index, null);
+			this.sequences.lazySet(index, position + this.mask + 1);
+			position++;
+		}
+		this.head = position;
+		return count;
+	}
+
+	/**
+	 * @return whether there is no published notification; only
+	 *         reliable when called by the consumer.
+	 */
+	boolean isEmpty() {
+		final long position = this.head;
+		return this.sequences.get((int) position & this.mask) != position + 1;
+	}
+
+	/**
+	 * @return an estimate of the number of notifications in the buffer.
+	 */
+	int size() {
+		return (int) Math.max(0, Math.min(this.tail.get() - this.head, this.capacity()));
+	}
+}
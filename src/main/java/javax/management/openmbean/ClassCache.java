@@ -0,0 +1,103 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <p>A cache of values computed once per class (or package).</p>
+ *
+ * <p>A value typically references its key, or at least a class of the
+ * same class loader, so a strongly referenced value would keep the key,
+ * and thus its class loader, from ever being garbage-collected.  The
+ * values for the keys of the system class loader and its ancestors,
+ * which are never garbage-collected anyway, are therefore kept in a map
+ * which holds them strongly: for these, a value is computed once and for
+ * all.  The values for the keys of other class loaders, such as those of
+ * applications deployed in a container, are kept in a map which
+ * references the keys weakly and the values softly, so that the cache
+ * does not prevent these class loaders from being garbage-collected for
+ * long; such a value is computed again if it has been
+ * garbage-collected.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+final class ClassCache<K, V> {
+	/**
+	 * The keys whose class loader is never garbage-collected.
+	 */
+	private final Map<K, V> permanentValues = new HashMap<K, V>();
+
+	/**
+	 * The keys of other class loaders.
+	 */
+	private final Map<K, Reference<V>> collectableValues = new WeakHashMap<K, Reference<V>>();
+
+	ClassCache() {
+		// empty
+	}
+
+	/**
+	 * @return the value cached for <code>key</code>, or
+	 *         <code>null</code> if there is none.
+	 */
+	synchronized V get(final K key) {
+		final V value = this.permanentValues.get(key);
+		if (value != null) {
+			return value;
+		}
+		final Reference<V> reference = this.collectableValues.get(key);
+		return reference == null ? null : reference.get();
+	}
+
+	/**
+	 * <p>Cache <code>value</code> for <code>key</code>, unless another
+	 * thread has cached a value in the meantime, so that all the callers
+	 * end up with the same value.</p>
+	 *
+	 * @param key the class or package.
+	 * @param loader the class loader of <code>key</code>.
+	 * @param value the value computed for <code>key</code>.
+	 * @return the value already cached for <code>key</code>, or else
+	 *         <code>value</code>.
+	 */
+	synchronized V putIfAbsent(final K key, final ClassLoader loader, final V value) {
+		final V existing = this.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		if (isNeverCollected(loader)) {
+			this.permanentValues.put(key, value);
+		} else {
+			this.collectableValues.put(key, new SoftReference<V>(value));
+		}
+		return value;
+	}
+
+	/**
+	 * @return whether <code>loader</code> is the bootstrap or the system
+	 *         class loader, or one of its ancestors.
+	 */
+	private static boolean isNeverCollected(final ClassLoader loader) {
+		if (loader == null) {
+			return true;
+		}
+		try {
+			for (ClassLoader systemLoader = ClassLoader.getSystemClassLoader(); systemLoader != null; systemLoader = systemLoader.getParent()) {
+				if (systemLoader == loader) {
+					return true;
+				}
+			}
+		} catch (final SecurityException ignored) {
+			// Ignore.
+		}
+		return false;
+	}
+}
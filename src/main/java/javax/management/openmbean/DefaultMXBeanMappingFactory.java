@@ -0,0 +1,1824 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import java.beans.ConstructorProperties;
+import java.beans.Introspector;
+import java.io.InvalidObjectException;
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+
+import javax.management.MemberInvoker;
+import javax.management.ObjectName;
+
+/**
+ * <p>The {@linkplain MXBeanMappingFactory#DEFAULT default mapping
+ * factory}, which applies the rules of the <a href =
+ * "http://java.sun.com/javase/6/docs/api/javax/management/MXBean.html#MXBean-spec">MXBean
+ * specification</a>:</p>
+ *
+ * <ul>
+ * <li>a class annotated with {@link MXBeanMappingClass
+ * &#64;MXBeanMappingClass} is mapped by the specified mapping, which is
+ * only created once for all the factories;</li>
+ * <li>primitive types, their wrappers, <code>String</code>,
+ * <code>BigDecimal</code>, <code>BigInteger</code>, <code>Date</code> and
+ * <code>ObjectName</code> are mapped to the corresponding
+ * {@link SimpleType}, and are not converted;</li>
+ * <li>enums are mapped to {@link SimpleType#STRING}, by name;</li>
+ * <li>arrays of primitive types, of any dimension, are mapped to the
+ * {@linkplain ArrayType#getPrimitiveArrayType(Class) primitive
+ * <code>ArrayType</code>}, and are neither boxed nor, by default,
+ * copied;</li>
+ * <li>other arrays, <code>List&lt;E&gt;</code>, <code>Set&lt;E&gt;</code> and
+ * <code>SortedSet&lt;E&gt;</code> are mapped to an {@link ArrayType} of
+ * the mapping of <code>E</code>;</li>
+ * <li><code>Map&lt;K, V&gt;</code> and <code>SortedMap&lt;K, V&gt;</code>
+ * are mapped to a {@link TabularType} with a <code>key</code> and a
+ * <code>value</code> item;</li>
+ * <li>on Java 17 and later, a record is mapped to a {@link CompositeType}
+ * with one item per record component, and is reconstructed by its
+ * canonical constructor, and a sealed interface or abstract class is
+ * mapped to a <code>CompositeType</code> with one item per permitted
+ * subclass, only the item of the subclass of the value being set;</li>
+ * <li>any other class is mapped to a {@link CompositeType} with one item
+ * per getter.</li>
+ * </ul>
+ *
+ * <p>Mappings are memoized per Java type and per original mapping
+ * factory, so a repeated lookup is a hash lookup.  The cache references
+ * the types weakly and the mappings softly, so it does not prevent class
+ * loaders from being garbage-collected for long.  The Open Types of the
+ * mappings are canonicalized, so that structurally equal types are
+ * shared between mappings, and between factories.</p>
+ *
+ * <p>The types of the open values built by the mappings are correct by
+ * construction, so the <code>CompositeData</code> and
+ * <code>TabularData</code> values are built without checking each item
+ * against its Open Type, as {@link CompositeDataSupport} and
+ * {@link TabularDataSupport} would.  They are serialized as
+ * <code>CompositeDataSupport</code> and <code>TabularDataSupport</code>.
+ * Full checking can be re-enabled, e.g. in tests, by setting the
+ * {@value #VALIDATE_PROPERTY} system property to <code>true</code>.</p>
+ *
+ * <p>Additional behaviour can be requested by constructing a factory
+ * with {@link Options}, and specifying it as the mapping factory of an
+ * MXBean.</p>
+ *
+ * <p>This class is not present in the original <a href =
+ * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+ * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+ * </p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see MXBeanMappingFactory#DEFAULT
+ * @see Options
+ */
+public final class DefaultMXBeanMappingFactory extends MXBeanMappingFactory {
+	/**
+	 * <p>The system property which, if set to <code>true</code> when this
+	 * class is initialized, makes the mappings build their open values as
+	 * <code>CompositeDataSupport</code> and
+	 * <code>TabularDataSupport</code>, so that every item is checked
+	 * against its Open Type.</p>
+	 */
+	public static final String VALIDATE_PROPERTY = "javax.management.openmbean.validate";
+
+	private static final Map<Class<?>, SimpleType<?>> SIMPLE_TYPES = new HashMap<Class<?>, SimpleType<?>>();
+
+	static {
+		SIMPLE_TYPES.put(Boolean.TYPE, SimpleType.BOOLEAN);
+		SIMPLE_TYPES.put(Byte.TYPE, SimpleType.BYTE);
+		SIMPLE_TYPES.put(Character.TYPE, SimpleType.CHARACTER);
+		SIMPLE_TYPES.put(Double.TYPE, SimpleType.DOUBLE);
+		SIMPLE_TYPES.put(Float.TYPE, SimpleType.FLOAT);
+		SIMPLE_TYPES.put(Integer.TYPE, SimpleType.INTEGER);
+		SIMPLE_TYPES.put(Long.TYPE, SimpleType.LONG);
+		SIMPLE_TYPES.put(Short.TYPE, SimpleType.SHORT);
+		SIMPLE_TYPES.put(Void.TYPE, SimpleType.VOID);
+		SIMPLE_TYPES.put(Boolean.class, SimpleType.BOOLEAN);
+		SIMPLE_TYPES.put(Byte.class, SimpleType.BYTE);
+		SIMPLE_TYPES.put(Character.class, SimpleType.CHARACTER);
+		SIMPLE_TYPES.put(Double.class, SimpleType.DOUBLE);
+		SIMPLE_TYPES.put(Float.class, SimpleType.FLOAT);
+		SIMPLE_TYPES.put(Integer.class, SimpleType.INTEGER);
+		SIMPLE_TYPES.put(Long.class, SimpleType.LONG);
+		SIMPLE_TYPES.put(Short.class, SimpleType.SHORT);
+		SIMPLE_TYPES.put(Void.class, SimpleType.VOID);
+		SIMPLE_TYPES.put(String.class, SimpleType.STRING);
+		SIMPLE_TYPES.put(BigDecimal.class, SimpleType.BIGDECIMAL);
+		SIMPLE_TYPES.put(BigInteger.class, SimpleType.BIGINTEGER);
+		SIMPLE_TYPES.put(Date.class, SimpleType.DATE);
+		SIMPLE_TYPES.put(ObjectName.class, SimpleType.OBJECTNAME);
+	}
+
+	private static final String KEY_VALUE[] = {"key", "value"};
+
+	private static final String KEY[] = {"key"};
+
+	/**
+	 * Whether open values are built as <code>CompositeDataSupport</code>
+	 * and <code>TabularDataSupport</code>, which check every item, rather
+	 * than as {@link TrustedCompositeData} and
+	 * {@link TrustedTabularData}.
+	 *
+	 * @see #VALIDATE_PROPERTY
+	 */
+	static final boolean VALIDATE;
+
+	static {
+		boolean validate;
+		try {
+			validate = Boolean.getBoolean(DefaultMXBeanMappingFactory.VALIDATE_PROPERTY);
+		} catch (final SecurityException se) {
+			validate = false;
+		}
+		VALIDATE = validate;
+	}
+
+	/**
+	 * The types whose mappings are being built by the current thread,
+	 * used to detect recursive types.
+	 */
+	private static final ThreadLocal<Set<Type>> IN_PROGRESS = new ThreadLocal<Set<Type>>() {
+		/**
+		 * @see ThreadLocal#initialValue()
+		 */
+		@Override
+		protected Set<Type> initialValue() {
+			return new HashSet<Type>();
+		}
+	};
+
+	/**
+	 * Bean class -&gt; (members -&gt; invoker).  Generating an invoker
+	 * defines a class, so the invokers are shared by all the mappings of
+	 * a bean class, including those rebuilt after the mapping cache has
+	 * released them, and those of other factories.
+	 */
+	private static final ClassCache<Class<?>, ConcurrentMap<List<Member>, MemberInvoker>> INVOKERS = new ClassCache<Class<?>, ConcurrentMap<List<Member>, MemberInvoker>>();
+
+	private final MappingCache cache = new MappingCache();
+
+	/**
+	 * Whether composite values are mapped to {@link CompositeDataView}s.
+	 */
+	private final boolean lazyCompositeData;
+
+	/**
+	 * Whether arrays of primitive types are copied when mapped.
+	 */
+	private final boolean copyPrimitiveArrays;
+
+	/**
+	 * Converts large arrays and collections in parallel, or
+	 * <code>null</code>.
+	 */
+	private final ParallelConverter parallelConverter;
+
+	DefaultMXBeanMappingFactory() {
+		this(new Options());
+	}
+
+	/**
+	 * <p>Construct a mapping factory which applies the default rules,
+	 * with the given options.</p>
+	 *
+	 * @param options the options.
+	 */
+	public DefaultMXBeanMappingFactory(final Options options) {
+		this.lazyCompositeData = options.isLazyCompositeData();
+		this.copyPrimitiveArrays = options.isCopyPrimitiveArrays();
+		final ExecutorService parallelExecutor = options.getParallelExecutor();
+		this.parallelConverter = parallelExecutor == null
+				? null
+				: new ParallelConverter(parallelExecutor, options.getParallelThreshold());
+	}
+
+	/**
+	 * @see MXBeanMappingFactory#mappingForType(Type, MXBeanMappingFactory)
+	 */
+	@Override
+	public MXBeanMapping mappingForType(final Type t, final MXBeanMappingFactory f)
+	throws OpenDataException {
+		MXBeanMapping mapping = this.cache.get(t, f);
+		if (mapping == null) {
+			final Set<Type> inProgress = IN_PROGRESS.get();
+			if (!inProgress.add(t)) {
+				throw new OpenDataException("Recursive data structure, including " + typeName(t));
+			}
+			try {
+				mapping = this.newMapping(t, f);
+			} finally {
+				inProgress.remove(t);
+			}
+			mapping = this.cache.putIfAbsent(t, f, mapping);
+		}
+		return mapping;
+	}
+
+	private MXBeanMapping newMapping(final Type t, final MXBeanMappingFactory f)
+	throws OpenDataException {
+		if (t instanceof Class<?>) {
+			final Class<?> c = (Class<?>) t;
+			final MXBeanMapping annotatedMapping = MappingResolver.getMapping(c);
+			if (annotatedMapping != null) {
+				return annotatedMapping;
+			}
+			final SimpleType<?> simpleType = SIMPLE_TYPES.get(c);
+			if (simpleType != null) {
+				return new IdentityMapping(c, simpleType);
+			} else if (c.isEnum()) {
+				return new EnumMapping(c);
+			} else if (c.isArray()) {
+				return PrimitiveArrayMapping.isPrimitiveArray(c)
+						? new PrimitiveArrayMapping(c, this.copyPrimitiveArrays)
+						: ArrayMapping.newInstance(c, c.getComponentType(), f, this.parallelConverter);
+			}
+			final MXBeanMapping recordMapping = RecordSupport.newMapping(c, f);
+			if (recordMapping != null) {
+				return recordMapping;
+			}
+			return CompositeMapping.newInstance(c, f, this.lazyCompositeData);
+		} else if (t instanceof GenericArrayType) {
+			return ArrayMapping.newInstance(t, ((GenericArrayType) t).getGenericComponentType(), f, this.parallelConverter);
+		} else if (t instanceof ParameterizedType) {
+			final ParameterizedType parameterizedType = (ParameterizedType) t;
+			final Type rawType = parameterizedType.getRawType();
+			final Type arguments[] = parameterizedType.getActualTypeArguments();
+			if (rawType == List.class || rawType == Set.class || rawType == SortedSet.class) {
+				return CollectionMapping.newInstance(parameterizedType, arguments[0], f, this.parallelConverter);
+			} else if (rawType == Map.class || rawType == SortedMap.class) {
+				return TabularMapping.newInstance(parameterizedType, arguments[0], arguments[1], f);
+			}
+		}
+		throw new OpenDataException("Cannot map type: " + typeName(t));
+	}
+
+	/**
+	 * @return the erasure of <code>t</code>.
+	 */
+	static Class<?> erasure(final Type t) {
+		if (t instanceof Class<?>) {
+			return (Class<?>) t;
+		} else if (t instanceof ParameterizedType) {
+			return erasure(((ParameterizedType) t).getRawType());
+		} else if (t instanceof GenericArrayType) {
+			return Array.newInstance(erasure(((GenericArrayType) t).getGenericComponentType()), 0).getClass();
+		}
+		return Object.class;
+	}
+
+	/**
+	 * @return the name of <code>t</code> as used in the names of Open
+	 *         Types, e.g. <code>java.util.Map&lt;java.lang.String, java.lang.Integer&gt;</code>.
+	 */
+	static String typeName(final Type t) {
+		if (t instanceof Class<?>) {
+			final Class<?> c = (Class<?>) t;
+			return c.isArray() ? typeName(c.getComponentType()) + "[]" : c.getName();
+		} else if (t instanceof GenericArrayType) {
+			return typeName(((GenericArrayType) t).getGenericComponentType()) + "[]";
+		} else if (t instanceof ParameterizedType) {
+			final ParameterizedType parameterizedType = (ParameterizedType) t;
+			final StringBuilder name = new StringBuilder(typeName(parameterizedType.getRawType())).append('<');
+			final Type arguments[] = parameterizedType.getActualTypeArguments();
+			for (int i = 0; i < arguments.length; i++) {
+				name.append(i == 0 ? "" : ", ").append(typeName(arguments[i]));
+			}
+			return name.append('>').toString();
+		}
+		return t.toString();
+	}
+
+	/**
+	 * @param beanClass the class whose mapping uses the invoker.
+	 * @param members the methods and constructors to invoke.
+	 * @return the invoker for <code>members</code>, generated only once
+	 *         per bean class.
+	 * @see MemberInvoker#forMembers(Member[])
+	 */
+	static MemberInvoker invokerFor(final Class<?> beanClass, final Member... members) {
+		ConcurrentMap<List<Member>, MemberInvoker> invokers = INVOKERS.get(beanClass);
+		if (invokers == null) {
+			invokers = INVOKERS.putIfAbsent(beanClass,
+					beanClass.getClassLoader(),
+					new ConcurrentHashMap<List<Member>, MemberInvoker>());
+		}
+		final List<Member> key = Arrays.asList(members.clone());
+		final MemberInvoker invoker = invokers.get(key);
+		if (invoker != null) {
+			return invoker;
+		}
+		final MemberInvoker newInvoker = MemberInvoker.forMembers(members);
+		final MemberInvoker existing = invokers.putIfAbsent(key, newInvoker);
+		return existing == null ? newInvoker : existing;
+	}
+
+	private static InvalidObjectException invalidObject(final String message, final Throwable cause) {
+		final InvalidObjectException ioe = new InvalidObjectException(message);
+		ioe.initCause(cause);
+		return ioe;
+	}
+
+	private static OpenDataException openData(final String message, final Throwable cause) {
+		final OpenDataException ode = new OpenDataException(message);
+		ode.initCause(cause);
+		return ode;
+	}
+
+	/**
+	 * <p>A mapping whose Java and open values are the same.</p>
+	 */
+	private static final class IdentityMapping extends MXBeanMapping {
+		IdentityMapping(final Type javaType, final OpenType<?> openType) {
+			super(javaType, openType);
+		}
+
+		/**
+		 * @see MXBeanMapping#fromOpenValue(Object)
+		 */
+		@Override
+		public Object fromOpenValue(final Object openValue) {
+			return openValue;
+		}
+
+		/**
+		 * @see MXBeanMapping#toOpenValue(Object)
+		 */
+		@Override
+		public Object toOpenValue(final Object javaValue) {
+			return javaValue;
+		}
+	}
+
+	/**
+	 * <p>Maps an enum to its name.</p>
+	 */
+	private static final class EnumMapping extends MXBeanMapping {
+		private final Class<?> enumClass;
+
+		EnumMapping(final Class<?> enumClass) {
+			super(enumClass, SimpleType.STRING);
+			this.enumClass = enumClass;
+		}
+
+		/**
+		 * @see MXBeanMapping#fromOpenValue(Object)
+		 */
+		@Override
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		public Object fromOpenValue(final Object openValue) throws InvalidObjectException {
+			if (openValue == null) {
+				return null;
+			}
+			if (!(openValue instanceof String)) {
+				throw new InvalidObjectException("Not a constant name of " + this.enumClass.getName() + ": " + openValue.getClass().getName());
+			}
+			try {
+				return Enum.valueOf((Class) this.enumClass, (String) openValue);
+			} catch (final IllegalArgumentException iae) {
+				throw invalidObject("No constant " + openValue + " in " + this.enumClass.getName(), iae);
+			}
+		}
+
+		/**
+		 * @see MXBeanMapping#toOpenValue(Object)
+		 */
+		@Override
+		public Object toOpenValue(final Object javaValue) {
+			return javaValue == null ? null : ((Enum<?>) javaValue).name();
+		}
+	}
+
+	/**
+	 * <p>Maps an array of a primitive type to itself, or to a copy of
+	 * itself, without boxing the elements.</p>
+	 */
+	private static final class PrimitiveArrayMapping extends MXBeanMapping {
+		private final boolean copy;
+
+		PrimitiveArrayMapping(final Class<?> arrayClass, final boolean copy) {
+			super(arrayClass, OpenTypes.intern(ArrayType.getPrimitiveArrayType(arrayClass)));
+			this.copy = copy;
+		}
+
+		/**
+		 * @return whether <code>c</code> is an array, of any dimension,
+		 *         of a primitive type.
+		 */
+		static boolean isPrimitiveArray(final Class<?> c) {
+			Class<?> componentClass = c;
+			while (componentClass.isArray()) {
+				componentClass = componentClass.getComponentType();
+			}
+			return c.isArray() && componentClass.isPrimitive();
+		}
+
+		/**
+		 * @see MXBeanMapping#fromOpenValue(Object)
+		 */
+		@Override
+		public Object fromOpenValue(final Object openValue) {
+			return this.copy ? copyOf(openValue) : openValue;
+		}
+
+		/**
+		 * @see MXBeanMapping#toOpenValue(Object)
+		 */
+		@Override
+		public Object toOpenValue(final Object javaValue) {
+			return this.copy ? copyOf(javaValue) : javaValue;
+		}
+
+		/**
+		 * @return a copy of <code>array</code>, with every dimension
+		 *         copied.
+		 */
+		private static Object copyOf(final Object array) {
+			if (array == null) {
+				return null;
+			}
+			final Class<?> componentClass = array.getClass().getComponentType();
+			final int length = Array.getLength(array);
+			final Object copy = Array.newInstance(componentClass, length);
+			if (componentClass.isPrimitive()) {
+				System.arraycopy(array, 0, copy, 0, length);
+			} else {
+				final Object arrays[] = (Object[]) array;
+				final Object copies[] = (Object[]) copy;
+				for (int i = 0; i < length; i++) {
+					copies[i] = copyOf(arrays[i]);
+				}
+			}
+			return copy;
+		}
+	}
+
+	/**
+	 * <p>Maps an array to an array of the mapped elements.</p>
+	 */
+	private static final class ArrayMapping extends MXBeanMapping {
+		private final Class<?> componentClass;
+
+		private final MXBeanMapping componentMapping;
+
+		/**
+		 * Converts large arrays in parallel, or <code>null</code>.
+		 */
+		private final ParallelConverter parallelConverter;
+
+		private ArrayMapping(final Type javaType,
+				final ArrayType<?> openType,
+				final Class<?> componentClass,
+				final MXBeanMapping componentMapping,
+				final ParallelConverter parallelConverter) {
+			super(javaType, openType);
+			this.componentClass = componentClass;
+			this.componentMapping = componentMapping;
+			this.parallelConverter = parallelConverter;
+		}
+
+		static MXBeanMapping newInstance(final Type javaType,
+				final Type componentType,
+				final MXBeanMappingFactory f,
+				final ParallelConverter parallelConverter)
+		throws OpenDataException {
+			final MXBeanMapping componentMapping = f.mappingForType(componentType, f);
+			final ArrayType<?> openType = OpenTypes.intern(ArrayType.getArrayType(componentMapping.getOpenType()));
+			final Class<?> componentClass = erasure(componentType);
+			if (componentMapping instanceof IdentityMapping && !componentClass.isPrimitive()) {
+				return new IdentityMapping(javaType, openType);
+			}
+			return new ArrayMapping(javaType, openType, componentClass, componentMapping, parallelConverter);
+		}
+
+		/**
+		 * @see MXBeanMapping#fromOpenValue(Object)
+		 */
+		@Override
+		public Object fromOpenValue(final Object openValue) throws InvalidObjectException {
+			if (openValue == null) {
+				return null;
+			}
+			final Object openArray[] = (Object[]) openValue;
+			final Object javaArray = Array.newInstance(this.componentClass, openArray.length);
+			for (int i = 0; i < openArray.length; i++) {
+				Array.set(javaArray, i, this.componentMapping.fromOpenValue(openArray[i]));
+			}
+			return javaArray;
+		}
+
+		/**
+		 * @see MXBeanMapping#toOpenValue(Object)
+		 */
+		@Override
+		public Object toOpenValue(final Object javaValue) throws OpenDataException {
+			if (javaValue == null) {
+				return null;
+			}
+			final int length = Array.getLength(javaValue);
+			final Object openArray[] = (Object[]) Array.newInstance(this.componentMapping.getOpenClass(), length);
+			final ParallelConverter parallelConverter = this.parallelConverter;
+			if (parallelConverter != null && parallelConverter.isParallel(length)) {
+				parallelConverter.toOpenValues(this.componentMapping, (Object[]) javaValue, openArray);
+				return openArray;
+			}
+			for (int i = 0; i < length; i++) {
+				openArray[i] = this.componentMapping.toOpenValue(Array.get(javaValue, i));
+			}
+			return openArray;
+		}
+
+		/**
+		 * @see MXBeanMapping#checkReconstructible()
+		 */
+		@Override
+		public void checkReconstructible() throws InvalidObjectException {
+			this.componentMapping.checkReconstructible();
+		}
+	}
+
+	/**
+	 * <p>Maps a <code>List</code>, <code>Set</code> or
+	 * <code>SortedSet</code> to an array of the mapped elements.</p>
+	 */
+	private static final class CollectionMapping extends MXBeanMapping {
+		private final Class<?> collectionClass;
+
+		private final MXBeanMapping elementMapping;
+
+		/**
+		 * Converts large collections in parallel, or <code>null</code>.
+		 */
+		private final ParallelConverter parallelConverter;
+
+		private CollectionMapping(final ParameterizedType javaType,
+				final ArrayType<?> openType,
+				final MXBeanMapping elementMapping,
+				final ParallelConverter parallelConverter) {
+			super(javaType, openType);
+			this.collectionClass = (Class<?>) javaType.getRawType();
+			this.elementMapping = elementMapping;
+			this.parallelConverter = parallelConverter;
+		}
+
+		static MXBeanMapping newInstance(final ParameterizedType javaType,
+				final Type elementType,
+				final MXBeanMappingFactory f,
+				final ParallelConverter parallelConverter)
+		throws OpenDataException {
+			final MXBeanMapping elementMapping = f.mappingForType(elementType, f);
+			return new CollectionMapping(javaType,
+					OpenTypes.intern(ArrayType.getArrayType(elementMapping.getOpenType())),
+					elementMapping,
+					parallelConverter);
+		}
+
+		/**
+		 * @see MXBeanMapping#fromOpenValue(Object)
+		 */
+		@Override
+		public Object fromOpenValue(final Object openValue) throws InvalidObjectException {
+			if (openValue == null) {
+				return null;
+			}
+			final Object openArray[] = (Object[]) openValue;
+			final Collection<Object> collection;
+			if (this.collectionClass == List.class) {
+				collection = new ArrayList<Object>(openArray.length);
+			} else if (this.collectionClass == SortedSet.class) {
+				collection = new TreeSet<Object>();
+			} else {
+				collection = new HashSet<Object>();
+			}
+			for (final Object openElement : openArray) {
+				if (!collection.add(this.elementMapping.fromOpenValue(openElement)) && this.collectionClass != List.class) {
+					throw new InvalidObjectException("Duplicate element in a " + this.collectionClass.getName() + ": " + openElement);
+				}
+			}
+			return collection;
+		}
+
+		/**
+		 * @see MXBeanMapping#toOpenValue(Object)
+		 */
+		@Override
+		public Object toOpenValue(final Object javaValue) throws OpenDataException {
+			if (javaValue == null) {
+				return null;
+			}
+			if (javaValue instanceof SortedSet<?> && ((SortedSet<?>) javaValue).comparator() != null) {
+				throw new OpenDataException("Cannot convert a SortedSet with a non-null comparator");
+			}
+			final Collection<?> collection = (Collection<?>) javaValue;
+			final ParallelConverter parallelConverter = this.parallelConverter;
+			if (parallelConverter != null && parallelConverter.isParallel(collection.size())) {
+				final Object javaElements[] = collection.toArray();
+				final Object openArray[] = (Object[]) Array.newInstance(this.elementMapping.getOpenClass(), javaElements.length);
+				parallelConverter.toOpenValues(this.elementMapping, javaElements, openArray);
+				return openArray;
+			}
+			final Object openArray[] = (Object[]) Array.newInstance(this.elementMapping.getOpenClass(), collection.size());
+			int i = 0;
+			for (final Object element : collection) {
+				openArray[i++] = this.elementMapping.toOpenValue(element);
+			}
+			return openArray;
+		}
+
+		/**
+		 * @see MXBeanMapping#checkReconstructible()
+		 */
+		@Override
+		public void checkReconstructible() throws InvalidObjectException {
+			this.elementMapping.checkReconstructible();
+		}
+	}
+
+	/**
+	 * <p>Maps a <code>Map</code> or <code>SortedMap</code> to a
+	 * <code>TabularData</code> with a <code>key</code> and a
+	 * <code>value</code> item in each row.</p>
+	 */
+	private static final class TabularMapping extends MXBeanMapping {
+		private final boolean sorted;
+
+		private final CompositeType rowType;
+
+		private final MXBeanMapping keyMapping;
+
+		private final MXBeanMapping valueMapping;
+
+		private TabularMapping(final ParameterizedType javaType,
+				final TabularType openType,
+				final MXBeanMapping keyMapping,
+				final MXBeanMapping valueMapping) {
+			super(javaType, openType);
+			this.sorted = javaType.getRawType() == SortedMap.class;
+			this.rowType = openType.getRowType();
+			this.keyMapping = keyMapping;
+			this.valueMapping = valueMapping;
+		}
+
+		static MXBeanMapping newInstance(final ParameterizedType javaType,
+				final Type keyType,
+				final Type valueType,
+				final MXBeanMappingFactory f)
+		throws OpenDataException {
+			final MXBeanMapping keyMapping = f.mappingForType(keyType, f);
+			final MXBeanMapping valueMapping = f.mappingForType(valueType, f);
+			final String typeName = typeName(javaType);
+			final CompositeType rowType = OpenTypes.intern(new CompositeType(typeName,
+					typeName,
+					KEY_VALUE,
+					KEY_VALUE,
+					new OpenType<?>[] {keyMapping.getOpenType(), valueMapping.getOpenType()}));
+			return new TabularMapping(javaType,
+					OpenTypes.intern(new TabularType(typeName, typeName, rowType, KEY)),
+					keyMapping,
+					valueMapping);
+		}
+
+		/**
+		 * @see MXBeanMapping#fromOpenValue(Object)
+		 */
+		@Override
+		public Object fromOpenValue(final Object openValue) throws InvalidObjectException {
+			if (openValue == null) {
+				return null;
+			}
+			final TabularData table = (TabularData) openValue;
+			final Map<Object, Object> map = this.sorted
+					? new TreeMap<Object, Object>()
+					: new LinkedHashMap<Object, Object>();
+			for (final Object row : table.values()) {
+				final CompositeData compositeData = (CompositeData) row;
+				map.put(this.keyMapping.fromOpenValue(compositeData.get(KEY_VALUE[0])),
+						this.valueMapping.fromOpenValue(compositeData.get(KEY_VALUE[1])));
+			}
+			return map;
+		}
+
+		/**
+		 * @see MXBeanMapping#toOpenValue(Object)
+		 */
+		@Override
+		public Object toOpenValue(final Object javaValue) throws OpenDataException {
+			if (javaValue == null) {
+				return null;
+			}
+			if (javaValue instanceof SortedMap<?, ?> && ((SortedMap<?, ?>) javaValue).comparator() != null) {
+				throw new OpenDataException("Cannot convert a SortedMap with a non-null comparator");
+			}
+			final Map<?, ?> map = (Map<?, ?>) javaValue;
+			final TabularType tabularType = (TabularType) this.getOpenType();
+			if (VALIDATE) {
+				final TabularDataSupport table = new TabularDataSupport(tabularType, Math.max(16, map.size() * 4 / 3 + 1), 0.75f);
+				for (final Map.Entry<?, ?> entry : map.entrySet()) {
+					table.put(new CompositeDataSupport(this.rowType,
+							KEY_VALUE,
+							new Object[] {this.keyMapping.toOpenValue(entry.getKey()),
+									this.valueMapping.toOpenValue(entry.getValue())}));
+				}
+				return table;
+			}
+			final TrustedTabularData table = new TrustedTabularData(tabularType, map.size());
+			for (final Map.Entry<?, ?> entry : map.entrySet()) {
+				table.putTrusted(new TrustedCompositeData(this.rowType,
+						KEY_VALUE,
+						new Object[] {this.keyMapping.toOpenValue(entry.getKey()),
+								this.valueMapping.toOpenValue(entry.getValue())}));
+			}
+			return table;
+		}
+
+		/**
+		 * @see MXBeanMapping#checkReconstructible()
+		 */
+		@Override
+		public void checkReconstructible() throws InvalidObjectException {
+			this.keyMapping.checkReconstructible();
+			this.valueMapping.checkReconstructible();
+		}
+	}
+
+	/**
+	 * <p>Maps a class to a <code>CompositeData</code> with one item per
+	 * getter.</p>
+	 *
+	 * <p>The getters, and the members used for reconstruction, are called
+	 * through a {@link MemberInvoker}, i.e. by a class generated for the
+	 * bean type whenever possible, rather than via reflection.  The
+	 * invokers are generated once per bean type, and reused when the
+	 * mapping is rebuilt.</p>
+	 *
+	 * <p>The Java value is reconstructed by the first applicable of
+	 * these means, selected once, when the mapping is created:</p>
+	 *
+	 * <ol>
+	 * <li>a public static <code>from(CompositeData)</code> method;</li>
+	 * <li>a public constructor annotated with
+	 * {@link ConstructorProperties &#64;ConstructorProperties}, all of
+	 * whose properties are items (the one with the most properties
+	 * wins);</li>
+	 * <li>if the class is an interface, a proxy which implements the
+	 * getters;</li>
+	 * <li>a public no-argument constructor, and a setter for every
+	 * item.</li>
+	 * </ol>
+	 *
+	 * <p>If none is applicable, the reason is recorded, and reported by
+	 * {@link #checkReconstructible()} and {@link #fromOpenValue(Object)}
+	 * without any further introspection.</p>
+	 */
+	private static final class CompositeMapping extends MXBeanMapping {
+		private static final Object NO_ARGS[] = {};
+
+		final Class<?> javaClass;
+
+		final String itemNames[];
+
+		final Method getters[];
+
+		final MXBeanMapping itemMappings[];
+
+		/**
+		 * Calls <code>getters[i]</code> as member <code>i</code>.
+		 */
+		private final MemberInvoker getterInvoker;
+
+		/**
+		 * Whether {@link #toOpenValue(Object)} returns a
+		 * {@link CompositeDataView}.
+		 */
+		private final boolean lazy;
+
+		private final Reconstructor reconstructor;
+
+		private CompositeMapping(final Class<?> javaClass,
+				final CompositeType openType,
+				final String itemNames[],
+				final Method getters[],
+				final MXBeanMapping itemMappings[],
+				final boolean lazy) {
+			super(javaClass, openType);
+			this.javaClass = javaClass;
+			this.itemNames = itemNames;
+			this.getters = getters;
+			this.itemMappings = itemMappings;
+			this.getterInvoker = invokerFor(javaClass, getters);
+			this.lazy = lazy;
+			this.reconstructor = this.planReconstruction();
+		}
+
+		static MXBeanMapping newInstance(final Class<?> javaClass,
+				final MXBeanMappingFactory f,
+				final boolean lazy)
+		throws OpenDataException {
+			final SortedMap<String, Method> getters = new TreeMap<String, Method>();
+			for (final Method method : javaClass.getMethods()) {
+				final String itemName = itemName(method);
+				if (itemName == null) {
+					continue;
+				}
+				final Method previous = getters.put(itemName, method);
+				if (previous != null && !previous.getName().equals(method.getName())) {
+					throw new OpenDataException("Class " + javaClass.getName() + " has both " + previous.getName() + " and " + method.getName());
+				}
+			}
+			if (getters.isEmpty()) {
+				throw new OpenDataException("Cannot map type: " + javaClass.getName());
+			}
+
+			final int size = getters.size();
+			final String itemNames[] = getters.keySet().toArray(new String[size]);
+			final Method methods[] = getters.values().toArray(new Method[size]);
+			final MXBeanMapping itemMappings[] = new MXBeanMapping[size];
+			final OpenType<?> itemTypes[] = new OpenType<?>[size];
+			for (int i = 0; i < size; i++) {
+				itemMappings[i] = f.mappingForType(methods[i].getGenericReturnType(), f);
+				itemTypes[i] = itemMappings[i].getOpenType();
+			}
+			final String className = javaClass.getName();
+			return new CompositeMapping(javaClass,
+					OpenTypes.intern(new CompositeType(className, className, itemNames, itemNames, itemTypes)),
+					itemNames,
+					methods,
+					itemMappings,
+					lazy);
+		}
+
+		/**
+		 * @return the item name for a getter, or <code>null</code> if
+		 *         <code>method</code> is not a getter.
+		 */
+		private static String itemName(final Method method) {
+			if (Modifier.isStatic(method.getModifiers())
+					|| method.isBridge()
+					|| method.getParameterTypes().length != 0
+					|| method.getDeclaringClass() == Object.class) {
+				return null;
+			}
+			final String name = method.getName();
+			final Class<?> returnType = method.getReturnType();
+			if (name.startsWith("get") && name.length() > 3 && returnType != Void.TYPE) {
+				return Introspector.decapitalize(name.substring(3));
+			} else if (name.startsWith("is") && name.length() > 2 && returnType == Boolean.TYPE) {
+				return Introspector.decapitalize(name.substring(2));
+			}
+			return null;
+		}
+
+		/**
+		 * @see MXBeanMapping#toOpenValue(Object)
+		 */
+		@Override
+		public Object toOpenValue(final Object javaValue) throws OpenDataException {
+			if (javaValue == null) {
+				return null;
+			} else if (this.lazy) {
+				return new CompositeDataView(this, javaValue);
+			}
+			final Object values[] = new Object[this.getters.length];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = this.getOpenItem(javaValue, i);
+			}
+			final CompositeType compositeType = (CompositeType) this.getOpenType();
+			return VALIDATE
+					? new CompositeDataSupport(compositeType, this.itemNames, values)
+					: new TrustedCompositeData(compositeType, this.itemNames, values);
+		}
+
+		/**
+		 * @return the open value of item <code>index</code>.
+		 */
+		Object getOpenItem(final Object javaValue, final int index) throws OpenDataException {
+			final Object value;
+			try {
+				value = this.getterInvoker.invoke(index, javaValue, NO_ARGS);
+			} catch (final Exception e) {
+				throw openData("Exception in " + this.getters[index] + ": " + e, e);
+			}
+			return this.itemMappings[index].toOpenValue(value);
+		}
+
+		/**
+		 * @see MXBeanMapping#fromOpenValue(Object)
+		 */
+		@Override
+		public Object fromOpenValue(final Object openValue) throws InvalidObjectException {
+			if (openValue == null) {
+				return null;
+			}
+			return this.reconstructor.reconstruct(this, (CompositeData) openValue);
+		}
+
+		/**
+		 * @return the Java value of item <code>index</code>.
+		 */
+		Object getItem(final CompositeData compositeData, final int index) throws InvalidObjectException {
+			return this.itemMappings[index].fromOpenValue(compositeData.get(this.itemNames[index]));
+		}
+
+		/**
+		 * @see MXBeanMapping#checkReconstructible()
+		 */
+		@Override
+		public void checkReconstructible() throws InvalidObjectException {
+			this.reconstructor.check();
+			for (final MXBeanMapping itemMapping : this.itemMappings) {
+				itemMapping.checkReconstructible();
+			}
+		}
+
+		/**
+		 * @return the reconstructor, which is an
+		 *         {@link UnreconstructibleReconstructor} if the Java value
+		 *         cannot be reconstructed.
+		 */
+		private Reconstructor planReconstruction() {
+			try {
+				return this.newReconstructor();
+			} catch (final InvalidObjectException ioe) {
+				return new UnreconstructibleReconstructor(ioe);
+			}
+		}
+
+		private Reconstructor newReconstructor() throws InvalidObjectException {
+			try {
+				final Method from = this.javaClass.getMethod("from", CompositeData.class);
+				if (Modifier.isStatic(from.getModifiers()) && this.javaClass.isAssignableFrom(from.getReturnType())) {
+					return new FromReconstructor(this.javaClass, from);
+				}
+			} catch (final NoSuchMethodException ignored) {
+				// Ignore.
+			}
+
+			final Reconstructor constructorReconstructor = ConstructorReconstructor.newInstance(this);
+			if (constructorReconstructor != null) {
+				return constructorReconstructor;
+			}
+
+			if (this.javaClass.isInterface()) {
+				return ProxyReconstructor.newInstance(this.javaClass, this.getters);
+			}
+
+			try {
+				final Member members[] = new Member[this.getters.length + 1];
+				members[0] = this.javaClass.getConstructor();
+				for (int i = 0; i < this.getters.length; i++) {
+					final String getterName = this.getters[i].getName();
+					final String setterName = "set" + getterName.substring(getterName.startsWith("is") ? 2 : 3);
+					members[i + 1] = this.javaClass.getMethod(setterName, this.getters[i].getReturnType());
+				}
+				return new SetterReconstructor(invokerFor(this.javaClass, members));
+			} catch (final NoSuchMethodException nsme) {
+				throw invalidObject("Cannot reconstruct " + this.javaClass.getName()
+						+ ": no from(CompositeData) method, no @ConstructorProperties constructor,"
+						+ " and no public no-argument constructor with setters for all the items", nsme);
+			}
+		}
+	}
+
+	/**
+	 * <p>Reconstructs a Java value from a <code>CompositeData</code>.</p>
+	 */
+	private abstract static class Reconstructor {
+		Reconstructor() {
+			// empty
+		}
+
+		/**
+		 * @param mapping the mapping of the Java type.
+		 * @param compositeData the open value.
+		 */
+		abstract Object reconstruct(final CompositeMapping mapping, final CompositeData compositeData)
+		throws InvalidObjectException;
+
+		/**
+		 * @throws InvalidObjectException if no value can be
+		 *         reconstructed.
+		 */
+		@SuppressWarnings("unused")
+		void check() throws InvalidObjectException {
+			// empty
+		}
+
+		static InvalidObjectException wrap(final Exception e) {
+			return invalidObject("Cannot reconstruct value: " + e, e);
+		}
+	}
+
+	/**
+	 * <p>Stands for a reconstruction strategy which could not be
+	 * planned: every call fails with the reason.</p>
+	 */
+	private static final class UnreconstructibleReconstructor extends Reconstructor {
+		private final InvalidObjectException reason;
+
+		UnreconstructibleReconstructor(final InvalidObjectException reason) {
+			this.reason = reason;
+		}
+
+		/**
+		 * @see DefaultMXBeanMappingFactory.Reconstructor#check()
+		 */
+		@Override
+		void check() throws InvalidObjectException {
+			throw invalidObject(this.reason.getMessage(), this.reason);
+		}
+
+		/**
+		 * @see DefaultMXBeanMappingFactory.Reconstructor#reconstruct(DefaultMXBeanMappingFactory.CompositeMapping, CompositeData)
+		 */
+		@Override
+		Object reconstruct(final CompositeMapping mapping, final CompositeData compositeData)
+		throws InvalidObjectException {
+			throw invalidObject(this.reason.getMessage(), this.reason);
+		}
+	}
+
+	private static final class FromReconstructor extends Reconstructor {
+		private final MemberInvoker from;
+
+		FromReconstructor(final Class<?> javaClass, final Method from) {
+			this.from = invokerFor(javaClass, from);
+		}
+
+		/**
+		 * @see DefaultMXBeanMappingFactory.Reconstructor#reconstruct(DefaultMXBeanMappingFactory.CompositeMapping, CompositeData)
+		 */
+		@Override
+		Object reconstruct(final CompositeMapping mapping, final CompositeData compositeData)
+		throws InvalidObjectException {
+			try {
+				return this.from.invoke(0, null, compositeData);
+			} catch (final Exception e) {
+				throw wrap(e);
+			}
+		}
+	}
+
+	/**
+	 * <p>Calls a {@link ConstructorProperties &#64;ConstructorProperties}
+	 * constructor with the items, in the constructor parameter order.</p>
+	 */
+	private static final class ConstructorReconstructor extends Reconstructor {
+		private final MemberInvoker constructor;
+
+		/**
+		 * Constructor parameter -&gt; item index.
+		 */
+		private final int items[];
+
+		private ConstructorReconstructor(final Constructor<?> constructor, final int items[]) {
+			this.constructor = invokerFor(constructor.getDeclaringClass(), constructor);
+			this.items = items;
+		}
+
+		/**
+		 * @return the reconstructor, or <code>null</code> if there is no
+		 *         applicable constructor.
+		 */
+		static ConstructorReconstructor newInstance(final CompositeMapping mapping) {
+			Constructor<?> best = null;
+			int bestItems[] = null;
+			for (final Constructor<?> constructor : mapping.javaClass.getConstructors()) {
+				final ConstructorProperties constructorProperties = constructor.getAnnotation(ConstructorProperties.class);
+				if (constructorProperties == null) {
+					continue;
+				}
+				final String properties[] = constructorProperties.value();
+				final Type parameterTypes[] = constructor.getGenericParameterTypes();
+				if (properties.length != parameterTypes.length
+						|| bestItems != null && properties.length <= bestItems.length) {
+					continue;
+				}
+				final int items[] = matchItems(mapping, properties, parameterTypes);
+				if (items != null) {
+					best = constructor;
+					bestItems = items;
+				}
+			}
+			return best == null ? null : new ConstructorReconstructor(best, bestItems);
+		}
+
+		/**
+		 * @return the item index of each constructor parameter, or
+		 *         <code>null</code> if a property is not an item, or a
+		 *         parameter type differs from the item getter type.
+		 */
+		private static int[] matchItems(final CompositeMapping mapping,
+				final String properties[],
+				final Type parameterTypes[]) {
+			final int items[] = new int[properties.length];
+			for (int i = 0; i < properties.length; i++) {
+				items[i] = indexOf(mapping.itemNames, Introspector.decapitalize(properties[i]));
+				if (items[i] < 0 || !parameterTypes[i].equals(mapping.getters[items[i]].getGenericReturnType())) {
+					return null;
+				}
+			}
+			return items;
+		}
+
+		private static int indexOf(final String itemNames[], final String itemName) {
+			for (int i = 0; i < itemNames.length; i++) {
+				if (itemNames[i].equals(itemName)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * @see DefaultMXBeanMappingFactory.Reconstructor#reconstruct(DefaultMXBeanMappingFactory.CompositeMapping, CompositeData)
+		 */
+		@Override
+		Object reconstruct(final CompositeMapping mapping, final CompositeData compositeData)
+		throws InvalidObjectException {
+			final Object args[] = new Object[this.items.length];
+			for (int i = 0; i < args.length; i++) {
+				args[i] = mapping.getItem(compositeData, this.items[i]);
+			}
+			try {
+				return this.constructor.invoke(0, null, args);
+			} catch (final Exception e) {
+				throw wrap(e);
+			}
+		}
+	}
+
+	/**
+	 * <p>Calls the no-argument constructor (member <code>0</code>), then
+	 * the setter of each item <code>i</code> (member <code>i + 1</code>).
+	 * </p>
+	 */
+	private static final class SetterReconstructor extends Reconstructor {
+		private final MemberInvoker members;
+
+		SetterReconstructor(final MemberInvoker members) {
+			this.members = members;
+		}
+
+		/**
+		 * @see DefaultMXBeanMappingFactory.Reconstructor#reconstruct(DefaultMXBeanMappingFactory.CompositeMapping, CompositeData)
+		 */
+		@Override
+		Object reconstruct(final CompositeMapping mapping, final CompositeData compositeData)
+		throws InvalidObjectException {
+			try {
+				final Object javaValue = this.members.invoke(0, null);
+				for (int i = 0; i < mapping.itemNames.length; i++) {
+					this.members.invoke(i + 1, javaValue, mapping.getItem(compositeData, i));
+				}
+				return javaValue;
+			} catch (final InvalidObjectException ioe) {
+				throw ioe;
+			} catch (final Exception e) {
+				throw wrap(e);
+			}
+		}
+	}
+
+	private static final class ProxyReconstructor extends Reconstructor {
+		private final Class<?> javaInterface;
+
+		/**
+		 * The constructor of the proxy class, which is only looked up
+		 * once.
+		 */
+		private final Constructor<?> proxyConstructor;
+
+		private final Map<Method, Integer> indices = new HashMap<Method, Integer>();
+
+		private ProxyReconstructor(final Class<?> javaInterface,
+				final Constructor<?> proxyConstructor,
+				final Method getters[]) {
+			this.javaInterface = javaInterface;
+			this.proxyConstructor = proxyConstructor;
+			for (int i = 0; i < getters.length; i++) {
+				this.indices.put(getters[i], Integer.valueOf(i));
+			}
+		}
+
+		static ProxyReconstructor newInstance(final Class<?> javaInterface, final Method getters[])
+		throws InvalidObjectException {
+			try {
+				final Class<?> proxyClass = Proxy.getProxyClass(javaInterface.getClassLoader(), javaInterface);
+				return new ProxyReconstructor(javaInterface,
+						proxyClass.getConstructor(InvocationHandler.class),
+						getters);
+			} catch (final IllegalArgumentException iae) {
+				throw invalidObject("Cannot make a proxy for " + javaInterface.getName() + ": " + iae, iae);
+			} catch (final NoSuchMethodException nsme) {
+				throw invalidObject("Cannot make a proxy for " + javaInterface.getName() + ": " + nsme, nsme);
+			}
+		}
+
+		/**
+		 * @see DefaultMXBeanMappingFactory.Reconstructor#reconstruct(DefaultMXBeanMappingFactory.CompositeMapping, CompositeData)
+		 */
+		@Override
+		Object reconstruct(final CompositeMapping mapping, final CompositeData compositeData)
+		throws InvalidObjectException {
+			final Object values[] = new Object[mapping.itemNames.length];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = mapping.getItem(compositeData, i);
+			}
+			final InvocationHandler handler = new InvocationHandler() {
+				/**
+				 * @see InvocationHandler#invoke(Object, Method, Object[])
+				 */
+				@Override
+				public Object invoke(final Object proxy, final Method method, final Object args[]) {
+					final Integer index = ProxyReconstructor.this.indices.get(method);
+					if (index != null) {
+						return values[index.intValue()];
+					}
+					final String name = method.getName();
+					if (name.equals("equals") && args != null && args.length == 1) {
+						return Boolean.valueOf(args[0] != null
+								&& Proxy.isProxyClass(args[0].getClass())
+								&& Proxy.getInvocationHandler(args[0]) == this);
+					} else if (name.equals("hashCode") && args == null) {
+						return Integer.valueOf(compositeData.hashCode());
+					} else if (name.equals("toString") && args == null) {
+						return ProxyReconstructor.this.javaInterface.getName() + compositeData.values();
+					}
+					throw new UnsupportedOperationException(method.toString());
+				}
+			};
+			try {
+				return this.proxyConstructor.newInstance(handler);
+			} catch (final Exception e) {
+				throw wrap(e);
+			}
+		}
+	}
+
+	/**
+	 * <p>A <code>CompositeData</code> which computes its items from a
+	 * Java object when they are first requested, rather than when the
+	 * Java object is mapped.  An in-process client which only reads a few
+	 * items thus never converts the others.  Once computed, an item is
+	 * retained, so the view is as stable as a
+	 * <code>CompositeDataSupport</code>.</p>
+	 *
+	 * <p>When serialized, a <code>CompositeDataSupport</code> with all the
+	 * items is written instead.</p>
+	 *
+	 * <p>An item whose getter fails is reported by the method reading it
+	 * as an <code>IllegalStateException</code> caused by the
+	 * <code>OpenDataException</code>, since the <code>CompositeData</code>
+	 * methods declare no checked exceptions.</p>
+	 *
+	 * @see Options#isLazyCompositeData()
+	 */
+	private static final class CompositeDataView implements CompositeData, Serializable {
+		private static final long serialVersionUID = 2457046562128617546L;
+
+		private final transient CompositeMapping mapping;
+
+		private final transient Object javaValue;
+
+		/**
+		 * The items computed so far.
+		 */
+		private final transient Object values[];
+
+		private final transient boolean computed[];
+
+		CompositeDataView(final CompositeMapping mapping, final Object javaValue) {
+			this.mapping = mapping;
+			this.javaValue = javaValue;
+			this.values = new Object[mapping.itemNames.length];
+			this.computed = new boolean[mapping.itemNames.length];
+		}
+
+		private synchronized Object getItem(final int index) {
+			if (!this.computed[index]) {
+				try {
+					this.values[index] = this.mapping.getOpenItem(this.javaValue, index);
+				} catch (final OpenDataException ode) {
+					throw new IllegalStateException("Cannot map item " + this.mapping.itemNames[index] + ": " + ode, ode);
+				}
+				this.computed[index] = true;
+			}
+			return this.values[index];
+		}
+
+		private int indexOf(final String key) {
+			if (key == null || key.length() == 0) {
+				throw new IllegalArgumentException("Null or empty key");
+			}
+			final int index = Arrays.binarySearch(this.mapping.itemNames, key);
+			if (index < 0) {
+				throw new InvalidKeyException("No such item: " + key);
+			}
+			return index;
+		}
+
+		/**
+		 * @return all the items, in item name order.
+		 */
+		private Object[] getItems() {
+			final Object items[] = new Object[this.values.length];
+			for (int i = 0; i < items.length; i++) {
+				items[i] = this.getItem(i);
+			}
+			return items;
+		}
+
+		private CompositeDataSupport snapshot() {
+			try {
+				return new CompositeDataSupport(this.getCompositeType(), this.mapping.itemNames, this.getItems());
+			} catch (final OpenDataException ode) {
+				throw new IllegalStateException(ode.toString(), ode);
+			}
+		}
+
+		/**
+		 * @see CompositeData#getCompositeType()
+		 */
+		public CompositeType getCompositeType() {
+			return (CompositeType) this.mapping.getOpenType();
+		}
+
+		/**
+		 * @see CompositeData#get(String)
+		 */
+		public Object get(final String key) {
+			return this.getItem(this.indexOf(key));
+		}
+
+		/**
+		 * @see CompositeData#getAll(String[])
+		 */
+		public Object[] getAll(final String keys[]) {
+			if (keys == null) {
+				return new Object[0];
+			}
+			final Object items[] = new Object[keys.length];
+			for (int i = 0; i < keys.length; i++) {
+				items[i] = this.get(keys[i]);
+			}
+			return items;
+		}
+
+		/**
+		 * @see CompositeData#containsKey(String)
+		 */
+		public boolean containsKey(final String key) {
+			return key != null && Arrays.binarySearch(this.mapping.itemNames, key) >= 0;
+		}
+
+		/**
+		 * @see CompositeData#containsValue(Object)
+		 */
+		public boolean containsValue(final Object value) {
+			return this.values().contains(value);
+		}
+
+		/**
+		 * @see CompositeData#values()
+		 */
+		public Collection<?> values() {
+			return Collections.unmodifiableList(Arrays.asList(this.getItems()));
+		}
+
+		/**
+		 * @see CompositeData#equals(Object)
+		 */
+		@Override
+		public boolean equals(final Object obj) {
+			return obj == this || this.snapshot().equals(obj);
+		}
+
+		/**
+		 * @see CompositeData#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return this.snapshot().hashCode();
+		}
+
+		/**
+		 * @see CompositeData#toString()
+		 */
+		@Override
+		public String toString() {
+			return this.snapshot().toString();
+		}
+
+		/**
+		 * <p>Serialize a <code>CompositeDataSupport</code> instead of this
+		 * object.</p>
+		 *
+		 * @return a <code>CompositeDataSupport</code> with the same
+		 *         items.
+		 */
+		private Object writeReplace() {
+			return this.snapshot();
+		}
+	}
+
+	/**
+	 * <p>A concurrent map from (Java type, mapping factory) to mapping.
+	 * Types and factories are referenced weakly, and mappings softly.
+	 * Entries whose type or factory has been garbage-collected are
+	 * expunged on the next update.</p>
+	 */
+	private static final class MappingCache {
+		private final ConcurrentMap<CacheKey, Reference<MXBeanMapping>> map = new ConcurrentHashMap<CacheKey, Reference<MXBeanMapping>>();
+
+		/**
+		 * Receives both the {@link StoredKey}s and their
+		 * {@link FactoryReference}s.
+		 */
+		private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+		MappingCache() {
+			// empty
+		}
+
+		MXBeanMapping get(final Type type, final MXBeanMappingFactory factory) {
+			final Reference<MXBeanMapping> reference = this.map.get(new LookupKey(type, factory));
+			return reference == null ? null : reference.get();
+		}
+
+		/**
+		 * @return the mapping already cached, or <code>mapping</code>.
+		 */
+		MXBeanMapping putIfAbsent(final Type type,
+				final MXBeanMappingFactory factory,
+				final MXBeanMapping mapping) {
+			this.expungeStaleEntries();
+			final StoredKey key = new StoredKey(type, factory, this.queue);
+			final Reference<MXBeanMapping> reference = new SoftReference<MXBeanMapping>(mapping);
+			while (true) {
+				final Reference<MXBeanMapping> previous = this.map.putIfAbsent(key, reference);
+				if (previous == null) {
+					return mapping;
+				}
+				final MXBeanMapping previousMapping = previous.get();
+				if (previousMapping != null) {
+					return previousMapping;
+				}
+				if (this.map.replace(key, previous, reference)) {
+					return mapping;
+				}
+			}
+		}
+
+		private void expungeStaleEntries() {
+			for (Reference<?> reference; (reference = this.queue.poll()) != null;) {
+				this.map.remove(reference instanceof FactoryReference
+						? ((FactoryReference) reference).key
+						: reference);
+			}
+		}
+
+		static int hashCode(final Type type, final MXBeanMappingFactory factory) {
+			return type.hashCode() * 31 + System.identityHashCode(factory);
+		}
+
+		/**
+		 * <p>Two keys are equal if their types are equal and their
+		 * factories are the same.</p>
+		 */
+		private interface CacheKey {
+			/**
+			 * @return the type, or <code>null</code> if it has been
+			 *         garbage-collected.
+			 */
+			Type getType();
+
+			/**
+			 * @return the factory, or <code>null</code> if it has been
+			 *         garbage-collected.
+			 */
+			MXBeanMappingFactory getFactory();
+		}
+
+		/**
+		 * <p>The key of a lookup, which is never stored.</p>
+		 */
+		private static final class LookupKey implements CacheKey {
+			private final Type type;
+
+			private final MXBeanMappingFactory factory;
+
+			LookupKey(final Type type, final MXBeanMappingFactory factory) {
+				this.type = type;
+				this.factory = factory;
+			}
+
+			/**
+			 * @see DefaultMXBeanMappingFactory.MappingCache.CacheKey#getType()
+			 */
+			@Override
+			public Type getType() {
+				return this.type;
+			}
+
+			/**
+			 * @see DefaultMXBeanMappingFactory.MappingCache.CacheKey#getFactory()
+			 */
+			@Override
+			public MXBeanMappingFactory getFactory() {
+				return this.factory;
+			}
+
+			/**
+			 * @see Object#equals(Object)
+			 */
+			@Override
+			public boolean equals(final Object obj) {
+				if (!(obj instanceof CacheKey)) {
+					return false;
+				}
+				final CacheKey that = (CacheKey) obj;
+				return this.factory == that.getFactory() && this.type.equals(that.getType());
+			}
+
+			/**
+			 * @see Object#hashCode()
+			 */
+			@Override
+			public int hashCode() {
+				return MappingCache.hashCode(this.type, this.factory);
+			}
+		}
+
+		/**
+		 * <p>The key of a cache entry, which references both the type and
+		 * the factory weakly.  Once either is garbage-collected, the key
+		 * is only equal to itself.</p>
+		 */
+		private static final class StoredKey extends WeakReference<Type> implements CacheKey {
+			private final Reference<MXBeanMappingFactory> factory;
+
+			private final int hashCode;
+
+			StoredKey(final Type type, final MXBeanMappingFactory factory, final ReferenceQueue<Object> queue) {
+				super(type, queue);
+				this.factory = new FactoryReference(factory, this, queue);
+				this.hashCode = MappingCache.hashCode(type, factory);
+			}
+
+			/**
+			 * @see DefaultMXBeanMappingFactory.MappingCache.CacheKey#getType()
+			 */
+			@Override
+			public Type getType() {
+				return this.get();
+			}
+
+			/**
+			 * @see DefaultMXBeanMappingFactory.MappingCache.CacheKey#getFactory()
+			 */
+			@Override
+			public MXBeanMappingFactory getFactory() {
+				return this.factory.get();
+			}
+
+			/**
+			 * @see Object#equals(Object)
+			 */
+			@Override
+			public boolean equals(final Object obj) {
+				if (obj == this) {
+					return true;
+				}
+				if (!(obj instanceof CacheKey)) {
+					return false;
+				}
+				final CacheKey that = (CacheKey) obj;
+				final Type type = this.get();
+				final MXBeanMappingFactory factory = this.factory.get();
+				return type != null
+						&& factory != null
+						&& factory == that.getFactory()
+						&& type.equals(that.getType());
+			}
+
+			/**
+			 * @see Object#hashCode()
+			 */
+			@Override
+			public int hashCode() {
+				return this.hashCode;
+			}
+		}
+
+		/**
+		 * <p>The weak reference of a {@link StoredKey} to its factory,
+		 * which, once enqueued, tells which entry to expunge.</p>
+		 */
+		private static final class FactoryReference extends WeakReference<MXBeanMappingFactory> {
+			final StoredKey key;
+
+			FactoryReference(final MXBeanMappingFactory factory, final StoredKey key, final ReferenceQueue<Object> queue) {
+				super(factory, queue);
+				this.key = key;
+			}
+		}
+	}
+
+	/**
+	 * <p>Options that control the mappings built by a
+	 * {@link DefaultMXBeanMappingFactory}.</p>
+	 *
+	 * <p>This class is not present in the original <a href =
+	 * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+	 * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+	 * </p>
+	 */
+	public static class Options implements Cloneable {
+		/**
+		 * <p>The default {@linkplain #getParallelThreshold() parallel
+		 * conversion threshold}.</p>
+		 */
+		public static final int DEFAULT_PARALLEL_THRESHOLD = 1024;
+
+		private boolean lazyCompositeData;
+
+		private boolean copyPrimitiveArrays;
+
+		private ExecutorService parallelExecutor;
+
+		private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+		/**
+		 * <p>Construct an <code>Options</code> object where all options
+		 * have their default values.</p>
+		 */
+		public Options() {
+			// empty
+		}
+
+		/**
+		 * <p>Whether a Java object mapped to a {@link CompositeType} is
+		 * converted into a <code>CompositeData</code> view, whose items
+		 * are only computed from the Java object when they are first
+		 * requested, rather than into a
+		 * {@link CompositeDataSupport} with all the items.  The view is
+		 * serialized as a <code>CompositeDataSupport</code>, so remote
+		 * clients see no difference, whereas in-process clients which
+		 * only read some of the items never pay for the others.  Note
+		 * that the items reflect the state of the Java object when they
+		 * are first requested.  The default is <code>false</code>.</p>
+		 *
+		 * @return <code>true</code> if composite values are converted
+		 *         lazily.
+		 */
+		public boolean isLazyCompositeData() {
+			return this.lazyCompositeData;
+		}
+
+		/**
+		 * <p>Note that, with lazy conversion, a getter which throws
+		 * an exception, or whose value cannot be converted, no longer
+		 * makes {@link MXBeanMapping#toOpenValue(Object)} throw an
+		 * {@link OpenDataException}: the exception only surfaces when the
+		 * item is read, as an {@link IllegalStateException} thrown by
+		 * {@link CompositeData#get(String)},
+		 * {@link CompositeData#getAll(String[])} and any other method
+		 * which needs the item, with the
+		 * <code>OpenDataException</code> as its cause.  Such an item is
+		 * not retained, so every read retries the getter.</p>
+		 *
+		 * @param lazyCompositeData whether composite values are
+		 *        converted lazily.
+		 * @see #isLazyCompositeData()
+		 */
+		public void setLazyCompositeData(final boolean lazyCompositeData) {
+			this.lazyCompositeData = lazyCompositeData;
+		}
+
+		/**
+		 * <p>Whether arrays of primitive types, such as
+		 * <code>long[]</code>, are copied (with
+		 * {@link System#arraycopy(Object, int, Object, int, int)}) when
+		 * converted in either direction, rather than handed over as
+		 * they are.  Either way, the elements are never boxed.  Copying
+		 * protects the MXBean from clients which modify the arrays it
+		 * returns.  The default is <code>false</code>.</p>
+		 *
+		 * @return <code>true</code> if arrays of primitive types are
+		 *         copied.
+		 */
+		public boolean isCopyPrimitiveArrays() {
+			return this.copyPrimitiveArrays;
+		}
+
+		/**
+		 * @param copyPrimitiveArrays whether arrays of primitive types
+		 *        are copied.
+		 * @see #isCopyPrimitiveArrays()
+		 */
+		public void setCopyPrimitiveArrays(final boolean copyPrimitiveArrays) {
+			this.copyPrimitiveArrays = copyPrimitiveArrays;
+		}
+
+		/**
+		 * <p>The executor which converts arrays and collections (but not
+		 * maps) of at least {@linkplain #getParallelThreshold() a given
+		 * size} in parallel, or <code>null</code> if they are converted
+		 * sequentially, on the calling thread.  The elements are split
+		 * into one contiguous chunk per thread of the executor, and one
+		 * more; the calling thread converts the first chunk, and the
+		 * executor the others, except those it has not started when the
+		 * calling thread is done, which the calling thread converts too.
+		 * The element order is preserved, and if several elements cannot
+		 * be converted, the exception of the first one is thrown, as
+		 * with a sequential conversion.  The default is
+		 * <code>null</code>.</p>
+		 *
+		 * @return the executor, or <code>null</code>.
+		 */
+		public ExecutorService getParallelExecutor() {
+			return this.parallelExecutor;
+		}
+
+		/**
+		 * @param parallelExecutor the executor, or <code>null</code>.
+		 * @see #getParallelExecutor()
+		 */
+		public void setParallelExecutor(final ExecutorService parallelExecutor) {
+			this.parallelExecutor = parallelExecutor;
+		}
+
+		/**
+		 * <p>The minimum number of elements of an array or collection
+		 * for it to be converted in parallel, if there is a
+		 * {@linkplain #getParallelExecutor() parallel executor}.  The
+		 * default is {@value #DEFAULT_PARALLEL_THRESHOLD}.</p>
+		 *
+		 * @return the threshold.
+		 */
+		public int getParallelThreshold() {
+			return this.parallelThreshold;
+		}
+
+		/**
+		 * @param parallelThreshold the threshold.
+		 * @throws IllegalArgumentException if <code>parallelThreshold</code>
+		 *         is negative.
+		 * @see #getParallelThreshold()
+		 */
+		public void setParallelThreshold(final int parallelThreshold) {
+			if (parallelThreshold < 0) {
+				throw new IllegalArgumentException("Negative threshold: " + parallelThreshold);
+			}
+			this.parallelThreshold = parallelThreshold;
+		}
+
+		/**
+		 * @see Object#clone()
+		 */
+		@Override
+		public Options clone() {
+			try {
+				return (Options) super.clone();
+			} catch (final CloneNotSupportedException cnse) {
+				throw new AssertionError(cnse);
+			}
+		}
+	}
+}
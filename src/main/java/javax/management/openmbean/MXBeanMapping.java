@@ -103,7 +103,7 @@ public abstract class MXBeanMapping {
 		this.javaType = javaType;
 		this.openType = openType;
 		try {
-			this.openClass = Class.forName(this.openType.getClassName());
+			this.openClass = OpenTypes.getOpenClass(this.openType);
 		} catch (final ClassNotFoundException cnfe) {
 			throw new IllegalArgumentException(cnfe.getMessage(), cnfe);
 		}
@@ -63,16 +63,7 @@ public abstract class MXBeanMappingFactory {
 	 * <p>Mapping factory that applies the default rules for MXBean
 	 * mappings, as described in the <a href = "http://java.sun.com/javase/6/docs/api/javax/management/MXBean.html#MXBean-spec">MXBean specification</a>.</p>
 	 */
-	public static final MXBeanMappingFactory DEFAULT = new MXBeanMappingFactory() {
-		/**
-		 * @see MXBeanMappingFactory#mappingForType(Type, MXBeanMappingFactory)
-		 */
-		@Override
-		public MXBeanMapping mappingForType(final Type t, final MXBeanMappingFactory f)
-		throws OpenDataException {
-			throw new UnsupportedOperationException("Not implemented");
-		}
-	};
+	public static final MXBeanMappingFactory DEFAULT = new DefaultFactory();
 
 	/**
 	 * <p>Construct an instance of this class.</p>
@@ -81,6 +72,35 @@ public abstract class MXBeanMappingFactory {
 		// empty
 	}
 
+	/**
+	 * <p>Return the mapping factory to be used for the given MXBean
+	 * interface, as specified by its
+	 * {@link MXBeanMappingFactoryClass &#64;MXBeanMappingFactoryClass}
+	 * annotation, or else by the annotation of its package, or else the
+	 * {@linkplain #DEFAULT default mapping factory}.</p>
+	 *
+	 * <p>The annotations are looked up, and the mapping factory classes
+	 * instantiated, when an interface (or package) is first seen, so a
+	 * given factory is shared by all the MXBeans which use it.  A factory
+	 * class of the system class loader is only instantiated once; one of
+	 * another class loader is instantiated again if its instance has been
+	 * garbage-collected after no MXBean used it any longer, so that
+	 * caching it does not keep its class loader reachable.</p>
+	 *
+	 * <p>This method is not present in the original <a href =
+	 * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+	 * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+	 * </p>
+	 *
+	 * @param interfaceClass the MXBean interface.
+	 * @return the mapping factory for <code>interfaceClass</code>.
+	 * @throws IllegalArgumentException if the annotated mapping factory
+	 *         class cannot be instantiated.
+	 */
+	public static MXBeanMappingFactory forInterface(final Class<?> interfaceClass) {
+		return MappingResolver.getFactory(interfaceClass);
+	}
+
 	/**
 	 * <p>Return the mapping for the given Java type.  Typically, a
 	 * mapping factory will return mappings for types it handles, and
@@ -101,4 +121,41 @@ public abstract class MXBeanMappingFactory {
 	 */
 	public abstract MXBeanMapping mappingForType(final Type t, final MXBeanMappingFactory f)
 	throws OpenDataException;
+
+	/**
+	 * <p>Holds the instance of {@link DefaultMXBeanMappingFactory} which
+	 * {@link #DEFAULT} delegates to.  It is only created when first used,
+	 * rather than when this class is initialized: being a subclass of
+	 * this class, <code>DefaultMXBeanMappingFactory</code> cannot be
+	 * initialized before it, so a thread initializing this class while
+	 * another one initializes <code>DefaultMXBeanMappingFactory</code>
+	 * would wait for the latter, which would wait for the former.</p>
+	 */
+	private static final class DefaultHolder {
+		static final MXBeanMappingFactory INSTANCE = new DefaultMXBeanMappingFactory();
+
+		private DefaultHolder() {
+			assert false;
+		}
+	}
+
+	/**
+	 * <p>The class of {@link #DEFAULT}, which, unlike
+	 * {@link DefaultMXBeanMappingFactory}, cannot be initialized by any
+	 * other class than this one.</p>
+	 */
+	private static final class DefaultFactory extends MXBeanMappingFactory {
+		DefaultFactory() {
+			// empty
+		}
+
+		/**
+		 * @see MXBeanMappingFactory#mappingForType(Type, MXBeanMappingFactory)
+		 */
+		@Override
+		public MXBeanMapping mappingForType(final Type t, final MXBeanMappingFactory f)
+		throws OpenDataException {
+			return DefaultHolder.INSTANCE.mappingForType(t, f);
+		}
+	}
 }
@@ -0,0 +1,184 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Type;
+
+/**
+ * <p>Resolves the {@link MXBeanMappingClass &#64;MXBeanMappingClass} and
+ * {@link MXBeanMappingFactoryClass &#64;MXBeanMappingFactoryClass}
+ * annotations.</p>
+ *
+ * <p>The annotations are looked up, and the mapping and mapping factory
+ * classes instantiated, when a type (or package) is first seen: the
+ * instances are shared by all the MXBeans, so neither the annotation
+ * lookup nor the reflective instantiation happen when an attribute is
+ * read.</p>
+ *
+ * <p>The instances are cached in {@link ClassCache}s, so that the caches
+ * do not prevent the class loaders of the types from being
+ * garbage-collected for long.  For the types of the system class loader
+ * (and its ancestors), each class is therefore instantiated only once.
+ * For those of other class loaders, an instance is only softly
+ * referenced, and may be garbage-collected once no MXBean uses it, in
+ * which case its class is instantiated again when next needed: a
+ * mapping or mapping factory must not rely on being the single instance
+ * of its class.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+final class MappingResolver {
+	/**
+	 * Stands for the absence of an annotation.
+	 */
+	private static final MXBeanMapping NO_MAPPING = new MXBeanMapping(Void.class, SimpleType.VOID) {
+		/**
+		 * @see MXBeanMapping#fromOpenValue(Object)
+		 */
+		@Override
+		public Object fromOpenValue(final Object openValue) {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * @see MXBeanMapping#toOpenValue(Object)
+		 */
+		@Override
+		public Object toOpenValue(final Object javaValue) {
+			throw new UnsupportedOperationException();
+		}
+	};
+
+	/**
+	 * Annotated type -&gt; mapping, or {@link #NO_MAPPING}.
+	 */
+	private static final ClassCache<Class<?>, MXBeanMapping> MAPPINGS = new ClassCache<Class<?>, MXBeanMapping>();
+
+	/**
+	 * Interface -&gt; mapping factory.
+	 */
+	private static final ClassCache<Class<?>, MXBeanMappingFactory> INTERFACE_FACTORIES = new ClassCache<Class<?>, MXBeanMappingFactory>();
+
+	/**
+	 * Package -&gt; mapping factory.
+	 */
+	private static final ClassCache<Package, MXBeanMappingFactory> PACKAGE_FACTORIES = new ClassCache<Package, MXBeanMappingFactory>();
+
+	/**
+	 * Mapping factory class -&gt; its shared instance.
+	 */
+	private static final ClassCache<Class<?>, MXBeanMappingFactory> FACTORIES = new ClassCache<Class<?>, MXBeanMappingFactory>();
+
+	private MappingResolver() {
+		assert false;
+	}
+
+	/**
+	 * @param c the Java class.
+	 * @return the mapping specified by the
+	 *         {@link MXBeanMappingClass &#64;MXBeanMappingClass}
+	 *         annotation of <code>c</code>, or <code>null</code> if it
+	 *         is not annotated.
+	 * @throws OpenDataException if the mapping cannot be created.
+	 */
+	static MXBeanMapping getMapping(final Class<?> c) throws OpenDataException {
+		MXBeanMapping mapping = MAPPINGS.get(c);
+		if (mapping == null) {
+			final MXBeanMappingClass mappingClass = c.getAnnotation(MXBeanMappingClass.class);
+			mapping = MAPPINGS.putIfAbsent(c,
+					c.getClassLoader(),
+					mappingClass == null ? NO_MAPPING : newMapping(mappingClass.value(), c));
+		}
+		return mapping == NO_MAPPING ? null : mapping;
+	}
+
+	/**
+	 * @param interfaceClass the MXBean interface.
+	 * @return the mapping factory specified by the
+	 *         {@link MXBeanMappingFactoryClass &#64;MXBeanMappingFactoryClass}
+	 *         annotation of <code>interfaceClass</code>, or else of its
+	 *         package, or else the
+	 *         {@linkplain MXBeanMappingFactory#DEFAULT default one}.
+	 * @throws IllegalArgumentException if the mapping factory cannot be
+	 *         created.
+	 */
+	static MXBeanMappingFactory getFactory(final Class<?> interfaceClass) {
+		final MXBeanMappingFactory factory = INTERFACE_FACTORIES.get(interfaceClass);
+		if (factory != null) {
+			return factory;
+		}
+
+		final MXBeanMappingFactoryClass factoryClass = interfaceClass.getAnnotation(MXBeanMappingFactoryClass.class);
+		return INTERFACE_FACTORIES.putIfAbsent(interfaceClass,
+				interfaceClass.getClassLoader(),
+				factoryClass == null
+						? getFactory(interfaceClass.getPackage(), interfaceClass)
+						: getFactoryInstance(factoryClass.value()));
+	}
+
+	/**
+	 * @param c a class of package <code>pkg</code>, whose class loader
+	 *        is that of the package.
+	 */
+	private static MXBeanMappingFactory getFactory(final Package pkg, final Class<?> c) {
+		if (pkg == null) {
+			return MXBeanMappingFactory.DEFAULT;
+		}
+		final MXBeanMappingFactory factory = PACKAGE_FACTORIES.get(pkg);
+		if (factory != null) {
+			return factory;
+		}
+
+		final MXBeanMappingFactoryClass factoryClass = pkg.getAnnotation(MXBeanMappingFactoryClass.class);
+		return PACKAGE_FACTORIES.putIfAbsent(pkg,
+				c.getClassLoader(),
+				factoryClass == null
+						? MXBeanMappingFactory.DEFAULT
+						: getFactoryInstance(factoryClass.value()));
+	}
+
+	/**
+	 * @return the shared instance of <code>factoryClass</code>.
+	 */
+	private static MXBeanMappingFactory getFactoryInstance(final Class<? extends MXBeanMappingFactory> factoryClass) {
+		final MXBeanMappingFactory factory = FACTORIES.get(factoryClass);
+		if (factory != null) {
+			return factory;
+		}
+
+		final MXBeanMappingFactory newFactory;
+		try {
+			newFactory = factoryClass.getConstructor().newInstance();
+		} catch (final InvocationTargetException ite) {
+			throw new IllegalArgumentException("Cannot create " + factoryClass.getName() + ": " + ite.getCause(), ite.getCause());
+		} catch (final Exception e) {
+			throw new IllegalArgumentException("Cannot create " + factoryClass.getName() + ": " + e, e);
+		}
+		return FACTORIES.putIfAbsent(factoryClass, factoryClass.getClassLoader(), newFactory);
+	}
+
+	private static MXBeanMapping newMapping(final Class<? extends MXBeanMapping> mappingClass, final Type t)
+	throws OpenDataException {
+		try {
+			final Constructor<? extends MXBeanMapping> constructor = mappingClass.getConstructor(Type.class);
+			return constructor.newInstance(t);
+		} catch (final InvocationTargetException ite) {
+			final Throwable cause = ite.getCause();
+			if (cause instanceof OpenDataException) {
+				throw (OpenDataException) cause;
+			}
+			throw openData("Cannot create " + mappingClass.getName() + " for " + t + ": " + cause, cause);
+		} catch (final Exception e) {
+			throw openData("Cannot create " + mappingClass.getName() + " for " + t + ": " + e, e);
+		}
+	}
+
+	private static OpenDataException openData(final String message, final Throwable cause) {
+		final OpenDataException ode = new OpenDataException(message);
+		ode.initCause(cause);
+		return ode;
+	}
+}
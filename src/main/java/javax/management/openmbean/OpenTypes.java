@@ -0,0 +1,81 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>A registry of Open Types, which canonicalizes structurally equal
+ * <code>OpenType</code>s, so that the mappings which describe the same
+ * structure share a single <code>CompositeType</code> (or
+ * <code>TabularType</code>, or <code>ArrayType</code>) graph, and
+ * comparing them is mostly a matter of reference equality.</p>
+ *
+ * <p>The registry also caches the classes named by
+ * {@link OpenType#getClassName()}, which are only loaded once.</p>
+ *
+ * <p>Canonical types are only weakly referenced, so a type is dropped
+ * from the registry as soon as no mapping uses it any longer.  The
+ * cached classes are the few Open Data classes (and arrays thereof), so
+ * they are referenced strongly.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+final class OpenTypes {
+	private static final Map<OpenType<?>, Reference<OpenType<?>>> POOL = new WeakHashMap<OpenType<?>, Reference<OpenType<?>>>();
+
+	private static final ConcurrentMap<String, Class<?>> OPEN_CLASSES = new ConcurrentHashMap<String, Class<?>>();
+
+	private OpenTypes() {
+		assert false;
+	}
+
+	/**
+	 * @param openType the Open Type to canonicalize.
+	 * @return an Open Type of the same class, equal to
+	 *         <code>openType</code>, or <code>null</code> if
+	 *         <code>openType</code> is <code>null</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends OpenType<?>> T intern(final T openType) {
+		if (openType == null) {
+			return null;
+		}
+		synchronized (POOL) {
+			final Reference<OpenType<?>> reference = POOL.get(openType);
+			final OpenType<?> canonical = reference == null ? null : reference.get();
+			if (canonical != null && canonical.getClass() == openType.getClass()) {
+				return (T) canonical;
+			}
+			/*
+			 * An equal key is kept by put(), so the entry of a type
+			 * of another class, or of a cleared one, would keep
+			 * openType only as long as that key.
+			 */
+			POOL.remove(openType);
+			POOL.put(openType, new WeakReference<OpenType<?>>(openType));
+			return openType;
+		}
+	}
+
+	/**
+	 * @param openType the Open Type.
+	 * @return the class named by {@link OpenType#getClassName()}.
+	 * @throws ClassNotFoundException if the class cannot be loaded.
+	 */
+	static Class<?> getOpenClass(final OpenType<?> openType) throws ClassNotFoundException {
+		final String className = openType.getClassName();
+		Class<?> openClass = OPEN_CLASSES.get(className);
+		if (openClass == null) {
+			openClass = Class.forName(className);
+			OPEN_CLASSES.putIfAbsent(className, openClass);
+		}
+		return openClass;
+	}
+}
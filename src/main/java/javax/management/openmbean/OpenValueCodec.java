@@ -0,0 +1,822 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * <p>The binary encoding of the values of an Open Type, shared by
+ * {@link OpenValueEncoder} and {@link OpenValueDecoder}.</p>
+ *
+ * <p>The Open Type itself (the schema) is written once.  A tree of
+ * codecs, one per node of the Open Type, is then built from it, so that
+ * each value is written without any type information: only a presence
+ * byte for each non-primitive value, followed by the packed value.
+ * Simple values are written in their natural binary form, arrays of
+ * primitive types element by element without boxing, composite values
+ * as their items in item name order, and tabular values as their row
+ * count followed by the rows.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+abstract class OpenValueCodec {
+	/**
+	 * The first bytes of an encoded stream.
+	 */
+	static final int MAGIC = 0x4f564332;
+
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * The maximum number of elements or bytes allocated ahead of those
+	 * actually read: longer arrays and strings grow as they are read, so
+	 * that a corrupted length fails with an <code>EOFException</code>
+	 * rather than with an <code>OutOfMemoryError</code>.
+	 */
+	private static final int MAX_PREALLOCATED = 8192;
+
+	/**
+	 * The maximum number of dimensions of a Java array.
+	 */
+	private static final int MAX_DIMENSION = 255;
+
+	/**
+	 * The simple types, by schema tag.
+	 */
+	private static final SimpleType<?> SIMPLE_TYPES[] = {
+		SimpleType.VOID,
+		SimpleType.BOOLEAN,
+		SimpleType.CHARACTER,
+		SimpleType.BYTE,
+		SimpleType.SHORT,
+		SimpleType.INTEGER,
+		SimpleType.LONG,
+		SimpleType.FLOAT,
+		SimpleType.DOUBLE,
+		SimpleType.STRING,
+		SimpleType.BIGDECIMAL,
+		SimpleType.BIGINTEGER,
+		SimpleType.DATE,
+		SimpleType.OBJECTNAME,
+	};
+
+	private static final int VOID = 0;
+
+	private static final int BOOLEAN = 1;
+
+	private static final int CHARACTER = 2;
+
+	private static final int BYTE = 3;
+
+	private static final int SHORT = 4;
+
+	private static final int INTEGER = 5;
+
+	private static final int LONG = 6;
+
+	private static final int FLOAT = 7;
+
+	private static final int DOUBLE = 8;
+
+	private static final int STRING = 9;
+
+	private static final int BIGDECIMAL = 10;
+
+	private static final int BIGINTEGER = 11;
+
+	private static final int DATE = 12;
+
+	private static final int OBJECTNAME = 13;
+
+	private static final int ARRAY_TAG = 0x20;
+
+	private static final int COMPOSITE_TAG = 0x21;
+
+	private static final int TABULAR_TAG = 0x22;
+
+	OpenValueCodec() {
+		// empty
+	}
+
+	/**
+	 * @param out the output.
+	 * @param value a non-<code>null</code> value of the Open Type of
+	 *        this codec.
+	 */
+	abstract void writeValue(final DataOutput out, final Object value) throws IOException;
+
+	/**
+	 * @param in the input.
+	 * @return a non-<code>null</code> value of the Open Type of this
+	 *         codec.
+	 */
+	abstract Object readValue(final DataInput in) throws IOException;
+
+	/**
+	 * <p>Write a value preceded by its presence byte.</p>
+	 */
+	final void write(final DataOutput out, final Object value) throws IOException {
+		if (value == null) {
+			out.writeBoolean(false);
+		} else {
+			out.writeBoolean(true);
+			this.writeValue(out, value);
+		}
+	}
+
+	/**
+	 * <p>Read a value preceded by its presence byte.</p>
+	 */
+	final Object read(final DataInput in) throws IOException {
+		return in.readBoolean() ? this.readValue(in) : null;
+	}
+
+	/**
+	 * @param openType the Open Type.
+	 * @return the codec tree for <code>openType</code>.
+	 * @throws IllegalArgumentException if <code>openType</code> is not
+	 *         one of the standard Open Types.
+	 */
+	static OpenValueCodec forType(final OpenType<?> openType) {
+		if (openType instanceof SimpleType<?>) {
+			return new SimpleCodec(simpleTag((SimpleType<?>) openType));
+		} else if (openType instanceof ArrayType<?>) {
+			final ArrayType<?> arrayType = (ArrayType<?>) openType;
+			try {
+				return new ArrayCodec(OpenTypes.getOpenClass(arrayType),
+						arrayType.getDimension(),
+						arrayType.isPrimitiveArray(),
+						simpleTagOrMinusOne(arrayType.getElementOpenType()),
+						forType(arrayType.getElementOpenType()));
+			} catch (final ClassNotFoundException cnfe) {
+				throw new IllegalArgumentException(cnfe.getMessage(), cnfe);
+			}
+		} else if (openType instanceof CompositeType) {
+			return new CompositeCodec((CompositeType) openType);
+		} else if (openType instanceof TabularType) {
+			return new TabularCodec((TabularType) openType);
+		}
+		throw new IllegalArgumentException("Unsupported Open Type: " + openType);
+	}
+
+	private static int simpleTag(final SimpleType<?> simpleType) {
+		for (int i = 0; i < SIMPLE_TYPES.length; i++) {
+			if (SIMPLE_TYPES[i].equals(simpleType)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Unsupported simple type: " + simpleType);
+	}
+
+	private static int simpleTagOrMinusOne(final OpenType<?> openType) {
+		return openType instanceof SimpleType<?> ? simpleTag((SimpleType<?>) openType) : -1;
+	}
+
+	/*
+	 * Schema.
+	 */
+
+	/**
+	 * <p>Write the schema of an Open Type.</p>
+	 */
+	static void writeType(final DataOutput out, final OpenType<?> openType) throws IOException {
+		if (openType instanceof SimpleType<?>) {
+			out.writeByte(simpleTag((SimpleType<?>) openType));
+		} else if (openType instanceof ArrayType<?>) {
+			final ArrayType<?> arrayType = (ArrayType<?>) openType;
+			out.writeByte(ARRAY_TAG);
+			out.writeInt(arrayType.getDimension());
+			out.writeBoolean(arrayType.isPrimitiveArray());
+			writeType(out, arrayType.getElementOpenType());
+		} else if (openType instanceof CompositeType) {
+			final CompositeType compositeType = (CompositeType) openType;
+			out.writeByte(COMPOSITE_TAG);
+			writeString(out, compositeType.getTypeName());
+			writeString(out, compositeType.getDescription());
+			final Set<String> itemNames = compositeType.keySet();
+			out.writeInt(itemNames.size());
+			for (final String itemName : itemNames) {
+				writeString(out, itemName);
+				writeString(out, compositeType.getDescription(itemName));
+				writeType(out, compositeType.getType(itemName));
+			}
+		} else if (openType instanceof TabularType) {
+			final TabularType tabularType = (TabularType) openType;
+			out.writeByte(TABULAR_TAG);
+			writeString(out, tabularType.getTypeName());
+			writeString(out, tabularType.getDescription());
+			writeType(out, tabularType.getRowType());
+			final List<String> indexNames = tabularType.getIndexNames();
+			out.writeInt(indexNames.size());
+			for (final String indexName : indexNames) {
+				writeString(out, indexName);
+			}
+		} else {
+			throw new IllegalArgumentException("Unsupported Open Type: " + openType);
+		}
+	}
+
+	/**
+	 * <p>Read the schema of an Open Type.</p>
+	 */
+	static OpenType<?> readType(final DataInput in) throws IOException {
+		final int tag = in.readUnsignedByte();
+		try {
+			if (tag < SIMPLE_TYPES.length) {
+				return SIMPLE_TYPES[tag];
+			} else if (tag == ARRAY_TAG) {
+				final int dimension = in.readInt();
+				if (dimension < 1 || dimension > MAX_DIMENSION) {
+					throw new StreamCorruptedException("Invalid array dimension: " + dimension);
+				}
+				final boolean primitiveArray = in.readBoolean();
+				final OpenType<?> elementType = readType(in);
+				if (primitiveArray) {
+					final Class<?> primitiveClass = primitiveClass((SimpleType<?>) elementType);
+					return OpenTypes.intern(ArrayType.getPrimitiveArrayType(Array.newInstance(primitiveClass, new int[dimension]).getClass()));
+				}
+				return intern(new ArrayType<Object>(dimension, elementType));
+			} else if (tag == COMPOSITE_TAG) {
+				final String typeName = readString(in);
+				final String description = readString(in);
+				final int size = readCount(in, "item count");
+				final List<String> itemNames = new ArrayList<String>(Math.min(size, MAX_PREALLOCATED));
+				final List<String> itemDescriptions = new ArrayList<String>(Math.min(size, MAX_PREALLOCATED));
+				final List<OpenType<?>> itemTypes = new ArrayList<OpenType<?>>(Math.min(size, MAX_PREALLOCATED));
+				for (int i = 0; i < size; i++) {
+					itemNames.add(readString(in));
+					itemDescriptions.add(readString(in));
+					itemTypes.add(readType(in));
+				}
+				return intern(new CompositeType(typeName,
+						description,
+						itemNames.toArray(new String[size]),
+						itemDescriptions.toArray(new String[size]),
+						itemTypes.toArray(new OpenType<?>[size])));
+			} else if (tag == TABULAR_TAG) {
+				final String typeName = readString(in);
+				final String description = readString(in);
+				final CompositeType rowType = (CompositeType) readType(in);
+				final int size = readCount(in, "index name count");
+				final List<String> indexNames = new ArrayList<String>(Math.min(size, MAX_PREALLOCATED));
+				for (int i = 0; i < size; i++) {
+					indexNames.add(readString(in));
+				}
+				return intern(new TabularType(typeName, description, rowType, indexNames.toArray(new String[size])));
+			}
+		} catch (final OpenDataException ode) {
+			throw new InvalidObjectException("Invalid Open Type: " + ode.getMessage());
+		} catch (final ClassCastException cce) {
+			throw new InvalidObjectException("Invalid Open Type: " + cce.getMessage());
+		} catch (final IllegalArgumentException iae) {
+			throw new InvalidObjectException("Invalid Open Type: " + iae.getMessage());
+		}
+		throw new StreamCorruptedException("Unknown Open Type tag: " + tag);
+	}
+
+	/**
+	 * <p>The equality of Open Types ignores the descriptions, so a
+	 * decoded type is only replaced with the canonical one if their
+	 * descriptions are the same as well: the decoded type is then
+	 * indistinguishable from the one which was written.</p>
+	 *
+	 * @return the canonical Open Type equal to <code>openType</code>,
+	 *         if it has the same descriptions, or else
+	 *         <code>openType</code> itself.
+	 */
+	private static <T extends OpenType<?>> T intern(final T openType) {
+		final T canonical = OpenTypes.intern(openType);
+		return sameDescriptions(canonical, openType) ? canonical : openType;
+	}
+
+	/**
+	 * @param left an Open Type.
+	 * @param right an Open Type equal to <code>left</code>.
+	 * @return whether <code>left</code> and <code>right</code>, their
+	 *         items, and the types thereof, have the same descriptions.
+	 */
+	private static boolean sameDescriptions(final OpenType<?> left, final OpenType<?> right) {
+		if (left == right) {
+			return true;
+		}
+		if (!left.getDescription().equals(right.getDescription())) {
+			return false;
+		}
+		if (left instanceof CompositeType) {
+			final CompositeType leftComposite = (CompositeType) left;
+			final CompositeType rightComposite = (CompositeType) right;
+			for (final String itemName : leftComposite.keySet()) {
+				if (!leftComposite.getDescription(itemName).equals(rightComposite.getDescription(itemName))
+						|| !sameDescriptions(leftComposite.getType(itemName), rightComposite.getType(itemName))) {
+					return false;
+				}
+			}
+			return true;
+		} else if (left instanceof TabularType) {
+			return sameDescriptions(((TabularType) left).getRowType(), ((TabularType) right).getRowType());
+		} else if (left instanceof ArrayType<?>) {
+			return sameDescriptions(((ArrayType<?>) left).getElementOpenType(), ((ArrayType<?>) right).getElementOpenType());
+		}
+		return true;
+	}
+
+	private static Class<?> primitiveClass(final SimpleType<?> elementType) {
+		switch (simpleTag(elementType)) {
+		case BOOLEAN:
+			return Boolean.TYPE;
+		case CHARACTER:
+			return Character.TYPE;
+		case BYTE:
+			return Byte.TYPE;
+		case SHORT:
+			return Short.TYPE;
+		case INTEGER:
+			return Integer.TYPE;
+		case LONG:
+			return Long.TYPE;
+		case FLOAT:
+			return Float.TYPE;
+		case DOUBLE:
+			return Double.TYPE;
+		default:
+			throw new IllegalArgumentException("No primitive type for " + elementType);
+		}
+	}
+
+	/*
+	 * Values.
+	 */
+
+	static void writeString(final DataOutput out, final String s) throws IOException {
+		final byte bytes[] = s.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString(final DataInput in) throws IOException {
+		return new String(readBytes(in), UTF_8);
+	}
+
+	private static void writeBytes(final DataOutput out, final byte bytes[]) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static byte[] readBytes(final DataInput in) throws IOException {
+		return (byte[]) readPrimitives(in, BYTE, readCount(in, "length"));
+	}
+
+	/**
+	 * @param what what is counted, for the exception message.
+	 * @return a length or a count, which is not negative.
+	 * @throws StreamCorruptedException if it is negative.
+	 */
+	private static int readCount(final DataInput in, final String what) throws IOException {
+		final int count = in.readInt();
+		if (count < 0) {
+			throw new StreamCorruptedException("Negative " + what + ": " + count);
+		}
+		return count;
+	}
+
+	/**
+	 * <p>Read an array of <code>length</code> primitive values, growing
+	 * it as they are read.</p>
+	 *
+	 * @param elementTag the simple type tag of the elements.
+	 */
+	private static Object readPrimitives(final DataInput in, final int elementTag, final int length) throws IOException {
+		Object array = Array.newInstance(primitiveClass(SIMPLE_TYPES[elementTag]), Math.min(length, MAX_PREALLOCATED));
+		for (int from = 0; from < length;) {
+			if (from == Array.getLength(array)) {
+				array = grow(array, length);
+			}
+			final int to = Array.getLength(array);
+			readPrimitives(in, elementTag, array, from, to);
+			from = to;
+		}
+		return array;
+	}
+
+	/**
+	 * @param length the final length of the array.
+	 * @return a copy of <code>array</code>, twice as long, but not
+	 *         longer than <code>length</code>.
+	 */
+	private static Object grow(final Object array, final int length) {
+		final int capacity = Array.getLength(array);
+		final Object grown = Array.newInstance(array.getClass().getComponentType(), (int) Math.min(length, 2L * capacity));
+		System.arraycopy(array, 0, grown, 0, capacity);
+		return grown;
+	}
+
+	/**
+	 * <p>Read the elements of <code>array</code> in
+	 * <code>[from, to)</code>.</p>
+	 */
+	private static void readPrimitives(final DataInput in,
+			final int elementTag,
+			final Object array,
+			final int from,
+			final int to)
+	throws IOException {
+		switch (elementTag) {
+		case BOOLEAN:
+			final boolean booleans[] = (boolean[]) array;
+			for (int i = from; i < to; i++) {
+				booleans[i] = in.readBoolean();
+			}
+			break;
+		case CHARACTER:
+			final char chars[] = (char[]) array;
+			for (int i = from; i < to; i++) {
+				chars[i] = in.readChar();
+			}
+			break;
+		case BYTE:
+			in.readFully((byte[]) array, from, to - from);
+			break;
+		case SHORT:
+			final short shorts[] = (short[]) array;
+			for (int i = from; i < to; i++) {
+				shorts[i] = in.readShort();
+			}
+			break;
+		case INTEGER:
+			final int ints[] = (int[]) array;
+			for (int i = from; i < to; i++) {
+				ints[i] = in.readInt();
+			}
+			break;
+		case LONG:
+			final long longs[] = (long[]) array;
+			for (int i = from; i < to; i++) {
+				longs[i] = in.readLong();
+			}
+			break;
+		case FLOAT:
+			final float floats[] = (float[]) array;
+			for (int i = from; i < to; i++) {
+				floats[i] = in.readFloat();
+			}
+			break;
+		case DOUBLE:
+			final double doubles[] = (double[]) array;
+			for (int i = from; i < to; i++) {
+				doubles[i] = in.readDouble();
+			}
+			break;
+		default:
+			throw new StreamCorruptedException("Not a primitive type tag: " + elementTag);
+		}
+	}
+
+	/**
+	 * <p>Encodes the values of a {@link SimpleType}.</p>
+	 */
+	private static final class SimpleCodec extends OpenValueCodec {
+		private final int tag;
+
+		SimpleCodec(final int tag) {
+			this.tag = tag;
+		}
+
+		/**
+		 * @see OpenValueCodec#writeValue(DataOutput, Object)
+		 */
+		@Override
+		void writeValue(final DataOutput out, final Object value) throws IOException {
+			switch (this.tag) {
+			case BOOLEAN:
+				out.writeBoolean(((Boolean) value).booleanValue());
+				break;
+			case CHARACTER:
+				out.writeChar(((Character) value).charValue());
+				break;
+			case BYTE:
+				out.writeByte(((Byte) value).byteValue());
+				break;
+			case SHORT:
+				out.writeShort(((Short) value).shortValue());
+				break;
+			case INTEGER:
+				out.writeInt(((Integer) value).intValue());
+				break;
+			case LONG:
+				out.writeLong(((Long) value).longValue());
+				break;
+			case FLOAT:
+				out.writeFloat(((Float) value).floatValue());
+				break;
+			case DOUBLE:
+				out.writeDouble(((Double) value).doubleValue());
+				break;
+			case STRING:
+				writeString(out, (String) value);
+				break;
+			case BIGDECIMAL:
+				final BigDecimal bigDecimal = (BigDecimal) value;
+				out.writeInt(bigDecimal.scale());
+				writeBytes(out, bigDecimal.unscaledValue().toByteArray());
+				break;
+			case BIGINTEGER:
+				writeBytes(out, ((BigInteger) value).toByteArray());
+				break;
+			case DATE:
+				out.writeLong(((Date) value).getTime());
+				break;
+			case OBJECTNAME:
+				writeString(out, ((ObjectName) value).getCanonicalName());
+				break;
+			default:
+				/*
+				 * VOID has no non-null values.
+				 */
+				throw new IllegalArgumentException("Not a value of " + SIMPLE_TYPES[this.tag] + ": " + value);
+			}
+		}
+
+		/**
+		 * @see OpenValueCodec#readValue(DataInput)
+		 */
+		@Override
+		Object readValue(final DataInput in) throws IOException {
+			switch (this.tag) {
+			case BOOLEAN:
+				return Boolean.valueOf(in.readBoolean());
+			case CHARACTER:
+				return Character.valueOf(in.readChar());
+			case BYTE:
+				return Byte.valueOf(in.readByte());
+			case SHORT:
+				return Short.valueOf(in.readShort());
+			case INTEGER:
+				return Integer.valueOf(in.readInt());
+			case LONG:
+				return Long.valueOf(in.readLong());
+			case FLOAT:
+				return Float.valueOf(in.readFloat());
+			case DOUBLE:
+				return Double.valueOf(in.readDouble());
+			case STRING:
+				return readString(in);
+			case BIGDECIMAL:
+				final int scale = in.readInt();
+				return new BigDecimal(new BigInteger(readBytes(in)), scale);
+			case BIGINTEGER:
+				return new BigInteger(readBytes(in));
+			case DATE:
+				return new Date(in.readLong());
+			case OBJECTNAME:
+				try {
+					return ObjectName.getInstance(readString(in));
+				} catch (final MalformedObjectNameException mone) {
+					throw new IOException(mone.getMessage(), mone);
+				}
+			case VOID:
+			default:
+				throw new StreamCorruptedException("Non-null value of " + SIMPLE_TYPES[this.tag]);
+			}
+		}
+	}
+
+	/**
+	 * <p>Encodes the values of an {@link ArrayType}.  The innermost
+	 * arrays of a primitive array type are written element by element,
+	 * with neither presence bytes nor boxing.</p>
+	 */
+	private static final class ArrayCodec extends OpenValueCodec {
+		private final Class<?> arrayClass;
+
+		private final int dimension;
+
+		private final boolean primitiveArray;
+
+		private final int elementTag;
+
+		private final OpenValueCodec elementCodec;
+
+		ArrayCodec(final Class<?> arrayClass,
+				final int dimension,
+				final boolean primitiveArray,
+				final int elementTag,
+				final OpenValueCodec elementCodec) {
+			this.arrayClass = arrayClass;
+			this.dimension = dimension;
+			this.primitiveArray = primitiveArray;
+			this.elementTag = elementTag;
+			this.elementCodec = elementCodec;
+		}
+
+		/**
+		 * @see OpenValueCodec#writeValue(DataOutput, Object)
+		 */
+		@Override
+		void writeValue(final DataOutput out, final Object value) throws IOException {
+			this.writeArray(out, value, this.dimension);
+		}
+
+		private void writeArray(final DataOutput out, final Object array, final int remaining) throws IOException {
+			final int length = Array.getLength(array);
+			out.writeInt(length);
+			if (remaining == 1 && this.primitiveArray) {
+				this.writePrimitives(out, array, length);
+			} else if (remaining == 1) {
+				for (final Object element : (Object[]) array) {
+					this.elementCodec.write(out, element);
+				}
+			} else {
+				for (final Object element : (Object[]) array) {
+					if (element == null) {
+						out.writeBoolean(false);
+					} else {
+						out.writeBoolean(true);
+						this.writeArray(out, element, remaining - 1);
+					}
+				}
+			}
+		}
+
+		private void writePrimitives(final DataOutput out, final Object array, final int length) throws IOException {
+			switch (this.elementTag) {
+			case BOOLEAN:
+				for (final boolean b : (boolean[]) array) {
+					out.writeBoolean(b);
+				}
+				break;
+			case CHARACTER:
+				for (final char c : (char[]) array) {
+					out.writeChar(c);
+				}
+				break;
+			case BYTE:
+				out.write((byte[]) array, 0, length);
+				break;
+			case SHORT:
+				for (final short s : (short[]) array) {
+					out.writeShort(s);
+				}
+				break;
+			case INTEGER:
+				for (final int i : (int[]) array) {
+					out.writeInt(i);
+				}
+				break;
+			case LONG:
+				for (final long l : (long[]) array) {
+					out.writeLong(l);
+				}
+				break;
+			case FLOAT:
+				for (final float f : (float[]) array) {
+					out.writeFloat(f);
+				}
+				break;
+			case DOUBLE:
+				for (final double d : (double[]) array) {
+					out.writeDouble(d);
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Not a primitive array: " + array);
+			}
+		}
+
+		/**
+		 * @see OpenValueCodec#readValue(DataInput)
+		 */
+		@Override
+		Object readValue(final DataInput in) throws IOException {
+			return this.readArray(in, this.arrayClass, this.dimension);
+		}
+
+		private Object readArray(final DataInput in, final Class<?> clazz, final int remaining) throws IOException {
+			final int length = readCount(in, "array length");
+			final Class<?> componentClass = clazz.getComponentType();
+			if (remaining == 1 && this.primitiveArray) {
+				return readPrimitives(in, this.elementTag, length);
+			}
+			Object array[] = (Object[]) Array.newInstance(componentClass, Math.min(length, MAX_PREALLOCATED));
+			for (int i = 0; i < length; i++) {
+				if (i == array.length) {
+					array = (Object[]) grow(array, length);
+				}
+				if (remaining == 1) {
+					array[i] = this.elementCodec.read(in);
+				} else if (in.readBoolean()) {
+					array[i] = this.readArray(in, componentClass, remaining - 1);
+				}
+			}
+			return array;
+		}
+	}
+
+	/**
+	 * <p>Encodes the values of a {@link CompositeType}, as their items
+	 * in item name order.</p>
+	 */
+	private static final class CompositeCodec extends OpenValueCodec {
+		private final CompositeType compositeType;
+
+		private final String itemNames[];
+
+		private final OpenValueCodec itemCodecs[];
+
+		CompositeCodec(final CompositeType compositeType) {
+			this.compositeType = compositeType;
+			final Set<String> itemNames = compositeType.keySet();
+			this.itemNames = itemNames.toArray(new String[itemNames.size()]);
+			this.itemCodecs = new OpenValueCodec[this.itemNames.length];
+			for (int i = 0; i < this.itemNames.length; i++) {
+				this.itemCodecs[i] = forType(compositeType.getType(this.itemNames[i]));
+			}
+		}
+
+		/**
+		 * @see OpenValueCodec#writeValue(DataOutput, Object)
+		 */
+		@Override
+		void writeValue(final DataOutput out, final Object value) throws IOException {
+			final Object itemValues[] = ((CompositeData) value).getAll(this.itemNames);
+			for (int i = 0; i < itemValues.length; i++) {
+				this.itemCodecs[i].write(out, itemValues[i]);
+			}
+		}
+
+		/**
+		 * @see OpenValueCodec#readValue(DataInput)
+		 */
+		@Override
+		Object readValue(final DataInput in) throws IOException {
+			final Object itemValues[] = new Object[this.itemNames.length];
+			for (int i = 0; i < itemValues.length; i++) {
+				itemValues[i] = this.itemCodecs[i].read(in);
+			}
+			try {
+				return new CompositeDataSupport(this.compositeType, this.itemNames, itemValues);
+			} catch (final OpenDataException ode) {
+				throw new InvalidObjectException("Invalid " + this.compositeType.getTypeName() + ": " + ode.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * <p>Encodes the values of a {@link TabularType}, as their row count
+	 * followed by the rows.</p>
+	 */
+	private static final class TabularCodec extends OpenValueCodec {
+		private final TabularType tabularType;
+
+		private final CompositeCodec rowCodec;
+
+		TabularCodec(final TabularType tabularType) {
+			this.tabularType = tabularType;
+			this.rowCodec = new CompositeCodec(tabularType.getRowType());
+		}
+
+		/**
+		 * @see OpenValueCodec#writeValue(DataOutput, Object)
+		 */
+		@Override
+		void writeValue(final DataOutput out, final Object value) throws IOException {
+			final TabularData tabularData = (TabularData) value;
+			out.writeInt(tabularData.size());
+			for (final Object row : tabularData.values()) {
+				this.rowCodec.writeValue(out, row);
+			}
+		}
+
+		/**
+		 * @see OpenValueCodec#readValue(DataInput)
+		 */
+		@Override
+		Object readValue(final DataInput in) throws IOException {
+			final int size = readCount(in, "row count");
+			final TabularDataSupport tabularData = new TabularDataSupport(this.tabularType, Math.max(16, Math.min(size, MAX_PREALLOCATED) * 4 / 3 + 1), 0.75f);
+			for (int i = 0; i < size; i++) {
+				try {
+					tabularData.put((CompositeData) this.rowCodec.readValue(in));
+				} catch (final RuntimeException re) {
+					throw new InvalidObjectException("Invalid row of " + this.tabularType.getTypeName() + ": " + re.getMessage());
+				}
+			}
+			return tabularData;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+/**
+ * <p>Reads the values written by an {@link OpenValueEncoder}.  The Open
+ * Type is read once, when the decoder is created; each value is then
+ * read without any type information.</p>
+ *
+ * <p>Composite values are decoded as {@link CompositeDataSupport}, and
+ * tabular values as {@link TabularDataSupport}, so that values read from
+ * an untrusted source are checked against the Open Type.  A decoder is
+ * not thread-safe.</p>
+ *
+ * <p>The Open Types read by this class are canonicalized, so that the
+ * values decoded by different decoders for the same schema share their
+ * types.</p>
+ *
+ * <p>This class is not present in the original <a href =
+ * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+ * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+ * </p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see OpenValueEncoder
+ */
+public final class OpenValueDecoder {
+	private final OpenType<?> openType;
+
+	private final DataInput in;
+
+	private final OpenValueCodec codec;
+
+	/**
+	 * <p>Create a decoder and read the Open Type from <code>in</code>.</p>
+	 *
+	 * @param in the input.
+	 * @throws StreamCorruptedException if <code>in</code> was not written
+	 *         by an <code>OpenValueEncoder</code>.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public OpenValueDecoder(final DataInput in) throws IOException {
+		this(readHeader(in), in);
+	}
+
+	private OpenValueDecoder(final OpenType<?> openType, final DataInput in) {
+		this.in = in;
+		this.openType = openType;
+		this.codec = OpenValueCodec.forType(openType);
+	}
+
+	private static OpenType<?> readHeader(final DataInput in) throws IOException {
+		if (in == null) {
+			throw new NullPointerException("in");
+		}
+		final int magic = in.readInt();
+		if (magic != OpenValueCodec.MAGIC) {
+			throw new StreamCorruptedException("Invalid stream header: " + Integer.toHexString(magic));
+		}
+		return OpenValueCodec.readType(in);
+	}
+
+	/**
+	 * <p>Create a decoder which reads nothing but the values written by
+	 * an encoder
+	 * {@linkplain OpenValueEncoder#withoutHeader(OpenType, java.io.DataOutput) created without a header}
+	 * for the same Open Type.</p>
+	 *
+	 * @param openType the Open Type of the values.
+	 * @param in the input.
+	 * @return the decoder.
+	 * @throws IllegalArgumentException if <code>openType</code> is not
+	 *         one of the standard Open Types.
+	 * @see #readOpenType(DataInput)
+	 */
+	public static OpenValueDecoder withoutHeader(final OpenType<?> openType, final DataInput in) {
+		if (openType == null) {
+			throw new NullPointerException("openType");
+		} else if (in == null) {
+			throw new NullPointerException("in");
+		}
+		return new OpenValueDecoder(openType, in);
+	}
+
+	/**
+	 * <p>Read the schema of an Open Type written by
+	 * {@link OpenValueEncoder#writeOpenType(OpenType, java.io.DataOutput)}.</p>
+	 *
+	 * @param in the input.
+	 * @return the Open Type.
+	 * @throws java.io.InvalidObjectException if the schema read is not
+	 *         a valid Open Type.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static OpenType<?> readOpenType(final DataInput in) throws IOException {
+		if (in == null) {
+			throw new NullPointerException("in");
+		}
+		return OpenValueCodec.readType(in);
+	}
+
+	/**
+	 * @return the Open Type of the values.
+	 */
+	public OpenType<?> getOpenType() {
+		return this.openType;
+	}
+
+	/**
+	 * <p>Read a value.</p>
+	 *
+	 * @return a value of the Open Type, or <code>null</code>.
+	 * @throws java.io.EOFException if there are no more values.
+	 * @throws java.io.InvalidObjectException if the value read is not a
+	 *         valid value of the Open Type.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public Object decode() throws IOException {
+		return this.codec.read(this.in);
+	}
+}
@@ -0,0 +1,135 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * <p>Writes the values of an Open Type in a compact binary form, which
+ * {@link OpenValueDecoder} reads back.  The Open Type (typically the
+ * {@linkplain MXBeanMapping#getOpenType() Open Type of a mapping}) is
+ * written once, when the encoder is created; each value is then written
+ * without any type information.  Items and elements of primitive types
+ * are written in their natural binary form, and arrays of primitive
+ * types without boxing, so that large tabular or array values can be
+ * transferred or persisted cheaply.</p>
+ *
+ * <p>The encoded form does not depend on the classes of the values, only
+ * on the Open Type, so that it can be read by a client which only knows
+ * about open data.  An encoder is not thread-safe.</p>
+ *
+ * <p>When many short streams of values share a few Open Types, the
+ * schema of each type can be {@linkplain #writeOpenType(OpenType, DataOutput) written}
+ * once, aside, and the values written by an encoder
+ * {@linkplain #withoutHeader(OpenType, DataOutput) without a header}.</p>
+ *
+ * <p>This class is not present in the original <a href =
+ * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+ * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+ * </p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see OpenValueDecoder
+ */
+public final class OpenValueEncoder {
+	private final OpenType<?> openType;
+
+	private final DataOutput out;
+
+	private final OpenValueCodec codec;
+
+	/**
+	 * <p>Create an encoder and write the Open Type to <code>out</code>.</p>
+	 *
+	 * @param openType the Open Type of the values.
+	 * @param out the output.
+	 * @throws IllegalArgumentException if <code>openType</code> is not
+	 *         one of the standard Open Types.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public OpenValueEncoder(final OpenType<?> openType, final DataOutput out) throws IOException {
+		this(openType, out, codecFor(openType));
+		out.writeInt(OpenValueCodec.MAGIC);
+		OpenValueCodec.writeType(out, openType);
+	}
+
+	private OpenValueEncoder(final OpenType<?> openType, final DataOutput out, final OpenValueCodec codec) {
+		if (out == null) {
+			throw new NullPointerException("out");
+		}
+		this.openType = openType;
+		this.out = out;
+		this.codec = codec;
+	}
+
+	private static OpenValueCodec codecFor(final OpenType<?> openType) {
+		if (openType == null) {
+			throw new NullPointerException("openType");
+		}
+		return OpenValueCodec.forType(openType);
+	}
+
+	/**
+	 * <p>Create an encoder which writes nothing but the values: they can
+	 * only be read by a decoder
+	 * {@linkplain OpenValueDecoder#withoutHeader(OpenType, DataInput) created without a header}
+	 * for the same Open Type.</p>
+	 *
+	 * @param openType the Open Type of the values.
+	 * @param out the output.
+	 * @return the encoder.
+	 * @throws IllegalArgumentException if <code>openType</code> is not
+	 *         one of the standard Open Types.
+	 * @see #writeOpenType(OpenType, DataOutput)
+	 */
+	public static OpenValueEncoder withoutHeader(final OpenType<?> openType, final DataOutput out) {
+		return new OpenValueEncoder(openType, out, codecFor(openType));
+	}
+
+	/**
+	 * <p>Write the schema of an Open Type alone, which
+	 * {@link OpenValueDecoder#readOpenType(DataInput)} reads back.</p>
+	 *
+	 * @param openType the Open Type.
+	 * @param out the output.
+	 * @throws IllegalArgumentException if <code>openType</code> is not
+	 *         one of the standard Open Types.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static void writeOpenType(final OpenType<?> openType, final DataOutput out) throws IOException {
+		if (openType == null) {
+			throw new NullPointerException("openType");
+		} else if (out == null) {
+			throw new NullPointerException("out");
+		}
+		OpenValueCodec.writeType(out, openType);
+	}
+
+	/**
+	 * @return the Open Type of the values.
+	 */
+	public OpenType<?> getOpenType() {
+		return this.openType;
+	}
+
+	/**
+	 * <p>Write a value.</p>
+	 *
+	 * @param value a value of the Open Type, or <code>null</code>.
+	 * @throws IllegalArgumentException if <code>value</code> is not a
+	 *         value of the Open Type.  The output is then left in an
+	 *         undefined state.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void encode(final Object value) throws IOException {
+		try {
+			this.codec.write(this.out, value);
+		} catch (final ClassCastException cce) {
+			throw new IllegalArgumentException("Not a value of " + this.openType.getTypeName() + ": " + value, cce);
+		} catch (final InvalidKeyException ike) {
+			throw new IllegalArgumentException("Not a value of " + this.openType.getTypeName() + ": " + value, ike);
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * <p>Converts the elements of a large array or collection to open values
+ * in parallel, by splitting them into contiguous chunks, one per thread
+ * of an <code>ExecutorService</code> plus one for the calling thread.
+ * The calling thread converts the first chunk itself, and the other
+ * chunks are submitted to the executor.</p>
+ *
+ * <p>The calling thread then converts itself each chunk which the
+ * executor has not started yet, before waiting for the others.  A
+ * conversion thus never waits for a chunk which is only queued, so that
+ * nested conversions, an element of which is itself a large array or
+ * collection, cannot deadlock a bounded executor whose threads are all
+ * waiting.</p>
+ *
+ * <p>Each element is stored at its own index, so the element order is
+ * preserved.  If any conversion fails, the exception thrown is the one
+ * of the first failing element, as with a sequential conversion, and
+ * the chunks which have not started yet are cancelled.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see DefaultMXBeanMappingFactory.Options#setParallelExecutor(ExecutorService)
+ */
+final class ParallelConverter {
+	private final ExecutorService executor;
+
+	private final int threshold;
+
+	/**
+	 * @param executor the executor which converts all the chunks but the
+	 *        first one.
+	 * @param threshold the minimum number of elements for the
+	 *        conversion to be parallel.
+	 */
+	ParallelConverter(final ExecutorService executor, final int threshold) {
+		this.executor = executor;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * @param length the number of elements.
+	 * @return whether <code>length</code> elements are converted in
+	 *         parallel.
+	 */
+	boolean isParallel(final int length) {
+		return length >= this.threshold && length > 1;
+	}
+
+	/**
+	 * @param elementMapping the mapping of the elements.
+	 * @param javaElements the elements to convert.
+	 * @param openElements the array which receives the open values, of
+	 *        the same length as <code>javaElements</code>.
+	 * @throws OpenDataException if an element cannot be converted.
+	 */
+	void toOpenValues(final MXBeanMapping elementMapping,
+			final Object javaElements[],
+			final Object openElements[])
+	throws OpenDataException {
+		final int length = javaElements.length;
+		final int chunks = Math.max(1, Math.min(parallelism(this.executor) + 1, length));
+		final int chunkSize = (length + chunks - 1) / chunks;
+
+		final List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(chunks);
+		try {
+			for (int from = chunkSize; from < length; from += chunkSize) {
+				final FutureTask<Void> task = new FutureTask<Void>(new Chunk(elementMapping, javaElements, openElements, from, Math.min(length, from + chunkSize)));
+				tasks.add(task);
+				try {
+					this.executor.execute(task);
+				} catch (final RejectedExecutionException ignored) {
+					/*
+					 * The executor is saturated or shut down:
+					 * this chunk is converted when its turn comes.
+					 */
+				}
+			}
+
+			new Chunk(elementMapping, javaElements, openElements, 0, Math.min(length, chunkSize)).call();
+
+			for (final FutureTask<Void> task : tasks) {
+				/*
+				 * Does nothing if the executor has started the task.
+				 */
+				task.run();
+				await(task);
+			}
+		} finally {
+			for (final FutureTask<Void> task : tasks) {
+				task.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of threads which <code>executor</code> runs
+	 *         chunks with, at most.
+	 */
+	private static int parallelism(final ExecutorService executor) {
+		final int processors = Runtime.getRuntime().availableProcessors();
+		return executor instanceof ThreadPoolExecutor
+				? Math.min(processors, ((ThreadPoolExecutor) executor).getMaximumPoolSize())
+				: processors;
+	}
+
+	private static void await(final Future<?> future) throws OpenDataException {
+		try {
+			future.get();
+		} catch (final InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			final OpenDataException ode = new OpenDataException("Interrupted while converting");
+			ode.initCause(ie);
+			throw ode;
+		} catch (final ExecutionException ee) {
+			final Throwable cause = ee.getCause();
+			if (cause instanceof OpenDataException) {
+				throw (OpenDataException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new AssertionError(cause);
+		}
+	}
+
+	/**
+	 * <p>Converts the elements in <code>[from, to)</code>.</p>
+	 */
+	private static final class Chunk implements Callable<Void> {
+		private final MXBeanMapping elementMapping;
+
+		private final Object javaElements[];
+
+		private final Object openElements[];
+
+		private final int from;
+
+		private final int to;
+
+		Chunk(final MXBeanMapping elementMapping,
+				final Object javaElements[],
+				final Object openElements[],
+				final int from,
+				final int to) {
+			this.elementMapping = elementMapping;
+			this.javaElements = javaElements;
+			this.openElements = openElements;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * @see Callable#call()
+		 */
+		public Void call() throws OpenDataException {
+			for (int i = this.from; i < this.to; i++) {
+				this.openElements[i] = this.elementMapping.toOpenValue(this.javaElements[i]);
+			}
+			return null;
+		}
+	}
+}
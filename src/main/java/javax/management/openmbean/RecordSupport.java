@@ -0,0 +1,37 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+/**
+ * <p>Maps record classes and sealed types on behalf of
+ * {@link DefaultMXBeanMappingFactory}.</p>
+ *
+ * <p>There are neither records nor sealed types before Java 16 and 17,
+ * so this implementation maps nothing.  On Java 17 and later, the
+ * multi-release JAR replaces it with one which maps a record to a
+ * <code>CompositeData</code> with one item per record component, and a
+ * sealed type to one with an item per permitted subclass.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+final class RecordSupport {
+	private RecordSupport() {
+		assert false;
+	}
+
+	/**
+	 * @param javaClass the class to map.
+	 * @param f the original mapping factory, used to map the record
+	 *        components.
+	 * @return the mapping for <code>javaClass</code> if it is a record,
+	 *         or a sealed interface or abstract class, <code>null</code>
+	 *         otherwise.
+	 * @throws OpenDataException if <code>javaClass</code> is a record or
+	 *         a sealed type, which cannot be mapped.
+	 */
+	static MXBeanMapping newMapping(final Class<?> javaClass, final MXBeanMappingFactory f)
+	throws OpenDataException {
+		return null;
+	}
+}
@@ -0,0 +1,228 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * <p>A <code>CompositeData</code> built by a mapping of the
+ * {@linkplain DefaultMXBeanMappingFactory default mapping factory},
+ * whose items are known to match the <code>CompositeType</code> by
+ * construction.  Unlike {@link CompositeDataSupport}, it performs no
+ * checks at all when constructed, and shares the (sorted) item name
+ * array of its mapping.</p>
+ *
+ * <p>When serialized, an equivalent <code>CompositeDataSupport</code> is
+ * written instead, so remote clients see no difference.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see DefaultMXBeanMappingFactory
+ */
+final class TrustedCompositeData implements CompositeData, Serializable {
+	private static final long serialVersionUID = -2730587734066722716L;
+
+	private final transient CompositeType compositeType;
+
+	/**
+	 * The item names, sorted.
+	 */
+	private final transient String itemNames[];
+
+	private final transient Object itemValues[];
+
+	/**
+	 * The <code>CompositeDataSupport</code> which this object is
+	 * serialized as, or <code>null</code> if it has not been built yet.
+	 */
+	private transient volatile CompositeDataSupport snapshot;
+
+	/**
+	 * @param compositeType the type of this <code>CompositeData</code>.
+	 * @param itemNames all the item names of <code>compositeType</code>,
+	 *        sorted; the array is not copied.
+	 * @param itemValues the item values, in the same order; the array is
+	 *        not copied.
+	 */
+	TrustedCompositeData(final CompositeType compositeType,
+			final String itemNames[],
+			final Object itemValues[]) {
+		this.compositeType = compositeType;
+		this.itemNames = itemNames;
+		this.itemValues = itemValues;
+	}
+
+	private int indexOf(final String key) {
+		if (key == null || key.length() == 0) {
+			throw new IllegalArgumentException("Null or empty key");
+		}
+		final int index = Arrays.binarySearch(this.itemNames, key);
+		if (index < 0) {
+			throw new InvalidKeyException("No such item: " + key);
+		}
+		return index;
+	}
+
+	private CompositeDataSupport snapshot() {
+		CompositeDataSupport snapshot = this.snapshot;
+		if (snapshot == null) {
+			try {
+				snapshot = new CompositeDataSupport(this.compositeType, this.itemNames, this.itemValues);
+			} catch (final OpenDataException ode) {
+				throw new IllegalStateException(ode.toString(), ode);
+			}
+			this.snapshot = snapshot;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @return whether the item values <code>value1</code> and
+	 *         <code>value2</code> are equal, arrays being compared by
+	 *         their contents.
+	 */
+	private static boolean itemEquals(final Object value1, final Object value2) {
+		if (value1 == value2) {
+			return true;
+		} else if (value1 == null) {
+			return false;
+		}
+		return value1.getClass().isArray()
+				? Arrays.deepEquals(new Object[] {value1}, new Object[] {value2})
+				: value1.equals(value2);
+	}
+
+	/**
+	 * @return the hash code of the item value <code>value</code>, that of
+	 *         an array being computed from its contents.
+	 */
+	private static int itemHashCode(final Object value) {
+		/*
+		 * The hash code of a single element array is 31 plus that of its
+		 * element.
+		 */
+		return Arrays.deepHashCode(new Object[] {value}) - 31;
+	}
+
+	/**
+	 * @see CompositeData#getCompositeType()
+	 */
+	public CompositeType getCompositeType() {
+		return this.compositeType;
+	}
+
+	/**
+	 * @see CompositeData#get(String)
+	 */
+	public Object get(final String key) {
+		return this.itemValues[this.indexOf(key)];
+	}
+
+	/**
+	 * @see CompositeData#getAll(String[])
+	 */
+	public Object[] getAll(final String keys[]) {
+		if (keys == null) {
+			return new Object[0];
+		}
+		final Object values[] = new Object[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			values[i] = this.get(keys[i]);
+		}
+		return values;
+	}
+
+	/**
+	 * @see CompositeData#containsKey(String)
+	 */
+	public boolean containsKey(final String key) {
+		return key != null && Arrays.binarySearch(this.itemNames, key) >= 0;
+	}
+
+	/**
+	 * @see CompositeData#containsValue(Object)
+	 */
+	public boolean containsValue(final Object value) {
+		return this.values().contains(value);
+	}
+
+	/**
+	 * @see CompositeData#values()
+	 */
+	public Collection<?> values() {
+		return Collections.unmodifiableList(Arrays.asList(this.itemValues));
+	}
+
+	/**
+	 * <p>Same as {@link CompositeDataSupport#equals(Object)}.</p>
+	 *
+	 * @see CompositeData#equals(Object)
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (obj == this) {
+			return true;
+		} else if (!(obj instanceof CompositeData)) {
+			return false;
+		}
+		final CompositeData that = (CompositeData) obj;
+		if (!this.compositeType.equals(that.getCompositeType())) {
+			return false;
+		}
+		for (int i = 0; i < this.itemNames.length; i++) {
+			if (!itemEquals(this.itemValues[i], that.get(this.itemNames[i]))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * <p>Same as {@link CompositeDataSupport#hashCode()}.</p>
+	 *
+	 * @see CompositeData#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		int hashCode = this.compositeType.hashCode();
+		for (final Object itemValue : this.itemValues) {
+			hashCode += itemHashCode(itemValue);
+		}
+		return hashCode;
+	}
+
+	/**
+	 * <p>Same as {@link CompositeDataSupport#toString()}, which this
+	 * object is serialized as.</p>
+	 *
+	 * @see CompositeData#toString()
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append(CompositeDataSupport.class.getName())
+				.append("(compositeType=").append(this.compositeType)
+				.append(",contents={");
+		for (int i = 0; i < this.itemNames.length; i++) {
+			if (i != 0) {
+				builder.append(", ");
+			}
+			final String value = Arrays.deepToString(new Object[] {this.itemValues[i]});
+			builder.append(this.itemNames[i]).append('=').append(value, 1, value.length() - 1);
+		}
+		return builder.append("})").toString();
+	}
+
+	/**
+	 * <p>Serialize a <code>CompositeDataSupport</code> instead of this
+	 * object.</p>
+	 *
+	 * @return a <code>CompositeDataSupport</code> with the same items.
+	 */
+	private Object writeReplace() {
+		return this.snapshot();
+	}
+}
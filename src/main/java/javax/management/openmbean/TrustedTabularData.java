@@ -0,0 +1,269 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>A <code>TabularData</code> built by a mapping of the
+ * {@linkplain DefaultMXBeanMappingFactory default mapping factory},
+ * whose rows are known to match the <code>TabularType</code> by
+ * construction.  Unlike {@link TabularDataSupport}, rows added by the
+ * mapping are not checked against the row type.  Rows added through
+ * {@link #put(CompositeData)} or {@link #putAll(CompositeData[])} are
+ * checked as usual.</p>
+ *
+ * <p>The key set and the values are unmodifiable views.  When
+ * serialized, an equivalent <code>TabularDataSupport</code> is written
+ * instead, so remote clients see no difference.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see DefaultMXBeanMappingFactory
+ */
+final class TrustedTabularData implements TabularData, Serializable {
+	private static final long serialVersionUID = 6979120325617374146L;
+
+	private final transient TabularType tabularType;
+
+	private final transient String indexNames[];
+
+	/**
+	 * Index (as a <code>List</code>) -&gt; row.
+	 */
+	private final transient Map<List<?>, CompositeData> rows;
+
+	/**
+	 * The <code>TabularDataSupport</code> which this object is serialized
+	 * as, or <code>null</code> if it has not been built since the rows
+	 * last changed.
+	 */
+	private transient volatile TabularDataSupport snapshot;
+
+	/**
+	 * @param tabularType the type of this <code>TabularData</code>.
+	 * @param initialCapacity the expected number of rows.
+	 */
+	TrustedTabularData(final TabularType tabularType, final int initialCapacity) {
+		this.tabularType = tabularType;
+		final List<String> indexNames = tabularType.getIndexNames();
+		this.indexNames = indexNames.toArray(new String[indexNames.size()]);
+		this.rows = new LinkedHashMap<List<?>, CompositeData>(Math.max(16, initialCapacity * 4 / 3 + 1));
+	}
+
+	/**
+	 * <p>Add a row known to be of the row type, without checking it.</p>
+	 *
+	 * @param row the row.
+	 * @throws KeyAlreadyExistsException if there already is a row with
+	 *         the same index.
+	 */
+	void putTrusted(final CompositeData row) {
+		final List<?> index = Arrays.asList(row.getAll(this.indexNames));
+		if (this.rows.containsKey(index)) {
+			throw new KeyAlreadyExistsException("Duplicate index: " + index);
+		}
+		this.rows.put(index, row);
+		this.snapshot = null;
+	}
+
+	private TabularDataSupport snapshot() {
+		TabularDataSupport snapshot = this.snapshot;
+		if (snapshot == null) {
+			snapshot = new TabularDataSupport(this.tabularType, Math.max(16, this.rows.size() * 4 / 3 + 1), 0.75f);
+			for (final CompositeData row : this.rows.values()) {
+				snapshot.put(row);
+			}
+			this.snapshot = snapshot;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @see TabularData#getTabularType()
+	 */
+	public TabularType getTabularType() {
+		return this.tabularType;
+	}
+
+	/**
+	 * @see TabularData#calculateIndex(CompositeData)
+	 */
+	public Object[] calculateIndex(final CompositeData value) {
+		this.checkRow(value);
+		return value.getAll(this.indexNames);
+	}
+
+	private void checkRow(final CompositeData value) {
+		if (value == null) {
+			throw new NullPointerException("value");
+		} else if (!this.tabularType.getRowType().isValue(value)) {
+			throw new InvalidOpenTypeException("Value is not of the row type " + this.tabularType.getRowType().getTypeName());
+		}
+	}
+
+	/**
+	 * @see TabularData#size()
+	 */
+	public int size() {
+		return this.rows.size();
+	}
+
+	/**
+	 * @see TabularData#isEmpty()
+	 */
+	public boolean isEmpty() {
+		return this.rows.isEmpty();
+	}
+
+	/**
+	 * @see TabularData#containsKey(Object[])
+	 */
+	public boolean containsKey(final Object key[]) {
+		return key != null && this.rows.containsKey(Arrays.asList(key));
+	}
+
+	/**
+	 * @see TabularData#containsValue(CompositeData)
+	 */
+	public boolean containsValue(final CompositeData value) {
+		return this.rows.containsValue(value);
+	}
+
+	/**
+	 * @see TabularData#get(Object[])
+	 */
+	public CompositeData get(final Object key[]) {
+		if (key == null || key.length == 0) {
+			throw new NullPointerException("key");
+		} else if (key.length != this.indexNames.length) {
+			throw new InvalidKeyException("Key has " + key.length + " elements instead of " + this.indexNames.length);
+		}
+		return this.rows.get(Arrays.asList(key));
+	}
+
+	/**
+	 * @see TabularData#put(CompositeData)
+	 */
+	public void put(final CompositeData value) {
+		this.checkRow(value);
+		this.putTrusted(value);
+	}
+
+	/**
+	 * @see TabularData#remove(Object[])
+	 */
+	public CompositeData remove(final Object key[]) {
+		final CompositeData row = this.get(key);
+		if (row != null) {
+			this.rows.remove(Arrays.asList(key));
+			this.snapshot = null;
+		}
+		return row;
+	}
+
+	/**
+	 * @see TabularData#putAll(CompositeData[])
+	 */
+	public void putAll(final CompositeData values[]) {
+		if (values == null || values.length == 0) {
+			return;
+		}
+		for (final CompositeData value : values) {
+			this.checkRow(value);
+		}
+		for (final CompositeData value : values) {
+			this.putTrusted(value);
+		}
+	}
+
+	/**
+	 * @see TabularData#clear()
+	 */
+	public void clear() {
+		this.rows.clear();
+		this.snapshot = null;
+	}
+
+	/**
+	 * @see TabularData#keySet()
+	 */
+	public Set<?> keySet() {
+		return Collections.unmodifiableSet(this.rows.keySet());
+	}
+
+	/**
+	 * @see TabularData#values()
+	 */
+	public Collection<?> values() {
+		return Collections.unmodifiableCollection(this.rows.values());
+	}
+
+	/**
+	 * <p>Same as {@link TabularDataSupport#equals(Object)}.</p>
+	 *
+	 * @see TabularData#equals(Object)
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (obj == this) {
+			return true;
+		} else if (!(obj instanceof TabularData)) {
+			return false;
+		}
+		final TabularData that = (TabularData) obj;
+		if (!this.tabularType.equals(that.getTabularType()) || this.rows.size() != that.size()) {
+			return false;
+		}
+		for (final CompositeData row : this.rows.values()) {
+			if (!that.containsValue(row)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * <p>Same as {@link TabularDataSupport#hashCode()}.</p>
+	 *
+	 * @see TabularData#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		int hashCode = this.tabularType.hashCode();
+		for (final CompositeData row : this.rows.values()) {
+			hashCode += row.hashCode();
+		}
+		return hashCode;
+	}
+
+	/**
+	 * <p>Same as {@link TabularDataSupport#toString()}, which this
+	 * object is serialized as.</p>
+	 *
+	 * @see TabularData#toString()
+	 */
+	@Override
+	public String toString() {
+		return TabularDataSupport.class.getName()
+				+ "(tabularType=" + this.tabularType
+				+ ",contents=" + this.rows + ")";
+	}
+
+	/**
+	 * <p>Serialize a <code>TabularDataSupport</code> instead of this
+	 * object.</p>
+	 *
+	 * @return a <code>TabularDataSupport</code> with the same rows.
+	 */
+	private Object writeReplace() {
+		return this.snapshot();
+	}
+}
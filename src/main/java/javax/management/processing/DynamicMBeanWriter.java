@@ -0,0 +1,301 @@
+/*-
+ * $Id$
+ */
+package javax.management.processing;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * <p>Writes the source code of the {@link javax.management.IndexedDynamicMBean}
+ * generated for an {@link MBeanModel}.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ * @see MBeanAnnotationProcessor
+ */
+final class DynamicMBeanWriter {
+	private static final String OBJECT = Object.class.getName();
+
+	private final Writer out;
+
+	DynamicMBeanWriter(final Writer out) {
+		this.out = out;
+	}
+
+	void write(final MBeanModel model) throws IOException {
+		if (model.packageName.length() != 0) {
+			this.line(0, "package " + model.packageName + ';');
+			this.line(0, "");
+		}
+		this.line(0, "/**");
+		this.line(0, " * Generated by " + MBeanAnnotationProcessor.class.getName() + " from {@link " + model.qualifiedName + "}.");
+		this.line(0, " */");
+		this.line(0, "public final class " + model.simpleName + " extends javax.management.IndexedDynamicMBean {");
+
+		this.writeMBeanInfo(model);
+
+		this.line(1, "private final " + model.qualifiedName + model.wildcards + " implementation;");
+		this.line(0, "");
+		this.line(1, "public " + model.simpleName + "(final " + model.qualifiedName + model.wildcards + " implementation) {");
+		this.line(2, "super(implementation, MBEAN_INFO);");
+		this.line(2, "this.implementation = implementation;");
+		this.line(1, "}");
+		this.line(0, "");
+
+		this.writeGetAttribute(model);
+		this.writeSetAttribute(model);
+		this.writeInvoke(model);
+
+		this.line(0, "}");
+	}
+
+	private void writeMBeanInfo(final MBeanModel model) throws IOException {
+		this.line(1, "public static final javax.management.MBeanInfo MBEAN_INFO = new javax.management.MBeanInfo(");
+		this.line(3, literal(model.className) + ',');
+		this.line(3, literal(model.description) + ',');
+
+		this.line(3, "new javax.management.MBeanAttributeInfo[] {");
+		for (final MBeanModel.Attribute attribute : model.attributes) {
+			this.line(4, "new javax.management.MBeanAttributeInfo(" + literal(attribute.name)
+					+ ", " + literal(attribute.type)
+					+ ", " + literal(attribute.description == null ? MBeanAnnotationProcessor.DEFAULT_ATTRIBUTE_DESCRIPTION : attribute.description)
+					+ ", " + (attribute.getter != null)
+					+ ", " + (attribute.setter != null)
+					+ ", " + attribute.is + "),");
+		}
+		this.line(3, "},");
+
+		this.line(3, "new javax.management.MBeanConstructorInfo[] {");
+		for (final MBeanModel.Constructor constructor : model.constructors) {
+			this.line(4, "new javax.management.MBeanConstructorInfo(" + literal(model.className)
+					+ ", " + literal(constructor.description)
+					+ ", " + parameterInfos(constructor.parameters) + "),");
+		}
+		this.line(3, "},");
+
+		this.line(3, "new javax.management.MBeanOperationInfo[] {");
+		for (final MBeanModel.Operation operation : model.operations) {
+			this.line(4, "new javax.management.MBeanOperationInfo(" + literal(operation.name)
+					+ ", " + literal(operation.description)
+					+ ", " + parameterInfos(operation.parameters)
+					+ ", " + literal(operation.returnType)
+					+ ", " + operation.impact + "),");
+		}
+		this.line(3, "},");
+
+		this.line(3, "new javax.management.MBeanNotificationInfo[] {");
+		for (final MBeanModel.Notification notification : model.notifications) {
+			final StringBuilder types = new StringBuilder("new String[] {");
+			for (int i = 0; i < notification.types.length; i++) {
+				types.append(i == 0 ? "" : ", ").append(literal(notification.types[i]));
+			}
+			this.line(4, "new javax.management.MBeanNotificationInfo(" + types.append('}')
+					+ ", " + literal(notification.className)
+					+ ", " + literal(notification.description) + "),");
+		}
+		this.line(3, "});");
+		this.line(0, "");
+	}
+
+	private void writeGetAttribute(final MBeanModel model) throws IOException {
+		final List<MBeanModel.Attribute> attributes = model.attributes;
+		final String implementation = this.writeHeader(model,
+				null,
+				"Object",
+				"getAttribute",
+				"final int index",
+				"index");
+		this.line(2, "switch (index) {");
+		for (int i = 0; i < attributes.size(); i++) {
+			final MBeanModel.Attribute attribute = attributes.get(i);
+			if (attribute.getter != null) {
+				this.line(2, "case " + i + ':');
+				this.line(3, "return " + implementation + '.' + attribute.getter + "();");
+			}
+		}
+		this.line(2, "default:");
+		this.line(3, "throw new IllegalArgumentException(String.valueOf(index));");
+		this.line(2, "}");
+		this.line(1, "}");
+		this.line(0, "");
+	}
+
+	private void writeSetAttribute(final MBeanModel model) throws IOException {
+		final List<MBeanModel.Attribute> attributes = model.attributes;
+		final String implementation = this.writeHeader(model,
+				suppressWarnings(model),
+				"void",
+				"setAttribute",
+				"final int index, final Object value",
+				"index, value");
+		this.line(2, "switch (index) {");
+		for (int i = 0; i < attributes.size(); i++) {
+			final MBeanModel.Attribute attribute = attributes.get(i);
+			if (attribute.setter != null) {
+				this.line(2, "case " + i + ':');
+				if (!attribute.instanceType.equals(OBJECT)) {
+					this.line(3, "if (" + (attribute.primitive ? "" : "value != null && ") + "!(value instanceof " + attribute.instanceType + ")) {");
+					this.line(4, "throw this.invalidAttributeValue(index, value);");
+					this.line(3, "}");
+				}
+				this.line(3, implementation + '.' + attribute.setter + '(' + cast(attribute.sourceType) + "value);");
+				this.line(3, "return;");
+			}
+		}
+		this.line(2, "default:");
+		this.line(3, "throw new IllegalArgumentException(String.valueOf(index));");
+		this.line(2, "}");
+		this.line(1, "}");
+		this.line(0, "");
+	}
+
+	private void writeInvoke(final MBeanModel model) throws IOException {
+		final List<MBeanModel.Operation> operations = model.operations;
+		final String implementation = this.writeHeader(model,
+				suppressWarnings(model),
+				"Object",
+				"invoke",
+				"final int index, final Object params[]",
+				"index, params");
+		this.line(2, "switch (index) {");
+		for (int i = 0; i < operations.size(); i++) {
+			final MBeanModel.Operation operation = operations.get(i);
+			final StringBuilder call = new StringBuilder(implementation).append('.').append(operation.name).append('(');
+			for (int j = 0; j < operation.parameters.size(); j++) {
+				call.append(j == 0 ? "" : ", ").append(cast(operation.parameters.get(j).sourceType)).append("params[").append(j).append(']');
+			}
+			call.append(')');
+			this.line(2, "case " + i + ':');
+			for (int j = 0; j < operation.parameters.size(); j++) {
+				final MBeanModel.Parameter parameter = operation.parameters.get(j);
+				if (parameter.instanceType.equals(OBJECT)) {
+					continue;
+				}
+				final String param = "params[" + j + ']';
+				this.line(3, "if (" + (parameter.primitive ? "" : param + " != null && ") + "!(" + param + " instanceof " + parameter.instanceType + ")) {");
+				this.line(4, "throw this.invalidParameter(index, " + j + ", " + param + ");");
+				this.line(3, "}");
+			}
+			if (operation.returnType.equals("void")) {
+				this.line(3, call + ";");
+				this.line(3, "return null;");
+			} else {
+				this.line(3, "return " + call + ';');
+			}
+		}
+		this.line(2, "default:");
+		this.line(3, "throw new IllegalArgumentException(String.valueOf(index));");
+		this.line(2, "}");
+		this.line(1, "}");
+	}
+
+	/**
+	 * <p>Write the header of a dispatch method.  The method of a generic
+	 * MBean class delegates to a generic method, which captures the type
+	 * arguments of the implementation, so that the values can be cast to
+	 * the type variables of its methods; the header of that method
+	 * follows.</p>
+	 *
+	 * @param suppressWarnings the <code>&#64;SuppressWarnings</code>
+	 *        annotation of the method with the casts, or
+	 *        <code>null</code>.
+	 * @return the expression of the implementation in the method body.
+	 */
+	private String writeHeader(final MBeanModel model,
+			final String suppressWarnings,
+			final String returnType,
+			final String name,
+			final String parameters,
+			final String arguments)
+	throws IOException {
+		this.line(1, "@Override");
+		if (!model.isGeneric()) {
+			if (suppressWarnings != null) {
+				this.line(1, suppressWarnings);
+			}
+			this.line(1, "protected " + returnType + ' ' + name + '(' + parameters + ") throws Exception {");
+			return "this.implementation";
+		}
+		this.line(1, "protected " + returnType + ' ' + name + '(' + parameters + ") throws Exception {");
+		this.line(2, (returnType.equals("void") ? "" : "return ") + "this." + name + "(this.implementation, " + arguments + ");");
+		this.line(1, "}");
+		this.line(0, "");
+		if (suppressWarnings != null) {
+			this.line(1, suppressWarnings);
+		}
+		this.line(1, "private " + model.typeParameters + ' ' + returnType + ' ' + name
+				+ "(final " + model.qualifiedName + model.typeArguments + " implementation, " + parameters + ") throws Exception {");
+		return "implementation";
+	}
+
+	/**
+	 * @return the annotation which suppresses the warnings about the
+	 *         casts of attribute values and of operation parameters.
+	 */
+	private static String suppressWarnings(final MBeanModel model) {
+		return model.rawCasts
+				? "@SuppressWarnings({\"rawtypes\", \"unchecked\"})"
+				: "@SuppressWarnings(\"unchecked\")";
+	}
+
+	/**
+	 * @return the cast of a value to <code>sourceType</code>, or an
+	 *         empty string if it would be redundant.
+	 */
+	private static String cast(final String sourceType) {
+		return sourceType.equals(OBJECT) ? "" : '(' + sourceType + ") ";
+	}
+
+	private static String parameterInfos(final List<MBeanModel.Parameter> parameters) {
+		final StringBuilder result = new StringBuilder("new javax.management.MBeanParameterInfo[] {");
+		for (int i = 0; i < parameters.size(); i++) {
+			final MBeanModel.Parameter parameter = parameters.get(i);
+			result.append(i == 0 ? "" : ", ")
+					.append("new javax.management.MBeanParameterInfo(")
+					.append(literal(parameter.name)).append(", ")
+					.append(literal(parameter.type)).append(", ")
+					.append(literal(parameter.description)).append(')');
+		}
+		return result.append('}').toString();
+	}
+
+	private static String literal(final String s) {
+		final StringBuilder result = new StringBuilder(s.length() + 2).append('"');
+		for (int i = 0; i < s.length(); i++) {
+			final char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				result.append("\\\"");
+				break;
+			case '\\':
+				result.append("\\\\");
+				break;
+			case '\n':
+				result.append("\\n");
+				break;
+			case '\r':
+				result.append("\\r");
+				break;
+			case '\t':
+				result.append("\\t");
+				break;
+			default:
+				if (c < ' ' || c > '~') {
+					result.append(String.format("\\u%04x", Integer.valueOf(c)));
+				} else {
+					result.append(c);
+				}
+			}
+		}
+		return result.append('"').toString();
+	}
+
+	private void line(final int indent, final String line) throws IOException {
+		for (int i = 0; i < indent; i++) {
+			this.out.write('\t');
+		}
+		this.out.write(line);
+		this.out.write('\n');
+	}
+}
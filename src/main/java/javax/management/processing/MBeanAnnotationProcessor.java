@@ -0,0 +1,490 @@
+/*-
+ * $Id$
+ */
+package javax.management.processing;
+
+import static javax.lang.model.element.ElementKind.CLASS;
+import static javax.lang.model.element.Modifier.ABSTRACT;
+import static javax.lang.model.element.Modifier.PUBLIC;
+import static javax.lang.model.element.Modifier.STATIC;
+import static javax.lang.model.util.ElementFilter.constructorsIn;
+import static javax.lang.model.util.ElementFilter.methodsIn;
+import static javax.tools.Diagnostic.Kind.ERROR;
+
+import java.beans.ConstructorProperties;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.WildcardType;
+import javax.management.Description;
+import javax.management.IndexedDynamicMBean;
+import javax.management.MBean;
+import javax.management.ManagedAttribute;
+import javax.management.ManagedOperation;
+import javax.management.ManagedOperationParameter;
+import javax.management.NotificationInfo;
+import javax.management.NotificationInfos;
+
+/**
+ * <p>An annotation processor which generates, for each
+ * {@link MBean &#64;MBean} class <code>Foo</code>, a <code>FooDynamicMBean</code>
+ * class in the same package.  The generated class is an
+ * {@link IndexedDynamicMBean} with a public constructor which accepts a
+ * <code>Foo</code> instance, and a public static final
+ * <code>MBEAN_INFO</code> constant with the complete
+ * {@link javax.management.MBeanInfo} of the MBean.  Attributes and
+ * operations are dispatched by a <code>switch</code> statement which
+ * calls the methods of <code>Foo</code> directly, so neither the
+ * construction of the MBean nor the dispatch involve any reflection.</p>
+ *
+ * <p>For a nested class <code>Outer.Inner</code>, the generated class
+ * is named <code>Outer_InnerDynamicMBean</code>.  The generated class of
+ * a generic class <code>Foo&lt;T&gt;</code> is not generic: its
+ * constructor accepts any <code>Foo&lt;?&gt;</code>.</p>
+ *
+ * <p>The management interface is derived from the
+ * {@link ManagedAttribute &#64;ManagedAttribute},
+ * {@link ManagedOperation &#64;ManagedOperation},
+ * {@link ManagedOperationParameter &#64;ManagedOperationParameter},
+ * {@link ConstructorProperties &#64;ConstructorProperties},
+ * {@link Description &#64;Description},
+ * {@link NotificationInfo &#64;NotificationInfo} and
+ * {@link NotificationInfos &#64;NotificationInfos} annotations, with the
+ * same defaults as {@link javax.management.StandardMBean} uses.</p>
+ *
+ * <p>The processor is registered as a service, so it runs whenever this
+ * library is on the compiler's class path.</p>
+ *
+ * <p>This class is not present in the original <a href =
+ * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+ * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+ * </p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+@SupportedAnnotationTypes("javax.management.MBean")
+public class MBeanAnnotationProcessor extends AbstractProcessor {
+	/**
+	 * The suffix appended to the name of an MBean class to get the name
+	 * of the generated class.
+	 */
+	public static final String SUFFIX = "DynamicMBean";
+
+	/**
+	 * The description of an MBean class without a
+	 * {@link Description &#64;Description}.
+	 */
+	public static final String DEFAULT_MBEAN_DESCRIPTION = "Information on the management interface of the MBean";
+
+	/**
+	 * The description of a constructor without a
+	 * {@link Description &#64;Description}.
+	 */
+	public static final String DEFAULT_CONSTRUCTOR_DESCRIPTION = "Public constructor of the MBean";
+
+	/**
+	 * The description of an attribute whose getter and setter have no
+	 * {@link Description &#64;Description}.
+	 */
+	public static final String DEFAULT_ATTRIBUTE_DESCRIPTION = "Attribute exposed for management";
+
+	/**
+	 * The description of an operation without a
+	 * {@link Description &#64;Description}.
+	 */
+	public static final String DEFAULT_OPERATION_DESCRIPTION = "Operation exposed for management";
+
+	/**
+	 * @see javax.annotation.processing.Processor#getSupportedSourceVersion()
+	 */
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	/**
+	 * @see javax.annotation.processing.Processor#process(Set, RoundEnvironment)
+	 */
+	@Override
+	public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+		for (final Element element : roundEnv.getElementsAnnotatedWith(MBean.class)) {
+			if (element.getKind() != CLASS) {
+				continue;
+			}
+			final TypeElement type = (TypeElement) element;
+			if (!type.getModifiers().contains(PUBLIC)) {
+				this.error("An @MBean class must be public", type);
+				continue;
+			}
+			final MBeanModel model = this.newModel(type);
+			if (model == null) {
+				continue;
+			}
+			try {
+				final Writer out = this.processingEnv.getFiler().createSourceFile(
+						model.packageName.length() == 0
+								? model.simpleName
+								: model.packageName + '.' + model.simpleName,
+						type).openWriter();
+				try {
+					new DynamicMBeanWriter(out).write(model);
+				} finally {
+					out.close();
+				}
+			} catch (final IOException ioe) {
+				this.error("Unable to generate " + model.simpleName + ": " + ioe.getMessage(), type);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the model, or <code>null</code> if the class is not a
+	 *         valid MBean (the errors have already been reported).
+	 */
+	private MBeanModel newModel(final TypeElement type) {
+		final PackageElement packageElement = this.processingEnv.getElementUtils().getPackageOf(type);
+		final String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+		final StringBuilder simpleName = new StringBuilder();
+		for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+			simpleName.insert(0, simpleName.length() == 0 ? "" : "_").insert(0, e.getSimpleName());
+		}
+		final MBeanModel model = new MBeanModel(packageName,
+				simpleName.append(SUFFIX).toString(),
+				type.getQualifiedName().toString(),
+				this.processingEnv.getElementUtils().getBinaryName(type).toString());
+		model.description = descriptionOf(type, DEFAULT_MBEAN_DESCRIPTION);
+		setTypeParameters(model, type);
+
+		boolean valid = true;
+		if (!type.getModifiers().contains(ABSTRACT)) {
+			for (final ExecutableElement constructor : constructorsIn(type.getEnclosedElements())) {
+				if (constructor.getModifiers().contains(PUBLIC)) {
+					model.constructors.add(this.newConstructor(constructor));
+				}
+			}
+		}
+
+		final Map<String, MBeanModel.Attribute> attributes = new LinkedHashMap<String, MBeanModel.Attribute>();
+		for (final ExecutableElement method : methodsIn(this.processingEnv.getElementUtils().getAllMembers(type))) {
+			final boolean attribute = method.getAnnotation(ManagedAttribute.class) != null;
+			final boolean operation = method.getAnnotation(ManagedOperation.class) != null;
+			if (!attribute && !operation) {
+				continue;
+			}
+			if (!method.getModifiers().contains(PUBLIC) || method.getModifiers().contains(STATIC)) {
+				this.error("A managed method must be public and non-static", method);
+				valid = false;
+				continue;
+			}
+			if (attribute) {
+				valid &= this.addAttribute(model, type, attributes, method);
+			}
+			if (operation) {
+				model.operations.add(this.newOperation(model, type, method));
+			}
+		}
+		model.attributes.addAll(attributes.values());
+
+		final NotificationInfos notificationInfos = type.getAnnotation(NotificationInfos.class);
+		if (notificationInfos != null) {
+			for (final NotificationInfo notificationInfo : notificationInfos.value()) {
+				model.notifications.add(this.newNotification(notificationInfo));
+			}
+		}
+		final NotificationInfo notificationInfo = type.getAnnotation(NotificationInfo.class);
+		if (notificationInfo != null) {
+			model.notifications.add(this.newNotification(notificationInfo));
+		}
+
+		return valid ? model : null;
+	}
+
+	/**
+	 * <p>Copy the type parameters of a generic MBean class to its
+	 * model.</p>
+	 */
+	private static void setTypeParameters(final MBeanModel model, final TypeElement type) {
+		final List<? extends TypeParameterElement> typeParameters = type.getTypeParameters();
+		if (typeParameters.isEmpty()) {
+			return;
+		}
+		final StringBuilder declarations = new StringBuilder();
+		final StringBuilder names = new StringBuilder();
+		final StringBuilder wildcards = new StringBuilder();
+		for (final TypeParameterElement typeParameter : typeParameters) {
+			final String separator = names.length() == 0 ? "<" : ", ";
+			declarations.append(separator).append(typeParameter.getSimpleName());
+			final List<? extends TypeMirror> bounds = typeParameter.getBounds();
+			if (!(bounds.size() == 1 && bounds.get(0).toString().equals(Object.class.getName()))) {
+				for (int i = 0; i < bounds.size(); i++) {
+					declarations.append(i == 0 ? " extends " : " & ").append(bounds.get(i));
+				}
+			}
+			names.append(separator).append(typeParameter.getSimpleName());
+			wildcards.append(separator).append('?');
+		}
+		model.typeParameters = declarations.append('>').toString();
+		model.typeArguments = names.append('>').toString();
+		model.wildcards = wildcards.append('>').toString();
+	}
+
+	private MBeanModel.Constructor newConstructor(final ExecutableElement constructor) {
+		final MBeanModel.Constructor result = new MBeanModel.Constructor(descriptionOf(constructor, DEFAULT_CONSTRUCTOR_DESCRIPTION));
+		final ConstructorProperties constructorProperties = constructor.getAnnotation(ConstructorProperties.class);
+		final String names[] = constructorProperties == null ? new String[0] : constructorProperties.value();
+		final List<? extends VariableElement> parameters = constructor.getParameters();
+		for (int i = 0; i < parameters.size(); i++) {
+			final VariableElement parameter = parameters.get(i);
+			result.parameters.add(new MBeanModel.Parameter(i < names.length ? names[i] : "p" + (i + 1),
+					this.className(parameter.asType()),
+					this.sourceName(parameter.asType()),
+					this.sourceName(this.processingEnv.getTypeUtils().erasure(parameter.asType())),
+					parameter.asType().getKind().isPrimitive(),
+					descriptionOf(parameter, "")));
+		}
+		return result;
+	}
+
+	private boolean addAttribute(final MBeanModel model,
+			final TypeElement owner,
+			final Map<String, MBeanModel.Attribute> attributes,
+			final ExecutableElement method) {
+		final String methodName = method.getSimpleName().toString();
+		final List<? extends VariableElement> parameters = method.getParameters();
+		final TypeMirror returnType = method.getReturnType();
+		final boolean isVoid = returnType.getKind() == TypeKind.VOID;
+
+		final String name;
+		final TypeMirror type;
+		final boolean getter;
+		final boolean is;
+		if (methodName.startsWith("get") && methodName.length() > 3 && parameters.isEmpty() && !isVoid) {
+			name = methodName.substring(3);
+			type = returnType;
+			getter = true;
+			is = false;
+		} else if (methodName.startsWith("is") && methodName.length() > 2 && parameters.isEmpty() && returnType.getKind() == TypeKind.BOOLEAN) {
+			name = methodName.substring(2);
+			type = returnType;
+			getter = true;
+			is = true;
+		} else if (methodName.startsWith("set") && methodName.length() > 3 && parameters.size() == 1 && isVoid) {
+			name = methodName.substring(3);
+			type = parameters.get(0).asType();
+			getter = false;
+			is = false;
+		} else {
+			this.error("@ManagedAttribute must be applied to a getter or a setter", method);
+			return false;
+		}
+
+		final String className = this.className(type);
+		MBeanModel.Attribute attribute = attributes.get(name);
+		if (attribute == null) {
+			attribute = new MBeanModel.Attribute(name, className);
+			attributes.put(name, attribute);
+		} else if (!attribute.type.equals(className)) {
+			this.error("Getter and setter of attribute " + name + " have different types", method);
+			return false;
+		}
+		if (getter) {
+			if (attribute.getter != null) {
+				this.error("Attribute " + name + " has more than one getter", method);
+				return false;
+			}
+			attribute.getter = methodName;
+			attribute.is = is;
+		} else {
+			if (attribute.setter != null) {
+				this.error("Attribute " + name + " has more than one setter", method);
+				return false;
+			}
+			attribute.setter = methodName;
+			attribute.sourceType = this.sourceName(model, owner, type);
+			attribute.instanceType = this.sourceName(this.processingEnv.getTypeUtils().erasure(type));
+			attribute.primitive = type.getKind().isPrimitive();
+		}
+		/*
+		 * As in AnnotatedStandardMBean, the description of the setter
+		 * takes precedence over the one of the getter.
+		 */
+		final Description description = method.getAnnotation(Description.class);
+		if (description != null && (!getter || attribute.description == null)) {
+			attribute.description = description.value();
+		}
+		return true;
+	}
+
+	private MBeanModel.Operation newOperation(final MBeanModel model, final TypeElement type, final ExecutableElement method) {
+		final MBeanModel.Operation operation = new MBeanModel.Operation(method.getSimpleName().toString(),
+				this.className(method.getReturnType()),
+				descriptionOf(method, DEFAULT_OPERATION_DESCRIPTION),
+				method.getAnnotation(ManagedOperation.class).impact().getCode());
+		final List<? extends VariableElement> parameters = method.getParameters();
+		for (int i = 0; i < parameters.size(); i++) {
+			final VariableElement parameter = parameters.get(i);
+			final ManagedOperationParameter name = parameter.getAnnotation(ManagedOperationParameter.class);
+			operation.parameters.add(new MBeanModel.Parameter(name == null ? "p" + (i + 1) : name.value(),
+					this.className(parameter.asType()),
+					this.sourceName(model, type, parameter.asType()),
+					this.sourceName(this.processingEnv.getTypeUtils().erasure(parameter.asType())),
+					parameter.asType().getKind().isPrimitive(),
+					descriptionOf(parameter, "")));
+		}
+		return operation;
+	}
+
+	private MBeanModel.Notification newNotification(final NotificationInfo notificationInfo) {
+		String className;
+		try {
+			className = notificationInfo.notificationClass().getName();
+		} catch (final MirroredTypeException mte) {
+			className = this.className(mte.getTypeMirror());
+		}
+		return new MBeanModel.Notification(notificationInfo.types(),
+				className,
+				notificationInfo.description().value());
+	}
+
+	private static String descriptionOf(final Element element, final String defaultDescription) {
+		final Description description = element.getAnnotation(Description.class);
+		return description == null ? defaultDescription : description.value();
+	}
+
+	/**
+	 * @return the name of the erasure of <code>type</code>, in the form
+	 *         returned by {@link Class#getName()}.
+	 */
+	private String className(final TypeMirror type) {
+		switch (type.getKind()) {
+		case ARRAY:
+			return '[' + this.descriptor(((ArrayType) type).getComponentType());
+		case DECLARED:
+		case TYPEVAR:
+			final TypeMirror erasure = this.processingEnv.getTypeUtils().erasure(type);
+			return this.processingEnv.getElementUtils().getBinaryName((TypeElement) this.processingEnv.getTypeUtils().asElement(erasure)).toString();
+		default:
+			// Primitive types and void.
+			return type.toString();
+		}
+	}
+
+	private String descriptor(final TypeMirror type) {
+		switch (type.getKind()) {
+		case BOOLEAN:
+			return "Z";
+		case BYTE:
+			return "B";
+		case CHAR:
+			return "C";
+		case DOUBLE:
+			return "D";
+		case FLOAT:
+			return "F";
+		case INT:
+			return "I";
+		case LONG:
+			return "J";
+		case SHORT:
+			return "S";
+		case ARRAY:
+			return this.className(type);
+		default:
+			return 'L' + this.className(type) + ';';
+		}
+	}
+
+	/**
+	 * @return <code>type</code> as it should appear in a cast in the
+	 *         generated source code: primitive types are boxed, and
+	 *         types which use the type variables of their method, rather
+	 *         than those of the MBean class, are erased.
+	 */
+	private String sourceName(final MBeanModel model, final TypeElement owner, final TypeMirror type) {
+		if (!usesOnlyTypeVariablesOf(owner, type)) {
+			final TypeMirror erasure = this.processingEnv.getTypeUtils().erasure(type);
+			model.rawCasts |= this.isRaw(erasure);
+			return erasure.toString();
+		}
+		return this.sourceName(type);
+	}
+
+	/**
+	 * @return <code>type</code> as it should appear in an
+	 *         <code>instanceof</code> expression in the generated source
+	 *         code: primitive types are boxed.
+	 */
+	private String sourceName(final TypeMirror type) {
+		if (type.getKind().isPrimitive()) {
+			return this.processingEnv.getTypeUtils().boxedClass(this.processingEnv.getTypeUtils().getPrimitiveType(type.getKind())).getQualifiedName().toString();
+		}
+		return type.toString();
+	}
+
+	/**
+	 * @return whether the type variables <code>type</code> uses, if
+	 *         any, are those of <code>owner</code>.
+	 */
+	private static boolean usesOnlyTypeVariablesOf(final TypeElement owner, final TypeMirror type) {
+		switch (type.getKind()) {
+		case TYPEVAR:
+			return owner.getTypeParameters().contains(((TypeVariable) type).asElement());
+		case ARRAY:
+			return usesOnlyTypeVariablesOf(owner, ((ArrayType) type).getComponentType());
+		case DECLARED:
+			for (final TypeMirror typeArgument : ((DeclaredType) type).getTypeArguments()) {
+				if (!usesOnlyTypeVariablesOf(owner, typeArgument)) {
+					return false;
+				}
+			}
+			return true;
+		case WILDCARD:
+			final TypeMirror extendsBound = ((WildcardType) type).getExtendsBound();
+			final TypeMirror superBound = ((WildcardType) type).getSuperBound();
+			return (extendsBound == null || usesOnlyTypeVariablesOf(owner, extendsBound))
+					&& (superBound == null || usesOnlyTypeVariablesOf(owner, superBound));
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * @return whether <code>erasure</code> is a raw type, or an array
+	 *         of a raw type.
+	 */
+	private boolean isRaw(final TypeMirror erasure) {
+		switch (erasure.getKind()) {
+		case ARRAY:
+			return this.isRaw(((ArrayType) erasure).getComponentType());
+		case DECLARED:
+			return !((TypeElement) this.processingEnv.getTypeUtils().asElement(erasure)).getTypeParameters().isEmpty();
+		default:
+			return false;
+		}
+	}
+
+	private void error(final String message, final Element element) {
+		this.processingEnv.getMessager().printMessage(ERROR, message, element);
+	}
+}
@@ -0,0 +1,216 @@
+/*-
+ * $Id$
+ */
+package javax.management.processing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>The management interface of an {@link javax.management.MBean &#64;MBean}
+ * class, as collected by the {@link MBeanAnnotationProcessor} from the
+ * annotations.  Type names are in the form returned by
+ * {@link Class#getName()}, as used by {@link javax.management.MBeanInfo}.
+ * </p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+final class MBeanModel {
+	final String packageName;
+
+	final String simpleName;
+
+	final String qualifiedName;
+
+	final String className;
+
+	/**
+	 * The type parameters of the MBean class, with their bounds, as
+	 * they appear in a declaration in the source code, or an empty
+	 * string if the class is not generic.
+	 */
+	String typeParameters = "";
+
+	/**
+	 * The names of the type parameters of the MBean class, as they
+	 * appear in a parameterized type in the source code, or an empty
+	 * string if the class is not generic.
+	 */
+	String typeArguments = "";
+
+	/**
+	 * As many wildcards as the MBean class has type parameters, or an
+	 * empty string if the class is not generic.
+	 */
+	String wildcards = "";
+
+	/**
+	 * Whether a parameter or an attribute is cast to a raw type, because
+	 * its type uses the type variables of its method.
+	 */
+	boolean rawCasts;
+
+	String description;
+
+	final List<Constructor> constructors = new ArrayList<Constructor>();
+
+	final List<Attribute> attributes = new ArrayList<Attribute>();
+
+	final List<Operation> operations = new ArrayList<Operation>();
+
+	final List<Notification> notifications = new ArrayList<Notification>();
+
+	/**
+	 * @param packageName the package of the MBean class.
+	 * @param simpleName the simple name of the generated class.
+	 * @param qualifiedName the canonical name of the MBean class.
+	 * @param className the binary name of the MBean class.
+	 */
+	MBeanModel(final String packageName,
+			final String simpleName,
+			final String qualifiedName,
+			final String className) {
+		this.packageName = packageName;
+		this.simpleName = simpleName;
+		this.qualifiedName = qualifiedName;
+		this.className = className;
+	}
+
+	/**
+	 * @return whether the MBean class is generic.
+	 */
+	boolean isGeneric() {
+		return this.typeParameters.length() != 0;
+	}
+
+	static final class Parameter {
+		final String name;
+
+		final String type;
+
+		/**
+		 * The type as it appears in a cast in the source code.
+		 */
+		final String sourceType;
+
+		/**
+		 * The type as it appears in an <code>instanceof</code>
+		 * expression in the source code.
+		 */
+		final String instanceType;
+
+		/**
+		 * Whether the type is primitive, and the value may not be
+		 * <code>null</code>.
+		 */
+		final boolean primitive;
+
+		final String description;
+
+		Parameter(final String name,
+				final String type,
+				final String sourceType,
+				final String instanceType,
+				final boolean primitive,
+				final String description) {
+			this.name = name;
+			this.type = type;
+			this.sourceType = sourceType;
+			this.instanceType = instanceType;
+			this.primitive = primitive;
+			this.description = description;
+		}
+	}
+
+	static final class Constructor {
+		final String description;
+
+		final List<Parameter> parameters = new ArrayList<Parameter>();
+
+		Constructor(final String description) {
+			this.description = description;
+		}
+	}
+
+	static final class Attribute {
+		final String name;
+
+		final String type;
+
+		/**
+		 * The type as it appears in a cast in the source code.
+		 */
+		String sourceType;
+
+		/**
+		 * The type as it appears in an <code>instanceof</code>
+		 * expression in the source code.
+		 */
+		String instanceType;
+
+		/**
+		 * Whether the type is primitive, and the value may not be
+		 * <code>null</code>.
+		 */
+		boolean primitive;
+
+		String description;
+
+		/**
+		 * The getter name, or <code>null</code> for a write-only
+		 * attribute.
+		 */
+		String getter;
+
+		/**
+		 * The setter name, or <code>null</code> for a read-only
+		 * attribute.
+		 */
+		String setter;
+
+		boolean is;
+
+		Attribute(final String name, final String type) {
+			this.name = name;
+			this.type = type;
+		}
+	}
+
+	static final class Operation {
+		final String name;
+
+		final String returnType;
+
+		final String description;
+
+		final int impact;
+
+		final List<Parameter> parameters = new ArrayList<Parameter>();
+
+		Operation(final String name,
+				final String returnType,
+				final String description,
+				final int impact) {
+			this.name = name;
+			this.returnType = returnType;
+			this.description = description;
+			this.impact = impact;
+		}
+	}
+
+	static final class Notification {
+		final String types[];
+
+		final String className;
+
+		final String description;
+
+		Notification(final String types[],
+				final String className,
+				final String description) {
+			this.types = types;
+			this.className = className;
+			this.description = description;
+		}
+	}
+}
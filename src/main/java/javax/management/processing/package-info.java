@@ -0,0 +1,14 @@
+/*-
+ * $Id$
+ */
+
+/**
+ * <p>Compile-time support for MBeans defined with the
+ * {@link javax.management.MBean &#64;MBean} annotation.</p>
+ *
+ * <p>This package is not present in the original <a href =
+ * "https://jcp.org/en/jsr/detail?id=255">JSR 255</a> <a href =
+ * "https://jcp.org/aboutJava/communityprocess/edr/jsr255/">Early Draft Review</a>.
+ * </p>
+ */
+package javax.management.processing;
@@ -0,0 +1,109 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * <p>Calls a method of a management interface on behalf of
+ * {@link MBeanDispatcher}.</p>
+ *
+ * <p>This is the Java 17 version of this class, which calls the method
+ * through a <code>MethodHandle</code> adapted once to
+ * <code>(Object, Object[])Object</code>, so that each call is an
+ * <code>invokeExact</code> which the JIT compiler can inline.  The
+ * target and the arguments are checked in advance; a call which would
+ * need a widening conversion, or which {@link Method#invoke(Object,
+ * Object[])} would reject, is made reflectively, and so is every call if
+ * the method is static or cannot be unreflected, so that the behaviour is the
+ * same.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+final class MethodCaller {
+	private static final MethodType CALL_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+	private final Method method;
+
+	private final Class<?> parameterTypes[];
+
+	/**
+	 * <code>(Object, Object[])Object</code>, or <code>null</code>.
+	 */
+	private final MethodHandle handle;
+
+	private MethodCaller(final Method method, final MethodHandle handle) {
+		this.method = method;
+		this.parameterTypes = method.getParameterTypes();
+		this.handle = handle;
+	}
+
+	/**
+	 * @param method the method, already made accessible if necessary.
+	 * @return a caller for <code>method</code>.
+	 */
+	static MethodCaller forMethod(final Method method) {
+		if (Modifier.isStatic(method.getModifiers())) {
+			return new MethodCaller(method, null);
+		}
+		MethodHandle handle;
+		try {
+			handle = MethodHandles.lookup().unreflect(method)
+					.asSpreader(Object[].class, method.getParameterCount())
+					.asType(CALL_TYPE);
+		} catch (final IllegalAccessException iae) {
+			handle = null;
+		}
+		return new MethodCaller(method, handle);
+	}
+
+	Method getMethod() {
+		return this.method;
+	}
+
+	/**
+	 * @see Method#invoke(Object, Object[])
+	 */
+	Object call(final Object target, final Object args[])
+	throws IllegalAccessException, InvocationTargetException {
+		if (this.handle == null || !this.isExactCall(target, args)) {
+			/*
+			 * Let reflection widen the arguments or report the
+			 * mismatch.
+			 */
+			return this.method.invoke(target, args);
+		}
+		try {
+			return (Object) this.handle.invokeExact(target, args);
+		} catch (final Throwable t) {
+			throw new InvocationTargetException(t);
+		}
+	}
+
+	/**
+	 * @return whether <code>target</code> and <code>args</code> can be
+	 *         passed to the method handle without any conversion other
+	 *         than unboxing.
+	 */
+	private boolean isExactCall(final Object target, final Object args[]) {
+		if (!this.method.getDeclaringClass().isInstance(target)) {
+			return false;
+		}
+		final int length = args == null ? 0 : args.length;
+		if (length != this.parameterTypes.length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (!MBeanDispatcher.isAssignable(this.parameterTypes[i], args[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
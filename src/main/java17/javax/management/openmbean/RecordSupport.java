@@ -0,0 +1,374 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import java.io.InvalidObjectException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
+
+/**
+ * <p>Maps record classes and sealed types on behalf of
+ * {@link DefaultMXBeanMappingFactory}.</p>
+ *
+ * <p>This is the Java 17 version of this class, which maps a record to
+ * a <code>CompositeData</code> with one item per record component, named
+ * after it.  The items are read through the accessor method handles, and
+ * the record is reconstructed by its canonical constructor, so neither
+ * getters nor a <code>from(CompositeData)</code> method nor
+ * <code>&#64;ConstructorProperties</code> are needed.</p>
+ *
+ * <p>A sealed interface or abstract class is mapped to a
+ * <code>CompositeData</code> with one item per permitted subclass, named
+ * after it and mapped by the rules for that subclass.  The item of the
+ * subclass of the value is set, the others are <code>null</code>, and the
+ * value is reconstructed by the mapping of the item which is set: unlike
+ * a mapping by getters, this keeps the actual subclass, and does not need
+ * a proxy, which a sealed interface cannot have.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+final class RecordSupport {
+	private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
+	private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+	private RecordSupport() {
+		assert false;
+	}
+
+	/**
+	 * @param javaClass the class to map.
+	 * @param f the original mapping factory, used to map the record
+	 *        components.
+	 * @return the mapping for <code>javaClass</code> if it is a record,
+	 *         or a sealed interface or abstract class, <code>null</code>
+	 *         otherwise.
+	 * @throws OpenDataException if <code>javaClass</code> is a record or
+	 *         a sealed type, which cannot be mapped.
+	 */
+	static MXBeanMapping newMapping(final Class<?> javaClass, final MXBeanMappingFactory f)
+	throws OpenDataException {
+		if (javaClass.isRecord()) {
+			return RecordMapping.newInstance(javaClass, f);
+		} else if (javaClass.isSealed() && Modifier.isAbstract(javaClass.getModifiers())) {
+			return SealedMapping.newInstance(javaClass, f);
+		}
+		return null;
+	}
+
+	private static void makeAccessible(final AccessibleObject member) {
+		try {
+			member.setAccessible(true);
+		} catch (final RuntimeException ignored) {
+			// Ignore: unreflecting will report it.
+		}
+	}
+
+	private static OpenDataException openData(final String message, final Throwable cause) {
+		final OpenDataException ode = new OpenDataException(message);
+		ode.initCause(cause);
+		return ode;
+	}
+
+	private static InvalidObjectException invalidObject(final String message, final Throwable cause) {
+		final InvalidObjectException ioe = new InvalidObjectException(message);
+		ioe.initCause(cause);
+		return ioe;
+	}
+
+	/**
+	 * <p>Maps a record to a <code>CompositeData</code> with one item per
+	 * record component.</p>
+	 */
+	private static final class RecordMapping extends MXBeanMapping {
+		/**
+		 * The item names, sorted.
+		 */
+		private final String itemNames[];
+
+		/**
+		 * <code>(Object)Object</code>, by item.
+		 */
+		private final MethodHandle accessors[];
+
+		private final MXBeanMapping itemMappings[];
+
+		/**
+		 * <code>(Object[])Object</code>, the arguments being in record
+		 * component order.
+		 */
+		private final MethodHandle constructor;
+
+		/**
+		 * Record component index -&gt; item index.
+		 */
+		private final int items[];
+
+		private RecordMapping(final Class<?> javaClass,
+				final CompositeType openType,
+				final String itemNames[],
+				final MethodHandle accessors[],
+				final MXBeanMapping itemMappings[],
+				final MethodHandle constructor,
+				final int items[]) {
+			super(javaClass, openType);
+			this.itemNames = itemNames;
+			this.accessors = accessors;
+			this.itemMappings = itemMappings;
+			this.constructor = constructor;
+			this.items = items;
+		}
+
+		static MXBeanMapping newInstance(final Class<?> javaClass, final MXBeanMappingFactory f)
+		throws OpenDataException {
+			final RecordComponent components[] = javaClass.getRecordComponents();
+			if (components.length == 0) {
+				throw new OpenDataException("Cannot map type: " + javaClass.getName());
+			}
+
+			final int size = components.length;
+			final String itemNames[] = new String[size];
+			for (int i = 0; i < size; i++) {
+				itemNames[i] = components[i].getName();
+			}
+			Arrays.sort(itemNames);
+
+			final Class<?> componentTypes[] = new Class<?>[size];
+			final int items[] = new int[size];
+			final MethodHandle accessors[] = new MethodHandle[size];
+			final MXBeanMapping itemMappings[] = new MXBeanMapping[size];
+			final OpenType<?> itemTypes[] = new OpenType<?>[size];
+			final MethodHandles.Lookup lookup = MethodHandles.lookup();
+			try {
+				for (int i = 0; i < size; i++) {
+					final RecordComponent component = components[i];
+					final int item = Arrays.binarySearch(itemNames, component.getName());
+					componentTypes[i] = component.getType();
+					items[i] = item;
+					makeAccessible(component.getAccessor());
+					accessors[item] = lookup.unreflect(component.getAccessor()).asType(ACCESSOR_TYPE);
+					itemMappings[item] = f.mappingForType(component.getGenericType(), f);
+					itemTypes[item] = itemMappings[item].getOpenType();
+				}
+			} catch (final IllegalAccessException iae) {
+				throw openData("Cannot access record " + javaClass.getName() + ": " + iae, iae);
+			}
+
+			MethodHandle constructor;
+			try {
+				final Constructor<?> canonical = javaClass.getDeclaredConstructor(componentTypes);
+				makeAccessible(canonical);
+				constructor = lookup.unreflectConstructor(canonical)
+						.asSpreader(Object[].class, size)
+						.asType(CONSTRUCTOR_TYPE);
+			} catch (final NoSuchMethodException nsme) {
+				constructor = null;
+			} catch (final IllegalAccessException iae) {
+				constructor = null;
+			}
+
+			final String className = javaClass.getName();
+			return new RecordMapping(javaClass,
+					OpenTypes.intern(new CompositeType(className, className, itemNames, itemNames, itemTypes)),
+					itemNames,
+					accessors,
+					itemMappings,
+					constructor,
+					items);
+		}
+
+		/**
+		 * @see MXBeanMapping#toOpenValue(Object)
+		 */
+		@Override
+		public Object toOpenValue(final Object javaValue) throws OpenDataException {
+			if (javaValue == null) {
+				return null;
+			}
+			final Object values[] = new Object[this.accessors.length];
+			for (int i = 0; i < values.length; i++) {
+				final Object value;
+				try {
+					value = (Object) this.accessors[i].invokeExact(javaValue);
+				} catch (final Error e) {
+					throw e;
+				} catch (final Throwable t) {
+					throw openData("Exception in the accessor of " + this.itemNames[i] + ": " + t, t);
+				}
+				values[i] = this.itemMappings[i].toOpenValue(value);
+			}
+			final CompositeType compositeType = (CompositeType) this.getOpenType();
+			return DefaultMXBeanMappingFactory.VALIDATE
+					? new CompositeDataSupport(compositeType, this.itemNames, values)
+					: new TrustedCompositeData(compositeType, this.itemNames, values);
+		}
+
+		/**
+		 * @see MXBeanMapping#fromOpenValue(Object)
+		 */
+		@Override
+		public Object fromOpenValue(final Object openValue) throws InvalidObjectException {
+			if (openValue == null) {
+				return null;
+			}
+			this.checkConstructor();
+			final CompositeData compositeData = (CompositeData) openValue;
+			final Object args[] = new Object[this.items.length];
+			for (int i = 0; i < args.length; i++) {
+				final int item = this.items[i];
+				args[i] = this.itemMappings[item].fromOpenValue(compositeData.get(this.itemNames[item]));
+			}
+			try {
+				return (Object) this.constructor.invokeExact(args);
+			} catch (final Error e) {
+				throw e;
+			} catch (final Throwable t) {
+				throw invalidObject("Exception in the canonical constructor of " + this.getJavaType() + ": " + t, t);
+			}
+		}
+
+		/**
+		 * @see MXBeanMapping#checkReconstructible()
+		 */
+		@Override
+		public void checkReconstructible() throws InvalidObjectException {
+			this.checkConstructor();
+			for (final MXBeanMapping itemMapping : this.itemMappings) {
+				itemMapping.checkReconstructible();
+			}
+		}
+
+		private void checkConstructor() throws InvalidObjectException {
+			if (this.constructor == null) {
+				throw new InvalidObjectException("Cannot access the canonical constructor of " + this.getJavaType());
+			}
+		}
+	}
+
+	/**
+	 * <p>Maps a sealed interface or abstract class to a
+	 * <code>CompositeData</code> with one item per permitted subclass.</p>
+	 */
+	private static final class SealedMapping extends MXBeanMapping {
+		/**
+		 * The item names, sorted.
+		 */
+		private final String itemNames[];
+
+		/**
+		 * The permitted subclasses, by item.
+		 */
+		private final Class<?> subclasses[];
+
+		private final MXBeanMapping itemMappings[];
+
+		private SealedMapping(final Class<?> javaClass,
+				final CompositeType openType,
+				final String itemNames[],
+				final Class<?> subclasses[],
+				final MXBeanMapping itemMappings[]) {
+			super(javaClass, openType);
+			this.itemNames = itemNames;
+			this.subclasses = subclasses;
+			this.itemMappings = itemMappings;
+		}
+
+		static MXBeanMapping newInstance(final Class<?> javaClass, final MXBeanMappingFactory f)
+		throws OpenDataException {
+			final Class<?> permittedSubclasses[] = javaClass.getPermittedSubclasses();
+			if (permittedSubclasses == null || permittedSubclasses.length == 0) {
+				throw new OpenDataException("Cannot map type: " + javaClass.getName());
+			}
+
+			final int size = permittedSubclasses.length;
+			final String itemNames[] = new String[size];
+			for (int i = 0; i < size; i++) {
+				itemNames[i] = permittedSubclasses[i].getName();
+			}
+			Arrays.sort(itemNames);
+
+			final Class<?> subclasses[] = new Class<?>[size];
+			final MXBeanMapping itemMappings[] = new MXBeanMapping[size];
+			final OpenType<?> itemTypes[] = new OpenType<?>[size];
+			for (final Class<?> subclass : permittedSubclasses) {
+				final int item = Arrays.binarySearch(itemNames, subclass.getName());
+				subclasses[item] = subclass;
+				itemMappings[item] = f.mappingForType(subclass, f);
+				itemTypes[item] = itemMappings[item].getOpenType();
+			}
+
+			final String className = javaClass.getName();
+			return new SealedMapping(javaClass,
+					OpenTypes.intern(new CompositeType(className, className, itemNames, itemNames, itemTypes)),
+					itemNames,
+					subclasses,
+					itemMappings);
+		}
+
+		/**
+		 * @see MXBeanMapping#toOpenValue(Object)
+		 */
+		@Override
+		public Object toOpenValue(final Object javaValue) throws OpenDataException {
+			if (javaValue == null) {
+				return null;
+			}
+			/*
+			 * A permitted subclass may itself extend another one, if it
+			 * is not sealed: the most specific one maps the value.
+			 */
+			int item = -1;
+			for (int i = 0; i < this.subclasses.length; i++) {
+				if (this.subclasses[i].isInstance(javaValue)
+						&& (item < 0 || this.subclasses[item].isAssignableFrom(this.subclasses[i]))) {
+					item = i;
+				}
+			}
+			if (item < 0) {
+				throw new OpenDataException("Not a permitted subclass of " + this.getJavaType() + ": "
+						+ javaValue.getClass().getName());
+			}
+			final Object values[] = new Object[this.itemNames.length];
+			values[item] = this.itemMappings[item].toOpenValue(javaValue);
+			final CompositeType compositeType = (CompositeType) this.getOpenType();
+			return DefaultMXBeanMappingFactory.VALIDATE
+					? new CompositeDataSupport(compositeType, this.itemNames, values)
+					: new TrustedCompositeData(compositeType, this.itemNames, values);
+		}
+
+		/**
+		 * @see MXBeanMapping#fromOpenValue(Object)
+		 */
+		@Override
+		public Object fromOpenValue(final Object openValue) throws InvalidObjectException {
+			if (openValue == null) {
+				return null;
+			}
+			final CompositeData compositeData = (CompositeData) openValue;
+			for (int i = 0; i < this.itemNames.length; i++) {
+				final Object value = compositeData.get(this.itemNames[i]);
+				if (value != null) {
+					return this.itemMappings[i].fromOpenValue(value);
+				}
+			}
+			throw new InvalidObjectException("No permitted subclass of " + this.getJavaType() + " in " + compositeData);
+		}
+
+		/**
+		 * @see MXBeanMapping#checkReconstructible()
+		 */
+		@Override
+		public void checkReconstructible() throws InvalidObjectException {
+			for (final MXBeanMapping itemMapping : this.itemMappings) {
+				itemMapping.checkReconstructible();
+			}
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import javax.management.processing.MBeanAnnotationProcessor;
+
+import org.junit.Test;
+
+/**
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class AnnotatedMBeanFactoryTest {
+	private static final String INT_SIGNATURE[] = {"int", Integer.class.getName()};
+
+	@Test
+	public void attributesAndOperations() throws Exception {
+		final Counter counter = new Counter();
+		final DynamicMBean mbean = AnnotatedMBeanFactory.newMBean(counter);
+		final MBeanInfo info = mbean.getMBeanInfo();
+		assertEquals(Counter.class.getName(), info.getClassName());
+		assertEquals("A counter", info.getDescription());
+		assertEquals(1, info.getAttributes().length);
+		assertEquals(2, info.getOperations().length);
+
+		mbean.setAttribute(new Attribute("Count", Integer.valueOf(5)));
+		assertEquals(5, counter.getCount());
+		assertEquals(Integer.valueOf(5), mbean.getAttribute("Count"));
+		assertEquals(Integer.valueOf(12), mbean.invoke("add", new Object[] {Integer.valueOf(3), Integer.valueOf(4)}, INT_SIGNATURE));
+		assertEquals(12, counter.getCount());
+		assertNull(mbean.invoke("add", new Object[] {Integer.valueOf(1), null}, INT_SIGNATURE));
+		assertEquals(13, counter.getCount());
+	}
+
+	@Test
+	public void invalidAttributeValue() throws Exception {
+		final DynamicMBean mbean = AnnotatedMBeanFactory.newMBean(new Counter());
+		try {
+			mbean.setAttribute(new Attribute("Count", "5"));
+			fail("No exception");
+		} catch (final InvalidAttributeValueException ignored) {
+			// Ignore.
+		}
+		try {
+			mbean.setAttribute(new Attribute("Count", null));
+			fail("No exception");
+		} catch (final InvalidAttributeValueException ignored) {
+			// Ignore.
+		}
+	}
+
+	/**
+	 * <p>Parameters of the wrong type, or <code>null</code> for a
+	 * primitive, are reported as <code>StandardMBean</code> reports
+	 * them, rather than as a <code>ClassCastException</code> or a
+	 * <code>NullPointerException</code>.</p>
+	 */
+	@Test
+	public void invalidParameters() throws Exception {
+		final DynamicMBean mbean = AnnotatedMBeanFactory.newMBean(new Counter());
+		final Object invalidParams[][] = {
+			{null, Integer.valueOf(1)},
+			{"1", Integer.valueOf(1)},
+			{Integer.valueOf(1), Long.valueOf(1L)},
+		};
+		for (final Object params[] : invalidParams) {
+			try {
+				mbean.invoke("add", params, INT_SIGNATURE);
+				fail("No exception");
+			} catch (final RuntimeOperationsException roe) {
+				assertTrue(roe.getTargetException() instanceof IllegalArgumentException);
+			}
+		}
+	}
+
+	@Test
+	public void exceptions() throws Exception {
+		final DynamicMBean mbean = AnnotatedMBeanFactory.newMBean(new Counter());
+		try {
+			mbean.invoke("fail", new Object[] {Boolean.TRUE}, new String[] {"boolean"});
+			fail("No exception");
+		} catch (final MBeanException me) {
+			assertTrue(me.getTargetException() instanceof IOException);
+		}
+		try {
+			mbean.invoke("fail", new Object[] {Boolean.FALSE}, new String[] {"boolean"});
+			fail("No exception");
+		} catch (final IllegalStateException ignored) {
+			// Ignore.
+		}
+		try {
+			mbean.invoke("add", new Object[] {Integer.valueOf(1)}, new String[] {"int"});
+			fail("No exception");
+		} catch (final ReflectionException re) {
+			assertTrue(re.getTargetException() instanceof NoSuchMethodException);
+		}
+	}
+
+	/**
+	 * <p>Features without a {@link Description &#64;Description} get
+	 * the descriptions the annotation processor gives them.</p>
+	 */
+	@Test
+	public void defaultDescriptions() throws Exception {
+		final MBeanInfo info = AnnotatedMBeanFactory.newMBean(new Undescribed()).getMBeanInfo();
+		assertEquals(MBeanAnnotationProcessor.DEFAULT_MBEAN_DESCRIPTION, info.getDescription());
+		assertEquals(MBeanAnnotationProcessor.DEFAULT_CONSTRUCTOR_DESCRIPTION, info.getConstructors()[0].getDescription());
+		assertEquals(MBeanAnnotationProcessor.DEFAULT_ATTRIBUTE_DESCRIPTION, info.getAttributes()[0].getDescription());
+		assertEquals(MBeanAnnotationProcessor.DEFAULT_OPERATION_DESCRIPTION, info.getOperations()[0].getDescription());
+	}
+
+	@MBean
+	@Description("A counter")
+	public static final class Counter {
+		private int count;
+
+		@ManagedAttribute
+		public int getCount() {
+			return this.count;
+		}
+
+		@ManagedAttribute
+		public void setCount(final int count) {
+			this.count = count;
+		}
+
+		@ManagedOperation
+		public Integer add(final int delta, final Integer otherDelta) {
+			this.count += delta;
+			if (otherDelta == null) {
+				return null;
+			}
+			this.count += otherDelta.intValue();
+			return Integer.valueOf(this.count);
+		}
+
+		@ManagedOperation
+		public void fail(final boolean checked) throws IOException {
+			if (checked) {
+				throw new IOException();
+			}
+			throw new IllegalStateException();
+		}
+	}
+
+	@MBean
+	public static final class Undescribed {
+		@ManagedAttribute
+		public int getValue() {
+			return 0;
+		}
+
+		@ManagedOperation
+		public void reset() {
+			// empty
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class AnnotatedMBeanMetadataTest {
+	/**
+	 * <p>The metadata is shared by all the MBeans with the same
+	 * implementation class and management interface, and only by
+	 * them.</p>
+	 */
+	@Test
+	public void shared() {
+		final AnnotatedMBeanMetadata metadata = AnnotatedMBeanMetadata.forClasses(Thing.class, ThingMBean.class);
+		assertSame(Thing.class, metadata.getImplementationClass());
+		assertSame(ThingMBean.class, metadata.getMBeanInterface());
+		assertSame(metadata, AnnotatedMBeanMetadata.forClasses(Thing.class, ThingMBean.class));
+		assertSame(metadata, new AnnotatedStandardMBean(new Thing(), ThingMBean.class, false, null).getMetadata());
+		assertSame(metadata, new AnnotatedStandardMBean(new Thing(), ThingMBean.class, false, null).getMetadata());
+
+		assertNotSame(metadata, AnnotatedMBeanMetadata.forClasses(Thing.class, OtherMBean.class));
+		assertNotSame(metadata, AnnotatedMBeanMetadata.forClasses(OtherThing.class, ThingMBean.class));
+		assertSame(OtherThing.class, AnnotatedMBeanMetadata.forClasses(OtherThing.class, ThingMBean.class).getImplementationClass());
+	}
+
+	/**
+	 * <p>Neither the metadata, nor the <code>MBeanInfo</code> shared
+	 * through it, keep the class loader of an implementation class
+	 * reachable once its MBeans are.</p>
+	 */
+	@Test
+	public void classLoaderCollectable() throws Exception {
+		Reference<ClassLoader> loader = registerThrowaway();
+		for (int i = 0; i < 100 && loader.get() != null; i++) {
+			System.gc();
+			Thread.yield();
+		}
+		assertNull(loader.get());
+	}
+
+	/**
+	 * <p>Parameter and attribute types, including arrays and primitive
+	 * types, are resolved through the class loader of the implementation
+	 * class, even where the library would see another class of the same
+	 * name.</p>
+	 */
+	@Test
+	public void typesResolvedByImplementationLoader() throws Exception {
+		final ClassLoader loader = new ThrowawayClassLoader(Widget.class, WidgetMBean.class, Part.class);
+		final Class<?> widgetClass = loader.loadClass(Widget.class.getName());
+		final Class<?> interfaceClass = loader.loadClass(WidgetMBean.class.getName());
+		assertNotSame(Part.class, loader.loadClass(Part.class.getName()));
+
+		final MBeanInfo info = newMBean(widgetClass.getConstructor().newInstance(), interfaceClass).getMBeanInfo();
+		final MBeanAttributeInfo attribute = info.getAttributes()[0];
+		assertEquals(Part.class.getName(), attribute.getType());
+		assertEquals("The part", attribute.getDescription());
+		final MBeanOperationInfo operation = info.getOperations()[0];
+		assertEquals(3, operation.getSignature().length);
+		assertEquals(String[].class.getName(), operation.getSignature()[1].getType());
+		assertEquals("Assembles the part", operation.getDescription());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> AnnotatedStandardMBean newMBean(final Object implementation, final Class<T> mbeanInterface) {
+		return new AnnotatedStandardMBean((T) implementation, mbeanInterface, false, null);
+	}
+
+	/**
+	 * <p>Makes an MBean of a copy of {@link Thing} defined by a loader of
+	 * its own, and uses it.</p>
+	 *
+	 * @return the loader.
+	 */
+	private static Reference<ClassLoader> registerThrowaway() throws Exception {
+		final ClassLoader loader = new ThrowawayClassLoader(Thing.class);
+		final Class<?> thingClass = loader.loadClass(Thing.class.getName());
+		assertNotSame(Thing.class, thingClass);
+
+		final AnnotatedStandardMBean.Options options = new AnnotatedStandardMBean.Options();
+		options.setSharedMBeanInfo(true);
+		options.setDirectDispatch(true);
+		final AnnotatedStandardMBean mbean = new AnnotatedStandardMBean((ThingMBean) thingClass.getConstructor().newInstance(),
+				ThingMBean.class, false, options);
+		assertSame(thingClass, mbean.getMetadata().getImplementationClass());
+		assertSame(mbean.getMetadata(), AnnotatedMBeanMetadata.forClasses(thingClass, ThingMBean.class));
+		assertEquals(thingClass.getName(), mbean.getMBeanInfo().getClassName());
+		mbean.setAttribute(new Attribute("Size", Integer.valueOf(3)));
+		assertEquals(Integer.valueOf(3), mbean.getAttribute("Size"));
+		return new WeakReference<ClassLoader>(loader);
+	}
+
+	/**
+	 * <p>Defines its own copies of the given classes, and delegates the
+	 * loading of any other class to the loader of this test, so that
+	 * the copies see the same library classes as the test, whether the
+	 * library is loaded from the class path or patched into the
+	 * <code>java.management</code> module.</p>
+	 */
+	private static final class ThrowawayClassLoader extends ClassLoader {
+		private final Map<String, byte[]> classes = new HashMap<String, byte[]>();
+
+		ThrowawayClassLoader(final Class<?> ... classes) throws IOException {
+			super(AnnotatedMBeanMetadataTest.class.getClassLoader());
+			for (final Class<?> clazz : classes) {
+				this.classes.put(clazz.getName(), read(clazz));
+			}
+		}
+
+		/**
+		 * @see ClassLoader#loadClass(String, boolean)
+		 */
+		@Override
+		protected synchronized Class<?> loadClass(final String name, final boolean resolve)
+		throws ClassNotFoundException {
+			final byte bytes[] = this.classes.get(name);
+			if (bytes == null) {
+				return super.loadClass(name, resolve);
+			}
+			Class<?> clazz = this.findLoadedClass(name);
+			if (clazz == null) {
+				clazz = this.defineClass(name, bytes, 0, bytes.length);
+			}
+			if (resolve) {
+				this.resolveClass(clazz);
+			}
+			return clazz;
+		}
+
+		private static byte[] read(final Class<?> clazz) throws IOException {
+			final String name = clazz.getName();
+			final InputStream in = clazz.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class");
+			try {
+				final ByteArrayOutputStream out = new ByteArrayOutputStream();
+				final byte buffer[] = new byte[4096];
+				int length;
+				while ((length = in.read(buffer)) != -1) {
+					out.write(buffer, 0, length);
+				}
+				return out.toByteArray();
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	public interface ThingMBean {
+		int getSize();
+
+		void setSize(final int size);
+	}
+
+	public interface OtherMBean {
+		int getSize();
+	}
+
+	public static class Thing implements ThingMBean, OtherMBean {
+		private int size;
+
+		/**
+		 * @see AnnotatedMBeanMetadataTest.ThingMBean#getSize()
+		 */
+		public int getSize() {
+			return this.size;
+		}
+
+		/**
+		 * @see AnnotatedMBeanMetadataTest.ThingMBean#setSize(int)
+		 */
+		public void setSize(final int size) {
+			this.size = size;
+		}
+	}
+
+	public static final class OtherThing extends Thing {
+		// empty
+	}
+
+	public static final class Part {
+		// empty
+	}
+
+	public interface WidgetMBean {
+		Part getPart();
+
+		void setPart(final Part part);
+
+		void assemble(final Part part, final String names[], final int count);
+	}
+
+	public static final class Widget implements WidgetMBean {
+		private Part part;
+
+		/**
+		 * @see AnnotatedMBeanMetadataTest.WidgetMBean#getPart()
+		 */
+		public Part getPart() {
+			return this.part;
+		}
+
+		/**
+		 * @see AnnotatedMBeanMetadataTest.WidgetMBean#setPart(AnnotatedMBeanMetadataTest.Part)
+		 */
+		@Description("The part")
+		public void setPart(final Part part) {
+			this.part = part;
+		}
+
+		/**
+		 * @see AnnotatedMBeanMetadataTest.WidgetMBean#assemble(AnnotatedMBeanMetadataTest.Part, String[], int)
+		 */
+		@Description("Assembles the part")
+		public void assemble(final Part part, final String names[], final int count) {
+			this.part = part;
+		}
+	}
+}
@@ -0,0 +1,231 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class AnnotatedNotificationEmitterTest {
+	private static final String TYPE = "test.notification";
+
+	private static final int PRODUCERS = 4;
+
+	private static final int NOTIFICATIONS_PER_PRODUCER = 50000;
+
+	private static final long TIMEOUT_MILLIS = 60000L;
+
+	private AnnotatedNotificationEmitter emitter;
+
+	@After
+	public void closeEmitter() {
+		if (this.emitter != null) {
+			this.emitter.close();
+		}
+	}
+
+	/**
+	 * <p>Producers hand notifications over to the delivery thread through
+	 * a buffer small enough to be full most of the time, and send a
+	 * dropped notification again: the listener must receive each one
+	 * exactly once, and those of each producer in order.</p>
+	 */
+	@Test
+	public void directDelivery() throws InterruptedException {
+		final AnnotatedNotificationEmitter.Options options = new AnnotatedNotificationEmitter.Options();
+		options.setCapacity(64);
+		options.setBatchSize(8);
+		this.emitter = new AnnotatedNotificationEmitter(Emitting.class, options);
+		final OrderingListener listener = new OrderingListener(false);
+		this.emitter.addNotificationListener(listener, null, null);
+
+		final long retries = this.send(true);
+		listener.await(PRODUCERS * (long) NOTIFICATIONS_PER_PRODUCER);
+		assertNull(listener.getError());
+		assertEquals(retries, this.emitter.getDroppedCount());
+		for (int i = 0; i < PRODUCERS; i++) {
+			assertEquals(NOTIFICATIONS_PER_PRODUCER, listener.getNext(i));
+		}
+	}
+
+	/**
+	 * <p>The delivery thread hands notifications over to a slow listener
+	 * through its queue, which drops the newest ones when it is full:
+	 * every notification must be either received, in order, or counted
+	 * as dropped.</p>
+	 */
+	@Test
+	public void listenerQueue() throws InterruptedException {
+		final AnnotatedNotificationEmitter.Options options = new AnnotatedNotificationEmitter.Options();
+		options.setCapacity(256);
+		options.setListenerQueueCapacity(16);
+		options.setOverflowPolicy(AnnotatedNotificationEmitter.OverflowPolicy.DROP_NEWEST);
+		this.emitter = new AnnotatedNotificationEmitter(Emitting.class, options);
+		final OrderingListener listener = new OrderingListener(true);
+		this.emitter.addNotificationListener(listener, null, null);
+
+		this.send(false);
+		final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (listener.getReceived() + this.emitter.getDroppedCount() < PRODUCERS * (long) NOTIFICATIONS_PER_PRODUCER) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Received " + listener.getReceived() + ", dropped " + this.emitter.getDroppedCount());
+			}
+			Thread.sleep(10L);
+		}
+		assertNull(listener.getError());
+		assertEquals(PRODUCERS * (long) NOTIFICATIONS_PER_PRODUCER,
+				listener.getReceived() + this.emitter.getDroppedCount());
+		assertEquals(Long.valueOf(this.emitter.getDroppedCount()), this.emitter.getDroppedCounts().get(TYPE));
+	}
+
+	/**
+	 * <p>The notifications published before the emitter is closed are
+	 * still delivered; those sent afterwards are dropped.</p>
+	 */
+	@Test
+	public void close() throws InterruptedException {
+		this.emitter = new AnnotatedNotificationEmitter(Emitting.class);
+		final OrderingListener listener = new OrderingListener(false);
+		this.emitter.addNotificationListener(listener, null, null);
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(this.emitter.sendNotification(new Notification(TYPE, this, i, "0")));
+		}
+		this.emitter.close();
+		assertFalse(this.emitter.sendNotification(new Notification(TYPE, this, 1000, "0")));
+		listener.await(1000L);
+		assertNull(listener.getError());
+		assertEquals(1000L, listener.getNext(0));
+		assertEquals(1L, this.emitter.getDroppedCount());
+	}
+
+	/**
+	 * @param retry whether a dropped notification is sent again.
+	 * @return the number of notifications dropped.
+	 */
+	private long send(final boolean retry) throws InterruptedException {
+		final AtomicLong dropped = new AtomicLong();
+		final CountDownLatch start = new CountDownLatch(1);
+		final Thread producers[] = new Thread[PRODUCERS];
+		for (int i = 0; i < PRODUCERS; i++) {
+			final String producer = String.valueOf(i);
+			producers[i] = new Thread(new Runnable() {
+				/**
+				 * @see Runnable#run()
+				 */
+				public void run() {
+					try {
+						start.await();
+					} catch (final InterruptedException ie) {
+						return;
+					}
+					for (int j = 0; j < NOTIFICATIONS_PER_PRODUCER; j++) {
+						final Notification notification = new Notification(TYPE,
+								AnnotatedNotificationEmitterTest.this,
+								j,
+								producer);
+						while (!AnnotatedNotificationEmitterTest.this.emitter.sendNotification(notification)) {
+							dropped.incrementAndGet();
+							if (!retry) {
+								break;
+							}
+							Thread.yield();
+						}
+					}
+				}
+			});
+			producers[i].start();
+		}
+		start.countDown();
+		for (final Thread producer : producers) {
+			producer.join();
+		}
+		return dropped.get();
+	}
+
+	@NotificationInfo(types = TYPE)
+	public static final class Emitting {
+		// empty
+	}
+
+	/**
+	 * <p>Checks that the notifications of each producer, whose index is
+	 * the message, are received in increasing sequence number order.</p>
+	 */
+	private static final class OrderingListener implements NotificationListener {
+		private final boolean gaps;
+
+		/**
+		 * Producer index -&gt; the next sequence number expected.  Guarded
+		 * by the lock of this object.
+		 */
+		private final long next[] = new long[PRODUCERS];
+
+		private final AtomicLong received = new AtomicLong();
+
+		private final AtomicReference<String> error = new AtomicReference<String>();
+
+		/**
+		 * @param gaps whether notifications may be missing.
+		 */
+		OrderingListener(final boolean gaps) {
+			this.gaps = gaps;
+		}
+
+		/**
+		 * @see NotificationListener#handleNotification(Notification, Object)
+		 */
+		public void handleNotification(final Notification notification, final Object handback) {
+			final int producer = Integer.parseInt(notification.getMessage());
+			final long sequenceNumber = notification.getSequenceNumber();
+			synchronized (this) {
+				if (this.gaps ? sequenceNumber < this.next[producer] : sequenceNumber != this.next[producer]) {
+					this.error.compareAndSet(null, "Producer " + producer + ": expected " + this.next[producer]
+							+ ", received " + sequenceNumber);
+				}
+				this.next[producer] = sequenceNumber + 1;
+			}
+			if (this.gaps) {
+				/*
+				 * A slow listener, so that its queue fills up.
+				 */
+				Thread.yield();
+			}
+			this.received.incrementAndGet();
+		}
+
+		long getReceived() {
+			return this.received.get();
+		}
+
+		synchronized long getNext(final int producer) {
+			return this.next[producer];
+		}
+
+		String getError() {
+			return this.error.get();
+		}
+
+		void await(final long count) throws InterruptedException {
+			final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+			while (this.received.get() < count) {
+				if (System.currentTimeMillis() > deadline) {
+					fail("Received " + this.received.get() + " out of " + count);
+				}
+				Thread.sleep(10L);
+			}
+		}
+	}
+}
@@ -0,0 +1,287 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class AttributeChangeNotifierTest {
+	private static final long WINDOW_MILLIS = 300L;
+
+	private static final long TIMEOUT_MILLIS = 60000L;
+
+	/**
+	 * <p>Without a window, each change is notified by the thread which
+	 * sets the attribute, unless the value is unchanged.</p>
+	 */
+	@Test
+	public void withoutWindow() throws Exception {
+		final AnnotatedStandardEmitterMBean mbean = newMBean(0L, null);
+		final RecordingListener listener = new RecordingListener();
+		mbean.addNotificationListener(listener, null, null);
+
+		mbean.setAttribute(new Attribute("Level", Integer.valueOf(1)));
+		assertEquals(Arrays.asList("Level: 0 -> 1"), listener.getChanges());
+		mbean.setAttribute(new Attribute("Level", Integer.valueOf(1)));
+		mbean.setAttribute(new Attribute("Name", ""));
+		assertEquals(Arrays.asList("Level: 0 -> 1"), listener.getChanges());
+		mbean.setAttribute(new Attribute("Level", Integer.valueOf(2)));
+		assertEquals(Arrays.asList("Level: 0 -> 1", "Level: 1 -> 2"), listener.getChanges());
+	}
+
+	/**
+	 * <p>The changes of an attribute within a window are coalesced into
+	 * a single notification, and none is sent if the attribute has been
+	 * set back to its old value.</p>
+	 */
+	@Test
+	public void coalescingWindow() throws Exception {
+		final AnnotatedStandardEmitterMBean mbean = newMBean(WINDOW_MILLIS, null);
+		final RecordingListener listener = new RecordingListener();
+		mbean.addNotificationListener(listener, null, null);
+
+		for (int i = 1; i <= 10; i++) {
+			mbean.setAttribute(new Attribute("Level", Integer.valueOf(i)));
+		}
+		mbean.setAttribute(new Attribute("Name", "temporary"));
+		mbean.setAttribute(new Attribute("Name", ""));
+		assertEquals(0, listener.getChanges().size());
+
+		listener.await(1);
+		Thread.sleep(2 * WINDOW_MILLIS);
+		assertEquals(Arrays.asList("Level: 0 -> 10"), listener.getChanges());
+
+		/*
+		 * A change after the window has closed opens a new one.
+		 */
+		mbean.setAttribute(new Attribute("Level", Integer.valueOf(11)));
+		listener.await(2);
+		assertEquals(Arrays.asList("Level: 0 -> 10", "Level: 10 -> 11"), listener.getChanges());
+		final List<Long> sequenceNumbers = listener.getSequenceNumbers();
+		assertTrue(sequenceNumbers.get(0).longValue() < sequenceNumbers.get(1).longValue());
+	}
+
+	/**
+	 * <p>A listener which blocks does not delay the notifications of
+	 * other MBeans.</p>
+	 */
+	@Test
+	public void slowListener() throws Exception {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AnnotatedStandardEmitterMBean slow = newMBean(10L, null);
+		slow.addNotificationListener(new NotificationListener() {
+			/**
+			 * @see NotificationListener#handleNotification(Notification, Object)
+			 */
+			public void handleNotification(final Notification notification, final Object handback) {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (final InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, null, null);
+		final AnnotatedStandardEmitterMBean fast = newMBean(10L, null);
+		final RecordingListener listener = new RecordingListener();
+		fast.addNotificationListener(listener, null, null);
+
+		try {
+			slow.setAttribute(new Attribute("Level", Integer.valueOf(1)));
+			assertTrue(blocked.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+			fast.setAttribute(new Attribute("Level", Integer.valueOf(1)));
+			listener.await(1);
+			assertEquals(Arrays.asList("Level: 0 -> 1"), listener.getChanges());
+		} finally {
+			release.countDown();
+		}
+	}
+
+	/**
+	 * <p>Notifying a change does not build a lazy
+	 * <code>MBeanInfo</code>, and the notification has the type of the
+	 * attribute.</p>
+	 */
+	@Test
+	public void lazyMBeanInfo() throws Exception {
+		final AnnotatedStandardMBean.Options options = new AnnotatedStandardMBean.Options();
+		options.setAttributeChangeNotifications(true);
+		options.setLazyMBeanInfo(true);
+		final AnnotatedStandardEmitterMBean mbean = new AnnotatedStandardEmitterMBean(new Config(), ConfigMBean.class, false, options, null);
+		final RecordingListener listener = new RecordingListener();
+		mbean.addNotificationListener(listener, null, null);
+
+		mbean.setAttribute(new Attribute("Level", Integer.valueOf(1)));
+		mbean.setAttribute(new Attribute("Name", "lazy"));
+		assertEquals(Arrays.asList("Level: 0 -> 1", "Name:  -> lazy"), listener.getChanges());
+		assertEquals(Arrays.asList("int", String.class.getName()), listener.getTypes());
+		assertNull(mbean.getCachedMBeanInfo());
+		assertEquals(1, countAttributeChangeInfos(mbean));
+	}
+
+	/**
+	 * <p>The attribute change notification is declared by the
+	 * <code>MBeanInfo</code> when changes are notified, and only
+	 * once.</p>
+	 */
+	@Test
+	public void notificationInfo() throws Exception {
+		assertEquals(1, countAttributeChangeInfos(newMBean(0L, null)));
+
+		final Config config = new Config();
+		final AnnotatedStandardMBean.Options options = new AnnotatedStandardMBean.Options();
+		assertEquals(0, countAttributeChangeInfos(new AnnotatedStandardEmitterMBean(config, ConfigMBean.class, false, options, null)));
+
+		final NotificationEmitter declaring = new NotificationBroadcasterSupport() {
+			/**
+			 * @see NotificationBroadcasterSupport#getNotificationInfo()
+			 */
+			@Override
+			public MBeanNotificationInfo[] getNotificationInfo() {
+				return new MBeanNotificationInfo[] {
+					new MBeanNotificationInfo(new String[] {AttributeChangeNotification.ATTRIBUTE_CHANGE},
+							AttributeChangeNotification.class.getName(),
+							"Declared by the emitter"),
+				};
+			}
+		};
+		final AnnotatedStandardEmitterMBean mbean = newMBean(0L, declaring);
+		assertEquals(1, countAttributeChangeInfos(mbean));
+		assertEquals("Declared by the emitter", mbean.getNotificationInfo()[0].getDescription());
+	}
+
+	private static int countAttributeChangeInfos(final AnnotatedStandardEmitterMBean mbean) {
+		final MBeanNotificationInfo infos[] = mbean.getMBeanInfo().getNotifications();
+		assertEquals(Arrays.asList(mbean.getNotificationInfo()), Arrays.asList(infos));
+		int count = 0;
+		for (final MBeanNotificationInfo info : infos) {
+			if (Arrays.asList(info.getNotifTypes()).contains(AttributeChangeNotification.ATTRIBUTE_CHANGE)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static AnnotatedStandardEmitterMBean newMBean(final long windowMillis, final NotificationEmitter emitter) {
+		final AnnotatedStandardMBean.Options options = new AnnotatedStandardMBean.Options();
+		options.setAttributeChangeNotifications(true);
+		options.setAttributeChangeWindowMillis(windowMillis);
+		return new AnnotatedStandardEmitterMBean(new Config(), ConfigMBean.class, false, options, emitter);
+	}
+
+	public interface ConfigMBean {
+		int getLevel();
+
+		void setLevel(final int level);
+
+		String getName();
+
+		void setName(final String name);
+	}
+
+	public static final class Config implements ConfigMBean {
+		private volatile int level;
+
+		private volatile String name = "";
+
+		/**
+		 * @see AttributeChangeNotifierTest.ConfigMBean#getLevel()
+		 */
+		@ManagedAttribute
+		public int getLevel() {
+			return this.level;
+		}
+
+		/**
+		 * @see AttributeChangeNotifierTest.ConfigMBean#setLevel(int)
+		 */
+		@ManagedAttribute
+		public void setLevel(final int level) {
+			this.level = level;
+		}
+
+		/**
+		 * @see AttributeChangeNotifierTest.ConfigMBean#getName()
+		 */
+		@ManagedAttribute
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * @see AttributeChangeNotifierTest.ConfigMBean#setName(String)
+		 */
+		@ManagedAttribute
+		public void setName(final String name) {
+			this.name = name;
+		}
+	}
+
+	/**
+	 * <p>Records the attribute changes as
+	 * <code>name: old -&gt; new</code>.</p>
+	 */
+	private static final class RecordingListener implements NotificationListener {
+		private final List<AttributeChangeNotification> notifications = new ArrayList<AttributeChangeNotification>();
+
+		RecordingListener() {
+			// empty
+		}
+
+		/**
+		 * @see NotificationListener#handleNotification(Notification, Object)
+		 */
+		public synchronized void handleNotification(final Notification notification, final Object handback) {
+			this.notifications.add((AttributeChangeNotification) notification);
+		}
+
+		synchronized List<String> getChanges() {
+			final List<String> changes = new ArrayList<String>();
+			for (final AttributeChangeNotification notification : this.notifications) {
+				changes.add(notification.getAttributeName() + ": " + notification.getOldValue() + " -> " + notification.getNewValue());
+			}
+			return changes;
+		}
+
+		synchronized List<String> getTypes() {
+			final List<String> types = new ArrayList<String>();
+			for (final AttributeChangeNotification notification : this.notifications) {
+				types.add(notification.getAttributeType());
+			}
+			return types;
+		}
+
+		synchronized List<Long> getSequenceNumbers() {
+			final List<Long> sequenceNumbers = new ArrayList<Long>();
+			for (final AttributeChangeNotification notification : this.notifications) {
+				sequenceNumbers.add(Long.valueOf(notification.getSequenceNumber()));
+			}
+			return sequenceNumbers;
+		}
+
+		void await(final int count) throws InterruptedException {
+			final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+			while (this.getChanges().size() < count) {
+				if (System.currentTimeMillis() > deadline) {
+					fail("Received " + this.getChanges().size() + " out of " + count);
+				}
+				Thread.sleep(10L);
+			}
+		}
+	}
+}
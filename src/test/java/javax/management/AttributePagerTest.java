@@ -0,0 +1,435 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.management.openmbean.ArrayType;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.MXBeanMapping;
+import javax.management.openmbean.MXBeanMappingClass;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Test;
+
+/**
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class AttributePagerTest {
+	private static final String PAGE_SIGNATURE[] = {"int", "int"};
+
+	@Test
+	public void pageBounds() throws Exception {
+		final DynamicMBean mbean = newMBean(false);
+		assertArrayEquals(new String[] {"a", "b"}, (String[]) page(mbean, "getNames", 0, 2));
+		assertArrayEquals(new String[] {"c", "d", "e"}, (String[]) page(mbean, "getNames", 2, 10));
+		assertArrayEquals(new String[0], (String[]) page(mbean, "getNames", 5, 1));
+		assertArrayEquals(new String[0], (String[]) page(mbean, "getNames", 50, Integer.MAX_VALUE));
+		assertArrayEquals(new String[0], (String[]) page(mbean, "getNames", 1, 0));
+		assertArrayEquals(new String[] {"e"}, (String[]) page(mbean, "getNames", 4, Integer.MAX_VALUE));
+
+		assertEquals(Arrays.asList("b", "c"), page(mbean, "getList", 1, 2));
+		assertEquals(Arrays.asList("d", "e"), page(mbean, "getList", 3, Integer.MAX_VALUE));
+		assertEquals(Collections.emptyList(), page(mbean, "getList", 6, 1));
+		assertEquals(Arrays.asList("b", "c"), page(mbean, "getLinkedList", 1, 2));
+		assertEquals(Arrays.asList("d", "e"), page(mbean, "getLinkedList", 3, Integer.MAX_VALUE));
+		assertEquals(Collections.emptyList(), page(mbean, "getLinkedList", 6, 1));
+		assertEquals(new ArrayList<Integer>(Arrays.asList(Integer.valueOf(3))), new ArrayList<Object>((Set<?>) page(mbean, "getSet", 2, 1)));
+		assertEquals(Collections.singletonMap("two", Integer.valueOf(2)), page(mbean, "getMap", 1, 1));
+		assertNull(page(mbean, "getNothing", 0, 1));
+
+		final Object invalidParams[][] = {
+			{Integer.valueOf(-1), Integer.valueOf(1)},
+			{Integer.valueOf(0), Integer.valueOf(-1)},
+			{Integer.valueOf(0)},
+			{"0", Integer.valueOf(1)},
+			null,
+		};
+		for (final Object params[] : invalidParams) {
+			try {
+				mbean.invoke("getNames", params, PAGE_SIGNATURE);
+				fail("No exception for " + Arrays.toString(params));
+			} catch (final RuntimeOperationsException roe) {
+				assertTrue(roe.getTargetException() instanceof IllegalArgumentException);
+			}
+		}
+	}
+
+	/**
+	 * <p>Pages of sorted sets and maps keep the order, and the comparator,
+	 * of the attribute value.</p>
+	 */
+	@Test
+	public void sortedComparators() throws Exception {
+		final DynamicMBean mbean = newMBean(false);
+		final SortedSet<?> set = (SortedSet<?>) page(mbean, "getReversed", 1, 2);
+		assertEquals(Collections.reverseOrder(), set.comparator());
+		assertEquals(Arrays.asList("d", "c"), new ArrayList<Object>(set));
+
+		final SortedMap<?, ?> map = (SortedMap<?, ?>) page(mbean, "getSortedMap", 0, 2);
+		assertEquals(Collections.reverseOrder(), map.comparator());
+		assertEquals(Arrays.asList("two", "three"), new ArrayList<Object>(map.keySet()));
+	}
+
+	/**
+	 * <p>An operation declared by the interface with the signature of a
+	 * page operation takes precedence over it.</p>
+	 */
+	@Test
+	public void explicitOperationPrecedence() throws Exception {
+		final DynamicMBean mbean = newMBean(false);
+		assertEquals(Arrays.asList("explicit", "1", "2"), page(mbean, "getExplicit", 1, 2));
+
+		int explicitOperations = 0;
+		int namesOperations = 0;
+		for (final MBeanOperationInfo operation : mbean.getMBeanInfo().getOperations()) {
+			if (operation.getName().equals("getExplicit")) {
+				explicitOperations++;
+			} else if (operation.getName().equals("getNames")) {
+				namesOperations++;
+				assertEquals(String[].class.getName(), operation.getReturnType());
+				assertEquals(2, operation.getSignature().length);
+				assertEquals("int", operation.getSignature()[0].getType());
+			}
+		}
+		assertEquals(1, explicitOperations);
+		assertEquals(1, namesOperations);
+	}
+
+	/**
+	 * <p>An operation with the signature of a page operation only takes
+	 * precedence over the page operation of the same name.</p>
+	 */
+	@Test
+	public void explicitOperationName() throws Exception {
+		final AnnotatedStandardMBean.Options options = new AnnotatedStandardMBean.Options();
+		options.setPagedAttributes(true);
+		final DynamicMBean mbean = new AnnotatedStandardMBean(new Shelf(), ShelfMBean.class, false, options);
+		assertEquals(Arrays.asList("foo", "1", "2"), page(mbean, "getFoo", 1, 2));
+		assertEquals(Arrays.asList("b"), page(mbean, "getBar", 1, 1));
+		assertEquals(Arrays.asList("fetched"), page(mbean, "fetchBar", 1, 1));
+
+		final List<String> operationNames = new ArrayList<String>();
+		for (final MBeanOperationInfo operation : mbean.getMBeanInfo().getOperations()) {
+			operationNames.add(operation.getName());
+		}
+		Collections.sort(operationNames);
+		assertEquals(Arrays.asList("fetchBar", "getBar", "getFoo"), operationNames);
+	}
+
+	/**
+	 * <p>An MXBean attribute whose type has a mapping of its own, which
+	 * {@link StandardMBean} ignores, has no page operation, since its
+	 * pages would not have the open type of the attribute.</p>
+	 */
+	@Test
+	public void mxbeanMappedAttribute() throws Exception {
+		final AnnotatedStandardMBean.Options options = new AnnotatedStandardMBean.Options();
+		options.setPagedAttributes(true);
+		final DynamicMBean mbean = new AnnotatedStandardMBean(new Labels(), LabelsMBean.class, true, options);
+		final MBeanInfo info = mbean.getMBeanInfo();
+		for (final MBeanAttributeInfo attribute : info.getAttributes()) {
+			if (attribute.getName().equals("Labels")) {
+				assertFalse(ArrayType.getArrayType(SimpleType.STRING).equals(attribute.getDescriptor().getFieldValue("openType")));
+			}
+		}
+
+		final List<String> operationNames = new ArrayList<String>();
+		for (final MBeanOperationInfo operation : info.getOperations()) {
+			operationNames.add(operation.getName());
+		}
+		assertEquals(Arrays.asList("getNames"), operationNames);
+		assertArrayEquals(new String[] {"b"}, (String[]) page(mbean, "getNames", 1, 1));
+		try {
+			page(mbean, "getLabels", 0, 1);
+			fail("No exception");
+		} catch (final ReflectionException expected) {
+			// Expected.
+		}
+	}
+
+	/**
+	 * <p>An MXBean page is converted to the open type of its attribute,
+	 * with the same rules.</p>
+	 */
+	@Test
+	public void mxbeanPage() throws Exception {
+		final DynamicMBean mbean = newMBean(true);
+		assertArrayEquals(new String[] {"b", "c"}, (String[]) page(mbean, "getList", 1, 2));
+		assertArrayEquals(new String[] {"b", "c"}, (String[]) page(mbean, "getSorted", 1, 2));
+		assertArrayEquals(new int[] {2, 3}, (int[]) page(mbean, "getCounts", 1, 2));
+
+		final TabularData map = (TabularData) page(mbean, "getMap", 1, 1);
+		assertEquals(1, map.size());
+		final CompositeData row = map.get(new Object[] {"two"});
+		assertEquals(Integer.valueOf(2), row.get("value"));
+		assertEquals(((TabularData) mbean.getAttribute("Map")).getTabularType(), map.getTabularType());
+
+		/*
+		 * A sorted set or map with a comparator has no open value.
+		 */
+		try {
+			page(mbean, "getReversed", 0, 1);
+			fail("No exception");
+		} catch (final MBeanException me) {
+			assertTrue(me.getCause() instanceof OpenDataException);
+		}
+	}
+
+	private static DynamicMBean newMBean(final boolean isMXBean) {
+		final AnnotatedStandardMBean.Options options = new AnnotatedStandardMBean.Options();
+		options.setPagedAttributes(true);
+		return new AnnotatedStandardMBean(new Catalog(), CatalogMBean.class, isMXBean, options);
+	}
+
+	private static Object page(final DynamicMBean mbean, final String operationName, final int offset, final int limit)
+	throws Exception {
+		return mbean.invoke(operationName,
+				new Object[] {Integer.valueOf(offset), Integer.valueOf(limit)},
+				PAGE_SIGNATURE);
+	}
+
+	public interface ShelfMBean {
+		List<String> getFoo();
+
+		List<String> getFoo(final int offset, final int limit);
+
+		List<String> getBar();
+
+		List<String> fetchBar(final int offset, final int limit);
+	}
+
+	public static final class Shelf implements ShelfMBean {
+		/**
+		 * @see AttributePagerTest.ShelfMBean#getFoo()
+		 */
+		public List<String> getFoo() {
+			return Collections.emptyList();
+		}
+
+		/**
+		 * @see AttributePagerTest.ShelfMBean#getFoo(int, int)
+		 */
+		public List<String> getFoo(final int offset, final int limit) {
+			return Arrays.asList("foo", String.valueOf(offset), String.valueOf(limit));
+		}
+
+		/**
+		 * @see AttributePagerTest.ShelfMBean#getBar()
+		 */
+		public List<String> getBar() {
+			return Arrays.asList("a", "b", "c");
+		}
+
+		/**
+		 * @see AttributePagerTest.ShelfMBean#fetchBar(int, int)
+		 */
+		public List<String> fetchBar(final int offset, final int limit) {
+			return Arrays.asList("fetched");
+		}
+	}
+
+	public interface LabelsMBean {
+		List<Label> getLabels();
+
+		List<String> getNames();
+	}
+
+	public static final class Labels implements LabelsMBean {
+		/**
+		 * @see AttributePagerTest.LabelsMBean#getLabels()
+		 */
+		public List<Label> getLabels() {
+			return Arrays.asList(new Label("a"), new Label("b"));
+		}
+
+		/**
+		 * @see AttributePagerTest.LabelsMBean#getNames()
+		 */
+		public List<String> getNames() {
+			return Arrays.asList("a", "b");
+		}
+	}
+
+	/**
+	 * <p>Mapped to its text by this library, and to a
+	 * <code>CompositeData</code> by {@link StandardMBean}.</p>
+	 */
+	@MXBeanMappingClass(LabelMapping.class)
+	public static final class Label {
+		private final String text;
+
+		public Label(final String text) {
+			this.text = text;
+		}
+
+		public String getText() {
+			return this.text;
+		}
+	}
+
+	public static final class LabelMapping extends MXBeanMapping {
+		public LabelMapping(final Type type) {
+			super(type, SimpleType.STRING);
+		}
+
+		/**
+		 * @see MXBeanMapping#fromOpenValue(Object)
+		 */
+		@Override
+		public Object fromOpenValue(final Object openValue) {
+			return new Label((String) openValue);
+		}
+
+		/**
+		 * @see MXBeanMapping#toOpenValue(Object)
+		 */
+		@Override
+		public Object toOpenValue(final Object javaValue) {
+			return ((Label) javaValue).getText();
+		}
+	}
+
+	public interface CatalogMBean {
+		String[] getNames();
+
+		int[] getCounts();
+
+		List<String> getList();
+
+		List<String> getLinkedList();
+
+		Set<Integer> getSet();
+
+		SortedSet<String> getSorted();
+
+		SortedSet<String> getReversed();
+
+		Map<String, Integer> getMap();
+
+		SortedMap<String, Integer> getSortedMap();
+
+		List<String> getNothing();
+
+		List<String> getExplicit();
+
+		List<String> getExplicit(final int offset, final int limit);
+	}
+
+	public static final class Catalog implements CatalogMBean {
+		/**
+		 * @see AttributePagerTest.CatalogMBean#getNames()
+		 */
+		public String[] getNames() {
+			return new String[] {"a", "b", "c", "d", "e"};
+		}
+
+		/**
+		 * @see AttributePagerTest.CatalogMBean#getCounts()
+		 */
+		public int[] getCounts() {
+			return new int[] {1, 2, 3, 4};
+		}
+
+		/**
+		 * @see AttributePagerTest.CatalogMBean#getList()
+		 */
+		public List<String> getList() {
+			return Arrays.asList(this.getNames());
+		}
+
+		/**
+		 * @see AttributePagerTest.CatalogMBean#getLinkedList()
+		 */
+		public List<String> getLinkedList() {
+			return new LinkedList<String>(this.getList());
+		}
+
+		/**
+		 * @see AttributePagerTest.CatalogMBean#getSet()
+		 */
+		public Set<Integer> getSet() {
+			return new LinkedHashSet<Integer>(Arrays.asList(Integer.valueOf(5), Integer.valueOf(4), Integer.valueOf(3)));
+		}
+
+		/**
+		 * @see AttributePagerTest.CatalogMBean#getSorted()
+		 */
+		public SortedSet<String> getSorted() {
+			return new TreeSet<String>(this.getList());
+		}
+
+		/**
+		 * @see AttributePagerTest.CatalogMBean#getReversed()
+		 */
+		public SortedSet<String> getReversed() {
+			final SortedSet<String> reversed = new TreeSet<String>(Collections.reverseOrder());
+			reversed.addAll(this.getList());
+			return reversed;
+		}
+
+		/**
+		 * @see AttributePagerTest.CatalogMBean#getMap()
+		 */
+		public Map<String, Integer> getMap() {
+			final Map<String, Integer> map = new TreeMap<String, Integer>();
+			map.put("one", Integer.valueOf(1));
+			map.put("two", Integer.valueOf(2));
+			return map;
+		}
+
+		/**
+		 * @see AttributePagerTest.CatalogMBean#getSortedMap()
+		 */
+		public SortedMap<String, Integer> getSortedMap() {
+			final SortedMap<String, Integer> map = new TreeMap<String, Integer>(Collections.reverseOrder());
+			map.put("one", Integer.valueOf(1));
+			map.put("two", Integer.valueOf(2));
+			map.put("three", Integer.valueOf(3));
+			return map;
+		}
+
+		/**
+		 * @see AttributePagerTest.CatalogMBean#getNothing()
+		 */
+		public List<String> getNothing() {
+			return null;
+		}
+
+		/**
+		 * @see AttributePagerTest.CatalogMBean#getExplicit()
+		 */
+		public List<String> getExplicit() {
+			return Collections.emptyList();
+		}
+
+		/**
+		 * @see AttributePagerTest.CatalogMBean#getExplicit(int, int)
+		 */
+		public List<String> getExplicit(final int offset, final int limit) {
+			return Arrays.asList("explicit", String.valueOf(offset), String.valueOf(limit));
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class LazyMBeanInfoTest {
+	private static final String GETTERS[] = {
+		"getDescription",
+		"getAttributes",
+		"getOperations",
+		"getConstructors",
+		"getNotifications",
+		"getDescriptor",
+		"clone",
+	};
+
+	/**
+	 * <p>The full <code>MBeanInfo</code> is not built as long as only the
+	 * class name is asked for, and once built, is returned directly.</p>
+	 */
+	@Test
+	public void notBuiltUpfront() {
+		final AnnotatedStandardMBean mbean = newMBean();
+		final MBeanInfo info = mbean.getMBeanInfo();
+		assertSame(LazyMBeanInfo.class, info.getClass());
+		assertEquals(Thing.class.getName(), info.getClassName());
+		assertNull(mbean.getCachedMBeanInfo());
+
+		assertEquals(2, info.getAttributes().length);
+		assertNotNull(mbean.getCachedMBeanInfo());
+		assertSame(MBeanInfo.class, mbean.getMBeanInfo().getClass());
+	}
+
+	/**
+	 * <p>Each accessor builds the full <code>MBeanInfo</code>, and
+	 * returns what it does.</p>
+	 */
+	@Test
+	public void gettersDelegate() throws Exception {
+		final MBeanInfo eager = newEagerInfo();
+		for (final String getter : GETTERS) {
+			final AnnotatedStandardMBean mbean = newMBean();
+			final MBeanInfo info = mbean.getMBeanInfo();
+			assertSame(LazyMBeanInfo.class, info.getClass());
+			final Object value = MBeanInfo.class.getMethod(getter).invoke(info);
+			assertNotNull(getter, mbean.getCachedMBeanInfo());
+			final Object expected = MBeanInfo.class.getMethod(getter).invoke(eager);
+			if (expected instanceof Object[]) {
+				assertTrue(getter, Arrays.equals((Object[]) expected, (Object[]) value));
+			} else {
+				assertEquals(getter, expected, value);
+			}
+		}
+		assertSame(MBeanInfo.class, newMBean().getMBeanInfo().clone().getClass());
+	}
+
+	@Test
+	public void equalToEager() {
+		final MBeanInfo eager = newEagerInfo();
+		final MBeanInfo info = newMBean().getMBeanInfo();
+		assertEquals(eager.hashCode(), info.hashCode());
+		assertEquals(eager, info);
+		assertEquals(info, eager);
+		assertEquals(eager, newMBean().getMBeanInfo());
+	}
+
+	/**
+	 * <p>The full <code>MBeanInfo</code> is written instead, so that the
+	 * receiving end does not need the MBean.</p>
+	 */
+	@Test
+	public void serializedAsPlain() throws IOException, ClassNotFoundException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bytes);
+		try {
+			out.writeObject(newMBean().getMBeanInfo());
+		} finally {
+			out.close();
+		}
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		try {
+			final Object info = in.readObject();
+			assertSame(MBeanInfo.class, info.getClass());
+			assertEquals(newEagerInfo(), info);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static AnnotatedStandardMBean newMBean() {
+		final AnnotatedStandardMBean.Options options = new AnnotatedStandardMBean.Options();
+		options.setLazyMBeanInfo(true);
+		return new AnnotatedStandardMBean(new Thing(), ThingMBean.class, false, options);
+	}
+
+	private static MBeanInfo newEagerInfo() {
+		final MBeanInfo info = new AnnotatedStandardMBean(new Thing(), ThingMBean.class, false, null).getMBeanInfo();
+		assertSame(MBeanInfo.class, info.getClass());
+		return info;
+	}
+
+	public interface ThingMBean {
+		int getSize();
+
+		void setSize(final int size);
+
+		String getName();
+
+		String describe(final String prefix, final int count);
+	}
+
+	public static class Thing implements ThingMBean {
+		private int size;
+
+		/**
+		 * @see LazyMBeanInfoTest.ThingMBean#getSize()
+		 */
+		public int getSize() {
+			return this.size;
+		}
+
+		/**
+		 * @see LazyMBeanInfoTest.ThingMBean#setSize(int)
+		 */
+		public void setSize(final int size) {
+			this.size = size;
+		}
+
+		/**
+		 * @see LazyMBeanInfoTest.ThingMBean#getName()
+		 */
+		public String getName() {
+			return "thing";
+		}
+
+		/**
+		 * @see LazyMBeanInfoTest.ThingMBean#describe(String, int)
+		 */
+		public String describe(final String prefix, final int count) {
+			return prefix + count;
+		}
+	}
+}
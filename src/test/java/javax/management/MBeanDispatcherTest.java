@@ -0,0 +1,120 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * <p>Checks that direct dispatch behaves as the dispatch of
+ * <code>StandardMBean</code> does.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class MBeanDispatcherTest {
+	@Test
+	public void attributesAndOperations() throws Exception {
+		for (final DynamicMBean mbean : newMBeans()) {
+			mbean.setAttribute(new Attribute("Size", Integer.valueOf(3)));
+			assertEquals(Integer.valueOf(3), mbean.getAttribute("Size"));
+			assertEquals("x3", mbean.invoke("describe",
+					new Object[] {"x", Integer.valueOf(3)},
+					new String[] {String.class.getName(), "int"}));
+		}
+	}
+
+	@Test
+	public void noSuchOperation() throws Exception {
+		final String actionNames[] = {null, "describe", "size"};
+		for (final DynamicMBean mbean : newMBeans()) {
+			for (final String actionName : actionNames) {
+				try {
+					mbean.invoke(actionName, new Object[0], new String[0]);
+					fail("No exception for " + actionName);
+				} catch (final ReflectionException re) {
+					assertTrue(re.getTargetException() instanceof NoSuchMethodException);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void noSuchAttribute() throws Exception {
+		for (final DynamicMBean mbean : newMBeans()) {
+			try {
+				mbean.getAttribute("Count");
+				fail("No exception");
+			} catch (final AttributeNotFoundException ignored) {
+				// Ignore.
+			}
+			try {
+				mbean.setAttribute(new Attribute("Count", Integer.valueOf(1)));
+				fail("No exception");
+			} catch (final AttributeNotFoundException ignored) {
+				// Ignore.
+			}
+		}
+	}
+
+	@Test
+	public void invalidAttributeValue() throws Exception {
+		for (final DynamicMBean mbean : newMBeans()) {
+			try {
+				mbean.setAttribute(new Attribute("Size", "3"));
+				fail("No exception");
+			} catch (final InvalidAttributeValueException ignored) {
+				// Ignore.
+			}
+		}
+	}
+
+	/**
+	 * @return an MBean with the dispatch of <code>StandardMBean</code>,
+	 *         and one with direct dispatch.
+	 */
+	private static DynamicMBean[] newMBeans() throws NotCompliantMBeanException {
+		final AnnotatedStandardMBean.Options options = new AnnotatedStandardMBean.Options();
+		options.setDirectDispatch(true);
+		return new DynamicMBean[] {
+			new AnnotatedStandardMBean(new Thing(), ThingMBean.class, false, null),
+			new AnnotatedStandardMBean(new Thing(), ThingMBean.class, false, options),
+		};
+	}
+
+	public interface ThingMBean {
+		int getSize();
+
+		void setSize(final int size);
+
+		String describe(final String prefix, final int count);
+	}
+
+	public static final class Thing implements ThingMBean {
+		private int size;
+
+		/**
+		 * @see MBeanDispatcherTest.ThingMBean#getSize()
+		 */
+		public int getSize() {
+			return this.size;
+		}
+
+		/**
+		 * @see MBeanDispatcherTest.ThingMBean#setSize(int)
+		 */
+		public void setSize(final int size) {
+			this.size = size;
+		}
+
+		/**
+		 * @see MBeanDispatcherTest.ThingMBean#describe(String, int)
+		 */
+		public String describe(final String prefix, final int count) {
+			return prefix + count;
+		}
+	}
+}
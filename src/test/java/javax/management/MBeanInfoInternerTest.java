@@ -0,0 +1,169 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * <p>Checks the heap footprint of the <code>MBeanInfo</code>s of many
+ * MBeans, measured as the number of distinct objects they consist of.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class MBeanInfoInternerTest {
+	private static final int MBEANS = 100;
+
+	@Test
+	public void internedEqual() {
+		final MBeanInfo info = new StandardMBean(new Thing(), ThingMBean.class, false).getMBeanInfo();
+		final MBeanInfo interned = MBeanInfoInterner.intern(info);
+		assertEquals(info, interned);
+		assertSame(interned, MBeanInfoInterner.intern(new StandardMBean(new Thing(), ThingMBean.class, false).getMBeanInfo()));
+	}
+
+	/**
+	 * <p>Without sharing, each MBean retains at least an
+	 * <code>MBeanInfo</code> of its own; with it, the footprint of many
+	 * MBeans is that of a single one.</p>
+	 */
+	@Test
+	public void sharedFootprint() {
+		final AnnotatedStandardMBean.Options options = new AnnotatedStandardMBean.Options();
+		options.setSharedMBeanInfo(true);
+		final List<MBeanInfo> shared = new ArrayList<MBeanInfo>();
+		final List<MBeanInfo> unshared = new ArrayList<MBeanInfo>();
+		for (int i = 0; i < MBEANS; i++) {
+			shared.add(new AnnotatedStandardMBean(new Thing(), ThingMBean.class, false, options).getMBeanInfo());
+			unshared.add(new AnnotatedStandardMBean(new Thing(), ThingMBean.class, false, null).getMBeanInfo());
+		}
+		final int footprint = footprint(shared.subList(0, 1));
+		assertEquals(footprint, footprint(shared));
+		assertTrue(footprint(unshared) >= footprint + MBEANS - 1);
+		for (final MBeanInfo info : shared) {
+			assertSame(shared.get(0), info);
+			assertEquals(unshared.get(0), info);
+		}
+	}
+
+	/**
+	 * <p>The <code>MBeanInfo</code>s of different MBean classes with the
+	 * same management interface share their feature infos.</p>
+	 */
+	@Test
+	public void sharedAcrossClasses() {
+		final AnnotatedStandardMBean.Options options = new AnnotatedStandardMBean.Options();
+		options.setSharedMBeanInfo(true);
+		final MBeanInfo thingInfo = new AnnotatedStandardMBean(new Thing(), ThingMBean.class, false, options).getMBeanInfo();
+		final MBeanInfo otherInfo = new AnnotatedStandardMBean(new OtherThing(), ThingMBean.class, false, options).getMBeanInfo();
+		assertEquals(Thing.class.getName(), thingInfo.getClassName());
+		assertEquals(OtherThing.class.getName(), otherInfo.getClassName());
+
+		final List<MBeanInfo> infos = new ArrayList<MBeanInfo>();
+		infos.add(thingInfo);
+		final int footprint = footprint(infos);
+		infos.add(otherInfo);
+		/*
+		 * Only the MBeanInfo itself, its class name and its constructor
+		 * infos differ.
+		 */
+		assertTrue(footprint(infos) - footprint <= 2 + 2 * otherInfo.getConstructors().length);
+	}
+
+	/**
+	 * @return the number of distinct feature infos, descriptors, and
+	 *         strings, which <code>infos</code> consist of.
+	 */
+	private static int footprint(final List<MBeanInfo> infos) {
+		final Map<Object, Object> objects = new IdentityHashMap<Object, Object>();
+		for (final MBeanInfo info : infos) {
+			addFeature(objects, info, info.getClassName(), info.getDescription(), info.getDescriptor());
+			for (final MBeanAttributeInfo attribute : info.getAttributes()) {
+				addFeature(objects, attribute, attribute.getName(), attribute.getDescription(), attribute.getDescriptor());
+				objects.put(attribute.getType(), attribute.getType());
+			}
+			for (final MBeanConstructorInfo constructor : info.getConstructors()) {
+				addFeature(objects, constructor, constructor.getName(), constructor.getDescription(), constructor.getDescriptor());
+				addParameters(objects, constructor.getSignature());
+			}
+			for (final MBeanOperationInfo operation : info.getOperations()) {
+				addFeature(objects, operation, operation.getName(), operation.getDescription(), operation.getDescriptor());
+				objects.put(operation.getReturnType(), operation.getReturnType());
+				addParameters(objects, operation.getSignature());
+			}
+			for (final MBeanNotificationInfo notification : info.getNotifications()) {
+				addFeature(objects, notification, notification.getName(), notification.getDescription(), notification.getDescriptor());
+			}
+		}
+		return objects.size();
+	}
+
+	private static void addParameters(final Map<Object, Object> objects, final MBeanParameterInfo parameters[]) {
+		for (final MBeanParameterInfo parameter : parameters) {
+			addFeature(objects, parameter, parameter.getName(), parameter.getDescription(), parameter.getDescriptor());
+			objects.put(parameter.getType(), parameter.getType());
+		}
+	}
+
+	private static void addFeature(final Map<Object, Object> objects,
+			final Object feature,
+			final String name,
+			final String description,
+			final Descriptor descriptor) {
+		objects.put(feature, feature);
+		objects.put(name, name);
+		if (description != null) {
+			objects.put(description, description);
+		}
+		objects.put(descriptor, descriptor);
+		for (final String fieldName : descriptor.getFieldNames()) {
+			objects.put(fieldName, fieldName);
+		}
+	}
+
+	public interface ThingMBean {
+		int getSize();
+
+		void setSize(final int size);
+
+		String describe(final String prefix, final int count);
+	}
+
+	public static class Thing implements ThingMBean {
+		private int size;
+
+		/**
+		 * @see MBeanInfoInternerTest.ThingMBean#getSize()
+		 */
+		public int getSize() {
+			return this.size;
+		}
+
+		/**
+		 * @see MBeanInfoInternerTest.ThingMBean#setSize(int)
+		 */
+		public void setSize(final int size) {
+			this.size = size;
+		}
+
+		/**
+		 * @see MBeanInfoInternerTest.ThingMBean#describe(String, int)
+		 */
+		public String describe(final String prefix, final int count) {
+			return prefix + count;
+		}
+	}
+
+	public static final class OtherThing extends Thing {
+		// empty
+	}
+}
@@ -0,0 +1,241 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * <p>Checks that the generated invokers behave as reflection does.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class MemberInvokerTest {
+	@Test
+	public void generatedLikeReflection() throws Exception {
+		final List<Member> members = new ArrayList<Member>();
+		final List<Object[]> arguments = new ArrayList<Object[]>();
+		addCases(Sample.class, members, arguments);
+		final MemberInvoker invoker = MemberInvoker.forMembers(members.toArray(new Member[members.size()]));
+		assertTrue(invoker.isGenerated());
+		assertLikeReflection(invoker, members, arguments, new Sample(42, "sample"));
+	}
+
+	@Test
+	public void reflectiveLikeReflection() throws Exception {
+		final List<Member> members = new ArrayList<Member>();
+		final List<Object[]> arguments = new ArrayList<Object[]>();
+		addCases(HiddenSample.class, members, arguments);
+		final MemberInvoker invoker = MemberInvoker.forMembers(members.toArray(new Member[members.size()]));
+		assertFalse(invoker.isGenerated());
+		assertLikeReflection(invoker, members, arguments, new HiddenSample(42, "sample"));
+	}
+
+	@Test
+	public void exceptionsPropagatedUnchanged() throws Exception {
+		final MemberInvoker invoker = MemberInvoker.forMembers(Sample.class.getMethod("fail", String.class));
+		assertTrue(invoker.isGenerated());
+		final Sample sample = new Sample();
+		try {
+			invoker.invoke(0, sample, "checked");
+			fail("No exception");
+		} catch (final IOException ioe) {
+			assertEquals("checked", ioe.getMessage());
+		}
+		try {
+			invoker.invoke(0, sample, "unchecked");
+			fail("No exception");
+		} catch (final IllegalStateException ise) {
+			assertEquals("unchecked", ise.getMessage());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void neitherMethodNorConstructor() throws NoSuchFieldException {
+		MemberInvoker.forMembers(Sample.class.getField("field"));
+	}
+
+	private static void addCases(final Class<?> sampleClass, final List<Member> members, final List<Object[]> arguments)
+	throws NoSuchMethodException {
+		addCase(members, arguments, sampleClass.getConstructor());
+		addCase(members, arguments, sampleClass.getConstructor(Integer.TYPE, String.class), Integer.valueOf(7), "seven");
+		addCase(members, arguments, sampleClass.getMethod("getValue"));
+		addCase(members, arguments, sampleClass.getMethod("setValue", Integer.TYPE), Integer.valueOf(-3));
+		addCase(members, arguments, sampleClass.getMethod("isPositive"));
+		addCase(members, arguments, sampleClass.getMethod("charAt", String.class, Integer.TYPE), "abc", Integer.valueOf(1));
+		addCase(members, arguments, sampleClass.getMethod("add", Long.TYPE, Long.TYPE), Long.valueOf(Long.MAX_VALUE), Long.valueOf(1L));
+		addCase(members, arguments, sampleClass.getMethod("half", Double.TYPE), Double.valueOf(3.0));
+		addCase(members, arguments, sampleClass.getMethod("narrow", Byte.TYPE, Short.TYPE, Float.TYPE),
+				Byte.valueOf((byte) -1), Short.valueOf((short) 300), Float.valueOf(0.5f));
+		addCase(members, arguments, sampleClass.getMethod("concat", String.class, Object.class), "a", null);
+		addCase(members, arguments, sampleClass.getMethod("range", Integer.TYPE), Integer.valueOf(5));
+		addCase(members, arguments, sampleClass.getMethod("sum", int[].class), new int[] {1, 2, 3});
+		addCase(members, arguments, sampleClass.getMethod("join", String[].class), (Object) new String[] {"x", "y"});
+		addCase(members, arguments, sampleClass.getMethod("identity", String.class), "static");
+		addCase(members, arguments, Named.class.getMethod("getName"));
+	}
+
+	private static void addCase(final List<Member> members,
+			final List<Object[]> arguments,
+			final Member member,
+			final Object... args) {
+		members.add(member);
+		arguments.add(args);
+	}
+
+	private static void assertLikeReflection(final MemberInvoker invoker,
+			final List<Member> members,
+			final List<Object[]> arguments,
+			final Object target)
+	throws Exception {
+		for (int i = 0; i < members.size(); i++) {
+			final Member member = members.get(i);
+			final Object args[] = arguments.get(i);
+			final Object expected = member instanceof Method
+					? ((Method) member).invoke(target, args)
+					: newInstance((Constructor<?>) member, args);
+			final Object actual = invoker.invoke(i, target, args);
+			assertEquals(member.toString(),
+					Arrays.deepToString(new Object[] {expected}),
+					Arrays.deepToString(new Object[] {actual}));
+			if (expected != null) {
+				assertSame(member.toString(), expected.getClass(), actual.getClass());
+			}
+		}
+	}
+
+	private static Object newInstance(final Constructor<?> constructor, final Object args[]) throws Exception {
+		try {
+			return constructor.newInstance(args);
+		} catch (final InvocationTargetException ite) {
+			throw (Exception) ite.getCause();
+		}
+	}
+
+	public interface Named {
+		String getName();
+	}
+
+	public static class Sample implements Named {
+		public int field;
+
+		private int value;
+
+		private final String name;
+
+		public Sample() {
+			this(0, null);
+		}
+
+		public Sample(final int value, final String name) {
+			this.value = value;
+			this.name = name;
+		}
+
+		public int getValue() {
+			return this.value;
+		}
+
+		public void setValue(final int value) {
+			this.value = value;
+		}
+
+		public boolean isPositive() {
+			return this.value > 0;
+		}
+
+		public char charAt(final String s, final int index) {
+			return s.charAt(index);
+		}
+
+		public long add(final long a, final long b) {
+			return a + b;
+		}
+
+		public double half(final double d) {
+			return d / 2;
+		}
+
+		public float narrow(final byte b, final short s, final float f) {
+			return b + s + f;
+		}
+
+		public String concat(final String s, final Object o) {
+			return s + o;
+		}
+
+		public int[] range(final int length) {
+			final int range[] = new int[length];
+			for (int i = 0; i < length; i++) {
+				range[i] = i;
+			}
+			return range;
+		}
+
+		public int sum(final int... values) {
+			int sum = 0;
+			for (final int value : values) {
+				sum += value;
+			}
+			return sum;
+		}
+
+		public String join(final String... strings) {
+			return Arrays.asList(strings).toString();
+		}
+
+		public static String identity(final String s) {
+			return s;
+		}
+
+		public void fail(final String message) throws IOException {
+			if (message.equals("checked")) {
+				throw new IOException(message);
+			}
+			throw new IllegalStateException(message);
+		}
+
+		/**
+		 * @see Named#getName()
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * @see Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return this.getClass().getSimpleName() + '(' + this.value + ", " + this.name + ')';
+		}
+	}
+
+	/**
+	 * <p>Not public, so that no invoker can be generated for it.</p>
+	 */
+	static final class HiddenSample extends Sample {
+		public HiddenSample() {
+			super();
+		}
+
+		public HiddenSample(final int value, final String name) {
+			super(value, name);
+		}
+	}
+}
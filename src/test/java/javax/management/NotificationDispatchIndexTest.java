@@ -0,0 +1,268 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.NotificationDispatchIndex.Registration;
+
+import org.junit.Test;
+
+/**
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class NotificationDispatchIndexTest {
+	private static final String ONE = "a.one";
+
+	private static final String TWO = "a.two";
+
+	private static final List<String> DECLARED_TYPES = Arrays.asList(ONE, TWO);
+
+	private static final long TIMEOUT_MILLIS = 60000L;
+
+	/**
+	 * <p>A notification of a declared type only reaches the listeners
+	 * routed for it, and calls only the filters which do not only depend
+	 * on the type.</p>
+	 */
+	@Test
+	public void routedDispatch() {
+		final RecordingListener unfiltered = new RecordingListener();
+		final RecordingListener one = new RecordingListener();
+		final RecordingListener other = new RecordingListener();
+		final RecordingListener custom = new RecordingListener();
+		final CountingFilter customFilter = new CountingFilter();
+		final NotificationDispatchIndex index = new NotificationDispatchIndex(DECLARED_TYPES, new Registration[] {
+			new Registration(unfiltered, null, null, null, null),
+			new Registration(one, typeFilter(ONE), null, null, null),
+			new Registration(other, typeFilter("b"), null, null, null),
+			new Registration(custom, customFilter, null, null, null),
+		});
+
+		index.dispatch(new Notification(ONE, this, 0L), -1L);
+		index.dispatch(new Notification(TWO, this, 1L), -1L);
+		assertEquals(Arrays.asList(ONE, TWO), unfiltered.getTypes());
+		assertEquals(Arrays.asList(ONE), one.getTypes());
+		assertEquals(Collections.emptyList(), other.getTypes());
+		assertEquals(Arrays.asList(ONE, TWO), custom.getTypes());
+		assertEquals(2, customFilter.getCalls());
+
+		assertTrue(index.isRouted(ONE));
+		assertTrue(index.isRouted(TWO));
+		final NotificationDispatchIndex typeFiltersOnly = new NotificationDispatchIndex(DECLARED_TYPES, new Registration[] {
+			new Registration(one, typeFilter(ONE), null, null, null),
+			new Registration(other, typeFilter("b"), null, null, null),
+		});
+		assertTrue(typeFiltersOnly.isRouted(ONE));
+		assertFalse(typeFiltersOnly.isRouted(TWO));
+		assertFalse(NotificationDispatchIndex.EMPTY.isRouted(ONE));
+	}
+
+	/**
+	 * <p>A notification of an undeclared type is matched against every
+	 * listener.</p>
+	 */
+	@Test
+	public void undeclaredTypeFallback() {
+		final RecordingListener unfiltered = new RecordingListener();
+		final RecordingListener one = new RecordingListener();
+		final RecordingListener other = new RecordingListener();
+		final CountingFilter customFilter = new CountingFilter();
+		final RecordingListener custom = new RecordingListener();
+		final NotificationDispatchIndex index = new NotificationDispatchIndex(DECLARED_TYPES, new Registration[] {
+			new Registration(unfiltered, null, null, null, null),
+			new Registration(one, typeFilter(ONE), null, null, null),
+			new Registration(other, typeFilter("b"), null, null, null),
+			new Registration(custom, customFilter, null, null, null),
+		});
+
+		assertTrue(index.isRouted("b.undeclared"));
+		assertTrue(index.isRouted("c.undeclared"));
+		index.dispatch(new Notification("b.undeclared", this, 0L), -1L);
+		index.dispatch(new Notification("c.undeclared", this, 1L), -1L);
+		assertEquals(Arrays.asList("b.undeclared", "c.undeclared"), unfiltered.getTypes());
+		assertEquals(Collections.emptyList(), one.getTypes());
+		assertEquals(Arrays.asList("b.undeclared"), other.getTypes());
+		assertEquals(Arrays.asList("b.undeclared", "c.undeclared"), custom.getTypes());
+		assertEquals(2, customFilter.getCalls());
+	}
+
+	/**
+	 * <p>Changing the enabled types of a filter makes the index stale;
+	 * the refreshed index routes by the new types, and keeps the other
+	 * registrations.</p>
+	 */
+	@Test
+	public void refresh() {
+		final NotificationFilterSupport filter = typeFilter(ONE);
+		final Registration unfiltered = new Registration(new RecordingListener(), null, null, null, null);
+		final RecordingListener listener = new RecordingListener();
+		final Registration filtered = new Registration(listener, filter, null, null, null);
+		final NotificationDispatchIndex index = new NotificationDispatchIndex(DECLARED_TYPES, new Registration[] {unfiltered, filtered});
+		assertTrue(index.isCurrent());
+
+		filter.enableType(TWO);
+		assertFalse(index.isCurrent());
+		final NotificationDispatchIndex refreshed = index.refresh(DECLARED_TYPES);
+		assertTrue(refreshed.isCurrent());
+		assertSame(unfiltered, refreshed.getRegistrations()[0]);
+		assertNotSame(filtered, refreshed.getRegistrations()[1]);
+		assertSame(filter, refreshed.getRegistrations()[1].filter);
+		refreshed.dispatch(new Notification(TWO, this, 0L), -1L);
+		assertEquals(Arrays.asList(TWO), listener.getTypes());
+
+		filter.disableAllTypes();
+		assertFalse(refreshed.isCurrent());
+		final NotificationDispatchIndex disabled = refreshed.refresh(DECLARED_TYPES);
+		disabled.dispatch(new Notification(ONE, this, 1L), -1L);
+		disabled.dispatch(new Notification(TWO, this, 2L), -1L);
+		assertEquals(Arrays.asList(TWO), listener.getTypes());
+	}
+
+	/**
+	 * <p>An emitter honours the changes made to the enabled types of a
+	 * filter after its listener has been added.</p>
+	 */
+	@Test
+	public void filterChangedAfterAdding() throws InterruptedException {
+		final AnnotatedNotificationEmitter emitter = new AnnotatedNotificationEmitter(Emitting.class);
+		try {
+			final NotificationFilterSupport filter = typeFilter(ONE);
+			final RecordingListener listener = new RecordingListener();
+			emitter.addNotificationListener(listener, filter, null);
+			final RecordingListener marker = new RecordingListener();
+			emitter.addNotificationListener(marker, typeFilter(ONE), null);
+
+			assertTrue(emitter.sendNotification(new Notification(TWO, this, 0L)));
+			filter.enableType(TWO);
+			assertTrue(emitter.sendNotification(new Notification(TWO, this, 1L)));
+			filter.disableType(ONE);
+			assertTrue(emitter.sendNotification(new Notification(ONE, this, 2L)));
+			marker.await(1);
+
+			final List<Long> sequenceNumbers = new ArrayList<Long>();
+			for (final Notification notification : listener.getNotifications()) {
+				sequenceNumbers.add(Long.valueOf(notification.getSequenceNumber()));
+			}
+			assertEquals(Arrays.asList(Long.valueOf(1L)), sequenceNumbers);
+		} finally {
+			emitter.close();
+		}
+	}
+
+	/**
+	 * <p>Sending a notification routed to a listener does not take the
+	 * lock of its filter, which may be held by another thread.</p>
+	 */
+	@Test
+	public void routedSendDoesNotLockFilters() throws InterruptedException {
+		final AnnotatedNotificationEmitter emitter = new AnnotatedNotificationEmitter(Emitting.class);
+		try {
+			final NotificationFilterSupport filter = typeFilter(ONE);
+			final RecordingListener listener = new RecordingListener();
+			emitter.addNotificationListener(listener, filter, null);
+
+			final Thread sender = new Thread() {
+				/**
+				 * @see Thread#run()
+				 */
+				@Override
+				public void run() {
+					emitter.sendNotification(new Notification(ONE, this, 0L));
+				}
+			};
+			synchronized (filter) {
+				sender.start();
+				sender.join(TIMEOUT_MILLIS);
+				assertFalse(sender.isAlive());
+			}
+			listener.await(1);
+		} finally {
+			emitter.close();
+		}
+	}
+
+	private static NotificationFilterSupport typeFilter(final String prefix) {
+		final NotificationFilterSupport filter = new NotificationFilterSupport();
+		filter.enableType(prefix);
+		return filter;
+	}
+
+	@NotificationInfo(types = {ONE, TWO})
+	public static final class Emitting {
+		// empty
+	}
+
+	private static final class RecordingListener implements NotificationListener {
+		private final List<Notification> notifications = new ArrayList<Notification>();
+
+		RecordingListener() {
+			// empty
+		}
+
+		/**
+		 * @see NotificationListener#handleNotification(Notification, Object)
+		 */
+		public synchronized void handleNotification(final Notification notification, final Object handback) {
+			this.notifications.add(notification);
+		}
+
+		synchronized List<Notification> getNotifications() {
+			return new ArrayList<Notification>(this.notifications);
+		}
+
+		List<String> getTypes() {
+			final List<String> types = new ArrayList<String>();
+			for (final Notification notification : this.getNotifications()) {
+				types.add(notification.getType());
+			}
+			return types;
+		}
+
+		void await(final int count) throws InterruptedException {
+			final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+			while (this.getNotifications().size() < count) {
+				if (System.currentTimeMillis() > deadline) {
+					fail("Received " + this.getNotifications().size() + " out of " + count);
+				}
+				Thread.sleep(10L);
+			}
+		}
+	}
+
+	/**
+	 * <p>Enables every notification, and counts its calls.</p>
+	 */
+	private static final class CountingFilter implements NotificationFilter {
+		private static final long serialVersionUID = -5431164335219306390L;
+
+		private int calls;
+
+		CountingFilter() {
+			// empty
+		}
+
+		/**
+		 * @see NotificationFilter#isNotificationEnabled(Notification)
+		 */
+		public synchronized boolean isNotificationEnabled(final Notification notification) {
+			this.calls++;
+			return true;
+		}
+
+		synchronized int getCalls() {
+			return this.calls;
+		}
+	}
+}
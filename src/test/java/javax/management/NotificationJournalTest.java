@@ -0,0 +1,473 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class NotificationJournalTest {
+	private static final String TYPE = "a.type";
+
+	private static final String SCHEMA_NAME = "JournalTestSample";
+
+	private static final int SEGMENT_SIZE = 1024;
+
+	private static final long TIMEOUT_MILLIS = 60000L;
+
+	private File directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		this.directory = File.createTempFile("journal", "");
+		assertTrue(this.directory.delete());
+		assertTrue(this.directory.mkdir());
+	}
+
+	@After
+	public void deleteDirectory() {
+		deleteTree(this.directory);
+	}
+
+	private static void deleteTree(final File file) {
+		final File files[] = file.listFiles();
+		if (files != null) {
+			for (final File child : files) {
+				deleteTree(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * <p>Records are replayed in order across the segments, and a record
+	 * larger than the segment size gets a segment of its own.</p>
+	 */
+	@Test
+	public void segmentRoll() throws Exception {
+		final NotificationJournal journal = new NotificationJournal(this.directory, options(SEGMENT_SIZE));
+		final char large[] = new char[4 * SEGMENT_SIZE];
+		Arrays.fill(large, 'x');
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, journal.append(newNotification(i, i == 50 ? new String(large) : Integer.valueOf(i)), null));
+		}
+		assertEquals(100L, journal.getNextSequence());
+		assertTrue(this.segmentFiles().length > 2);
+
+		final List<Notification> notifications = replay(journal.fromSequence(0L, null));
+		assertEquals(100, notifications.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, notifications.get(i).getSequenceNumber());
+			assertEquals(i == 50 ? new String(large) : Integer.valueOf(i), notifications.get(i).getUserData());
+		}
+		journal.close();
+	}
+
+	/**
+	 * <p>The oldest segments are deleted once the journal is larger than
+	 * the retained size, and replay starts from the oldest record
+	 * retained.</p>
+	 */
+	@Test
+	public void sizeRetention() throws Exception {
+		final NotificationJournal.Options options = options(SEGMENT_SIZE);
+		options.setMaxRetainedBytes(3 * SEGMENT_SIZE);
+		final NotificationJournal journal = new NotificationJournal(this.directory, options);
+		for (int i = 0; i < 500; i++) {
+			journal.append(newNotification(i, Integer.valueOf(i)), null);
+			assertTrue(this.segmentFiles().length <= 3);
+		}
+		final long firstSequence = journal.getFirstSequence();
+		assertTrue(firstSequence > 0L);
+
+		final List<Notification> notifications = replay(journal.fromSequence(0L, null));
+		assertEquals(500L - firstSequence, notifications.size());
+		assertEquals(firstSequence, notifications.get(0).getSequenceNumber());
+		journal.close();
+	}
+
+	/**
+	 * <p>The segments whose notifications are all older than the
+	 * retained time are deleted, and replay from a time stamp skips the
+	 * older notifications of the segments retained.</p>
+	 */
+	@Test
+	public void timeRetention() throws Exception {
+		final NotificationJournal.Options options = options(SEGMENT_SIZE);
+		options.setMaxRetainedMillis(TIMEOUT_MILLIS);
+		final NotificationJournal journal = new NotificationJournal(this.directory, options);
+		final long now = System.currentTimeMillis();
+		final long old = now - 10 * TIMEOUT_MILLIS;
+		long sequence = 0L;
+		while (journal.getFirstSequence() == 0L || sequence - journal.getFirstSequence() < 5L) {
+			journal.append(newNotification(sequence++, old), null);
+		}
+		assertEquals(1, this.segmentFiles().length);
+
+		final long firstRecent = sequence;
+		while (this.segmentFiles().length < 4) {
+			journal.append(newNotification(sequence++, now), null);
+		}
+		final long lastOld = journal.getFirstSequence();
+		assertTrue(lastOld < firstRecent);
+
+		final List<Notification> all = replay(journal.fromSequence(0L, null));
+		assertEquals(sequence - lastOld, all.size());
+		final List<Notification> recent = replay(journal.fromTime(now, null));
+		assertEquals(sequence - firstRecent, recent.size());
+		assertEquals(firstRecent, recent.get(0).getSequenceNumber());
+		assertTrue(replay(journal.fromTime(now + 1L, null)).isEmpty());
+		journal.close();
+	}
+
+	/**
+	 * <p>A journal opened again continues with the next sequence number,
+	 * and replays the records written before.</p>
+	 */
+	@Test
+	public void reopen() throws Exception {
+		NotificationJournal journal = new NotificationJournal(this.directory, options(SEGMENT_SIZE));
+		for (int i = 0; i < 50; i++) {
+			journal.append(newNotification(i, Integer.valueOf(i)), null);
+		}
+		journal.close();
+		try {
+			journal.append(newNotification(50, null), null);
+			fail("No exception");
+		} catch (final IOException ignored) {
+			// Ignore.
+		}
+
+		journal = new NotificationJournal(this.directory, options(SEGMENT_SIZE));
+		assertEquals(0L, journal.getFirstSequence());
+		assertEquals(50L, journal.getNextSequence());
+		assertEquals(50L, journal.append(newNotification(50, Integer.valueOf(50)), null));
+		final List<Notification> notifications = replay(journal.fromSequence(0L, null));
+		assertEquals(51, notifications.size());
+		for (int i = 0; i < 51; i++) {
+			assertEquals(i, notifications.get(i).getSequenceNumber());
+			assertEquals(Integer.valueOf(i), notifications.get(i).getUserData());
+		}
+		journal.close();
+	}
+
+	/**
+	 * <p>A first record larger than the segment size grows the empty
+	 * segment rather than rolling to one of the same name, so that it
+	 * survives the retention of the segments, and reopening.</p>
+	 */
+	@Test
+	public void oversizedFirstRecord() throws Exception {
+		final int segmentSize = 256;
+		NotificationJournal journal = new NotificationJournal(this.directory, options(segmentSize));
+		final NotificationJournal.Cursor early = journal.fromSequence(0L, null);
+		final char large[] = new char[1000];
+		Arrays.fill(large, 'x');
+		assertEquals(0L, journal.append(newNotification(0, new String(large)), null));
+		assertEquals(1L, journal.append(newNotification(1, Integer.valueOf(1)), null));
+		assertEquals(2, this.segmentFiles().length);
+		assertEquals(2, replay(early).size());
+		journal.close();
+
+		journal = new NotificationJournal(this.directory, options(segmentSize));
+		assertEquals(0L, journal.getFirstSequence());
+		assertEquals(2L, journal.getNextSequence());
+		final List<Notification> notifications = replay(journal.fromSequence(0L, null));
+		assertEquals(2, notifications.size());
+		assertEquals(new String(large), notifications.get(0).getUserData());
+		assertEquals(Integer.valueOf(1), notifications.get(1).getUserData());
+		journal.close();
+	}
+
+	/**
+	 * <p>Replay from a sequence number starts at that record, and skips
+	 * the records before it even within its segment; replay from a time
+	 * stamp starts at the first record which is not older.</p>
+	 */
+	@Test
+	public void replayFrom() throws Exception {
+		final NotificationJournal journal = new NotificationJournal(this.directory, options(SEGMENT_SIZE));
+		for (int i = 0; i < 100; i++) {
+			journal.append(newNotification(i, 1000L + i), null);
+		}
+		for (final long from : new long[] {0L, 7L, 55L, 99L}) {
+			final List<Notification> notifications = replay(journal.fromSequence(from, null));
+			assertEquals(100L - from, notifications.size());
+			assertEquals(from, notifications.get(0).getSequenceNumber());
+			assertEquals(99L, notifications.get(notifications.size() - 1).getSequenceNumber());
+
+			final List<Notification> byTime = replay(journal.fromTime(1000L + from, null));
+			assertEquals(100L - from, byTime.size());
+			assertEquals(from, byTime.get(0).getSequenceNumber());
+		}
+		assertTrue(replay(journal.fromSequence(100L, null)).isEmpty());
+		assertTrue(replay(journal.fromTime(1100L, null)).isEmpty());
+
+		final NotificationJournal.Cursor cursor = journal.fromSequence(100L, null);
+		journal.append(newNotification(100, 1100L), null);
+		assertEquals(100L, cursor.next().getSequenceNumber());
+		assertNull(cursor.next());
+		journal.close();
+	}
+
+	/**
+	 * <p>The journal holds the object name of the emitting MBean rather
+	 * than the source, or the source if it is an object name, and a
+	 * placeholder otherwise.</p>
+	 */
+	@Test
+	public void source() throws Exception {
+		final NotificationJournal journal = new NotificationJournal(this.directory, options(SEGMENT_SIZE));
+		final ObjectName name = new ObjectName("test:type=Journal");
+		final ObjectName otherName = new ObjectName("test:type=Other");
+		journal.append(newNotification(0, null), name);
+		journal.append(new Notification(TYPE, otherName, 1L), null);
+		journal.append(newNotification(2, null), null);
+		final List<Notification> notifications = replay(journal.fromSequence(0L, null));
+		assertEquals(name, notifications.get(0).getSource());
+		assertEquals(otherName, notifications.get(1).getSource());
+		assertEquals(NotificationJournal.UNNAMED_SOURCE, notifications.get(2).getSource());
+		journal.close();
+
+		final NotificationJournal mbeanJournal = new NotificationJournal(new File(this.directory, "mbean"));
+		try {
+			final AnnotatedNotificationEmitter.Options options = new AnnotatedNotificationEmitter.Options();
+			options.setJournal(mbeanJournal);
+			final AnnotatedNotificationEmitter emitter = new AnnotatedNotificationEmitter(Emitting.class, options);
+			final AnnotatedStandardEmitterMBean mbean = new AnnotatedStandardEmitterMBean(new Emitting(),
+					EmittingMBean.class,
+					false,
+					null,
+					emitter);
+			final MBeanServer server = MBeanServerFactory.newMBeanServer();
+			server.registerMBean(mbean, name);
+			assertEquals(name, emitter.getObjectName());
+			mbean.sendNotification(new Notification(TYPE, mbean, 0L));
+			/*
+			 * Live notifications keep their source: wait until this one
+			 * has been journaled, so that it is replayed.
+			 */
+			final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+			while (mbeanJournal.getNextSequence() == 0L) {
+				if (System.currentTimeMillis() > deadline) {
+					fail("Not journaled");
+				}
+				Thread.sleep(10L);
+			}
+			final RecordingListener listener = new RecordingListener();
+			emitter.addNotificationListenerFromSequence(listener, null, null, 0L);
+			listener.await(1);
+			assertEquals(name, listener.getNotifications().get(0).getSource());
+			server.unregisterMBean(name);
+		} finally {
+			mbeanJournal.close();
+			deleteTree(new File(this.directory, "mbean"));
+		}
+	}
+
+	/**
+	 * <p>Listeners added while notifications are being sent receive each
+	 * of them exactly once, in order, whether it is replayed from the
+	 * journal or delivered live.</p>
+	 */
+	@Test
+	public void replayToLiveHandover() throws Exception {
+		final int count = 20000;
+		final NotificationJournal journal = new NotificationJournal(this.directory, options(64 * SEGMENT_SIZE));
+		final AnnotatedNotificationEmitter.Options options = new AnnotatedNotificationEmitter.Options();
+		options.setCapacity(256);
+		options.setJournal(journal);
+		final AnnotatedNotificationEmitter emitter = new AnnotatedNotificationEmitter(Emitting.class, options);
+		try {
+			final List<RecordingListener> listeners = new ArrayList<RecordingListener>();
+			for (int i = 0; i < count; i++) {
+				final Notification notification = new Notification(TYPE, "source", i);
+				while (!emitter.sendNotification(notification)) {
+					Thread.yield();
+				}
+				if (i % 4000 == 2000) {
+					final RecordingListener bySequence = new RecordingListener();
+					emitter.addNotificationListenerFromSequence(bySequence, null, null, 0L);
+					listeners.add(bySequence);
+					final RecordingListener byTime = new RecordingListener();
+					emitter.addNotificationListenerFromTime(byTime, null, null, 0L);
+					listeners.add(byTime);
+				}
+			}
+			for (final RecordingListener listener : listeners) {
+				listener.await(count);
+				final List<Notification> notifications = listener.getNotifications();
+				assertEquals(count, notifications.size());
+				for (int i = 0; i < count; i++) {
+					assertEquals(i, notifications.get(i).getSequenceNumber());
+				}
+			}
+		} finally {
+			emitter.close();
+			journal.close();
+		}
+	}
+
+	/**
+	 * <p>The schema of an Open Type is written once per segment, also
+	 * after the journal is opened again, and the values replayed share a
+	 * single type.</p>
+	 */
+	@Test
+	public void schemaTable() throws Exception {
+		final CompositeType sampleType = new CompositeType(SCHEMA_NAME,
+				"A sample",
+				new String[] {"count"},
+				new String[] {"The count"},
+				new OpenType<?>[] {SimpleType.INTEGER});
+		NotificationJournal journal = new NotificationJournal(this.directory, options(SEGMENT_SIZE));
+		for (int i = 0; i < 60; i++) {
+			journal.append(newNotification(i, new CompositeDataSupport(sampleType,
+					new String[] {"count"},
+					new Object[] {Integer.valueOf(i)})), null);
+		}
+		journal.close();
+		journal = new NotificationJournal(this.directory, options(SEGMENT_SIZE));
+		journal.append(newNotification(60, new CompositeDataSupport(sampleType,
+				new String[] {"count"},
+				new Object[] {Integer.valueOf(60)})), null);
+
+		final File files[] = this.segmentFiles();
+		assertTrue(files.length > 1);
+		for (final File file : files) {
+			assertEquals(1, countOccurrences(file, SCHEMA_NAME));
+		}
+
+		final NotificationJournal.Cursor cursor = journal.fromSequence(0L, null);
+		final List<Object> userData = new ArrayList<Object>();
+		Notification notification;
+		while ((notification = cursor.next()) != null) {
+			userData.add(notification.getUserData());
+		}
+		assertEquals(61, userData.size());
+		final CompositeType replayedType = ((CompositeData) userData.get(0)).getCompositeType();
+		assertEquals(sampleType, replayedType);
+		for (int i = 0; i < userData.size(); i++) {
+			final CompositeData data = (CompositeData) userData.get(i);
+			assertSame(replayedType, data.getCompositeType());
+			assertEquals(Integer.valueOf(i), data.get("count"));
+		}
+		assertNull(cursor.next());
+		journal.close();
+	}
+
+	private static List<Notification> replay(final NotificationJournal.Cursor cursor) throws IOException {
+		final List<Notification> notifications = new ArrayList<Notification>();
+		Notification notification;
+		while ((notification = cursor.next()) != null) {
+			notifications.add(notification);
+		}
+		return notifications;
+	}
+
+	private static NotificationJournal.Options options(final int segmentSize) {
+		final NotificationJournal.Options options = new NotificationJournal.Options();
+		options.setSegmentSize(segmentSize);
+		return options;
+	}
+
+	private static Notification newNotification(final long sequenceNumber, final Object userData) {
+		final Notification notification = new Notification(TYPE, "source", sequenceNumber, "message " + sequenceNumber);
+		notification.setUserData(userData);
+		return notification;
+	}
+
+	private static Notification newNotification(final long sequenceNumber, final long timeStamp) {
+		return new Notification(TYPE, "source", sequenceNumber, timeStamp, "message " + sequenceNumber);
+	}
+
+	private File[] segmentFiles() {
+		final File files[] = this.directory.listFiles();
+		assertTrue(files != null);
+		return files;
+	}
+
+	public interface EmittingMBean {
+		// empty
+	}
+
+	@NotificationInfo(types = TYPE)
+	public static final class Emitting implements EmittingMBean {
+		// empty
+	}
+
+	private static final class RecordingListener implements NotificationListener {
+		private final List<Notification> notifications = new ArrayList<Notification>();
+
+		RecordingListener() {
+			// empty
+		}
+
+		/**
+		 * @see NotificationListener#handleNotification(Notification, Object)
+		 */
+		public synchronized void handleNotification(final Notification notification, final Object handback) {
+			this.notifications.add(notification);
+		}
+
+		synchronized List<Notification> getNotifications() {
+			return new ArrayList<Notification>(this.notifications);
+		}
+
+		void await(final int count) throws InterruptedException {
+			final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+			while (this.getNotifications().size() < count) {
+				if (System.currentTimeMillis() > deadline) {
+					fail("Received " + this.getNotifications().size() + " out of " + count);
+				}
+				Thread.sleep(10L);
+			}
+		}
+	}
+
+	private static int countOccurrences(final File file, final String s) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final byte bytes[] = new byte[(int) raf.length()];
+			raf.readFully(bytes);
+			final byte pattern[] = s.getBytes(Charset.forName("UTF-8"));
+			int count = 0;
+			for (int i = 0; i + pattern.length <= bytes.length; i++) {
+				int j = 0;
+				while (j < pattern.length && bytes[i + j] == pattern[j]) {
+					j++;
+				}
+				if (j == pattern.length) {
+					count++;
+				}
+			}
+			return count;
+		} finally {
+			raf.close();
+		}
+	}
+}
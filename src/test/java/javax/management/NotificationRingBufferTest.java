@@ -0,0 +1,156 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class NotificationRingBufferTest {
+	private static final int PRODUCERS = 4;
+
+	private static final int NOTIFICATIONS_PER_PRODUCER = 200000;
+
+	@Test
+	public void powerOfTwo() {
+		assertEquals(1, NotificationRingBuffer.powerOfTwo(1));
+		assertEquals(2, NotificationRingBuffer.powerOfTwo(2));
+		assertEquals(4, NotificationRingBuffer.powerOfTwo(3));
+		assertEquals(1024, NotificationRingBuffer.powerOfTwo(1000));
+		assertEquals(1 << 30, NotificationRingBuffer.powerOfTwo(1 << 30));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void capacityNotAPowerOfTwo() {
+		new NotificationRingBuffer(3);
+	}
+
+	@Test
+	public void fullAndEmpty() {
+		final NotificationRingBuffer buffer = new NotificationRingBuffer(4);
+		assertTrue(buffer.isEmpty());
+		final Notification notifications[] = new Notification[4];
+		for (int i = 0; i < notifications.length; i++) {
+			notifications[i] = new Notification("test", this, i);
+			assertTrue(buffer.offer(notifications[i]));
+		}
+		assertFalse(buffer.offer(new Notification("test", this, 4)));
+		assertEquals(4, buffer.size());
+
+		final Notification batch[] = new Notification[3];
+		assertEquals(3, buffer.drainTo(batch));
+		for (int i = 0; i < batch.length; i++) {
+			assertSame(notifications[i], batch[i]);
+		}
+		assertEquals(1, buffer.drainTo(batch));
+		assertSame(notifications[3], batch[0]);
+		assertTrue(buffer.isEmpty());
+		assertEquals(0, buffer.drainTo(batch));
+
+		/*
+		 * The slots are reused on the next lap.
+		 */
+		for (int i = 0; i < 4; i++) {
+			assertTrue(buffer.offer(notifications[i]));
+		}
+		assertEquals(3, buffer.drainTo(batch));
+		assertSame(notifications[0], batch[0]);
+	}
+
+	/**
+	 * <p>Several producers offer notifications to a small buffer,
+	 * retrying when it is full, while a single consumer drains it: every
+	 * notification must be received exactly once, and those of each
+	 * producer in the order they were offered.</p>
+	 */
+	@Test
+	public void concurrentProducers() throws InterruptedException {
+		final NotificationRingBuffer buffer = new NotificationRingBuffer(64);
+		final AtomicReference<String> error = new AtomicReference<String>();
+		final CountDownLatch start = new CountDownLatch(1);
+		final Thread producers[] = new Thread[PRODUCERS];
+		for (int i = 0; i < PRODUCERS; i++) {
+			final String type = String.valueOf(i);
+			producers[i] = new Thread(new Runnable() {
+				/**
+				 * @see Runnable#run()
+				 */
+				public void run() {
+					try {
+						start.await();
+					} catch (final InterruptedException ie) {
+						return;
+					}
+					for (int j = 0; j < NOTIFICATIONS_PER_PRODUCER; j++) {
+						final Notification notification = new Notification(type, NotificationRingBufferTest.this, j);
+						while (!buffer.offer(notification)) {
+							if (error.get() != null) {
+								return;
+							}
+							Thread.yield();
+						}
+					}
+				}
+			});
+			producers[i].start();
+		}
+
+		final long expected[] = new long[PRODUCERS];
+		final Thread consumer = new Thread(new Runnable() {
+			/**
+			 * @see Runnable#run()
+			 */
+			public void run() {
+				final Notification batch[] = new Notification[16];
+				long received = 0;
+				while (received < (long) PRODUCERS * NOTIFICATIONS_PER_PRODUCER) {
+					final int count = buffer.drainTo(batch);
+					if (count == 0) {
+						Thread.yield();
+						continue;
+					}
+					for (int i = 0; i < count; i++) {
+						final int producer = Integer.parseInt(batch[i].getType());
+						if (batch[i].getSequenceNumber() != expected[producer]) {
+							error.compareAndSet(null, "Producer " + producer + ": expected " + expected[producer]
+									+ ", received " + batch[i].getSequenceNumber());
+							return;
+						}
+						expected[producer]++;
+						batch[i] = null;
+					}
+					received += count;
+				}
+			}
+		});
+		consumer.setDaemon(true);
+		consumer.start();
+		start.countDown();
+
+		for (final Thread producer : producers) {
+			producer.join();
+		}
+		consumer.join(60000L);
+		if (consumer.isAlive()) {
+			fail("The consumer has not received every notification");
+		}
+		if (error.get() != null) {
+			fail(error.get());
+		}
+		for (int i = 0; i < PRODUCERS; i++) {
+			assertEquals(NOTIFICATIONS_PER_PRODUCER, expected[i]);
+		}
+		assertTrue(buffer.isEmpty());
+	}
+}
@@ -0,0 +1,680 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.beans.ConstructorProperties;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MemberInvoker;
+
+import org.junit.Test;
+
+/**
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class DefaultMXBeanMappingFactoryTest {
+	private static final MXBeanMappingFactory DEFAULT = MXBeanMappingFactory.DEFAULT;
+
+	/**
+	 * <p>Equal types share a mapping, even if they are distinct
+	 * <code>Type</code> instances.</p>
+	 */
+	@Test
+	public void cacheHits() throws Exception {
+		assertSame(DEFAULT.mappingForType(String.class, DEFAULT), DEFAULT.mappingForType(String.class, DEFAULT));
+
+		final Type names = Holder.class.getMethod("getNames").getGenericReturnType();
+		final Type otherNames = Holder.class.getMethod("getOtherNames").getGenericReturnType();
+		assertEquals(names, otherNames);
+		assertSame(DEFAULT.mappingForType(names, DEFAULT), DEFAULT.mappingForType(otherNames, DEFAULT));
+	}
+
+	/**
+	 * <p>Mappings are cached per original factory, since the mappings of
+	 * the items depend on it.</p>
+	 */
+	@Test
+	public void perFactory() throws Exception {
+		final Type names = Holder.class.getMethod("getNames").getGenericReturnType();
+		final MXBeanMappingFactory other = new DefaultMXBeanMappingFactory(new DefaultMXBeanMappingFactory.Options());
+		final MXBeanMapping mapping = DEFAULT.mappingForType(names, DEFAULT);
+		final MXBeanMapping otherMapping = DEFAULT.mappingForType(names, other);
+		assertNotSame(mapping, otherMapping);
+		assertSame(otherMapping, DEFAULT.mappingForType(names, other));
+		assertEquals(mapping.getOpenType(), otherMapping.getOpenType());
+	}
+
+	@Test
+	public void simpleValues() throws Exception {
+		assertRoundTrip(Integer.TYPE, SimpleType.INTEGER, Integer.valueOf(42));
+		assertRoundTrip(String.class, SimpleType.STRING, "s");
+		assertRoundTrip(TimeUnit.class, SimpleType.STRING, TimeUnit.SECONDS);
+		assertEquals("SECONDS", DEFAULT.mappingForType(TimeUnit.class, DEFAULT).toOpenValue(TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void arraysAndCollections() throws Exception {
+		final String strings[] = {"a", null, "b"};
+		assertArrayEquals(strings, (String[]) roundTrip(String[].class, strings));
+
+		final TimeUnit units[] = {TimeUnit.DAYS, TimeUnit.HOURS};
+		assertArrayEquals(units, (TimeUnit[]) roundTrip(TimeUnit[].class, units));
+		assertArrayEquals(new String[] {"DAYS", "HOURS"},
+				(String[]) DEFAULT.mappingForType(TimeUnit[].class, DEFAULT).toOpenValue(units));
+
+		assertRoundTrip(Holder.class.getMethod("getNames").getGenericReturnType(), Arrays.asList("x", "y", "x"));
+		assertRoundTrip(Holder.class.getMethod("getNumbers").getGenericReturnType(),
+				new LinkedHashSet<Integer>(Arrays.asList(Integer.valueOf(3), Integer.valueOf(1))));
+		assertRoundTrip(Holder.class.getMethod("getSortedNames").getGenericReturnType(),
+				new TreeSet<String>(Arrays.asList("b", "a")));
+	}
+
+	@Test
+	public void maps() throws Exception {
+		final Map<String, Integer> map = new HashMap<String, Integer>();
+		map.put("one", Integer.valueOf(1));
+		map.put("two", Integer.valueOf(2));
+		final Type mapType = Holder.class.getMethod("getMap").getGenericReturnType();
+		final TabularData tabularData = (TabularData) DEFAULT.mappingForType(mapType, DEFAULT).toOpenValue(map);
+		assertEquals(2, tabularData.size());
+		assertEquals(Integer.valueOf(2), tabularData.get(new Object[] {"two"}).get("value"));
+		assertRoundTrip(mapType, map);
+
+		final SortedMap<String, Integer> sortedMap = new TreeMap<String, Integer>(map);
+		assertRoundTrip(Holder.class.getMethod("getSortedMap").getGenericReturnType(), sortedMap);
+	}
+
+	@Test
+	public void unmappableTypes() throws Exception {
+		final Type types[] = {
+			Object.class,
+			Node.class,
+			Holder.class.getMethod("getWildcards").getGenericReturnType(),
+		};
+		for (final Type type : types) {
+			try {
+				DEFAULT.mappingForType(type, DEFAULT);
+				fail("No exception for " + type);
+			} catch (final OpenDataException ignored) {
+				// Ignore.
+			}
+		}
+	}
+
+	/**
+	 * <p>A bean is mapped to one item per getter, and reconstructed by
+	 * its {@link ConstructorProperties &#64;ConstructorProperties}
+	 * constructor.</p>
+	 */
+	@Test
+	public void composites() throws Exception {
+		final CompositeType compositeType = (CompositeType) DEFAULT.mappingForType(Point.class, DEFAULT).getOpenType();
+		assertEquals(Point.class.getName(), compositeType.getTypeName());
+		assertEquals(new TreeSet<String>(Arrays.asList("x", "y")), compositeType.keySet());
+		assertEquals(SimpleType.INTEGER, compositeType.getType("x"));
+
+		final Point point = new Point(3, -4);
+		final CompositeData compositeData = (CompositeData) DEFAULT.mappingForType(Point.class, DEFAULT).toOpenValue(point);
+		assertEquals(Integer.valueOf(3), compositeData.get("x"));
+		assertEquals(Integer.valueOf(-4), compositeData.get("y"));
+		assertRoundTrip(Point.class, point);
+	}
+
+	/**
+	 * <p>An invoker is generated once per bean class and list of
+	 * members, and shared by the mappings of every factory.</p>
+	 */
+	@Test
+	public void invokersShared() throws Exception {
+		final MemberInvoker invoker = DefaultMXBeanMappingFactory.invokerFor(Point.class,
+				Point.class.getMethod("getX"),
+				Point.class.getMethod("getY"));
+		assertTrue(invoker.isGenerated());
+		assertSame(invoker, DefaultMXBeanMappingFactory.invokerFor(Point.class,
+				Point.class.getMethod("getX"),
+				Point.class.getMethod("getY")));
+		assertNotSame(invoker, DefaultMXBeanMappingFactory.invokerFor(Point.class,
+				Point.class.getMethod("getY"),
+				Point.class.getMethod("getX")));
+		assertEquals(Integer.valueOf(5), invoker.invoke(1, new Point(0, 5)));
+
+		final MXBeanMappingFactory other = new DefaultMXBeanMappingFactory(new DefaultMXBeanMappingFactory.Options());
+		final MXBeanMapping mapping = other.mappingForType(Point.class, other);
+		assertNotSame(DEFAULT.mappingForType(Point.class, DEFAULT), mapping);
+		assertEquals(new Point(1, 2), mapping.fromOpenValue(mapping.toOpenValue(new Point(1, 2))));
+	}
+
+	/**
+	 * <p>A static <code>from(CompositeData)</code> method takes
+	 * precedence over the constructors.</p>
+	 */
+	@Test
+	public void fromMethod() throws Exception {
+		final Version version = (Version) roundTrip(Version.class, new Version(1, 7));
+		assertTrue(version.isFromCompositeData());
+		assertEquals(1, version.getMajor());
+		assertEquals(7, version.getMinor());
+	}
+
+	@Test
+	public void setters() throws Exception {
+		final Settings settings = new Settings();
+		settings.setName("n");
+		settings.setCount(3);
+		settings.setEnabled(true);
+		final Settings reconstructed = (Settings) roundTrip(Settings.class, settings);
+		assertEquals("n", reconstructed.getName());
+		assertEquals(3, reconstructed.getCount());
+		assertTrue(reconstructed.isEnabled());
+	}
+
+	@Test
+	public void proxy() throws Exception {
+		final MXBeanMapping mapping = DEFAULT.mappingForType(Range.class, DEFAULT);
+		final CompositeData compositeData = new CompositeDataSupport((CompositeType) mapping.getOpenType(),
+				new String[] {"high", "low"},
+				new Object[] {Long.valueOf(9L), Long.valueOf(2L)});
+		final Range range = (Range) mapping.fromOpenValue(compositeData);
+		assertEquals(2L, range.getLow());
+		assertEquals(9L, range.getHigh());
+		assertEquals(range, range);
+		assertEquals(compositeData, mapping.toOpenValue(range));
+	}
+
+	/**
+	 * <p>An open value which does not name a constant is rejected as
+	 * invalid, whether it is a string or not.</p>
+	 */
+	@Test
+	public void invalidEnumValues() throws Exception {
+		final MXBeanMapping mapping = DEFAULT.mappingForType(TimeUnit.class, DEFAULT);
+		for (final Object openValue : new Object[] {"FORTNIGHTS", Integer.valueOf(1), TimeUnit.SECONDS}) {
+			try {
+				mapping.fromOpenValue(openValue);
+				fail("No exception for " + openValue);
+			} catch (final InvalidObjectException ignored) {
+				// Ignore.
+			}
+		}
+	}
+
+	/**
+	 * <p>A type which cannot be reconstructed can still be mapped, and
+	 * the reason is reported by every attempt to reconstruct a
+	 * value.</p>
+	 */
+	@Test
+	public void unreconstructible() throws Exception {
+		final MXBeanMapping mapping = DEFAULT.mappingForType(ReadOnly.class, DEFAULT);
+		final CompositeData compositeData = (CompositeData) mapping.toOpenValue(ReadOnly.INSTANCE);
+		assertEquals("r", compositeData.get("value"));
+		try {
+			mapping.checkReconstructible();
+			fail("No exception");
+		} catch (final InvalidObjectException ignored) {
+			// Ignore.
+		}
+		try {
+			mapping.fromOpenValue(compositeData);
+			fail("No exception");
+		} catch (final InvalidObjectException ignored) {
+			// Ignore.
+		}
+	}
+
+	/**
+	 * <p>With {@link DefaultMXBeanMappingFactory.Options#setLazyCompositeData(boolean)},
+	 * each getter is only called when its item is first read, and the
+	 * view is serialized as a <code>CompositeDataSupport</code>.</p>
+	 */
+	@Test
+	public void lazyCompositeData() throws Exception {
+		final DefaultMXBeanMappingFactory.Options options = new DefaultMXBeanMappingFactory.Options();
+		options.setLazyCompositeData(true);
+		final MXBeanMappingFactory lazy = new DefaultMXBeanMappingFactory(options);
+		final MXBeanMapping mapping = lazy.mappingForType(Probe.class, lazy);
+
+		final Probe probe = new Probe();
+		final CompositeData view = (CompositeData) mapping.toOpenValue(probe);
+		assertFalse(view instanceof CompositeDataSupport);
+		assertEquals(0, probe.getCalls("a"));
+		assertEquals(0, probe.getCalls("b"));
+		assertEquals("a", view.get("a"));
+		assertEquals("a", view.get("a"));
+		assertEquals(1, probe.getCalls("a"));
+		assertEquals(0, probe.getCalls("b"));
+		assertTrue(view.containsKey("b"));
+		assertFalse(view.containsKey("c"));
+		assertEquals(0, probe.getCalls("b"));
+
+		final Object eager = DEFAULT.mappingForType(Probe.class, DEFAULT).toOpenValue(new Probe());
+		assertEquals(eager, view);
+		assertEquals(view, eager);
+		assertEquals(eager.hashCode(), view.hashCode());
+		assertEquals(1, probe.getCalls("b"));
+
+		final Object deserialized = serialize(view);
+		assertSame(CompositeDataSupport.class, deserialized.getClass());
+		assertEquals(eager, deserialized);
+		assertEquals(1, probe.getCalls("a"));
+		assertEquals(1, probe.getCalls("b"));
+	}
+
+	/**
+	 * <p>With lazy composite data, a failing getter no longer fails the
+	 * conversion, but every read of its item, with an
+	 * <code>IllegalStateException</code> caused by the
+	 * <code>OpenDataException</code> an eager conversion throws.</p>
+	 */
+	@Test
+	public void lazyCompositeDataFailure() throws Exception {
+		final Broken broken = new Broken();
+		try {
+			DEFAULT.mappingForType(Broken.class, DEFAULT).toOpenValue(broken);
+			fail();
+		} catch (final OpenDataException expected) {
+			// Expected.
+		}
+
+		final DefaultMXBeanMappingFactory.Options options = new DefaultMXBeanMappingFactory.Options();
+		options.setLazyCompositeData(true);
+		final MXBeanMappingFactory lazy = new DefaultMXBeanMappingFactory(options);
+		final CompositeData view = (CompositeData) lazy.mappingForType(Broken.class, lazy).toOpenValue(broken);
+		assertEquals("name", view.get("name"));
+		for (int i = 0; i < 2; i++) {
+			try {
+				view.get("value");
+				fail();
+			} catch (final IllegalStateException expected) {
+				assertTrue(expected.getCause() instanceof OpenDataException);
+			}
+		}
+		try {
+			view.getAll(new String[] {"name", "value"});
+			fail();
+		} catch (final IllegalStateException expected) {
+			assertTrue(expected.getCause() instanceof OpenDataException);
+		}
+		assertEquals(4, broken.getFailures());
+	}
+
+	/**
+	 * <p>Arrays of primitive types are mapped to primitive
+	 * <code>ArrayType</code>s, without boxing, and are handed over as
+	 * they are.</p>
+	 */
+	@Test
+	public void primitiveArrays() throws Exception {
+		final Object arrays[] = {
+			new int[] {1, -2, 3},
+			new long[] {Long.MIN_VALUE, 0L},
+			new double[] {0.5, Double.NaN},
+			new byte[] {(byte) 0xff},
+			new boolean[0],
+			new char[] {'c'},
+			new int[][] {{1}, {}, null},
+		};
+		for (final Object array : arrays) {
+			final MXBeanMapping mapping = DEFAULT.mappingForType(array.getClass(), DEFAULT);
+			assertEquals(ArrayType.getPrimitiveArrayType(array.getClass()), mapping.getOpenType());
+			assertTrue(mapping.getOpenType().isValue(array));
+			assertSame(array, mapping.toOpenValue(array));
+			assertSame(array, mapping.fromOpenValue(array));
+		}
+		assertSame(DEFAULT.mappingForType(int[].class, DEFAULT).getOpenType(),
+				DEFAULT.mappingForType(int[].class, new DefaultMXBeanMappingFactory(new DefaultMXBeanMappingFactory.Options())).getOpenType());
+	}
+
+	/**
+	 * <p>With {@link DefaultMXBeanMappingFactory.Options#setCopyPrimitiveArrays(boolean)},
+	 * every dimension of a primitive array is copied both ways.</p>
+	 */
+	@Test
+	public void copiedPrimitiveArrays() throws Exception {
+		final DefaultMXBeanMappingFactory.Options options = new DefaultMXBeanMappingFactory.Options();
+		options.setCopyPrimitiveArrays(true);
+		final MXBeanMappingFactory copying = new DefaultMXBeanMappingFactory(options);
+
+		final long longs[] = {1L, 2L};
+		final MXBeanMapping mapping = copying.mappingForType(long[].class, copying);
+		final long openValue[] = (long[]) mapping.toOpenValue(longs);
+		assertNotSame(longs, openValue);
+		assertArrayEquals(longs, openValue);
+		final long javaValue[] = (long[]) mapping.fromOpenValue(openValue);
+		assertNotSame(openValue, javaValue);
+		assertArrayEquals(longs, javaValue);
+
+		final int matrix[][] = {{1, 2}, null};
+		final int copy[][] = (int[][]) copying.mappingForType(int[][].class, copying).toOpenValue(matrix);
+		assertNotSame(matrix, copy);
+		assertNotSame(matrix[0], copy[0]);
+		assertArrayEquals(matrix[0], copy[0]);
+		assertEquals(null, copy[1]);
+	}
+
+	/**
+	 * <p>Open values are built unchecked, unless
+	 * {@value DefaultMXBeanMappingFactory#VALIDATE_PROPERTY} is set, and
+	 * are indistinguishable from their checked counterparts either
+	 * way.</p>
+	 */
+	@Test
+	public void trustedOpenValues() throws Exception {
+		final MXBeanMapping pointMapping = DEFAULT.mappingForType(Point.class, DEFAULT);
+		final CompositeType compositeType = (CompositeType) pointMapping.getOpenType();
+		final CompositeData compositeData = (CompositeData) pointMapping.toOpenValue(new Point(1, 2));
+		assertSame(DefaultMXBeanMappingFactory.VALIDATE ? CompositeDataSupport.class : TrustedCompositeData.class,
+				compositeData.getClass());
+		final CompositeData expectedCompositeData = new CompositeDataSupport(compositeType,
+				new String[] {"x", "y"},
+				new Object[] {Integer.valueOf(1), Integer.valueOf(2)});
+		assertEquivalent(expectedCompositeData, compositeData);
+
+		final Map<String, Integer> map = new TreeMap<String, Integer>();
+		map.put("one", Integer.valueOf(1));
+		map.put("two", Integer.valueOf(2));
+		final MXBeanMapping mapMapping = DEFAULT.mappingForType(Holder.class.getMethod("getMap").getGenericReturnType(), DEFAULT);
+		final TabularType tabularType = (TabularType) mapMapping.getOpenType();
+		final TabularData tabularData = (TabularData) mapMapping.toOpenValue(map);
+		assertSame(DefaultMXBeanMappingFactory.VALIDATE ? TabularDataSupport.class : TrustedTabularData.class,
+				tabularData.getClass());
+		final TabularData expectedTabularData = new TabularDataSupport(tabularType);
+		for (final Map.Entry<String, Integer> entry : map.entrySet()) {
+			expectedTabularData.put(new CompositeDataSupport(tabularType.getRowType(),
+					new String[] {"key", "value"},
+					new Object[] {entry.getKey(), entry.getValue()}));
+		}
+		assertEquivalent(expectedTabularData, tabularData);
+		assertTrue(tabularData.containsKey(new Object[] {"one"}));
+		assertEquals(expectedTabularData.get(new Object[] {"two"}), tabularData.get(new Object[] {"two"}));
+	}
+
+	/**
+	 * <p>A trusted open value rejects an item of the wrong type when it
+	 * is added after construction, as the checked one would.</p>
+	 */
+	@Test
+	public void trustedTabularDataChecksPut() throws Exception {
+		final MXBeanMapping mapMapping = DEFAULT.mappingForType(Holder.class.getMethod("getMap").getGenericReturnType(), DEFAULT);
+		final TabularData tabularData = (TabularData) mapMapping.toOpenValue(new HashMap<String, Integer>());
+		final CompositeType wrongRowType = new CompositeType("row", "row",
+				new String[] {"key", "value"},
+				new String[] {"key", "value"},
+				new OpenType<?>[] {SimpleType.STRING, SimpleType.STRING});
+		try {
+			tabularData.put(new CompositeDataSupport(wrongRowType,
+					new String[] {"key", "value"},
+					new Object[] {"k", "v"}));
+			fail("No exception");
+		} catch (final InvalidOpenTypeException ignored) {
+			// Ignore.
+		}
+		assertTrue(tabularData.isEmpty());
+	}
+
+	private static void assertRoundTrip(final Type type, final OpenType<?> openType, final Object value)
+	throws Exception {
+		assertEquals(openType, DEFAULT.mappingForType(type, DEFAULT).getOpenType());
+		assertRoundTrip(type, value);
+	}
+
+	private static void assertRoundTrip(final Type type, final Object value) throws Exception {
+		assertEquals(value, roundTrip(type, value));
+	}
+
+	private static Object roundTrip(final Type type, final Object value) throws Exception {
+		final MXBeanMapping mapping = DEFAULT.mappingForType(type, DEFAULT);
+		mapping.checkReconstructible();
+		final Object openValue = mapping.toOpenValue(value);
+		assertTrue(mapping.getOpenClass().isInstance(openValue));
+		return mapping.fromOpenValue(openValue);
+	}
+
+	/**
+	 * <p>Asserts that <code>actual</code> equals, hashes and prints like
+	 * <code>expected</code>, and is serialized as an object of the same
+	 * class.</p>
+	 */
+	private static void assertEquivalent(final Object expected, final Object actual) throws Exception {
+		assertEquals(expected, actual);
+		assertEquals(actual, expected);
+		assertEquals(expected.hashCode(), actual.hashCode());
+		assertEquals(expected.toString(), actual.toString());
+		final Object deserialized = serialize(actual);
+		assertSame(expected.getClass(), deserialized.getClass());
+		assertEquals(expected, deserialized);
+	}
+
+	private static Object serialize(final Object object) throws Exception {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+		return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+	}
+
+	/**
+	 * <p>Declares the generic types used by the tests.</p>
+	 */
+	public interface Holder {
+		List<String> getNames();
+
+		List<String> getOtherNames();
+
+		Set<Integer> getNumbers();
+
+		SortedSet<String> getSortedNames();
+
+		Map<String, Integer> getMap();
+
+		SortedMap<String, Integer> getSortedMap();
+
+		List<? extends Number> getWildcards();
+	}
+
+	public static final class Point {
+		private final int x;
+
+		private final int y;
+
+		@ConstructorProperties({"x", "y"})
+		public Point(final int x, final int y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		public int getX() {
+			return this.x;
+		}
+
+		public int getY() {
+			return this.y;
+		}
+
+		/**
+		 * @see Object#equals(Object)
+		 */
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Point)) {
+				return false;
+			}
+			final Point that = (Point) obj;
+			return this.x == that.x && this.y == that.y;
+		}
+
+		/**
+		 * @see Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return 31 * this.x + this.y;
+		}
+	}
+
+	public static final class Version {
+		private final int major;
+
+		private final int minor;
+
+		private final boolean fromCompositeData;
+
+		@ConstructorProperties({"major", "minor"})
+		public Version(final int major, final int minor) {
+			this(major, minor, false);
+		}
+
+		private Version(final int major, final int minor, final boolean fromCompositeData) {
+			this.major = major;
+			this.minor = minor;
+			this.fromCompositeData = fromCompositeData;
+		}
+
+		public static Version from(final CompositeData compositeData) {
+			return new Version(((Integer) compositeData.get("major")).intValue(),
+					((Integer) compositeData.get("minor")).intValue(),
+					true);
+		}
+
+		public int getMajor() {
+			return this.major;
+		}
+
+		public int getMinor() {
+			return this.minor;
+		}
+
+		boolean isFromCompositeData() {
+			return this.fromCompositeData;
+		}
+	}
+
+	public static final class Settings {
+		private String name;
+
+		private int count;
+
+		private boolean enabled;
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(final String name) {
+			this.name = name;
+		}
+
+		public int getCount() {
+			return this.count;
+		}
+
+		public void setCount(final int count) {
+			this.count = count;
+		}
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(final boolean enabled) {
+			this.enabled = enabled;
+		}
+	}
+
+	public interface Range {
+		long getLow();
+
+		long getHigh();
+	}
+
+	public static final class ReadOnly {
+		static final ReadOnly INSTANCE = new ReadOnly();
+
+		private ReadOnly() {
+			// empty
+		}
+
+		public String getValue() {
+			return "r";
+		}
+	}
+
+	/**
+	 * <p>Counts the calls of its getters.</p>
+	 */
+	public static final class Probe {
+		private final Map<String, Integer> calls = new HashMap<String, Integer>();
+
+		public String getA() {
+			return this.called("a");
+		}
+
+		public String getB() {
+			return this.called("b");
+		}
+
+		synchronized int getCalls(final String item) {
+			final Integer count = this.calls.get(item);
+			return count == null ? 0 : count.intValue();
+		}
+
+		private synchronized String called(final String item) {
+			this.calls.put(item, Integer.valueOf(this.getCalls(item) + 1));
+			return item;
+		}
+	}
+
+	/**
+	 * <p>A bean whose <code>value</code> getter always fails.</p>
+	 */
+	public static final class Broken {
+		private int failures;
+
+		public String getName() {
+			return "name";
+		}
+
+		public synchronized String getValue() {
+			this.failures++;
+			throw new UnsupportedOperationException("value");
+		}
+
+		synchronized int getFailures() {
+			return this.failures;
+		}
+	}
+
+	/**
+	 * <p>A recursive type, which cannot be mapped.</p>
+	 */
+	public interface Node {
+		String getName();
+
+		Node getNext();
+	}
+}
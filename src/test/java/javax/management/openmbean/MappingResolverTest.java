@@ -0,0 +1,216 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class MappingResolverTest {
+	private static final int THREADS = 8;
+
+	/**
+	 * <p>An annotated type is mapped by its mapping, whose single
+	 * instance is shared by all the factories.</p>
+	 */
+	@Test
+	public void mappingClass() throws Exception {
+		final MXBeanMapping mapping = MXBeanMappingFactory.DEFAULT.mappingForType(Temperature.class, MXBeanMappingFactory.DEFAULT);
+		assertSame(TemperatureMapping.class, mapping.getClass());
+		final MXBeanMappingFactory other = new DefaultMXBeanMappingFactory(new DefaultMXBeanMappingFactory.Options());
+		assertSame(mapping, other.mappingForType(Temperature.class, other));
+		assertEquals(Double.valueOf(21.5), mapping.toOpenValue(new Temperature(21.5)));
+		assertEquals(Double.valueOf(21.5), Double.valueOf(((Temperature) mapping.fromOpenValue(Double.valueOf(21.5))).getCelsius()));
+		assertEquals(1, TemperatureMapping.INSTANCES.get());
+	}
+
+	@Test
+	public void notAnnotated() throws Exception {
+		assertNull(MappingResolver.getMapping(String.class));
+		assertNull(MappingResolver.getMapping(String.class));
+		assertSame(MXBeanMappingFactory.DEFAULT, MXBeanMappingFactory.forInterface(PlainMXBean.class));
+	}
+
+	/**
+	 * <p>An annotated interface gets its mapping factory, whose single
+	 * instance is shared by all the interfaces which specify it.</p>
+	 */
+	@Test
+	public void factoryClass() {
+		final MXBeanMappingFactory factory = MXBeanMappingFactory.forInterface(AnnotatedMXBean.class);
+		assertSame(CountingFactory.class, factory.getClass());
+		assertSame(factory, MXBeanMappingFactory.forInterface(AnnotatedMXBean.class));
+		assertSame(factory, MXBeanMappingFactory.forInterface(OtherAnnotatedMXBean.class));
+		assertEquals(1, CountingFactory.INSTANCES.get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void uninstantiableFactoryClass() {
+		MXBeanMappingFactory.forInterface(UninstantiableMXBean.class);
+	}
+
+	/**
+	 * <p>Threads which resolve the same annotation concurrently for the
+	 * first time all get the same instance.</p>
+	 */
+	@Test
+	public void concurrentFirstLookups() throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final List<Future<MXBeanMapping>> futures = new ArrayList<Future<MXBeanMapping>>();
+			for (int i = 0; i < THREADS; i++) {
+				futures.add(executor.submit(new Callable<MXBeanMapping>() {
+					/**
+					 * @see Callable#call()
+					 */
+					public MXBeanMapping call() throws Exception {
+						start.await();
+						return MappingResolver.getMapping(Pressure.class);
+					}
+				}));
+			}
+			start.countDown();
+			final MXBeanMapping mapping = futures.get(0).get();
+			assertSame(PressureMapping.class, mapping.getClass());
+			for (final Future<MXBeanMapping> future : futures) {
+				assertSame(mapping, future.get());
+			}
+			assertSame(mapping, MappingResolver.getMapping(Pressure.class));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@MXBeanMappingClass(TemperatureMapping.class)
+	public static final class Temperature {
+		private final double celsius;
+
+		public Temperature(final double celsius) {
+			this.celsius = celsius;
+		}
+
+		public double getCelsius() {
+			return this.celsius;
+		}
+	}
+
+	public static final class TemperatureMapping extends MXBeanMapping {
+		static final AtomicInteger INSTANCES = new AtomicInteger();
+
+		public TemperatureMapping(final Type type) {
+			super(type, SimpleType.DOUBLE);
+			INSTANCES.incrementAndGet();
+		}
+
+		/**
+		 * @see MXBeanMapping#fromOpenValue(Object)
+		 */
+		@Override
+		public Object fromOpenValue(final Object openValue) {
+			return new Temperature(((Double) openValue).doubleValue());
+		}
+
+		/**
+		 * @see MXBeanMapping#toOpenValue(Object)
+		 */
+		@Override
+		public Object toOpenValue(final Object javaValue) {
+			return Double.valueOf(((Temperature) javaValue).getCelsius());
+		}
+	}
+
+	@MXBeanMappingClass(PressureMapping.class)
+	public static final class Pressure {
+		// empty
+	}
+
+	public static final class PressureMapping extends MXBeanMapping {
+		public PressureMapping(final Type type) {
+			super(type, SimpleType.STRING);
+		}
+
+		/**
+		 * @see MXBeanMapping#fromOpenValue(Object)
+		 */
+		@Override
+		public Object fromOpenValue(final Object openValue) {
+			return new Pressure();
+		}
+
+		/**
+		 * @see MXBeanMapping#toOpenValue(Object)
+		 */
+		@Override
+		public Object toOpenValue(final Object javaValue) {
+			return "";
+		}
+	}
+
+	public static final class CountingFactory extends MXBeanMappingFactory {
+		static final AtomicInteger INSTANCES = new AtomicInteger();
+
+		public CountingFactory() {
+			INSTANCES.incrementAndGet();
+		}
+
+		/**
+		 * @see MXBeanMappingFactory#mappingForType(Type, MXBeanMappingFactory)
+		 */
+		@Override
+		public MXBeanMapping mappingForType(final Type t, final MXBeanMappingFactory f)
+		throws OpenDataException {
+			return MXBeanMappingFactory.DEFAULT.mappingForType(t, f);
+		}
+	}
+
+	public static final class UninstantiableFactory extends MXBeanMappingFactory {
+		private UninstantiableFactory() {
+			fail("Instantiated");
+		}
+
+		/**
+		 * @see MXBeanMappingFactory#mappingForType(Type, MXBeanMappingFactory)
+		 */
+		@Override
+		public MXBeanMapping mappingForType(final Type t, final MXBeanMappingFactory f) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	public interface PlainMXBean {
+		String getName();
+	}
+
+	@MXBeanMappingFactoryClass(CountingFactory.class)
+	public interface AnnotatedMXBean {
+		String getName();
+	}
+
+	@MXBeanMappingFactoryClass(CountingFactory.class)
+	public interface OtherAnnotatedMXBean {
+		String getName();
+	}
+
+	@MXBeanMappingFactoryClass(UninstantiableFactory.class)
+	public interface UninstantiableMXBean {
+		String getName();
+	}
+}
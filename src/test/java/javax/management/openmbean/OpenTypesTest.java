@@ -0,0 +1,87 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+
+import org.junit.Test;
+
+/**
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class OpenTypesTest {
+	@Test
+	public void equalTypes() throws OpenDataException {
+		final CompositeType first = newType("equalTypes");
+		final CompositeType second = newType("equalTypes");
+		assertNotSame(first, second);
+		assertSame(first, OpenTypes.intern(first));
+		assertSame(first, OpenTypes.intern(second));
+		assertSame(first, OpenTypes.intern(newType("equalTypes")));
+		assertNull(OpenTypes.intern(null));
+	}
+
+	/**
+	 * <p>An equal type of another class is not returned, and replaces the
+	 * registered one, which it survives.</p>
+	 */
+	@Test
+	public void otherClass() throws OpenDataException {
+		CompositeType subtype = new SubCompositeType("otherClass");
+		assertSame(subtype, OpenTypes.intern(subtype));
+
+		final CompositeType type = newType("otherClass");
+		assertEquals(subtype, type);
+		assertSame(type, OpenTypes.intern(type));
+		assertSame(type, OpenTypes.intern(newType("otherClass")));
+
+		final Reference<CompositeType> reference = new WeakReference<CompositeType>(subtype);
+		subtype = null;
+		collect(reference);
+		assertSame(type, OpenTypes.intern(newType("otherClass")));
+	}
+
+	/**
+	 * <p>Once the registered type is collected, the next equal type takes
+	 * its place.</p>
+	 */
+	@Test
+	public void cleared() throws OpenDataException {
+		CompositeType first = newType("cleared");
+		assertSame(first, OpenTypes.intern(first));
+		final Reference<CompositeType> reference = new WeakReference<CompositeType>(first);
+		first = null;
+		collect(reference);
+
+		final CompositeType second = newType("cleared");
+		assertSame(second, OpenTypes.intern(second));
+		assertSame(second, OpenTypes.intern(newType("cleared")));
+	}
+
+	private static CompositeType newType(final String name) throws OpenDataException {
+		return new CompositeType(name, name, new String[] {"item"}, new String[] {"item"}, new OpenType<?>[] {SimpleType.STRING});
+	}
+
+	private static void collect(final Reference<?> reference) {
+		for (int i = 0; i < 100 && reference.get() != null; i++) {
+			System.gc();
+			Thread.yield();
+		}
+		assertNull(reference.get());
+	}
+
+	private static final class SubCompositeType extends CompositeType {
+		private static final long serialVersionUID = 1L;
+
+		SubCompositeType(final String name) throws OpenDataException {
+			super(name, name, new String[] {"item"}, new String[] {"item"}, new OpenType<?>[] {SimpleType.STRING});
+		}
+	}
+}
@@ -0,0 +1,286 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Date;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+/**
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class OpenValueCodecTest {
+	@Test
+	public void simpleValues() throws Exception {
+		assertRoundTrip(SimpleType.BOOLEAN, Boolean.TRUE);
+		assertRoundTrip(SimpleType.CHARACTER, Character.valueOf('\u0416'));
+		assertRoundTrip(SimpleType.BYTE, Byte.valueOf(Byte.MIN_VALUE));
+		assertRoundTrip(SimpleType.SHORT, Short.valueOf(Short.MAX_VALUE));
+		assertRoundTrip(SimpleType.INTEGER, Integer.valueOf(-1));
+		assertRoundTrip(SimpleType.LONG, Long.valueOf(Long.MIN_VALUE));
+		assertRoundTrip(SimpleType.FLOAT, Float.valueOf(Float.NaN));
+		assertRoundTrip(SimpleType.DOUBLE, Double.valueOf(-0.0));
+		assertRoundTrip(SimpleType.STRING, "\u0000 \ud83d\ude00 \u0416");
+		assertRoundTrip(SimpleType.STRING, "");
+		assertRoundTrip(SimpleType.BIGDECIMAL, new BigDecimal("-12345678901234567890.0987654321"));
+		assertRoundTrip(SimpleType.BIGINTEGER, BigInteger.ONE.shiftLeft(200).negate());
+		assertRoundTrip(SimpleType.DATE, new Date(1234567890123L));
+		assertRoundTrip(SimpleType.OBJECTNAME, new ObjectName("domain:type=Test,name=\"a,b\""));
+		assertRoundTrip(SimpleType.STRING, null);
+	}
+
+	@Test
+	public void primitiveArrays() throws Exception {
+		final int ints[] = new int[100001];
+		for (int i = 0; i < ints.length; i++) {
+			ints[i] = i * 31;
+		}
+		assertArrayEquals(ints, (int[]) roundTrip(ArrayType.getPrimitiveArrayType(int[].class), ints));
+
+		final long longs[][] = {{1L, Long.MAX_VALUE}, null, {}};
+		assertTrue(Arrays.deepEquals(longs, (long[][]) roundTrip(ArrayType.getPrimitiveArrayType(long[][].class), longs)));
+	}
+
+	@Test
+	public void objectArrays() throws Exception {
+		final String strings[] = new String[20000];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = i % 7 == 0 ? null : "s" + i;
+		}
+		assertArrayEquals(strings, (String[]) roundTrip(new ArrayType<String[]>(1, SimpleType.STRING), strings));
+
+		final Integer integers[][] = {{Integer.valueOf(1), null}, null, {}};
+		assertArrayEquals(integers, (Integer[][]) roundTrip(new ArrayType<Integer[][]>(2, SimpleType.INTEGER), integers));
+	}
+
+	@Test
+	public void compositeAndTabularValues() throws Exception {
+		final CompositeType pointType = new CompositeType("Point",
+				"A point",
+				new String[] {"x", "y", "label"},
+				new String[] {"X", "Y", "Label"},
+				new OpenType<?>[] {SimpleType.INTEGER, SimpleType.INTEGER, SimpleType.STRING});
+		final TabularType tableType = new TabularType("Points", "Points by label", pointType, new String[] {"x", "y"});
+		final CompositeType rootType = new CompositeType("Root",
+				"The root",
+				new String[] {"origin", "points", "path"},
+				new String[] {"Origin", "Points", "Path"},
+				new OpenType<?>[] {pointType, tableType, ArrayType.getArrayType(pointType)});
+
+		final TabularData table = new TabularDataSupport(tableType);
+		final CompositeData path[] = new CompositeData[100];
+		for (int i = 0; i < path.length; i++) {
+			path[i] = new CompositeDataSupport(pointType,
+					new String[] {"x", "y", "label"},
+					new Object[] {Integer.valueOf(i), Integer.valueOf(-i), i % 2 == 0 ? null : "p" + i});
+			table.put(path[i]);
+		}
+		final CompositeData root = new CompositeDataSupport(rootType,
+				new String[] {"origin", "points", "path"},
+				new Object[] {path[0], table, path});
+
+		final Object decoded = roundTrip(rootType, root);
+		assertEquals(root.get("origin"), ((CompositeData) decoded).get("origin"));
+		assertEquals(table, ((CompositeData) decoded).get("points"));
+		assertArrayEquals(path, (Object[]) ((CompositeData) decoded).get("path"));
+	}
+
+	/**
+	 * <p>A decoded type is replaced with the canonical one only if it has
+	 * the same descriptions throughout, which the equality of Open Types
+	 * ignores.</p>
+	 */
+	@Test
+	public void decodedDescriptions() throws Exception {
+		final CompositeType canonical = OpenTypes.intern(newDescribedType("Described", "A", "A"));
+		assertSame(canonical, decodeType(newDescribedType("Described", "A", "A")));
+
+		final CompositeType types[] = {
+			newDescribedType("Described", "B", "A"),
+			newDescribedType("Described", "A", "B"),
+		};
+		for (final CompositeType type : types) {
+			final CompositeType decoded = (CompositeType) decodeType(type);
+			assertEquals(canonical, decoded);
+			assertEquals(type.getDescription(), decoded.getDescription());
+			assertEquals(type.getDescription("x"), decoded.getDescription("x"));
+
+			final TabularType tableType = (TabularType) decodeType(new TabularType("Table", "Table", type, new String[] {"x"}));
+			assertEquals(type.getDescription(), tableType.getRowType().getDescription());
+			final ArrayType<?> arrayType = (ArrayType<?>) decodeType(ArrayType.getArrayType(type));
+			assertEquals(type.getDescription("x"), ((CompositeType) arrayType.getElementOpenType()).getDescription("x"));
+
+			final CompositeType outerType = new CompositeType("Outer", "Outer", new String[] {"inner"}, new String[] {"Inner"}, new OpenType<?>[] {type});
+			assertEquals(type.getDescription("x"), ((CompositeType) ((CompositeType) decodeType(outerType)).getType("inner")).getDescription("x"));
+		}
+	}
+
+	@Test
+	public void longDescription() throws Exception {
+		final char description[] = new char[100000];
+		Arrays.fill(description, 'd');
+		final CompositeType type = new CompositeType("T",
+				new String(description),
+				new String[] {"x"},
+				new String[] {new String(description)},
+				new OpenType<?>[] {SimpleType.STRING});
+		final CompositeData value = new CompositeDataSupport(type, new String[] {"x"}, new Object[] {"x"});
+		assertEquals(value, roundTrip(type, value));
+	}
+
+	@Test
+	public void severalValues() throws Exception {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final OpenValueEncoder encoder = new OpenValueEncoder(SimpleType.STRING, new DataOutputStream(bytes));
+		encoder.encode("a");
+		encoder.encode(null);
+		encoder.encode("b");
+
+		final OpenValueDecoder decoder = new OpenValueDecoder(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertEquals(SimpleType.STRING, decoder.getOpenType());
+		assertEquals("a", decoder.decode());
+		assertNull(decoder.decode());
+		assertEquals("b", decoder.decode());
+		try {
+			decoder.decode();
+			fail("No EOFException");
+		} catch (final EOFException ignored) {
+			// Ignore.
+		}
+	}
+
+	/**
+	 * <p>A schema written aside is read back as a canonical type, and
+	 * values written without a header are read by a decoder created for
+	 * it.</p>
+	 */
+	@Test
+	public void withoutHeader() throws Exception {
+		final CompositeType type = new CompositeType("Pair",
+				"A pair",
+				new String[] {"key", "value"},
+				new String[] {"Key", "Value"},
+				new OpenType<?>[] {SimpleType.STRING, SimpleType.LONG});
+		final CompositeData value = new CompositeDataSupport(type,
+				new String[] {"key", "value"},
+				new Object[] {"k", Long.valueOf(1L)});
+
+		final ByteArrayOutputStream schema = new ByteArrayOutputStream();
+		OpenValueEncoder.writeOpenType(type, new DataOutputStream(schema));
+		final OpenType<?> schemaType = OpenValueDecoder.readOpenType(new DataInputStream(new ByteArrayInputStream(schema.toByteArray())));
+		assertEquals(type, schemaType);
+		assertSame(schemaType, OpenValueDecoder.readOpenType(new DataInputStream(new ByteArrayInputStream(schema.toByteArray()))));
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final OpenValueEncoder encoder = OpenValueEncoder.withoutHeader(type, new DataOutputStream(bytes));
+		encoder.encode(value);
+		encoder.encode(null);
+		final ByteArrayOutputStream withHeader = new ByteArrayOutputStream();
+		new OpenValueEncoder(type, new DataOutputStream(withHeader)).encode(value);
+		assertEquals(withHeader.size() - 4 - schema.size() + 1, bytes.size());
+
+		final OpenValueDecoder decoder = OpenValueDecoder.withoutHeader(schemaType, new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertEquals(value, decoder.decode());
+		assertNull(decoder.decode());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void wrongValue() throws IOException {
+		new OpenValueEncoder(SimpleType.INTEGER, new DataOutputStream(new ByteArrayOutputStream())).encode("x");
+	}
+
+	@Test(expected = StreamCorruptedException.class)
+	public void wrongMagic() throws IOException {
+		new OpenValueDecoder(new DataInputStream(new ByteArrayInputStream(new byte[] {0, 0, 0, 0})));
+	}
+
+	/**
+	 * <p>A negative length is reported as a corrupted stream, and a huge
+	 * one as a premature end of the stream, rather than with an
+	 * <code>OutOfMemoryError</code>.</p>
+	 */
+	@Test
+	public void corruptedLengths() throws Exception {
+		final OpenType<?> types[] = {
+			ArrayType.getPrimitiveArrayType(long[].class),
+			new ArrayType<String[]>(1, SimpleType.STRING),
+			SimpleType.STRING,
+		};
+		for (final OpenType<?> type : types) {
+			try {
+				decodeWithLength(type, -5);
+				fail("No StreamCorruptedException for " + type.getTypeName());
+			} catch (final StreamCorruptedException ignored) {
+				// Ignore.
+			}
+			try {
+				decodeWithLength(type, Integer.MAX_VALUE);
+				fail("No EOFException for " + type.getTypeName());
+			} catch (final EOFException ignored) {
+				// Ignore.
+			}
+		}
+	}
+
+	private static CompositeType newDescribedType(final String typeName,
+			final String description,
+			final String itemDescription) throws OpenDataException {
+		return new CompositeType(typeName,
+				description,
+				new String[] {"x"},
+				new String[] {itemDescription},
+				new OpenType<?>[] {SimpleType.INTEGER});
+	}
+
+	private static OpenType<?> decodeType(final OpenType<?> type) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new OpenValueEncoder(type, new DataOutputStream(bytes));
+		return new OpenValueDecoder(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))).getOpenType();
+	}
+
+	private static void assertRoundTrip(final OpenType<?> type, final Object value) throws IOException {
+		assertEquals(value, roundTrip(type, value));
+	}
+
+	private static Object roundTrip(final OpenType<?> type, final Object value) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new OpenValueEncoder(type, new DataOutputStream(bytes)).encode(value);
+		final OpenValueDecoder decoder = new OpenValueDecoder(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertEquals(type, decoder.getOpenType());
+		return decoder.decode();
+	}
+
+	/**
+	 * <p>Decode a non-null value of <code>type</code> whose length is
+	 * <code>length</code>, followed by a single element.</p>
+	 */
+	private static Object decodeWithLength(final OpenType<?> type, final int length) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new OpenValueEncoder(type, new DataOutputStream(bytes));
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeBoolean(true);
+		out.writeInt(length);
+		out.writeInt(1);
+		return new OpenValueDecoder(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))).decode();
+	}
+}
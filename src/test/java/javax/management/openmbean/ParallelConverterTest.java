@@ -0,0 +1,216 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class ParallelConverterTest {
+	private static final int LENGTH = 10000;
+
+	@Test
+	public void threshold() {
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			final ParallelConverter converter = new ParallelConverter(executor, 100);
+			assertFalse(converter.isParallel(99));
+			assertTrue(converter.isParallel(100));
+			assertFalse(new ParallelConverter(executor, 0).isParallel(1));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * <p>Each element is stored at its own index, whichever thread
+	 * converts it.</p>
+	 */
+	@Test
+	public void orderPreserved() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final Object javaElements[] = new Object[LENGTH];
+			for (int i = 0; i < LENGTH; i++) {
+				javaElements[i] = Integer.valueOf(i);
+			}
+			final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+			final Object openElements[] = new Object[LENGTH];
+			new ParallelConverter(executor, 2).toOpenValues(new ToStringMapping(threads), javaElements, openElements);
+			for (int i = 0; i < LENGTH; i++) {
+				assertEquals(String.valueOf(i), openElements[i]);
+			}
+			assertTrue(threads.contains(Thread.currentThread()));
+
+			final DefaultMXBeanMappingFactory.Options options = new DefaultMXBeanMappingFactory.Options();
+			options.setParallelExecutor(executor);
+			options.setParallelThreshold(2);
+			final MXBeanMappingFactory f = new DefaultMXBeanMappingFactory(options);
+			final List<Integer> list = new ArrayList<Integer>();
+			for (int i = 0; i < LENGTH; i++) {
+				list.add(Integer.valueOf(LENGTH - i));
+			}
+			final MXBeanMapping mapping = f.mappingForType(Types.class.getMethod("getList").getGenericReturnType(), f);
+			final Integer openValue[] = (Integer[]) mapping.toOpenValue(list);
+			assertArrayEquals(list.toArray(), openValue);
+			assertEquals(list, mapping.fromOpenValue(openValue));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * <p>The exception thrown is that of the first failing element, even
+	 * if a later element fails first.</p>
+	 */
+	@Test
+	public void firstFailingElement() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final ParallelConverter converter = new ParallelConverter(executor, 2);
+			assertFirstFailure(converter, 10, LENGTH - 10);
+			assertFirstFailure(converter, LENGTH / 2, LENGTH - 1);
+			assertFirstFailure(converter, LENGTH - 2, LENGTH - 1);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * <p>Conversions of nested large collections complete on an executor
+	 * with a single thread, whose every chunk waits for nested
+	 * chunks, and on one which rejects tasks once saturated.</p>
+	 */
+	@Test(timeout = 30000L)
+	public void nestedConversionOnBoundedExecutor() throws Exception {
+		final ExecutorService executors[] = {
+			new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1000)),
+			new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>()),
+		};
+		for (final ExecutorService executor : executors) {
+			try {
+				final DefaultMXBeanMappingFactory.Options options = new DefaultMXBeanMappingFactory.Options();
+				options.setParallelExecutor(executor);
+				options.setParallelThreshold(2);
+				final MXBeanMappingFactory f = new DefaultMXBeanMappingFactory(options);
+				final MXBeanMapping mapping = f.mappingForType(Types.class.getMethod("getNested").getGenericReturnType(), f);
+
+				final List<List<Integer>> nested = new ArrayList<List<Integer>>();
+				for (int i = 0; i < 16; i++) {
+					final List<Integer> inner = new ArrayList<Integer>();
+					for (int j = 0; j < 100; j++) {
+						inner.add(Integer.valueOf(i * 100 + j));
+					}
+					nested.add(inner);
+				}
+				final Integer openValue[][] = (Integer[][]) mapping.toOpenValue(nested);
+				assertEquals(16, openValue.length);
+				for (int i = 0; i < 16; i++) {
+					assertArrayEquals(nested.get(i).toArray(), openValue[i]);
+				}
+			} finally {
+				executor.shutdown();
+			}
+		}
+	}
+
+	private static void assertFirstFailure(final ParallelConverter converter,
+			final int firstFailing,
+			final int otherFailing)
+	throws Exception {
+		final Object javaElements[] = new Object[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			javaElements[i] = Integer.valueOf(i);
+		}
+		final MXBeanMapping mapping = new ToStringMapping(null) {
+			/**
+			 * @see ParallelConverterTest.ToStringMapping#toOpenValue(Object)
+			 */
+			@Override
+			public Object toOpenValue(final Object javaValue) throws OpenDataException {
+				final int i = ((Integer) javaValue).intValue();
+				if (i == firstFailing) {
+					try {
+						/*
+						 * Let the other element fail first.
+						 */
+						Thread.sleep(50L);
+					} catch (final InterruptedException ie) {
+						Thread.currentThread().interrupt();
+					}
+					throw new OpenDataException(String.valueOf(i));
+				} else if (i == otherFailing) {
+					throw new OpenDataException(String.valueOf(i));
+				}
+				return super.toOpenValue(javaValue);
+			}
+		};
+		try {
+			converter.toOpenValues(mapping, javaElements, new Object[LENGTH]);
+			fail("No exception");
+		} catch (final OpenDataException ode) {
+			assertEquals(String.valueOf(firstFailing), ode.getMessage());
+		}
+	}
+
+	/**
+	 * <p>Maps an <code>Integer</code> to its decimal representation, and
+	 * records the converting threads.</p>
+	 */
+	private static class ToStringMapping extends MXBeanMapping {
+		private final Set<Thread> threads;
+
+		ToStringMapping(final Set<Thread> threads) {
+			super(Integer.class, SimpleType.STRING);
+			this.threads = threads;
+		}
+
+		/**
+		 * @see MXBeanMapping#fromOpenValue(Object)
+		 */
+		@Override
+		public Object fromOpenValue(final Object openValue) {
+			return Integer.valueOf((String) openValue);
+		}
+
+		/**
+		 * @see MXBeanMapping#toOpenValue(Object)
+		 */
+		@Override
+		public Object toOpenValue(final Object javaValue) throws OpenDataException {
+			if (this.threads != null) {
+				this.threads.add(Thread.currentThread());
+			}
+			return javaValue.toString();
+		}
+	}
+
+	/**
+	 * <p>Declares the generic types used by the tests.</p>
+	 */
+	public interface Types {
+		List<Integer> getList();
+
+		List<List<Integer>> getNested();
+	}
+}
@@ -0,0 +1,352 @@
+/*-
+ * $Id$
+ */
+package javax.management.processing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.management.Attribute;
+import javax.management.DynamicMBean;
+import javax.management.IndexedDynamicMBean;
+import javax.management.MBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.RuntimeOperationsException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>Runs the processor through the Java compiler on sample
+ * <code>&#64;MBean</code> classes, and uses the generated classes.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class MBeanAnnotationProcessorTest {
+	/**
+	 * The name of the processor, which is not loaded by the tests: see
+	 * {@link #javac()}.
+	 */
+	private static final String PROCESSOR = "javax.management.processing.MBeanAnnotationProcessor";
+
+	private static final String COUNTER = source(
+			"package sample;",
+			"",
+			"import javax.management.Description;",
+			"import javax.management.MBean;",
+			"import javax.management.ManagedAttribute;",
+			"import javax.management.ManagedOperation;",
+			"import javax.management.ManagedOperationParameter;",
+			"",
+			"@MBean",
+			"@Description(\"A counter\")",
+			"public class Counter {",
+			"	private int count;",
+			"",
+			"	private String name;",
+			"",
+			"	@ManagedAttribute",
+			"	@Description(\"The count, as read\")",
+			"	public int getCount() {",
+			"		return this.count;",
+			"	}",
+			"",
+			"	@ManagedAttribute",
+			"	@Description(\"The count\")",
+			"	public void setCount(final int count) {",
+			"		this.count = count;",
+			"	}",
+			"",
+			"	@ManagedAttribute",
+			"	@Description(\"The name\")",
+			"	public void setName(final String name) {",
+			"		this.name = name;",
+			"	}",
+			"",
+			"	@ManagedAttribute",
+			"	@Description(\"The name, as read\")",
+			"	public String getName() {",
+			"		return this.name;",
+			"	}",
+			"",
+			"	@ManagedOperation",
+			"	public int add(@ManagedOperationParameter(\"delta\") final int delta) {",
+			"		return this.count += delta;",
+			"	}",
+			"",
+			"	@ManagedOperation",
+			"	public Object echo(final Object value) {",
+			"		return value;",
+			"	}",
+			"",
+			"	@ManagedOperation",
+			"	public <U> java.util.List<U> copy(final java.util.List<U> values) {",
+			"		return new java.util.ArrayList<U>(values);",
+			"	}",
+			"",
+			"	@MBean",
+			"	public static class Nested {",
+			"		@ManagedAttribute",
+			"		public boolean isEnabled() {",
+			"			return true;",
+			"		}",
+			"	}",
+			"}");
+
+	private static final String BOX = source(
+			"package sample;",
+			"",
+			"import javax.management.MBean;",
+			"import javax.management.ManagedAttribute;",
+			"import javax.management.ManagedOperation;",
+			"",
+			"@MBean",
+			"public class Box<T extends Comparable<T>> {",
+			"	private T value;",
+			"",
+			"	@ManagedAttribute",
+			"	public T getValue() {",
+			"		return this.value;",
+			"	}",
+			"",
+			"	@ManagedAttribute",
+			"	public void setValue(final T value) {",
+			"		this.value = value;",
+			"	}",
+			"",
+			"	@ManagedOperation",
+			"	public boolean isGreaterThan(final T other) {",
+			"		return this.value.compareTo(other) > 0;",
+			"	}",
+			"",
+			"	@ManagedOperation",
+			"	public java.util.List<T> repeat(final T item, final int times) {",
+			"		final java.util.List<T> items = new java.util.ArrayList<T>();",
+			"		for (int i = 0; i < times; i++) {",
+			"			items.add(item);",
+			"		}",
+			"		return items;",
+			"	}",
+			"}");
+
+	private File directory;
+
+	private ClassLoader loader;
+
+	@Before
+	public void compileSamples() throws IOException, InterruptedException {
+		this.directory = File.createTempFile("processor", "");
+		assertTrue(this.directory.delete());
+		final File sources = new File(this.directory, "sources");
+		final File generated = new File(this.directory, "generated");
+		final File classes = new File(this.directory, "classes");
+		assertTrue(new File(sources, "sample").mkdirs());
+		assertTrue(generated.mkdirs());
+		assertTrue(classes.mkdirs());
+		final File counter = write(new File(sources, "sample/Counter.java"), COUNTER);
+		final File box = write(new File(sources, "sample/Box.java"), BOX);
+
+		final String root = classesRoot();
+		final List<String> command = new ArrayList<String>(Arrays.asList(javac(),
+				"-Xlint:all",
+				"-processorpath", root,
+				"-processor", PROCESSOR,
+				"-s", generated.getPath(),
+				"-d", classes.getPath()));
+		if (System.getProperty("java.specification.version").startsWith("1.")) {
+			command.addAll(Arrays.asList("-classpath", root));
+		} else {
+			/*
+			 * The classes are part of the java.management module.
+			 */
+			command.addAll(Arrays.asList("--patch-module", "java.management=" + root));
+		}
+		command.add(counter.getPath());
+		command.add(box.getPath());
+
+		final Process javac = new ProcessBuilder(command).redirectErrorStream(true).start();
+		final String output = read(javac.getInputStream());
+		assertEquals(output, 0, javac.waitFor());
+		for (final String line : output.split("\n")) {
+			assertFalse(output, line.contains(MBeanAnnotationProcessor.SUFFIX + ".java"));
+		}
+		this.loader = new URLClassLoader(new URL[] {classes.toURI().toURL()}, MBean.class.getClassLoader());
+	}
+
+	@After
+	public void deleteDirectory() {
+		deleteTree(this.directory);
+	}
+
+	/**
+	 * <p>The generated class dispatches attributes and operations to a
+	 * plain <code>&#64;MBean</code> class, and checks their values.</p>
+	 */
+	@Test
+	public void plainClass() throws Exception {
+		final Object counter = this.loader.loadClass("sample.Counter").getConstructor().newInstance();
+		final DynamicMBean mbean = this.newMBean("sample.CounterDynamicMBean", counter);
+		final MBeanInfo info = mbean.getMBeanInfo();
+		assertEquals("sample.Counter", info.getClassName());
+		assertEquals("A counter", info.getDescription());
+		assertEquals(2, info.getAttributes().length);
+		assertEquals(3, info.getOperations().length);
+
+		/*
+		 * The description of the setter takes precedence, whichever
+		 * accessor comes first.
+		 */
+		for (final MBeanAttributeInfo attribute : info.getAttributes()) {
+			assertEquals(attribute.getName().equals("Count") ? "The count" : "The name", attribute.getDescription());
+		}
+
+		mbean.setAttribute(new Attribute("Count", Integer.valueOf(5)));
+		mbean.setAttribute(new Attribute("Name", "counter"));
+		assertEquals(Integer.valueOf(5), mbean.getAttribute("Count"));
+		assertEquals("counter", mbean.getAttribute("Name"));
+		assertEquals(Integer.valueOf(8), mbean.invoke("add", new Object[] {Integer.valueOf(3)}, new String[] {"int"}));
+		assertEquals(Integer.valueOf(8), mbean.getAttribute("Count"));
+		assertEquals("echo", mbean.invoke("echo", new Object[] {"echo"}, new String[] {Object.class.getName()}));
+		assertEquals(null, mbean.invoke("echo", new Object[] {null}, new String[] {Object.class.getName()}));
+		assertEquals(Arrays.asList("a", "b"), mbean.invoke("copy",
+				new Object[] {Arrays.asList("a", "b")},
+				new String[] {List.class.getName()}));
+
+		try {
+			mbean.invoke("add", new Object[] {"3"}, new String[] {"int"});
+			fail("No exception");
+		} catch (final RuntimeOperationsException roe) {
+			assertTrue(roe.getTargetException() instanceof IllegalArgumentException);
+		}
+
+		final DynamicMBean nested = this.newMBean("sample.Counter_NestedDynamicMBean",
+				this.loader.loadClass("sample.Counter$Nested").getConstructor().newInstance());
+		assertEquals(Boolean.TRUE, nested.getAttribute("Enabled"));
+	}
+
+	/**
+	 * <p>The generated class of a generic <code>&#64;MBean</code> class
+	 * accepts any parameterization of it, and passes values to the
+	 * methods which use its type variables.</p>
+	 */
+	@Test
+	public void genericClass() throws Exception {
+		final Class<?> boxClass = this.loader.loadClass("sample.Box");
+		final Class<?> mbeanClass = this.loader.loadClass("sample.BoxDynamicMBean");
+		final Type parameterType = mbeanClass.getConstructor(boxClass).getGenericParameterTypes()[0];
+		assertTrue(parameterType instanceof ParameterizedType);
+		assertTrue(((ParameterizedType) parameterType).getActualTypeArguments()[0] instanceof WildcardType);
+
+		final DynamicMBean mbean = this.newMBean("sample.BoxDynamicMBean", boxClass.getConstructor().newInstance());
+		assertEquals(Comparable.class.getName(), mbean.getMBeanInfo().getAttributes()[0].getType());
+		mbean.setAttribute(new Attribute("Value", "b"));
+		assertEquals("b", mbean.getAttribute("Value"));
+		final String signature[] = {Comparable.class.getName()};
+		assertEquals(Boolean.TRUE, mbean.invoke("isGreaterThan", new Object[] {"a"}, signature));
+		assertEquals(Boolean.FALSE, mbean.invoke("isGreaterThan", new Object[] {"c"}, signature));
+		assertEquals(Arrays.asList("x", "x"), mbean.invoke("repeat",
+				new Object[] {"x", Integer.valueOf(2)},
+				new String[] {Comparable.class.getName(), "int"}));
+
+		try {
+			mbean.invoke("isGreaterThan", new Object[] {new Object()}, signature);
+			fail("No exception");
+		} catch (final RuntimeOperationsException roe) {
+			assertTrue(roe.getTargetException() instanceof IllegalArgumentException);
+		}
+	}
+
+	private DynamicMBean newMBean(final String className, final Object implementation) throws Exception {
+		final Class<?> mbeanClass = this.loader.loadClass(className);
+		assertEquals(IndexedDynamicMBean.class, mbeanClass.getSuperclass());
+		return (DynamicMBean) mbeanClass.getConstructor(implementation.getClass()).newInstance(implementation);
+	}
+
+	/**
+	 * @return the directory this library has been loaded from.
+	 */
+	private static String classesRoot() {
+		final URL resource = MBean.class.getResource(MBean.class.getSimpleName() + ".class");
+		assertEquals("file", resource.getProtocol());
+		final String path = new File(URI.create(resource.toString())).getPath();
+		return path.substring(0, path.length() - (MBean.class.getName().replace('.', '/') + ".class").length());
+	}
+
+	/**
+	 * <p>The compiler runs in a process of its own: on Java 9 and later,
+	 * the tests are part of the java.management module, whose class
+	 * loader cannot see the compiler API, nor load the processor.</p>
+	 *
+	 * @return the path of the compiler of the running JDK.
+	 */
+	private static String javac() {
+		final File javaHome = new File(System.getProperty("java.home"));
+		final File javac = new File(javaHome, "bin/javac");
+		return javac.exists() ? javac.getPath() : new File(javaHome.getParentFile(), "bin/javac").getPath();
+	}
+
+	private static File write(final File file, final String content) throws IOException {
+		final Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static String read(final InputStream in) throws IOException {
+		final Reader reader = new InputStreamReader(in);
+		try {
+			final StringBuilder result = new StringBuilder();
+			final char buffer[] = new char[4096];
+			int length;
+			while ((length = reader.read(buffer)) != -1) {
+				result.append(buffer, 0, length);
+			}
+			return result.toString();
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static String source(final String... lines) {
+		final StringBuilder source = new StringBuilder();
+		for (final String line : lines) {
+			source.append(line).append('\n');
+		}
+		return source.toString();
+	}
+
+	private static void deleteTree(final File file) {
+		final File files[] = file.listFiles();
+		if (files != null) {
+			for (final File child : files) {
+				deleteTree(child);
+			}
+		}
+		file.delete();
+	}
+}
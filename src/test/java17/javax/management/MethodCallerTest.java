@@ -0,0 +1,151 @@
+/*-
+ * $Id$
+ */
+package javax.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+/**
+ * <p>Checks that the method handle based {@link MethodCaller} of the
+ * Java 17 layer behaves as {@link Method#invoke(Object, Object[])}, for
+ * both the calls it makes through the method handle and those it leaves
+ * to reflection.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class MethodCallerTest {
+	private static final Sample SAMPLE = new Sample();
+
+	@Test
+	public void exactCalls() throws Exception {
+		assertEquivalent(method("add", int.class, int.class), SAMPLE, Integer.valueOf(2), Integer.valueOf(3));
+		assertEquivalent(method("concat", String.class, Object.class), SAMPLE, "a", Integer.valueOf(1));
+		assertEquivalent(method("concat", String.class, Object.class), SAMPLE, null, null);
+		assertEquivalent(method("nothing"), SAMPLE);
+		assertEquivalent(method("nothing"), SAMPLE, (Object[]) null);
+		assertEquivalent(method("name"), new SubSample());
+	}
+
+	@Test
+	public void widening() throws Exception {
+		assertEquivalent(method("twice", long.class), SAMPLE, Integer.valueOf(4));
+		assertEquivalent(method("twice", long.class), SAMPLE, Character.valueOf('a'));
+	}
+
+	@Test
+	public void rejectedCalls() throws Exception {
+		final Method add = method("add", int.class, int.class);
+		assertEquivalent(add, SAMPLE, "2", Integer.valueOf(3));
+		assertEquivalent(add, SAMPLE, null, Integer.valueOf(3));
+		assertEquivalent(add, SAMPLE, Integer.valueOf(2));
+		assertEquivalent(add, SAMPLE, Integer.valueOf(2), Integer.valueOf(3), Integer.valueOf(4));
+		assertEquivalent(add, new Object(), Integer.valueOf(2), Integer.valueOf(3));
+		assertEquivalent(add, null, Integer.valueOf(2), Integer.valueOf(3));
+		assertEquivalent(method("twice", long.class), SAMPLE, Double.valueOf(1.0));
+	}
+
+	@Test
+	public void thrownExceptions() throws Exception {
+		assertEquivalent(method("fail", String.class), SAMPLE, "checked");
+		assertEquivalent(method("fail", String.class), SAMPLE, (Object) null);
+	}
+
+	@Test
+	public void staticMethod() throws Exception {
+		final Method negate = Sample.class.getMethod("negate", int.class);
+		assertEquivalent(negate, null, Integer.valueOf(7));
+		assertEquivalent(negate, SAMPLE, Integer.valueOf(7));
+		assertEquivalent(negate, null, "7");
+	}
+
+	private static Method method(final String name, final Class<?> ... parameterTypes)
+	throws NoSuchMethodException {
+		return Sample.class.getMethod(name, parameterTypes);
+	}
+
+	/**
+	 * <p>Calls <code>method</code> both reflectively and through a
+	 * {@link MethodCaller}, and checks that the results, or the classes
+	 * and causes of the exceptions, are the same.</p>
+	 */
+	private static void assertEquivalent(final Method method, final Object target, final Object ... args)
+	throws IllegalAccessException {
+		final MethodCaller caller = MethodCaller.forMethod(method);
+		assertSame(method, caller.getMethod());
+
+		Object expected;
+		try {
+			expected = method.invoke(target, args);
+		} catch (final InvocationTargetException ite) {
+			expected = ite;
+		} catch (final RuntimeException re) {
+			expected = re;
+		}
+		Object actual;
+		try {
+			actual = caller.call(target, args);
+		} catch (final InvocationTargetException ite) {
+			actual = ite;
+		} catch (final RuntimeException re) {
+			actual = re;
+		}
+
+		if (expected instanceof Throwable) {
+			assertSame(String.valueOf(actual), expected.getClass(), actual.getClass());
+			if (expected instanceof InvocationTargetException) {
+				final Throwable expectedCause = ((InvocationTargetException) expected).getCause();
+				final Throwable actualCause = ((InvocationTargetException) actual).getCause();
+				assertSame(expectedCause.getClass(), actualCause.getClass());
+				assertEquals(expectedCause.getMessage(), actualCause.getMessage());
+			}
+		} else {
+			assertEquals(expected, actual);
+		}
+	}
+
+	public static class Sample {
+		public int add(final int a, final int b) {
+			return a + b;
+		}
+
+		public long twice(final long value) {
+			return 2 * value;
+		}
+
+		public String concat(final String prefix, final Object suffix) {
+			return prefix + suffix;
+		}
+
+		public void nothing() {
+			// empty
+		}
+
+		public String name() {
+			return "sample";
+		}
+
+		public void fail(final String message) throws Exception {
+			if (message == null) {
+				throw new IllegalStateException();
+			}
+			throw new Exception(message);
+		}
+
+		public static int negate(final int value) {
+			return -value;
+		}
+	}
+
+	public static final class SubSample extends Sample {
+		@Override
+		public String name() {
+			return "subsample";
+		}
+	}
+}
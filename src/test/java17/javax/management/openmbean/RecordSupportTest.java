@@ -0,0 +1,151 @@
+/*-
+ * $Id$
+ */
+package javax.management.openmbean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InvalidObjectException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * <p>Checks the mappings of records and sealed types, which only the
+ * Java 17 layer of the multi-release JAR provides.</p>
+ *
+ * @author <a href = "mailto:andrewbass@gmail.com">Andrew ``Bass'' Shcheglov</a>
+ */
+public final class RecordSupportTest {
+	private static final MXBeanMappingFactory FACTORY = MXBeanMappingFactory.DEFAULT;
+
+	/**
+	 * <p>A record maps to a <code>CompositeData</code> with one item per
+	 * component, and back through its canonical constructor.</p>
+	 */
+	@Test
+	public void recordRoundTrip() throws Exception {
+		final MXBeanMapping mapping = FACTORY.mappingForType(Point.class, FACTORY);
+		final CompositeType compositeType = (CompositeType) mapping.getOpenType();
+		assertEquals(Point.class.getName(), compositeType.getTypeName());
+		assertEquals(SimpleType.INTEGER, compositeType.getType("x"));
+		assertEquals(SimpleType.STRING, compositeType.getType("label"));
+		assertEquals(new ArrayType<String[]>(SimpleType.STRING, false), compositeType.getType("tags"));
+		assertTrue(compositeType.getType("origin") instanceof CompositeType);
+		mapping.checkReconstructible();
+
+		final Point point = new Point(3, "p", Arrays.asList("a", "b"), new Origin(1L));
+		final CompositeData compositeData = (CompositeData) mapping.toOpenValue(point);
+		assertSame(compositeType, compositeData.getCompositeType());
+		assertEquals(Integer.valueOf(3), compositeData.get("x"));
+		assertEquals("p", compositeData.get("label"));
+		assertTrue(Arrays.equals(new String[] {"a", "b"}, (String[]) compositeData.get("tags")));
+		assertEquals(Long.valueOf(1L), ((CompositeData) compositeData.get("origin")).get("id"));
+		assertEquals(point, mapping.fromOpenValue(compositeData));
+
+		assertNull(mapping.toOpenValue(null));
+		assertNull(mapping.fromOpenValue(null));
+	}
+
+	/**
+	 * <p>A sealed interface maps to a <code>CompositeData</code> with one
+	 * item per permitted subclass, of which only the item of the actual
+	 * subclass is set, and maps back to that subclass.</p>
+	 */
+	@Test
+	public void sealedRoundTrip() throws Exception {
+		final MXBeanMapping mapping = FACTORY.mappingForType(Shape.class, FACTORY);
+		final CompositeType compositeType = (CompositeType) mapping.getOpenType();
+		assertEquals(2, compositeType.keySet().size());
+		assertTrue(compositeType.containsKey(Circle.class.getName()));
+		assertTrue(compositeType.containsKey(Square.class.getName()));
+		mapping.checkReconstructible();
+
+		for (final Shape shape : new Shape[] {new Circle(2.0), new Square(3.0)}) {
+			final CompositeData compositeData = (CompositeData) mapping.toOpenValue(shape);
+			for (final String itemName : compositeType.keySet()) {
+				assertEquals(itemName.equals(shape.getClass().getName()), compositeData.get(itemName) != null);
+			}
+			assertEquals(shape, mapping.fromOpenValue(compositeData));
+		}
+
+		final CompositeData empty = new CompositeDataSupport(compositeType,
+				new String[] {Circle.class.getName(), Square.class.getName()},
+				new Object[] {null, null});
+		try {
+			mapping.fromOpenValue(empty);
+			fail("No exception");
+		} catch (final InvalidObjectException ignored) {
+			// Ignore.
+		}
+	}
+
+	/**
+	 * <p>Records without components, and sealed types with a permitted
+	 * subclass which cannot be mapped, or which refer to themselves, are
+	 * rejected.</p>
+	 */
+	@Test
+	public void unsupportedTypes() {
+		for (final Class<?> type : new Class<?>[] {Empty.class, Opaque.class, Tree.class}) {
+			try {
+				FACTORY.mappingForType(type, FACTORY);
+				fail("No exception for " + type.getName());
+			} catch (final OpenDataException ignored) {
+				// Ignore.
+			}
+		}
+	}
+
+	public record Origin(long id) {
+		// empty
+	}
+
+	public record Point(int x, String label, List<String> tags, Origin origin) {
+		// empty
+	}
+
+	public sealed interface Shape permits Circle, Square {
+		// empty
+	}
+
+	public record Circle(double radius) implements Shape {
+		// empty
+	}
+
+	public record Square(double side) implements Shape {
+		// empty
+	}
+
+	public record Empty() {
+		// empty
+	}
+
+	public sealed interface Opaque permits Handle {
+		// empty
+	}
+
+	/**
+	 * <p>Has no getter, so cannot be mapped.</p>
+	 */
+	public static final class Handle implements Opaque {
+		// empty
+	}
+
+	public sealed interface Tree permits Leaf, Node {
+		// empty
+	}
+
+	public record Leaf(int value) implements Tree {
+		// empty
+	}
+
+	public record Node(Tree left, Tree right) implements Tree {
+		// empty
+	}
+}